@@ -20,7 +20,8 @@ CTS_TESTCASES_OUT := $(HOST_OUT)/cts/android-cts/repository/testcases
 # the XML generator to produce test XMLs.
 CTS_NATIVE_TEST_SCANNER := $(HOST_OUT_EXECUTABLES)/cts-native-scanner
 CTS_JAVA_TEST_SCANNER := $(HOST_OUT_EXECUTABLES)/cts-java-scanner
-CTS_JAVA_TEST_SCANNER_DOCLET := $(HOST_OUT_JAVA_LIBRARIES)/cts-java-scanner-doclet.jar
+# Cache of the java sources parsed by the java scanner, shared by all modules.
+CTS_JAVA_TEST_SCANNER_CACHE := $(HOST_OUT_INTERMEDIATES)/cts-java-scanner.cache
 
 # Generator of test XMLs from scanner output.
 CTS_XML_GENERATOR := $(HOST_OUT_EXECUTABLES)/cts-xml-generator
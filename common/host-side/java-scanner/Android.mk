@@ -22,8 +22,6 @@ LOCAL_JAVA_LIBRARIES := compatibility-common-util-hostsidelib_v2
 
 LOCAL_JAR_MANIFEST := MANIFEST.mf
 
-LOCAL_CLASSPATH := $(HOST_JDK_TOOLS_JAR)
-
 LOCAL_MODULE := compatibility-java-scanner_v2
 
 LOCAL_MODULE_TAGS := optional
@@ -16,14 +16,15 @@
 
 package com.android.compatibility.common.scanner;
 
+import com.android.compatibility.common.scanner.SourceFile.MethodDecl;
+import com.android.compatibility.common.scanner.SourceFile.TypeDecl;
 import com.android.compatibility.common.util.KeyValueArgsParser;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileFilter;
-import java.io.InputStreamReader;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -46,103 +47,94 @@ public class JavaScanner {
         "./prebuilts/misc/common/tradefed/tradefed-prebuilt.java",
         "./prebuilts/misc/common/ub-uiautomator/ub-uiautomator.java"
     };
+    private static final String JUNIT_TEST_CASE_CLASS_NAME = "junit.framework.testcase";
+
     private final File mSourceDir;
-    private final File mDocletDir;
+    private final File mCacheFile;
 
     /**
      * @param sourceDir The directory holding the source to scan.
-     * @param docletDir The directory holding the doclet (or its jar).
+     * @param cacheFile The file caching the parsed sources between runs, or null.
      */
-    JavaScanner(File sourceDir, File docletDir) {
+    JavaScanner(File sourceDir, File cacheFile) {
         this.mSourceDir = sourceDir;
-        this.mDocletDir = docletDir;
+        this.mCacheFile = cacheFile;
     }
 
+    /**
+     * Prints the JUnit3 tests of the source directory.
+     *
+     * Sample output:
+     * suite:com.android.sample.cts
+     * case:SampleDeviceTest
+     * test:testSharedPreferences
+     */
     int scan() throws Exception {
-        final ArrayList<String> args = new ArrayList<String>();
-        args.add("javadoc");
-        args.add("-doclet");
-        args.add("com.android.compatibility.common.scanner.JavaScannerDoclet");
-        args.add("-sourcepath");
-        args.add(getSourcePath(mSourceDir));
-        args.add("-classpath");
-        args.add(getClassPath());
-        args.add("-docletpath");
-        args.add(mDocletDir.toString());
-        args.addAll(getSourceFiles(mSourceDir));
+        final SourceScanner scanner = new SourceScanner(getSourcePath(mSourceDir),
+                getClassPath(), mCacheFile);
+        final List<TypeDecl> classes = scanner.scan(Collections.singletonList(mSourceDir));
 
-        // Dont want p to get blocked due to a full pipe.
-        final Process p = new ProcessBuilder(args).redirectErrorStream(true).start();
-        final BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()));
-        try {
-            String line = null;
-            while ((line = in.readLine()) != null) {
-                if (line.startsWith("suite:") ||
-                    line.startsWith("case:") ||
-                    line.startsWith("test:")) {
-                    System.out.println(line);
+        final PrintWriter writer = new PrintWriter(System.out);
+        for (TypeDecl clazz : classes) {
+            if (clazz.isAbstract() || !isValidJUnitTestCase(scanner, clazz)) {
+                continue;
+            }
+            writer.append("suite:").println(clazz.getPackageName());
+            writer.append("case:").println(clazz.getName());
+            for (; clazz != null; clazz = scanner.getSuperclass(clazz)) {
+                for (MethodDecl method : scanner.getMethods(clazz)) {
+                    if (method.getName().startsWith("test")) {
+                        writer.append("test:").println(method.getName());
+                    }
                 }
             }
-        } finally {
-          if (in != null) {
-              in.close();
-          }
         }
+        writer.flush();
 
-        return p.waitFor();
-    }
-
-    private static String getSourcePath(File sourceDir) {
-        final ArrayList<String> sourcePath = new ArrayList<String>(Arrays.asList(SOURCE_PATHS));
-        sourcePath.add(sourceDir.toString());
-        return join(sourcePath, ":");
+        scanner.saveCache();
+        return 0;
     }
 
-    private static String getClassPath() {
-        return join(Arrays.asList(CLASS_PATHS), ":");
+    private static boolean isValidJUnitTestCase(SourceScanner scanner, TypeDecl clazz) {
+        while ((clazz = scanner.getSuperclass(clazz)) != null) {
+            if (JUNIT_TEST_CASE_CLASS_NAME.equals(clazz.getQualifiedName().toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private static ArrayList<String> getSourceFiles(File sourceDir) {
-        final ArrayList<String> sourceFiles = new ArrayList<String>();
-        final File[] files = sourceDir.listFiles(new FileFilter() {
-            public boolean accept(File pathname) {
-                return pathname.isDirectory() || pathname.toString().endsWith(".java");
-            }
-        });
-        for (File f : files) {
-            if (f.isDirectory()) {
-                sourceFiles.addAll(getSourceFiles(f));
-            } else {
-                sourceFiles.add(f.toString());
-            }
+    private static List<File> getSourcePath(File sourceDir) {
+        final ArrayList<File> sourcePath = new ArrayList<File>();
+        for (String path : SOURCE_PATHS) {
+            sourcePath.add(new File(path));
         }
-        return sourceFiles;
+        sourcePath.add(sourceDir);
+        return sourcePath;
     }
 
-    private static String join(List<String> list, String delimiter) {
-        final StringBuilder builder = new StringBuilder();
-        for (String s : list) {
-            builder.append(s);
-            builder.append(delimiter);
+    private static List<File> getClassPath() {
+        final ArrayList<File> classPath = new ArrayList<File>();
+        for (String path : CLASS_PATHS) {
+            classPath.add(new File(path));
         }
-        // Adding the delimiter each time and then removing the last one at the end is more
-        // efficient than doing a check in each iteration of the loop.
-        return builder.substring(0, builder.length() - delimiter.length());
+        return classPath;
     }
 
     public static void main(String[] args) throws Exception {
         final HashMap<String, String> argsMap = KeyValueArgsParser.parse(args);
         final String sourcePath = argsMap.get("-s");
-        final String docletPath = argsMap.get("-d");
-        if (sourcePath == null || docletPath == null) {
+        final String cachePath = argsMap.get("-c");
+        if (sourcePath == null) {
             usage(args);
         }
-        System.exit(new JavaScanner(new File(sourcePath), new File(docletPath)).scan());
+        final File cacheFile = cachePath != null ? new File(cachePath) : null;
+        System.exit(new JavaScanner(new File(sourcePath), cacheFile).scan());
     }
 
     private static void usage(String[] args) {
         System.err.println("Arguments: " + Arrays.toString(args));
-        System.err.println("Usage: javascanner -s SOURCE_DIR -d DOCLET_PATH");
+        System.err.println("Usage: javascanner -s SOURCE_DIR [-c CACHE_FILE]");
         System.exit(1);
     }
 }
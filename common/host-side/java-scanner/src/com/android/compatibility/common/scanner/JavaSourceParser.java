@@ -0,0 +1,470 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.scanner;
+
+import com.android.compatibility.common.scanner.SourceFile.AnnotationDecl;
+import com.android.compatibility.common.scanner.SourceFile.MethodDecl;
+import com.android.compatibility.common.scanner.SourceFile.TypeDecl;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses the declarations of a java source file into a {@link SourceFile}.
+ * <p>
+ * This is not a full java parser. It splits the source into tokens and only
+ * follows the declaration structure: package, imports, types, methods and
+ * annotations. Field initializers, method bodies and initializer blocks are
+ * skipped by matching their brackets, so anonymous and local classes are not
+ * seen, as they are not seen by javadoc either. Sources that do not compile
+ * are parsed as far as possible.
+ */
+class JavaSourceParser {
+
+    private static final Map<String, Integer> MODIFIERS = new HashMap<String, Integer>();
+    static {
+        MODIFIERS.put("public", Modifier.PUBLIC);
+        MODIFIERS.put("protected", Modifier.PROTECTED);
+        MODIFIERS.put("private", Modifier.PRIVATE);
+        MODIFIERS.put("static", Modifier.STATIC);
+        MODIFIERS.put("abstract", Modifier.ABSTRACT);
+        MODIFIERS.put("final", Modifier.FINAL);
+        MODIFIERS.put("native", Modifier.NATIVE);
+        MODIFIERS.put("synchronized", Modifier.SYNCHRONIZED);
+        MODIFIERS.put("transient", Modifier.TRANSIENT);
+        MODIFIERS.put("volatile", Modifier.VOLATILE);
+        MODIFIERS.put("strictfp", Modifier.STRICT);
+        // interface methods with a body
+        MODIFIERS.put("default", 0);
+    }
+
+    private final List<String> mTokens;
+    private int mPos;
+    private final SourceFile mFile = new SourceFile();
+
+    private JavaSourceParser(List<String> tokens) {
+        mTokens = tokens;
+    }
+
+    /**
+     * Parses the given java source.
+     */
+    static SourceFile parse(char[] source) {
+        JavaSourceParser parser = new JavaSourceParser(tokenize(source));
+        parser.parseCompilationUnit();
+        return parser.mFile;
+    }
+
+    private void parseCompilationUnit() {
+        while (mPos < mTokens.size()) {
+            List<AnnotationDecl> annotations = new ArrayList<AnnotationDecl>();
+            int modifiers = parseModifiers(annotations);
+            String token = peek(0);
+            if (token.equals("package")) {
+                mPos++;
+                mFile.mPackageName = parseQualifiedName();
+            } else if (token.equals("import")) {
+                mPos++;
+                boolean isStatic = accept("static");
+                String name = parseQualifiedName();
+                if (accept(".")) {
+                    // on demand import, the "*" is kept
+                    name += "." + next();
+                }
+                if (!isStatic) {
+                    mFile.mImports.add(name);
+                }
+            } else if (isTypeStart()) {
+                parseType(modifiers, annotations, null);
+            } else {
+                // ";" or something this parser does not understand
+                mPos++;
+            }
+        }
+    }
+
+    /**
+     * Parses a type declaration starting at its keyword, and the types
+     * declared in its body.
+     */
+    private void parseType(int modifiers, List<AnnotationDecl> annotations, TypeDecl outer) {
+        TypeDecl type = new TypeDecl();
+        String keyword = next();
+        if (keyword.equals("@")) {
+            next(); // interface
+            type.mKind = TypeDecl.ANNOTATION;
+        } else if (keyword.equals("interface")) {
+            type.mKind = TypeDecl.INTERFACE;
+        } else if (keyword.equals("enum")) {
+            type.mKind = TypeDecl.ENUM;
+        } else {
+            type.mKind = TypeDecl.CLASS;
+        }
+        String name = next();
+        type.mPackageName = mFile.mPackageName;
+        type.mName = outer != null ? outer.mName + "." + name : name;
+        type.mOuterName = outer != null ? outer.mName : null;
+        type.mModifiers = modifiers;
+        if (outer != null && (outer.mKind == TypeDecl.INTERFACE
+                || outer.mKind == TypeDecl.ANNOTATION)) {
+            // member types of interfaces are implicitly public and static
+            type.mModifiers |= Modifier.PUBLIC | Modifier.STATIC;
+        }
+        type.mAnnotations.addAll(annotations);
+        type.mFile = mFile;
+        mFile.mTypes.add(type);
+
+        if (peek(0).equals("<")) {
+            skipBalanced("<", ">");
+        }
+        while (mPos < mTokens.size() && !peek(0).equals("{")) {
+            if (accept("extends") && type.mKind == TypeDecl.CLASS) {
+                type.mSuperclassName = parseTypeName();
+            } else {
+                // implements clause, or the extends clause of an interface
+                if (peek(0).equals("<")) {
+                    skipBalanced("<", ">");
+                } else {
+                    mPos++;
+                }
+            }
+        }
+        parseBody(type);
+    }
+
+    private void parseBody(TypeDecl type) {
+        if (!accept("{")) {
+            return;
+        }
+        if (type.mKind == TypeDecl.ENUM) {
+            // the enum constants, up to the ";" before the other members
+            skipUntil(";");
+            if (peek(0).equals(";")) {
+                mPos++;
+            }
+        }
+        boolean isInterface = type.mKind == TypeDecl.INTERFACE
+                || type.mKind == TypeDecl.ANNOTATION;
+        while (mPos < mTokens.size() && !peek(0).equals("}")) {
+            if (accept(";")) {
+                continue;
+            }
+            List<AnnotationDecl> annotations = new ArrayList<AnnotationDecl>();
+            int modifiers = parseModifiers(annotations);
+            if (peek(0).equals("{")) {
+                // initializer block
+                skipBalanced("{", "}");
+                continue;
+            }
+            if (isTypeStart()) {
+                parseType(modifiers, annotations, type);
+                continue;
+            }
+            if (peek(0).equals("<")) {
+                // type parameters of a generic method or constructor
+                skipBalanced("<", ">");
+            }
+            if (peek(1).equals("(")) {
+                // constructor
+                mPos++;
+                skipMethodRest();
+                continue;
+            }
+            parseTypeName();
+            String name = next();
+            if (!peek(0).equals("(")) {
+                // field, the initializer may contain braces
+                skipUntil(";");
+                accept(";");
+                continue;
+            }
+            skipMethodRest();
+
+            MethodDecl method = new MethodDecl();
+            method.mName = name;
+            method.mModifiers = modifiers;
+            if (isInterface && !Modifier.isPrivate(modifiers)) {
+                method.mModifiers |= Modifier.PUBLIC;
+            }
+            method.mAnnotations.addAll(annotations);
+            type.mMethods.add(method);
+        }
+        accept("}");
+    }
+
+    /**
+     * Skips the parameters, throws clause and body of a method.
+     */
+    private void skipMethodRest() {
+        skipBalanced("(", ")");
+        while (mPos < mTokens.size()) {
+            String token = peek(0);
+            if (token.equals("{")) {
+                skipBalanced("{", "}");
+                return;
+            } else if (token.equals(";")) {
+                mPos++;
+                return;
+            } else if (token.equals("default")) {
+                // default value of an annotation element, which may be an array
+                skipUntil(";");
+            } else if (token.equals("}")) {
+                // missing body, let the enclosing type end
+                return;
+            } else {
+                mPos++;
+            }
+        }
+    }
+
+    /**
+     * Parses modifier keywords and annotations, returning the modifiers.
+     */
+    private int parseModifiers(List<AnnotationDecl> annotations) {
+        int modifiers = 0;
+        while (mPos < mTokens.size()) {
+            String token = peek(0);
+            if (token.equals("@") && !peek(1).equals("interface")) {
+                mPos++;
+                annotations.add(parseAnnotation());
+            } else if (MODIFIERS.containsKey(token) && !peek(1).equals(":")) {
+                modifiers |= MODIFIERS.get(token);
+                mPos++;
+            } else {
+                break;
+            }
+        }
+        return modifiers;
+    }
+
+    /**
+     * Parses an annotation after its "@".
+     */
+    private AnnotationDecl parseAnnotation() {
+        AnnotationDecl annotation = new AnnotationDecl();
+        annotation.mTypeName = parseQualifiedName();
+        if (!accept("(")) {
+            return annotation;
+        }
+        if (isIdentifier(peek(0)) && peek(1).equals("=") && !peek(2).equals("=")) {
+            while (mPos < mTokens.size() && !peek(0).equals(")")) {
+                String name = next();
+                next(); // =
+                annotation.mElements.put(name, parseElementValue());
+                accept(",");
+            }
+        } else if (!peek(0).equals(")")) {
+            annotation.mElements.put("value", parseElementValue());
+        }
+        accept(")");
+        return annotation;
+    }
+
+    /**
+     * Returns the tokens of an element value up to the next "," or ")" that
+     * is not nested, separated by spaces.
+     */
+    private String parseElementValue() {
+        StringBuilder value = new StringBuilder();
+        int depth = 0;
+        while (mPos < mTokens.size()) {
+            String token = peek(0);
+            if (depth == 0 && (token.equals(",") || token.equals(")"))) {
+                break;
+            }
+            if (token.equals("(") || token.equals("{") || token.equals("[")) {
+                depth++;
+            } else if (token.equals(")") || token.equals("}") || token.equals("]")) {
+                depth--;
+            }
+            if (value.length() > 0) {
+                value.append(' ');
+            }
+            value.append(token);
+            mPos++;
+        }
+        return value.toString();
+    }
+
+    /**
+     * Parses a type as used in a declaration and returns its name without type
+     * arguments, array dimensions or type annotations.
+     */
+    private String parseTypeName() {
+        while (peek(0).equals("@") && !peek(1).equals("interface")) {
+            mPos++;
+            parseAnnotation();
+        }
+        StringBuilder name = new StringBuilder(next());
+        while (mPos < mTokens.size()) {
+            if (peek(0).equals("<")) {
+                skipBalanced("<", ">");
+            } else if (peek(0).equals(".") && isIdentifier(peek(1))) {
+                mPos++;
+                name.append('.').append(next());
+            } else if (peek(0).equals("[")) {
+                skipBalanced("[", "]");
+            } else if (peek(0).equals(".") && peek(1).equals(".") && peek(2).equals(".")) {
+                // varargs
+                mPos += 3;
+            } else {
+                break;
+            }
+        }
+        return name.toString();
+    }
+
+    private String parseQualifiedName() {
+        StringBuilder name = new StringBuilder(next());
+        while (peek(0).equals(".") && isIdentifier(peek(1))) {
+            mPos++;
+            name.append('.').append(next());
+        }
+        return name.toString();
+    }
+
+    private boolean isTypeStart() {
+        String token = peek(0);
+        return token.equals("class") || token.equals("interface") || token.equals("enum")
+                || (token.equals("@") && peek(1).equals("interface"));
+    }
+
+    /**
+     * Skips from an opening bracket to after its matching closing bracket.
+     */
+    private void skipBalanced(String open, String close) {
+        int depth = 0;
+        while (mPos < mTokens.size()) {
+            String token = next();
+            if (token.equals(open)) {
+                depth++;
+            } else if (token.equals(close) && --depth == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skips to the given token outside of any brackets, or to the "}" closing
+     * the enclosing block.
+     */
+    private void skipUntil(String end) {
+        int depth = 0;
+        while (mPos < mTokens.size()) {
+            String token = peek(0);
+            if (depth == 0 && (token.equals(end) || token.equals("}"))) {
+                return;
+            }
+            if (token.equals("(") || token.equals("{") || token.equals("[")) {
+                depth++;
+            } else if (token.equals(")") || token.equals("}") || token.equals("]")) {
+                depth--;
+            }
+            mPos++;
+        }
+    }
+
+    private boolean accept(String token) {
+        if (peek(0).equals(token)) {
+            mPos++;
+            return true;
+        }
+        return false;
+    }
+
+    private String next() {
+        return mPos < mTokens.size() ? mTokens.get(mPos++) : "";
+    }
+
+    private String peek(int offset) {
+        int pos = mPos + offset;
+        return pos < mTokens.size() ? mTokens.get(pos) : "";
+    }
+
+    private static boolean isIdentifier(String token) {
+        return !token.isEmpty() && Character.isJavaIdentifierStart(token.charAt(0));
+    }
+
+    /**
+     * Splits a java source into identifiers, keywords, literals and single
+     * character operators. Comments and whitespace are dropped. String and
+     * character literals keep their quotes.
+     */
+    static List<String> tokenize(char[] source) {
+        List<String> tokens = new ArrayList<String>(source.length / 4);
+        int length = source.length;
+        int i = 0;
+        while (i < length) {
+            char c = source[i];
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '/' && i + 1 < length && source[i + 1] == '/') {
+                while (i < length && source[i] != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < length && source[i + 1] == '*') {
+                i += 2;
+                while (i < length && !(source[i] == '*' && i + 1 < length
+                        && source[i + 1] == '/')) {
+                    i++;
+                }
+                i += 2;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < length && Character.isJavaIdentifierPart(source[i])) {
+                    i++;
+                }
+                tokens.add(new String(source, start, i - start).intern());
+            } else if (Character.isDigit(c)
+                    || (c == '.' && i + 1 < length && Character.isDigit(source[i + 1]))) {
+                int start = i;
+                boolean isHex = c == '0' && i + 1 < length
+                        && (source[i + 1] == 'x' || source[i + 1] == 'X');
+                while (i < length) {
+                    char d = source[i];
+                    if (Character.isLetterOrDigit(d) || d == '.' || d == '_') {
+                        i++;
+                    } else if ((d == '+' || d == '-') && (isHex ? "pP" : "eE")
+                            .indexOf(source[i - 1]) >= 0) {
+                        // sign of an exponent
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                tokens.add(new String(source, start, i - start));
+            } else if (c == '"' || c == '\'') {
+                int start = i++;
+                while (i < length && source[i] != c && source[i] != '\n') {
+                    if (source[i] == '\\') {
+                        i++;
+                    }
+                    i++;
+                }
+                i++;
+                tokens.add(new String(source, start, Math.min(i, length) - start));
+            } else {
+                tokens.add(String.valueOf(c).intern());
+                i++;
+            }
+        }
+        return tokens;
+    }
+}
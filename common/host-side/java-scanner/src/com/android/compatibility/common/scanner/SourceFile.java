@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.scanner;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The structure of a java source file needed to find tests: its package,
+ * imports, and the types it declares with their superclass, methods and
+ * annotations. Method bodies and fields are not kept.
+ */
+public class SourceFile {
+
+    String mPackageName = "";
+    /** single type imports, and on demand imports ending with ".*" */
+    final List<String> mImports = new ArrayList<String>();
+    /** all types of the file, each enclosing type before the types it encloses */
+    final List<TypeDecl> mTypes = new ArrayList<TypeDecl>();
+
+    /**
+     * A class, interface, enum or annotation type declaration.
+     */
+    public static class TypeDecl {
+        static final int CLASS = 0;
+        static final int INTERFACE = 1;
+        static final int ENUM = 2;
+        static final int ANNOTATION = 3;
+
+        String mPackageName;
+        /** the name without the package, such as "Outer.Inner" */
+        String mName;
+        int mKind;
+        int mModifiers;
+        /** the superclass as written in the source, without type arguments, or null */
+        String mSuperclassName;
+        /** the name of the enclosing type as in {@link #mName}, or null */
+        String mOuterName;
+        final List<MethodDecl> mMethods = new ArrayList<MethodDecl>();
+        final List<AnnotationDecl> mAnnotations = new ArrayList<AnnotationDecl>();
+
+        /** the file declaring this type, or null if it was read from a class file */
+        SourceFile mFile;
+
+        public String getPackageName() {
+            return mPackageName;
+        }
+
+        /**
+         * Returns the name of this type without the package, such as
+         * "Outer.Inner" for a member type.
+         */
+        public String getName() {
+            return mName;
+        }
+
+        public String getQualifiedName() {
+            return mPackageName.isEmpty() ? mName : mPackageName + "." + mName;
+        }
+
+        public boolean isAbstract() {
+            return Modifier.isAbstract(mModifiers) || mKind == INTERFACE || mKind == ANNOTATION;
+        }
+
+        public List<AnnotationDecl> getAnnotations() {
+            return mAnnotations;
+        }
+
+        String getSimpleName() {
+            return mName.substring(mName.lastIndexOf('.') + 1);
+        }
+
+        @Override
+        public String toString() {
+            return getQualifiedName();
+        }
+    }
+
+    /**
+     * A method declaration. Constructors are not included.
+     */
+    public static class MethodDecl {
+        String mName;
+        int mModifiers;
+        final List<AnnotationDecl> mAnnotations = new ArrayList<AnnotationDecl>();
+
+        public String getName() {
+            return mName;
+        }
+
+        public List<AnnotationDecl> getAnnotations() {
+            return mAnnotations;
+        }
+    }
+
+    /**
+     * An annotation of a type or method. The element values are kept as the
+     * source tokens separated by spaces, so a string value keeps its quotes.
+     */
+    public static class AnnotationDecl {
+        /** the annotation type as written in the source */
+        String mTypeName;
+        final Map<String, String> mElements = new LinkedHashMap<String, String>();
+
+        /**
+         * Returns the source of the value of an element, or null if the
+         * annotation does not set it.
+         */
+        public String getElement(String name) {
+            return mElements.get(name);
+        }
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeUTF(mPackageName);
+        out.writeInt(mImports.size());
+        for (String name : mImports) {
+            out.writeUTF(name);
+        }
+        out.writeInt(mTypes.size());
+        for (TypeDecl type : mTypes) {
+            out.writeUTF(type.mName);
+            out.writeByte(type.mKind);
+            out.writeInt(type.mModifiers);
+            writeNullable(out, type.mSuperclassName);
+            writeNullable(out, type.mOuterName);
+            writeAnnotations(out, type.mAnnotations);
+            out.writeInt(type.mMethods.size());
+            for (MethodDecl method : type.mMethods) {
+                out.writeUTF(method.mName);
+                out.writeInt(method.mModifiers);
+                writeAnnotations(out, method.mAnnotations);
+            }
+        }
+    }
+
+    static SourceFile read(DataInputStream in) throws IOException {
+        SourceFile file = new SourceFile();
+        file.mPackageName = in.readUTF();
+        int importCount = in.readInt();
+        for (int i = 0; i < importCount; i++) {
+            file.mImports.add(in.readUTF());
+        }
+        int typeCount = in.readInt();
+        for (int i = 0; i < typeCount; i++) {
+            TypeDecl type = new TypeDecl();
+            type.mPackageName = file.mPackageName;
+            type.mName = in.readUTF();
+            type.mKind = in.readByte();
+            type.mModifiers = in.readInt();
+            type.mSuperclassName = readNullable(in);
+            type.mOuterName = readNullable(in);
+            readAnnotations(in, type.mAnnotations);
+            int methodCount = in.readInt();
+            for (int j = 0; j < methodCount; j++) {
+                MethodDecl method = new MethodDecl();
+                method.mName = in.readUTF();
+                method.mModifiers = in.readInt();
+                readAnnotations(in, method.mAnnotations);
+                type.mMethods.add(method);
+            }
+            type.mFile = file;
+            file.mTypes.add(type);
+        }
+        return file;
+    }
+
+    private static void writeAnnotations(DataOutputStream out, List<AnnotationDecl> annotations)
+            throws IOException {
+        out.writeInt(annotations.size());
+        for (AnnotationDecl annotation : annotations) {
+            out.writeUTF(annotation.mTypeName);
+            out.writeInt(annotation.mElements.size());
+            for (Map.Entry<String, String> element : annotation.mElements.entrySet()) {
+                out.writeUTF(element.getKey());
+                out.writeUTF(element.getValue());
+            }
+        }
+    }
+
+    private static void readAnnotations(DataInputStream in, List<AnnotationDecl> annotations)
+            throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            AnnotationDecl annotation = new AnnotationDecl();
+            annotation.mTypeName = in.readUTF();
+            int elementCount = in.readInt();
+            for (int j = 0; j < elementCount; j++) {
+                annotation.mElements.put(in.readUTF(), in.readUTF());
+            }
+            annotations.add(annotation);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
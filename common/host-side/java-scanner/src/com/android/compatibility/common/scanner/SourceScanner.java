@@ -0,0 +1,800 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.scanner;
+
+import com.android.compatibility.common.scanner.SourceFile.AnnotationDecl;
+import com.android.compatibility.common.scanner.SourceFile.MethodDecl;
+import com.android.compatibility.common.scanner.SourceFile.TypeDecl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Modifier;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+/**
+ * Finds the types declared in java source directories, in process and without
+ * compiling them, and resolves their superclasses the way javadoc does.
+ * <p>
+ * The source files are parsed in parallel by {@link JavaSourceParser}.
+ * Superclasses outside of the scanned directories are looked up in the source
+ * path first, then in the class files of the class path, then in the JDK.
+ * <p>
+ * The parsed structure of every source file is cached by the SHA-1 of its
+ * content, optionally in a cache file shared by all scanner runs. A file whose
+ * size and modification time did not change is not read at all, so scanning a
+ * tree again after touching one file only parses that file. Several scanners
+ * may share a cache file: saving merges with the entries saved in the meantime.
+ */
+public class SourceScanner {
+
+    private static final int CACHE_VERSION = 1;
+
+    private final List<File> mSourcePath;
+    private final List<File> mClassPath;
+    private final File mCacheFile;
+
+    /** parsed source files by absolute path */
+    private final Map<String, CacheEntry> mCache = new ConcurrentHashMap<String, CacheEntry>();
+    private volatile boolean mCacheModified;
+    private final AtomicInteger mParseCount = new AtomicInteger();
+
+    /** resolved types by qualified name, null if the name is not a type */
+    private final Map<String, TypeDecl> mTypes = new HashMap<String, TypeDecl>();
+    private final Map<TypeDecl, TypeDecl> mSuperclasses = new HashMap<TypeDecl, TypeDecl>();
+    private List<JarFile> mJarFiles;
+
+    /**
+     * @param sourcePath the source directories to look up types in that are
+     *     not in the scanned directories
+     * @param classPath the jars to look up types in that are not in the source
+     *     path, missing jars are ignored
+     * @param cacheFile the file to keep the parsed source files in between
+     *     runs, or null to only cache them in memory
+     */
+    public SourceScanner(List<File> sourcePath, List<File> classPath, File cacheFile) {
+        mSourcePath = sourcePath;
+        mClassPath = classPath;
+        mCacheFile = cacheFile;
+        if (cacheFile != null && cacheFile.isFile()) {
+            try {
+                readCache(cacheFile, mCache);
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable scanner cache " + cacheFile + ": " + e);
+                mCache.clear();
+            }
+        }
+    }
+
+    /**
+     * Parses the java files under the given directories and returns the types
+     * javadoc includes by default: the public and protected types whose
+     * enclosing types are included too. Files are visited in path order, and
+     * every type comes before the types it encloses.
+     */
+    public List<TypeDecl> scan(List<File> sourceDirs) throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (File sourceDir : sourceDirs) {
+            addSourceFiles(sourceDir, files);
+        }
+        Collections.sort(files);
+
+        List<SourceFile> sourceFiles = parseAll(files);
+        // files may have changed since the last scan, only parsed files are kept
+        mTypes.clear();
+        mSuperclasses.clear();
+        List<TypeDecl> types = new ArrayList<TypeDecl>();
+        Set<String> included = new HashSet<String>();
+        for (SourceFile sourceFile : sourceFiles) {
+            for (TypeDecl type : sourceFile.mTypes) {
+                String name = type.getQualifiedName();
+                if (mTypes.get(name) == null) {
+                    mTypes.put(name, type);
+                }
+                if ((Modifier.isPublic(type.mModifiers) || Modifier.isProtected(type.mModifiers))
+                        && (type.mOuterName == null || included.contains(
+                                qualify(type.mPackageName, type.mOuterName)))) {
+                    included.add(name);
+                    types.add(type);
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Returns the superclass of a type, or null if it has none or it cannot be
+     * found.
+     */
+    public TypeDecl getSuperclass(TypeDecl type) {
+        if (mSuperclasses.containsKey(type)) {
+            return mSuperclasses.get(type);
+        }
+        TypeDecl superclass = null;
+        if (type.mFile == null) {
+            // read from a class file, the name is already resolved
+            if (type.mSuperclassName != null) {
+                superclass = findType(type.mSuperclassName);
+            }
+        } else if (type.mSuperclassName != null) {
+            superclass = findType(resolve(getOuter(type), type.mFile, type.mSuperclassName));
+        } else if (type.mKind == TypeDecl.ENUM) {
+            superclass = findType("java.lang.Enum");
+        } else if (type.mKind == TypeDecl.CLASS
+                && !type.getQualifiedName().equals("java.lang.Object")) {
+            superclass = findType("java.lang.Object");
+        }
+        mSuperclasses.put(type, superclass);
+        return superclass;
+    }
+
+    /**
+     * Returns the methods of a type javadoc includes by default: the public
+     * and protected ones, in declaration order.
+     */
+    public List<MethodDecl> getMethods(TypeDecl type) {
+        List<MethodDecl> methods = new ArrayList<MethodDecl>();
+        for (MethodDecl method : type.mMethods) {
+            if (Modifier.isPublic(method.mModifiers) || Modifier.isProtected(method.mModifiers)) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Returns the qualified name of the type of an annotation of the given
+     * type or of one of its methods, or the name as written if it cannot be
+     * resolved.
+     */
+    public String getQualifiedName(TypeDecl type, AnnotationDecl annotation) {
+        if (type.mFile == null) {
+            return annotation.mTypeName;
+        }
+        String name = resolve(type, type.mFile, annotation.mTypeName);
+        return name != null ? name : annotation.mTypeName;
+    }
+
+    /**
+     * Returns the number of source files parsed rather than taken from the
+     * cache.
+     */
+    int getParseCount() {
+        return mParseCount.get();
+    }
+
+    /**
+     * Writes the parsed source files to the cache file, if any file was parsed
+     * since the cache was read. Entries of files that do not exist anymore are
+     * dropped.
+     */
+    public void saveCache() throws IOException {
+        if (mCacheFile == null || !mCacheModified) {
+            return;
+        }
+        File dir = mCacheFile.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        // other scanners may save the same cache concurrently
+        RandomAccessFile lockFile = new RandomAccessFile(mCacheFile.getPath() + ".lock", "rw");
+        try {
+            FileLock lock = lockFile.getChannel().lock();
+            try {
+                Map<String, CacheEntry> entries = new HashMap<String, CacheEntry>();
+                if (mCacheFile.isFile()) {
+                    try {
+                        readCache(mCacheFile, entries);
+                    } catch (IOException e) {
+                        entries.clear();
+                    }
+                }
+                entries.putAll(mCache);
+                writeCache(entries);
+                mCacheModified = false;
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    private void writeCache(Map<String, CacheEntry> entries) throws IOException {
+        File tempFile = File.createTempFile(mCacheFile.getName(), ".tmp",
+                mCacheFile.getAbsoluteFile().getParentFile());
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(CACHE_VERSION);
+            List<Map.Entry<String, CacheEntry>> existing =
+                    new ArrayList<Map.Entry<String, CacheEntry>>();
+            for (Map.Entry<String, CacheEntry> entry : entries.entrySet()) {
+                if (new File(entry.getKey()).isFile()) {
+                    existing.add(entry);
+                }
+            }
+            out.writeInt(existing.size());
+            for (Map.Entry<String, CacheEntry> entry : existing) {
+                CacheEntry cacheEntry = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(cacheEntry.mLength);
+                out.writeLong(cacheEntry.mLastModified);
+                out.writeUTF(cacheEntry.mDigest);
+                cacheEntry.mFile.write(out);
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(mCacheFile)
+                    && !(mCacheFile.delete() && tempFile.renameTo(mCacheFile))) {
+                throw new IOException("Cannot rename " + tempFile + " to " + mCacheFile);
+            }
+        } finally {
+            close(out);
+            tempFile.delete();
+        }
+    }
+
+    private static void readCache(File cacheFile, Map<String, CacheEntry> entries)
+            throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile)));
+        try {
+            if (in.readInt() != CACHE_VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                CacheEntry entry = new CacheEntry();
+                entry.mLength = in.readLong();
+                entry.mLastModified = in.readLong();
+                entry.mDigest = in.readUTF();
+                entry.mFile = SourceFile.read(in);
+                entries.put(path, entry);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Parses the given files on all processors, returning them in the same
+     * order.
+     */
+    private List<SourceFile> parseAll(List<File> files) throws IOException {
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), files.size());
+        List<SourceFile> sourceFiles = new ArrayList<SourceFile>(files.size());
+        if (threads <= 1) {
+            for (File file : files) {
+                sourceFiles.add(getSourceFile(file));
+            }
+            return sourceFiles;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<SourceFile>> futures = new ArrayList<Future<SourceFile>>();
+            for (final File file : files) {
+                futures.add(executor.submit(new Callable<SourceFile>() {
+                    @Override
+                    public SourceFile call() throws IOException {
+                        return getSourceFile(file);
+                    }
+                }));
+            }
+            for (Future<SourceFile> future : futures) {
+                try {
+                    sourceFiles.add(future.get());
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted while parsing sources", e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return sourceFiles;
+    }
+
+    /**
+     * Returns the parsed structure of a source file, from the cache if the
+     * file did not change.
+     */
+    private SourceFile getSourceFile(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        CacheEntry entry = mCache.get(path);
+        if (entry != null && entry.mLength == length && entry.mLastModified == lastModified) {
+            return entry.mFile;
+        }
+
+        byte[] content = readFully(new FileInputStream(file));
+        String digest = digest(content);
+        if (entry == null || !entry.mDigest.equals(digest)) {
+            entry = new CacheEntry();
+            entry.mDigest = digest;
+            entry.mFile = JavaSourceParser.parse(new String(content, "UTF-8").toCharArray());
+            mParseCount.incrementAndGet();
+        } else {
+            // touched but not changed
+            CacheEntry touched = new CacheEntry();
+            touched.mDigest = digest;
+            touched.mFile = entry.mFile;
+            entry = touched;
+        }
+        entry.mLength = length;
+        entry.mLastModified = lastModified;
+        mCache.put(path, entry);
+        mCacheModified = true;
+        return entry.mFile;
+    }
+
+    /**
+     * Resolves a type name as written in a source file to a qualified name,
+     * following the java scoping rules closely enough for superclasses and
+     * annotations: enclosing types and their members, types of the same file,
+     * single type imports, the same package, on demand imports and java.lang.
+     * Returns null if the name cannot be resolved.
+     *
+     * @param scope the innermost type the name is used in, or null at the top
+     *     level of the file
+     */
+    private String resolve(TypeDecl scope, SourceFile file, String name) {
+        int dot = name.indexOf('.');
+        String first = dot < 0 ? name : name.substring(0, dot);
+        String rest = dot < 0 ? "" : name.substring(dot);
+
+        String resolved = resolveSimpleName(scope, file, first);
+        if (resolved != null && (rest.isEmpty() || findType(resolved + rest) != null)) {
+            // a single type import is trusted even if the type cannot be found
+            return resolved + rest;
+        }
+        if (dot >= 0 && findType(name) != null) {
+            // fully qualified
+            return name;
+        }
+        return null;
+    }
+
+    private String resolveSimpleName(TypeDecl scope, SourceFile file, String name) {
+        for (TypeDecl type = scope; type != null; type = getOuter(type)) {
+            if (type.getSimpleName().equals(name)) {
+                return type.getQualifiedName();
+            }
+            if (type.mFile != null) {
+                String memberName = type.mName + "." + name;
+                for (TypeDecl member : type.mFile.mTypes) {
+                    if (member.mName.equals(memberName)) {
+                        return member.getQualifiedName();
+                    }
+                }
+            } else if (findType(type.getQualifiedName() + "." + name) != null) {
+                return type.getQualifiedName() + "." + name;
+            }
+        }
+        for (TypeDecl type : file.mTypes) {
+            if (type.mOuterName == null && type.mName.equals(name)) {
+                return type.getQualifiedName();
+            }
+        }
+        for (String imported : file.mImports) {
+            if (imported.endsWith("." + name)) {
+                return imported;
+            }
+        }
+        String samePackage = qualify(file.mPackageName, name);
+        if (findType(samePackage) != null) {
+            return samePackage;
+        }
+        for (String imported : file.mImports) {
+            if (imported.endsWith(".*")) {
+                String candidate = imported.substring(0, imported.length() - 1) + name;
+                if (findType(candidate) != null) {
+                    return candidate;
+                }
+            }
+        }
+        String javaLang = "java.lang." + name;
+        if (findType(javaLang) != null) {
+            return javaLang;
+        }
+        return null;
+    }
+
+    private TypeDecl getOuter(TypeDecl type) {
+        if (type.mOuterName == null) {
+            return null;
+        }
+        return findType(qualify(type.mPackageName, type.mOuterName));
+    }
+
+    /**
+     * Returns the type with the given qualified name from the scanned
+     * directories, the source path, the class path or the JDK, or null if
+     * there is none.
+     */
+    private TypeDecl findType(String qualifiedName) {
+        if (qualifiedName == null) {
+            return null;
+        }
+        if (mTypes.containsKey(qualifiedName)) {
+            return mTypes.get(qualifiedName);
+        }
+        TypeDecl type = null;
+        int dot = qualifiedName.lastIndexOf('.');
+        if (dot < 0) {
+            type = findType("", qualifiedName);
+        }
+        // the package is a prefix of the name, try the longest one first
+        for (; type == null && dot > 0; dot = qualifiedName.lastIndexOf('.', dot - 1)) {
+            type = findType(qualifiedName.substring(0, dot), qualifiedName.substring(dot + 1));
+        }
+        mTypes.put(qualifiedName, type);
+        return type;
+    }
+
+    private TypeDecl findType(String packageName, String name) {
+        String packagePath = packageName.replace('.', '/');
+        String dirPath = packagePath.isEmpty() ? "" : packagePath + "/";
+        int dot = name.indexOf('.');
+        String topLevelName = dot < 0 ? name : name.substring(0, dot);
+
+        for (File root : mSourcePath) {
+            File file = new File(root, dirPath + topLevelName + ".java");
+            if (file.isFile()) {
+                try {
+                    SourceFile sourceFile = getSourceFile(file);
+                    for (TypeDecl type : sourceFile.mTypes) {
+                        if (type.mName.equals(name)
+                                && type.mPackageName.equals(packageName)) {
+                            return type;
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Cannot read " + file + ": " + e);
+                }
+                return null;
+            }
+        }
+
+        String entryName = dirPath + name.replace('.', '$') + ".class";
+        for (JarFile jarFile : getJarFiles()) {
+            ZipEntry entry = jarFile.getEntry(entryName);
+            if (entry != null) {
+                try {
+                    return ClassFileReader.read(readFully(jarFile.getInputStream(entry)),
+                            packageName, name);
+                } catch (IOException e) {
+                    System.err.println("Cannot read " + entryName + " from "
+                            + jarFile.getName() + ": " + e);
+                    return null;
+                }
+            }
+        }
+
+        if (ClassLoader.getSystemResource(entryName) != null) {
+            // a type of the runtime such as java.lang.Object, which declares
+            // no tests and ends the hierarchy
+            TypeDecl type = new TypeDecl();
+            type.mPackageName = packageName;
+            type.mName = name;
+            return type;
+        }
+        return null;
+    }
+
+    private List<JarFile> getJarFiles() {
+        if (mJarFiles == null) {
+            mJarFiles = new ArrayList<JarFile>();
+            for (File file : mClassPath) {
+                if (file.isFile()) {
+                    try {
+                        mJarFiles.add(new JarFile(file));
+                    } catch (IOException e) {
+                        System.err.println("Cannot open " + file + ": " + e);
+                    }
+                }
+            }
+        }
+        return mJarFiles;
+    }
+
+    private static void addSourceFiles(File dir, List<File> files) {
+        File[] children = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.isDirectory() || pathname.getName().endsWith(".java");
+            }
+        });
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addSourceFiles(child, files);
+            } else {
+                files.add(child);
+            }
+        }
+    }
+
+    private static String qualify(String packageName, String name) {
+        return packageName.isEmpty() ? name : packageName + "." + name;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String digest(byte[] content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest(content)) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+            builder.append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static class CacheEntry {
+        long mLength;
+        long mLastModified;
+        String mDigest;
+        SourceFile mFile;
+    }
+
+    /**
+     * Reads the superclass, methods and method annotation types of a class
+     * file, for types of the class path.
+     */
+    private static class ClassFileReader {
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_LONG = 5;
+        private static final int CONSTANT_DOUBLE = 6;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_STRING = 8;
+        private static final int CONSTANT_METHOD_HANDLE = 15;
+        private static final int CONSTANT_METHOD_TYPE = 16;
+        private static final int CONSTANT_MODULE = 19;
+        private static final int CONSTANT_PACKAGE = 20;
+
+        private static final int ACC_INTERFACE = 0x0200;
+        private static final int ACC_ANNOTATION = 0x2000;
+        private static final int ACC_ENUM = 0x4000;
+
+        static TypeDecl read(byte[] bytes, String packageName, String name)
+                throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != 0xcafebabe) {
+                throw new IOException("Not a class file");
+            }
+            in.skipBytes(4); // version
+            Object[] constants = readConstantPool(in);
+
+            TypeDecl type = new TypeDecl();
+            type.mPackageName = packageName;
+            type.mName = name;
+            int accessFlags = in.readUnsignedShort();
+            type.mModifiers = accessFlags;
+            if ((accessFlags & ACC_ANNOTATION) != 0) {
+                type.mKind = TypeDecl.ANNOTATION;
+            } else if ((accessFlags & ACC_INTERFACE) != 0) {
+                type.mKind = TypeDecl.INTERFACE;
+            } else if ((accessFlags & ACC_ENUM) != 0) {
+                type.mKind = TypeDecl.ENUM;
+            } else {
+                type.mKind = TypeDecl.CLASS;
+            }
+            in.skipBytes(2); // this class
+            int superIndex = in.readUnsignedShort();
+            if (superIndex != 0 && type.mKind != TypeDecl.INTERFACE) {
+                type.mSuperclassName = getClassName(constants, superIndex);
+            }
+            in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+
+            int fieldCount = in.readUnsignedShort();
+            for (int i = 0; i < fieldCount; i++) {
+                in.skipBytes(6);
+                readAnnotations(in, constants);
+            }
+            int methodCount = in.readUnsignedShort();
+            for (int i = 0; i < methodCount; i++) {
+                MethodDecl method = new MethodDecl();
+                method.mModifiers = in.readUnsignedShort();
+                method.mName = (String) constants[in.readUnsignedShort()];
+                in.skipBytes(2); // descriptor
+                method.mAnnotations.addAll(readAnnotations(in, constants));
+                if (!method.mName.startsWith("<")) {
+                    type.mMethods.add(method);
+                }
+            }
+            return type;
+        }
+
+        private static Object[] readConstantPool(DataInputStream in) throws IOException {
+            int count = in.readUnsignedShort();
+            Object[] constants = new Object[count];
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case CONSTANT_UTF8:
+                        constants[i] = in.readUTF();
+                        break;
+                    case CONSTANT_CLASS:
+                        constants[i] = Integer.valueOf(in.readUnsignedShort());
+                        break;
+                    case CONSTANT_STRING:
+                    case CONSTANT_METHOD_TYPE:
+                    case CONSTANT_MODULE:
+                    case CONSTANT_PACKAGE:
+                        in.skipBytes(2);
+                        break;
+                    case CONSTANT_METHOD_HANDLE:
+                        in.skipBytes(3);
+                        break;
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        in.skipBytes(8);
+                        i++;
+                        break;
+                    default:
+                        // integers, floats, member references, name and types
+                        // and dynamic constants all take four bytes
+                        if (tag < 3 || tag > 18) {
+                            throw new IOException("Unknown constant pool tag " + tag);
+                        }
+                        in.skipBytes(4);
+                        break;
+                }
+            }
+            return constants;
+        }
+
+        /**
+         * Reads the attributes of a field or method, returning the types of
+         * its runtime visible annotations.
+         */
+        private static List<AnnotationDecl> readAnnotations(DataInputStream in,
+                Object[] constants) throws IOException {
+            List<AnnotationDecl> annotations = new ArrayList<AnnotationDecl>();
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                String name = (String) constants[in.readUnsignedShort()];
+                int length = in.readInt();
+                if (!"RuntimeVisibleAnnotations".equals(name)) {
+                    in.skipBytes(length);
+                    continue;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                DataInputStream attribute = new DataInputStream(new ByteArrayInputStream(bytes));
+                int annotationCount = attribute.readUnsignedShort();
+                for (int j = 0; j < annotationCount; j++) {
+                    annotations.add(readAnnotation(attribute, constants));
+                }
+            }
+            return annotations;
+        }
+
+        /**
+         * Reads an annotation, skipping its element values, which are not
+         * needed.
+         */
+        private static AnnotationDecl readAnnotation(DataInputStream in, Object[] constants)
+                throws IOException {
+            AnnotationDecl annotation = new AnnotationDecl();
+            String descriptor = (String) constants[in.readUnsignedShort()];
+            annotation.mTypeName = descriptor.substring(1, descriptor.length() - 1)
+                    .replace('/', '.').replace('$', '.');
+            int pairCount = in.readUnsignedShort();
+            for (int i = 0; i < pairCount; i++) {
+                in.skipBytes(2); // element name
+                skipElementValue(in, constants);
+            }
+            return annotation;
+        }
+
+        private static void skipElementValue(DataInputStream in, Object[] constants)
+                throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 'B': case 'C': case 'D': case 'F': case 'I':
+                case 'J': case 'S': case 'Z': case 's': case 'c':
+                    in.skipBytes(2);
+                    break;
+                case 'e':
+                    in.skipBytes(4);
+                    break;
+                case '@':
+                    readAnnotation(in, constants);
+                    break;
+                case '[':
+                    int count = in.readUnsignedShort();
+                    for (int i = 0; i < count; i++) {
+                        skipElementValue(in, constants);
+                    }
+                    break;
+                default:
+                    throw new IOException("Unknown element value tag " + (char) tag);
+            }
+        }
+
+        private static String getClassName(Object[] constants, int index) {
+            String internalName = (String) constants[(Integer) constants[index]];
+            return internalName.replace('/', '.').replace('$', '.');
+        }
+    }
+}
@@ -105,8 +105,6 @@ public class JavaScannerTest extends TestCase {
             args.add(JAR);
             args.add("-s");
             args.add(parent1.toString());
-            args.add("-d");
-            args.add(JAR);
 
             final Process p = new ProcessBuilder(args).start();
             final StringBuilder output = new StringBuilder();
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.scanner;
+
+import com.android.compatibility.common.scanner.SourceFile.AnnotationDecl;
+import com.android.compatibility.common.scanner.SourceFile.MethodDecl;
+import com.android.compatibility.common.scanner.SourceFile.TypeDecl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+
+public class SourceScannerTest extends TestCase {
+
+    private static final String TEST_CASE =
+        "package junit.framework;" +
+        "public abstract class TestCase {" +
+        "  protected void setUp() throws Exception {}" +
+        "}";
+
+    private static final String BASE =
+        "package com.android.test;" +
+        "import junit.framework.TestCase;" +
+        "public abstract class BaseTest<T> extends TestCase {" +
+        "  public void testBase() {}" +
+        "}";
+
+    private static final String SAMPLE =
+        "package com.android.test;\n" +
+        "import com.android.cts.util.TimeoutReq;\n" +
+        "import java.util.*;\n" +
+        "/** A class { with braces in comments */\n" +
+        "public class SampleTest extends BaseTest<List<Map<String, String>>> {\n" +
+        "  private static final String BRACES = \"}{\\\"\";\n" +
+        "  private final Runnable mRunnable = new Runnable() {\n" +
+        "    public void run() { char c = '}'; }\n" +
+        "  };\n" +
+        "  static { int[] a = {1, 2}; }\n" +
+        "  public SampleTest() {}\n" +
+        "  @TimeoutReq(minutes = 10)\n" +
+        "  public void testA() throws Exception {}\n" +
+        "  @Deprecated public <T> List<T> testB(T... args) { return null; }\n" +
+        "  private void testPrivate() {}\n" +
+        "  void testPackagePrivate() {}\n" +
+        "  public static class Inner extends BaseTest<String> {\n" +
+        "    public void testInner() {}\n" +
+        "  }\n" +
+        "  private static class Hidden extends BaseTest<String> {}\n" +
+        "  public enum Mode { ONE { void f() {} }, TWO; public void testEnum() {} }\n" +
+        "  public @interface Marker { String[] value() default {\"a\", \"b\"}; }\n" +
+        "  public interface Callback { void testCallback(); }\n" +
+        "}\n";
+
+    private static final String LIB_BASE =
+        "package com.android.lib;\n" +
+        "import java.lang.annotation.*;\n" +
+        "public abstract class LibBase {\n" +
+        "  @Retention(RetentionPolicy.RUNTIME) public @interface Level { int value(); }\n" +
+        "  @Retention(RetentionPolicy.RUNTIME) public @interface Marker {\n" +
+        "    String[] names(); Level level(); Thread.State state(); Class<?> type();\n" +
+        "  }\n" +
+        "  @Marker(names = {\"a\", \"b\"}, level = @Level(1), state = Thread.State.NEW,\n" +
+        "      type = String.class)\n" +
+        "  @Deprecated\n" +
+        "  public void testLib() {}\n" +
+        "}\n";
+
+    private static final String JAR_TEST =
+        "package com.android.test;\n" +
+        "import com.android.lib.LibBase;\n" +
+        "public class JarTest extends LibBase {}\n";
+
+    private File mRoot;
+    private File mSourcePath;
+    private File mSourceDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRoot = File.createTempFile("scanner", null);
+        mRoot.delete();
+        mSourcePath = new File(mRoot, "sourcepath");
+        mSourceDir = new File(mRoot, "src");
+        write(new File(mSourcePath, "junit/framework/TestCase.java"), TEST_CASE);
+        write(new File(mSourceDir, "com/android/test/BaseTest.java"), BASE);
+        write(new File(mSourceDir, "com/android/test/SampleTest.java"), SAMPLE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(mRoot);
+        super.tearDown();
+    }
+
+    public void testParse() throws Exception {
+        SourceFile file = JavaSourceParser.parse(SAMPLE.toCharArray());
+        assertEquals("com.android.test", file.mPackageName);
+        assertEquals(2, file.mImports.size());
+        assertEquals("java.util.*", file.mImports.get(1));
+
+        List<String> typeNames = new ArrayList<String>();
+        for (TypeDecl type : file.mTypes) {
+            typeNames.add(type.getName());
+        }
+        assertEquals("[SampleTest, SampleTest.Inner, SampleTest.Hidden, SampleTest.Mode, "
+                + "SampleTest.Marker, SampleTest.Callback]", typeNames.toString());
+
+        TypeDecl sample = file.mTypes.get(0);
+        assertEquals("BaseTest", sample.mSuperclassName);
+        assertEquals("[testA, testB, testPrivate, testPackagePrivate]",
+                getMethodNames(sample.mMethods).toString());
+        AnnotationDecl timeout = sample.mMethods.get(0).getAnnotations().get(0);
+        assertEquals("TimeoutReq", timeout.mTypeName);
+        assertEquals("10", timeout.getElement("minutes"));
+
+        assertEquals("[testEnum]", getMethodNames(file.mTypes.get(3).mMethods).toString());
+        assertTrue(file.mTypes.get(5).isAbstract());
+    }
+
+    public void testScan() throws Exception {
+        SourceScanner scanner = new SourceScanner(Collections.singletonList(mSourcePath),
+                Collections.<File>emptyList(), null);
+        List<TypeDecl> types = scanner.scan(Collections.singletonList(mSourceDir));
+
+        List<String> typeNames = new ArrayList<String>();
+        for (TypeDecl type : types) {
+            typeNames.add(type.getQualifiedName());
+        }
+        // private types and their members are not included
+        assertEquals("[com.android.test.BaseTest, com.android.test.SampleTest, "
+                + "com.android.test.SampleTest.Inner, com.android.test.SampleTest.Mode, "
+                + "com.android.test.SampleTest.Marker, com.android.test.SampleTest.Callback]",
+                typeNames.toString());
+
+        TypeDecl sample = types.get(1);
+        TypeDecl base = scanner.getSuperclass(sample);
+        assertEquals("com.android.test.BaseTest", base.getQualifiedName());
+        assertEquals("junit.framework.TestCase", scanner.getSuperclass(base).getQualifiedName());
+        assertEquals("com.android.test.BaseTest",
+                scanner.getSuperclass(types.get(2)).getQualifiedName());
+
+        // public and protected methods only
+        assertEquals("[testA, testB]", getMethodNames(scanner.getMethods(sample)).toString());
+        AnnotationDecl timeout = sample.mMethods.get(0).getAnnotations().get(0);
+        assertEquals("com.android.cts.util.TimeoutReq", scanner.getQualifiedName(sample, timeout));
+    }
+
+    public void testCache() throws Exception {
+        File cacheFile = new File(mRoot, "cache");
+        SourceScanner scanner = new SourceScanner(Collections.singletonList(mSourcePath),
+                Collections.<File>emptyList(), cacheFile);
+        scanner.scan(Collections.singletonList(mSourceDir));
+        assertEquals(2, scanner.getParseCount());
+        scanner.saveCache();
+        assertTrue(cacheFile.isFile());
+
+        // nothing changed
+        scanner = new SourceScanner(Collections.singletonList(mSourcePath),
+                Collections.<File>emptyList(), cacheFile);
+        List<TypeDecl> types = scanner.scan(Collections.singletonList(mSourceDir));
+        assertEquals(0, scanner.getParseCount());
+        assertEquals(6, types.size());
+        assertEquals("junit.framework.TestCase",
+                scanner.getSuperclass(scanner.getSuperclass(types.get(1))).getQualifiedName());
+        scanner.saveCache();
+
+        // only the changed file is parsed again
+        File sample = new File(mSourceDir, "com/android/test/SampleTest.java");
+        write(sample, SAMPLE.replace("testA", "testRenamed"));
+        sample.setLastModified(sample.lastModified() + 2000);
+        scanner = new SourceScanner(Collections.singletonList(mSourcePath),
+                Collections.<File>emptyList(), cacheFile);
+        types = scanner.scan(Collections.singletonList(mSourceDir));
+        assertEquals(1, scanner.getParseCount());
+        assertEquals("testRenamed", scanner.getMethods(types.get(1)).get(0).getName());
+    }
+
+    public void testScan_classPath() throws Exception {
+        write(new File(mSourceDir, "com/android/test/JarTest.java"), JAR_TEST);
+        SourceScanner scanner = new SourceScanner(Collections.singletonList(mSourcePath),
+                Collections.singletonList(createJar("com/android/lib/LibBase.java", LIB_BASE)),
+                null);
+        TypeDecl jarTest = null;
+        for (TypeDecl type : scanner.scan(Collections.singletonList(mSourceDir))) {
+            if (type.getName().equals("JarTest")) {
+                jarTest = type;
+            }
+        }
+        TypeDecl libBase = scanner.getSuperclass(jarTest);
+        assertEquals("com.android.lib.LibBase", libBase.getQualifiedName());
+        List<MethodDecl> methods = scanner.getMethods(libBase);
+        assertEquals("[testLib]", getMethodNames(methods).toString());
+
+        // the annotation following one with element values is read as well
+        List<String> annotationNames = new ArrayList<String>();
+        for (AnnotationDecl annotation : methods.get(0).getAnnotations()) {
+            annotationNames.add(annotation.mTypeName);
+        }
+        assertEquals("[com.android.lib.LibBase.Marker, java.lang.Deprecated]",
+                annotationNames.toString());
+    }
+
+    /**
+     * Compile a source file into a jar file of the class path.
+     */
+    private File createJar(String sourceName, String source) throws IOException {
+        File sourceFile = new File(mRoot, "lib/" + sourceName);
+        write(sourceFile, source);
+        File classDir = new File(mRoot, "classes");
+        classDir.mkdirs();
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", classDir.getPath(), sourceFile.getPath()));
+
+        File jar = new File(mRoot, "lib.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            addClassFiles(classDir, "", out);
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    private static void addClassFiles(File dir, String dirPath, JarOutputStream out)
+            throws IOException {
+        for (File child : dir.listFiles()) {
+            if (child.isDirectory()) {
+                addClassFiles(child, dirPath + child.getName() + "/", out);
+            } else {
+                out.putNextEntry(new ZipEntry(dirPath + child.getName()));
+                out.write(Files.readAllBytes(child.toPath()));
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static List<String> getMethodNames(List<MethodDecl> methods) {
+        List<String> names = new ArrayList<String>();
+        for (MethodDecl method : methods) {
+            names.add(method.getName());
+        }
+        return names;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        PrintWriter out = new PrintWriter(file);
+        out.print(content);
+        out.close();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -16,12 +16,7 @@
 
 package dxconvext;
 
-import dxconvext.util.FileUtils;
-
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -34,16 +29,38 @@ import java.io.UnsupportedEncodingException;
 import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.zip.Adler32;
 
 public class ClassFileAssembler {
 
+    private static final String CLASS_HEADER = "//@class:";
+    private static final String DEX_HEADER = "// Processing '";
+
+    /**
+     * the bytes of the file being assembled, reused for all files
+     */
+    private byte[] buffer = new byte[8192];
+    private int length;
+
     /**
      * @param args
      */
     public static void main(String[] args) {
         ClassFileAssembler cfa = new ClassFileAssembler();
-        cfa.run(args);
+        if (args.length < 2) {
+            System.out.println("usage: cfassembler <file.cfh|file.dfh|dir>... <outdir>");
+            System.exit(1);
+        }
+        if (args.length == 2 && !new File(args[0]).isDirectory()) {
+            cfa.run(args);
+            return;
+        }
+        if (!cfa.runBatch(args)) {
+            System.exit(1);
+        }
     }
 
     private void run(String[] args) {
@@ -64,36 +81,104 @@ public class ClassFileAssembler {
         // this class here simply takes all non-comment lines from the .cfh
         // file, parses them as hex values and writes the bytes to the class file
         File cfhF = new File(args[0]);
-        if (!cfhF.getName().endsWith(".cfh") &&
-            !cfhF.getName().endsWith(".dfh")) {
+        if (!isInputFile(cfhF)) {
             System.out.println("file must be a .cfh or .dfh file, and its filename end with .cfh or .dfh");
             return;
         }
         
         String outBase = args[1];
-        
+        assemble(cfhF, outBase, null);
+    }
+
+    /**
+     * Assembles all given .cfh and .dfh files, and those in the given
+     * directories, in this JVM. The last argument is the output directory.
+     * <p>
+     * As with a single file, .class files are placed according to the class
+     * name in their header. A .dfh file is written to the .dex file with its
+     * own name, in the output directory or, for a file found in a directory,
+     * the same subdirectory of the output directory.
+     *
+     * @return true if all files were assembled
+     */
+    private boolean runBatch(String[] args) {
+        String outBase = args[args.length - 1];
+        int count = 0;
+        int failed = 0;
+        for (int i = 0; i < args.length - 1; i++) {
+            File input = new File(args[i]);
+            List<String> names = new ArrayList<String>();
+            if (input.isDirectory()) {
+                addInputFiles(input, "", names);
+            } else if (isInputFile(input)) {
+                names.add(input.getName());
+                input = input.getAbsoluteFile().getParentFile();
+            } else {
+                System.out.println("not a .cfh or .dfh file or a directory: " + args[i]);
+                failed++;
+                continue;
+            }
+            for (String name : names) {
+                count++;
+                File cfhF = new File(input, name);
+                String dexFile = outBase + "/" + name.substring(0, name.length() - 4) + ".dex";
+                try {
+                    assemble(cfhF, outBase, dexFile);
+                } catch (RuntimeException e) {
+                    System.out.println("error: " + e.getMessage()
+                            + (e.getCause() != null ? ": " + e.getCause() : ""));
+                    failed++;
+                }
+            }
+        }
+        System.out.println("assembled " + (count - failed) + " of " + count + " files");
+        return failed == 0;
+    }
+
+    private static boolean isInputFile(File file) {
+        return file.getName().endsWith(".cfh") || file.getName().endsWith(".dfh");
+    }
+
+    private static void addInputFiles(File dir, String prefix, List<String> names) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addInputFiles(file, prefix + file.getName() + "/", names);
+            } else if (isInputFile(file)) {
+                names.add(prefix + file.getName());
+            }
+        }
+    }
+
+    /**
+     * Assembles one .cfh or .dfh file, reading it only once.
+     *
+     * @param dexFile the output file for a .dfh file, or null for
+     *        outBase/classes.dex
+     */
+    private void assemble(File cfhF, String outBase, String dexFile) {
         boolean isDex = cfhF.getName().endsWith(".dfh");
-        
-        byte[] cfhbytes = FileUtils.readFile(cfhF);
-        ByteArrayInputStream bais = new ByteArrayInputStream(cfhbytes);
+
         // encoding should not matter, since we are skipping comment lines and parsing
+        BufferedReader br = null;
         try {
+            br = new BufferedReader(new InputStreamReader(new FileInputStream(cfhF), "utf-8"));
             // get the package name
-            BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(cfhF)));
             String firstLine = br.readLine();
-            br.close();
-            String classHdr = "//@class:";
-            String dexHdr = "// Processing '";
             String hdr;
             if(isDex)
-                hdr = dexHdr;
+                hdr = DEX_HEADER;
             else
-                hdr = classHdr;
+                hdr = CLASS_HEADER;
             
-            if (!firstLine.startsWith(hdr)) throw new RuntimeException("wrong format:"+firstLine +" isDex=" + isDex);
+            if (firstLine == null || !firstLine.startsWith(hdr)) throw new RuntimeException("wrong format:"+firstLine +" isDex=" + isDex);
             String tFile;
             if(isDex) {
-                tFile = outBase + "/classes.dex";
+                tFile = dexFile != null ? dexFile : outBase + "/classes.dex";
             } else {
                 String classO = firstLine.substring(hdr.length()).trim();
                 tFile = outBase +"/"+classO+".class";
@@ -103,115 +188,161 @@ public class ClassFileAssembler {
             String mkdir = tFile.substring(0, tFile.lastIndexOf("/"));
             new File(mkdir).mkdirs();
             
-            Reader r = new InputStreamReader(bais,"utf-8");
+            // the header line is a comment, so it has no bytes
+            assemble(br, 1, isDex);
             OutputStream os = new FileOutputStream(outFile);
-            BufferedOutputStream bos = new BufferedOutputStream(os);
-            writeClassFile(r, bos, isDex);
-            bos.close();
+            try {
+                os.write(buffer, 0, length);
+            } finally {
+                os.close();
+            }
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException("problem while parsing .dfh or .cfh file: "+cfhF.getAbsolutePath(), e);
         } catch (FileNotFoundException e) {
             throw new RuntimeException("problem while parsing .dfh or .cfh file: "+cfhF.getAbsolutePath(), e);
         } catch (IOException e) {
             throw new RuntimeException("problem while parsing .dfh or .cfh file: "+cfhF.getAbsolutePath(), e);
-        } 
-    }
-    
-    /**
-     * Calculates the signature for the <code>.dex</code> file in the
-     * given array, and modify the array to contain it.
-     * 
-     * Originally from com.android.dx.dex.file.DexFile.
-     * 
-     * @param bytes non-null; the bytes of the file
-     */
-    private void calcSignature(byte[] bytes) {
-        MessageDigest md;
-
-        try {
-            md = MessageDigest.getInstance("SHA-1");
-        } catch (NoSuchAlgorithmException ex) {
-            throw new RuntimeException(ex);
-        }
-
-        md.update(bytes, 32, bytes.length - 32);
-
-        try {
-            int amt = md.digest(bytes, 12, 20);
-            if (amt != 20) {
-                throw new RuntimeException("unexpected digest write: " + amt +
-                                           " bytes");
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("problem while parsing .dfh or .cfh file: "+cfhF.getAbsolutePath(), e);
+        } finally {
+            if (br != null) {
+                try {
+                    br.close();
+                } catch (IOException e) {
+                    // ignore
+                }
             }
-        } catch (DigestException ex) {
-            throw new RuntimeException(ex);
         }
     }
-
+    
     /**
-     * Calculates the checksum for the <code>.dex</code> file in the
-     * given array, and modify the array to contain it.
+     * Writes the checksum of the <code>.dex</code> file in the buffer.
      * 
      * Originally from com.android.dx.dex.file.DexFile.
-     * 
-     * @param bytes non-null; the bytes of the file
      */
-    private void calcChecksum(byte[] bytes) {
+    private void calcChecksum() {
         Adler32 a32 = new Adler32();
 
-        a32.update(bytes, 12, bytes.length - 12);
+        a32.update(buffer, 12, length - 12);
 
         int sum = (int) a32.getValue();
 
-        bytes[8]  = (byte) sum;
-        bytes[9]  = (byte) (sum >> 8);
-        bytes[10] = (byte) (sum >> 16);
-        bytes[11] = (byte) (sum >> 24);
+        buffer[8]  = (byte) sum;
+        buffer[9]  = (byte) (sum >> 8);
+        buffer[10] = (byte) (sum >> 16);
+        buffer[11] = (byte) (sum >> 24);
     }   
 
     public void writeClassFile(Reader r, OutputStream rOs, boolean isDex) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(8192);
-        BufferedReader br = new BufferedReader(r);
-        String line;
-        String secondLine = null;
-        int lineCnt = 0;
+        BufferedReader br = r instanceof BufferedReader
+                ? (BufferedReader) r : new BufferedReader(r);
         try {
-            while ((line = br.readLine()) != null) {
-                if (isDex && lineCnt++ == 1) {
-                    secondLine = line;
+            assemble(br, 0, isDex);
+            rOs.write(buffer, 0, length);
+            rOs.close();
+        } catch (IOException e) {
+            throw new RuntimeException("problem while writing file",e);
+        }
+    }
+
+    /**
+     * Decodes the hex lines of a .cfh or .dfh file into the buffer. For dex,
+     * the signature is computed while decoding and written together with the
+     * checksum at the end.
+     *
+     * @param lineCnt the number of lines already read from br
+     */
+    private void assemble(BufferedReader br, int lineCnt, boolean isDex)
+            throws IOException {
+        length = 0;
+        MessageDigest md = null;
+        boolean leaveChecksum = false;
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (isDex && lineCnt == 1) {
+                // special case:
+                // for two tests (currently T_f1_9.dfh and T_f1_10.dfh), we need
+                // to keep the checksum or the signature, respectively.
+                leaveChecksum = line.contains("//@leaveChecksum");
+                if (!line.contains("//@leaveSignature")) {
+                    md = newSha1();
                 }
-                // skip it if it is a comment
-                if (!line.trim().startsWith("//")) {
-                    // we have a row like "    ae 08 21 ff" etc.
-                    String[] parts = line.split("\\s+");
-                    for (int i = 0; i < parts.length; i++) {
-                        String part = parts[i].trim();
-                        if (!part.equals("")) {
-                            int res = Integer.parseInt(part, 16);
-                            baos.write(res);
-                        }
+            }
+            lineCnt++;
+            int start = length;
+            decodeLine(line);
+            // the signature covers everything after itself
+            if (md != null && length > 32) {
+                int from = Math.max(start, 32);
+                md.update(buffer, from, length - from);
+            }
+        }
+
+        if (isDex) {
+            // update checksum and signature for dex file
+            if (md != null) {
+                try {
+                    int amt = md.digest(buffer, 12, 20);
+                    if (amt != 20) {
+                        throw new RuntimeException("unexpected digest write: " + amt +
+                                                   " bytes");
                     }
+                } catch (DigestException ex) {
+                    throw new RuntimeException(ex);
                 }
             }
-            
-            // now for dex, update the checksum and the signature.
-            // special case:
-            // for two tests (currently T_f1_9.dfh and T_f1_10.dfh), we need
-            // to keep the checksum or the signature, respectively.
-            byte[] outBytes = baos.toByteArray();
-            if (isDex) {
-                boolean leaveChecksum = secondLine.contains("//@leaveChecksum");
-                boolean leaveSignature= secondLine.contains("//@leaveSignature");
-                // update checksum and signature for dex file            
-                if(!leaveSignature)
-                    calcSignature(outBytes);
-                if(!leaveChecksum)
-                    calcChecksum(outBytes);
+            if (!leaveChecksum)
+                calcChecksum();
+        }
+    }
+
+    private static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Appends the bytes of a line like "    ae 08 21 ff" to the buffer, unless
+     * it is a comment.
+     */
+    private void decodeLine(String line) {
+        int end = line.length();
+        int pos = skipWhitespace(line, 0);
+        if (line.startsWith("//", pos)) {
+            return;
+        }
+        while (pos < end) {
+            int tokenEnd = pos;
+            int value = 0;
+            boolean hex = true;
+            while (tokenEnd < end && !Character.isWhitespace(line.charAt(tokenEnd))) {
+                int digit = Character.digit(line.charAt(tokenEnd), 16);
+                if (digit < 0 || tokenEnd - pos >= 7) {
+                    hex = false;
+                }
+                value = (value << 4) | (digit & 0xf);
+                tokenEnd++;
             }
-            rOs.write(outBytes);
-            rOs.close();
-        } catch (IOException e) {
-            throw new RuntimeException("problem while writing file",e);
+            if (!hex) {
+                // anything but a plain hex number, e.g. with a sign
+                value = Integer.parseInt(line.substring(pos, tokenEnd), 16);
+            }
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[length++] = (byte) value;
+            pos = skipWhitespace(line, tokenEnd);
+        }
+    }
+
+    private static int skipWhitespace(String line, int pos) {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+            pos++;
         }
+        return pos;
     }
 
 }
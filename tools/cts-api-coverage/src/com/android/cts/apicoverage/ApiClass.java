@@ -19,7 +19,9 @@ package com.android.cts.apicoverage;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /** Representation of a class in the API with constructors and methods. */
 class ApiClass implements Comparable<ApiClass>, HasCoverage {
@@ -36,6 +38,9 @@ class ApiClass implements Comparable<ApiClass>, HasCoverage {
 
     private final List<ApiMethod> mApiMethods = new ArrayList<ApiMethod>();
 
+    private final Map<String, List<ApiMethod>> mApiMethodsByName =
+            new HashMap<String, List<ApiMethod>>();
+
     private final String mSuperClassName;
 
     private ApiClass mSuperClass;
@@ -92,30 +97,44 @@ class ApiClass implements Comparable<ApiClass>, HasCoverage {
 
     public void addMethod(ApiMethod method) {
         mApiMethods.add(method);
+        List<ApiMethod> methods = mApiMethodsByName.get(method.getName());
+        if (methods == null) {
+            methods = new ArrayList<ApiMethod>(1);
+            mApiMethodsByName.put(method.getName(), methods);
+        }
+        methods.add(method);
     }
 
-    /** Look for a matching constructor and mark it as covered */
-    public void markConstructorCovered(List<String> parameterTypes) {
-        if (mSuperClass != null) {
-            // Mark matching constructors in the superclass
-            mSuperClass.markConstructorCovered(parameterTypes);
-        }
-        ApiConstructor apiConstructor = getConstructor(parameterTypes);
-        if (apiConstructor != null) {
-            apiConstructor.setCovered(true);
+    /**
+     * Look for the matching constructors of this class and its superclasses.
+     *
+     * @param parameterTypes the parameter types of the constructor
+     * @param ids to which the ids of the matching constructors are added
+     */
+    public void findConstructors(List<String> parameterTypes, List<Integer> ids) {
+        for (ApiClass apiClass = this; apiClass != null; apiClass = apiClass.mSuperClass) {
+            ApiConstructor apiConstructor = apiClass.getConstructor(parameterTypes);
+            if (apiConstructor != null) {
+                ids.add(apiConstructor.getId());
+            }
         }
-
     }
 
-    /** Look for a matching method and if found and mark it as covered */
-    public void markMethodCovered(String name, List<String> parameterTypes, String returnType) {
-        if (mSuperClass != null) {
-            // Mark matching methods in the super class
-            mSuperClass.markMethodCovered(name, parameterTypes, returnType);
-        }
-        ApiMethod apiMethod = getMethod(name, parameterTypes, returnType);
-        if (apiMethod != null) {
-            apiMethod.setCovered(true);
+    /**
+     * Look for the matching methods of this class and its superclasses.
+     *
+     * @param name the name of the method
+     * @param parameterTypes the parameter types of the method
+     * @param returnType the return type of the method
+     * @param ids to which the ids of the matching methods are added
+     */
+    public void findMethods(String name, List<String> parameterTypes, String returnType,
+            List<Integer> ids) {
+        for (ApiClass apiClass = this; apiClass != null; apiClass = apiClass.mSuperClass) {
+            ApiMethod apiMethod = apiClass.getMethod(name, parameterTypes, returnType);
+            if (apiMethod != null) {
+                ids.add(apiMethod.getId());
+            }
         }
     }
 
@@ -157,12 +176,15 @@ class ApiClass implements Comparable<ApiClass>, HasCoverage {
     }
 
     private ApiMethod getMethod(String name, List<String> parameterTypes, String returnType) {
-        for (ApiMethod method : mApiMethods) {
-            boolean methodNameMatch = name.equals(method.getName());
+        List<ApiMethod> methods = mApiMethodsByName.get(name);
+        if (methods == null) {
+            return null;
+        }
+        for (ApiMethod method : methods) {
             boolean parameterTypeMatch =
                     compareParameterTypes(method.getParameterTypes(), parameterTypes);
             boolean returnTypeMatch = compareType(method.getReturnType(), returnType);
-            if (methodNameMatch && parameterTypeMatch && returnTypeMatch) {
+            if (parameterTypeMatch && returnTypeMatch) {
                 return method;
             }
         }
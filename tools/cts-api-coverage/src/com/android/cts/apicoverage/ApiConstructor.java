@@ -16,7 +16,6 @@
 
 package com.android.cts.apicoverage;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -29,11 +28,16 @@ class ApiConstructor implements Comparable<ApiConstructor> {
 
     private final boolean mDeprecated;
 
-    private boolean mIsCovered;
+    private final ApiCoverage mApiCoverage;
 
-    ApiConstructor(String name, List<String> parameterTypes, boolean deprecated) {
+    private final int mId;
+
+    ApiConstructor(ApiCoverage apiCoverage, String name, List<String> parameterTypes,
+            boolean deprecated) {
+        mApiCoverage = apiCoverage;
+        mId = apiCoverage.addMember();
         mName = name;
-        mParameterTypes = new ArrayList<String>(parameterTypes);
+        mParameterTypes = apiCoverage.internTypes(parameterTypes);
         mDeprecated = deprecated;
     }
 
@@ -54,11 +58,12 @@ class ApiConstructor implements Comparable<ApiConstructor> {
         return mDeprecated;
     }
 
-    public boolean isCovered() {
-        return mIsCovered;
+    /** @return the dense id of this constructor in the {@link ApiCoverage} */
+    public int getId() {
+        return mId;
     }
 
-    public void setCovered(boolean covered) {
-        mIsCovered = covered;
+    public boolean isCovered() {
+        return mApiCoverage.isCovered(mId);
     }
 }
\ No newline at end of file
@@ -17,16 +17,42 @@
 package com.android.cts.apicoverage;
 
 import java.lang.String;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-/** Representation of the entire API containing packages. */
+/**
+ * Representation of the entire API containing packages.
+ * <p/>
+ * Every constructor and method of the API gets a dense id when it is created, and its coverage
+ * is kept in a counter array indexed by that id. A referenced constructor or method is resolved
+ * against the class hierarchy only the first time it is seen; the ids it resolved to are cached
+ * by signature, so marking later references of it covered is a map lookup and a few increments.
+ */
 class ApiCoverage {
 
+    private static final int[] NO_IDS = new int[0];
+
     private final Map<String, ApiPackage> mPackages = new HashMap<String, ApiPackage>();
 
+    /** Number of references to each constructor and method, indexed by id. */
+    private int[] mCoverageCounts = new int[1024];
+
+    private int mNumMembers;
+
+    /** Ids of the constructors and methods matching a referenced signature. */
+    private final Map<String, int[]> mResolvedReferences = new HashMap<String, int[]>();
+
+    /** Pool of the parameter type lists shared by the constructors and methods. */
+    private final Map<List<String>, List<String>> mTypeLists =
+            new HashMap<List<String>, List<String>>();
+
+    private final Map<String, String> mTypes = new HashMap<String, String>();
+
     public void addPackage(ApiPackage pkg) {
         mPackages.put(pkg.getName(), pkg);
     }
@@ -45,5 +71,118 @@ class ApiCoverage {
             ApiPackage pkg = entry.getValue();
             pkg.resolveSuperClasses(mPackages);
         }
+        mResolvedReferences.clear();
+    }
+
+    /** @return the id of a new constructor or method */
+    int addMember() {
+        if (mNumMembers == mCoverageCounts.length) {
+            mCoverageCounts = Arrays.copyOf(mCoverageCounts, mNumMembers * 2);
+        }
+        return mNumMembers++;
+    }
+
+    /**
+     * @return a shared, unmodifiable copy of a list of parameter types. The API uses only a few
+     *     thousand distinct lists, so sharing them keeps the model small.
+     */
+    List<String> internTypes(List<String> types) {
+        List<String> interned = mTypeLists.get(types);
+        if (interned == null) {
+            String[] copy = new String[types.size()];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = internType(types.get(i));
+            }
+            interned = Collections.unmodifiableList(Arrays.asList(copy));
+            mTypeLists.put(interned, interned);
+        }
+        return interned;
+    }
+
+    private String internType(String type) {
+        String interned = mTypes.get(type);
+        if (interned == null) {
+            mTypes.put(type, type);
+            interned = type;
+        }
+        return interned;
+    }
+
+    /** @return true iff the constructor or method with the given id is covered */
+    public boolean isCovered(int id) {
+        return mCoverageCounts[id] > 0;
+    }
+
+    /** @return the number of references to the constructor or method with the given id */
+    public int getCoverageCount(int id) {
+        return mCoverageCounts[id];
+    }
+
+    /** Mark the matching constructors of a class and its superclasses as covered. */
+    public void markConstructorCovered(String packageName, String className,
+            List<String> parameterTypes) {
+        markCovered(packageName, className, null, parameterTypes, null);
+    }
+
+    /** Mark the matching methods of a class and its superclasses as covered. */
+    public void markMethodCovered(String packageName, String className, String name,
+            List<String> parameterTypes, String returnType) {
+        markCovered(packageName, className, name, parameterTypes, returnType);
+    }
+
+    private void markCovered(String packageName, String className, String name,
+            List<String> parameterTypes, String returnType) {
+        String key = getReferenceKey(packageName, className, name, parameterTypes, returnType);
+        int[] ids = mResolvedReferences.get(key);
+        if (ids == null) {
+            ids = resolve(packageName, className, name, parameterTypes, returnType);
+            mResolvedReferences.put(key, ids);
+        }
+        for (int id : ids) {
+            mCoverageCounts[id]++;
+        }
+    }
+
+    private int[] resolve(String packageName, String className, String name,
+            List<String> parameterTypes, String returnType) {
+        ApiPackage apiPackage = mPackages.get(packageName);
+        if (apiPackage == null) {
+            return NO_IDS;
+        }
+        ApiClass apiClass = apiPackage.getClass(className);
+        if (apiClass == null) {
+            return NO_IDS;
+        }
+        List<Integer> ids = new ArrayList<Integer>();
+        if (name == null) {
+            apiClass.findConstructors(parameterTypes, ids);
+        } else {
+            apiClass.findMethods(name, parameterTypes, returnType, ids);
+        }
+        if (ids.isEmpty()) {
+            return NO_IDS;
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    private static String getReferenceKey(String packageName, String className, String name,
+            List<String> parameterTypes, String returnType) {
+        StringBuilder key = new StringBuilder(packageName).append('.').append(className);
+        if (name != null) {
+            key.append('#').append(name);
+        }
+        key.append('(');
+        for (String parameterType : parameterTypes) {
+            key.append(parameterType).append(',');
+        }
+        key.append(')');
+        if (returnType != null) {
+            key.append(returnType);
+        }
+        return key.toString();
     }
 }
@@ -16,7 +16,6 @@
 
 package com.android.cts.apicoverage;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -39,9 +38,12 @@ class ApiMethod implements Comparable<ApiMethod> {
 
     private final boolean mAbstractMethod;
 
-    private boolean mIsCovered;
+    private final ApiCoverage mApiCoverage;
+
+    private final int mId;
 
     ApiMethod(
+            ApiCoverage apiCoverage,
             String name,
             List<String> parameterTypes,
             String returnType,
@@ -50,8 +52,10 @@ class ApiMethod implements Comparable<ApiMethod> {
             boolean staticMethod,
             boolean finalMethod,
             boolean abstractMethod) {
+        mApiCoverage = apiCoverage;
+        mId = apiCoverage.addMember();
         mName = name;
-        mParameterTypes = new ArrayList<String>(parameterTypes);
+        mParameterTypes = apiCoverage.internTypes(parameterTypes);
         mReturnType = returnType;
         mDeprecated = deprecated;
         mVisibility = visibility;
@@ -81,8 +85,13 @@ class ApiMethod implements Comparable<ApiMethod> {
         return mDeprecated;
     }
 
+    /** @return the dense id of this method in the {@link ApiCoverage} */
+    public int getId() {
+        return mId;
+    }
+
     public boolean isCovered() {
-        return mIsCovered;
+        return mApiCoverage.isCovered(mId);
     }
 
     public String getVisibility() { return mVisibility; }
@@ -92,8 +101,4 @@ class ApiMethod implements Comparable<ApiMethod> {
     public boolean isStaticMethod() { return mStaticMethod; }
 
     public boolean isFinalMethod() { return mFinalMethod; }
-
-    public void setCovered(boolean covered) {
-        mIsCovered = covered;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cts.apicoverage;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The covered constructors and methods of a previous run, read from its XML report. Used to
+ * report what coverage changed between two runs.
+ */
+class CoverageBaseline {
+
+    private final File mReport;
+
+    private final Set<String> mCoveredMembers = new HashSet<String>();
+
+    private int mNumCovered;
+
+    private int mNumTotal;
+
+    private CoverageBaseline(File report) {
+        mReport = report;
+    }
+
+    /**
+     * @param report the XML report of the previous run
+     * @return the coverage of the previous run
+     */
+    public static CoverageBaseline parse(File report) throws SAXException, IOException {
+        CoverageBaseline baseline = new CoverageBaseline(report);
+        XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+        xmlReader.setContentHandler(baseline.new ReportXmlHandler());
+        FileReader fileReader = null;
+        try {
+            fileReader = new FileReader(report);
+            xmlReader.parse(new InputSource(fileReader));
+        } finally {
+            if (fileReader != null) {
+                fileReader.close();
+            }
+        }
+        return baseline;
+    }
+
+    public File getReport() {
+        return mReport;
+    }
+
+    /** @return true iff the member with the given key was covered in the previous run */
+    public boolean isCovered(String memberKey) {
+        return mCoveredMembers.contains(memberKey);
+    }
+
+    public int getNumCovered() {
+        return mNumCovered;
+    }
+
+    public int getNumTotal() {
+        return mNumTotal;
+    }
+
+    /**
+     * @return the key of a constructor, identified by a null name, or a method of the API that
+     *     is used to match it against the previous run.
+     */
+    static String getMemberKey(String packageName, String className, String name,
+            List<String> parameterTypes) {
+        StringBuilder key = new StringBuilder(packageName).append('.').append(className)
+                .append('#').append(name != null ? name : "<init>").append('(');
+        for (String parameterType : parameterTypes) {
+            key.append(parameterType).append(',');
+        }
+        return key.append(')').toString();
+    }
+
+    /** {@link DefaultHandler} that parses the report generated by {@link XmlReport}. */
+    private class ReportXmlHandler extends DefaultHandler {
+
+        private String mCurrentPackageName;
+
+        private String mCurrentClassName;
+
+        private String mCurrentMemberName;
+
+        private boolean mCurrentMemberCovered;
+
+        private final List<String> mCurrentParameterTypes = new ArrayList<String>();
+
+        @Override
+        public void startElement(String uri, String localName, String name,
+                Attributes attributes) throws SAXException {
+            super.startElement(uri, localName, name, attributes);
+            if ("package".equals(localName)) {
+                mCurrentPackageName = attributes.getValue("name");
+            } else if ("class".equals(localName)) {
+                mCurrentClassName = attributes.getValue("name");
+            } else if ("constructor".equals(localName) || "method".equals(localName)) {
+                mCurrentMemberName = "method".equals(localName)
+                        ? attributes.getValue("name") : null;
+                mCurrentMemberCovered = "true".equals(attributes.getValue("covered"));
+                mCurrentParameterTypes.clear();
+            } else if ("parameter".equals(localName)) {
+                mCurrentParameterTypes.add(attributes.getValue("type"));
+            } else if ("total".equals(localName)) {
+                mNumCovered = Integer.parseInt(attributes.getValue("numCovered"));
+                mNumTotal = Integer.parseInt(attributes.getValue("numTotal"));
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String name) throws SAXException {
+            super.endElement(uri, localName, name);
+            if (("constructor".equals(localName) || "method".equals(localName))
+                    && mCurrentMemberCovered) {
+                mCoveredMembers.add(getMemberKey(mCurrentPackageName, mCurrentClassName,
+                        mCurrentMemberName, mCurrentParameterTypes));
+            }
+        }
+    }
+}
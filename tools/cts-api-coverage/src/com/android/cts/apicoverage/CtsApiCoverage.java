@@ -16,6 +16,8 @@
 
 package com.android.cts.apicoverage;
 
+import com.android.cts.apicoverage.DexDepsScanner.MethodDependency;
+
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
@@ -30,6 +32,11 @@ import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.transform.TransformerException;
 
@@ -61,12 +68,16 @@ public class CtsApiCoverage {
         System.out.println("Use the Makefiles rules in CtsTestCoverage.mk to generate the report ");
         System.out.println("rather than executing this directly. If you still want to run this ");
         System.out.println("directly, then this must be used from the $ANDROID_BUILD_TOP ");
-        System.out.println("directory and dexdeps must be built via \"make dexdeps\".");
+        System.out.println("directory.");
         System.out.println();
         System.out.println("Options:");
         System.out.println("  -o FILE                output file or standard out if not given");
         System.out.println("  -f [txt|xml|html]      format of output");
-        System.out.println("  -d PATH                path to dexdeps or expected to be in $PATH");
+        System.out.println("  -j THREADS             number of APKs scanned in parallel");
+        System.out.println("  -c DIR                 cache the dependencies of each APK in DIR, so");
+        System.out.println("                         only new or changed APKs are scanned again");
+        System.out.println("  -b FILE                xml report of a previous run, only report the");
+        System.out.println("                         methods whose coverage changed since then");
         System.out.println("  -a PATH                path to the API XML file");
         System.out.println("  -p PACKAGENAMEPREFIX   report coverage only for package that start with");
         System.out.println("  -t TITLE               report title");
@@ -78,10 +89,12 @@ public class CtsApiCoverage {
         List<File> testApks = new ArrayList<File>();
         File outputFile = null;
         int format = FORMAT_TXT;
-        String dexDeps = "dexDeps";
+        int threads = Runtime.getRuntime().availableProcessors();
         String apiXmlPath = "";
         PackageFilter packageFilter = new PackageFilter();
         String reportTitle = "CTS API Coverage";
+        File cacheDir = null;
+        File baselineReport = null;
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].startsWith("-")) {
@@ -98,14 +111,25 @@ public class CtsApiCoverage {
                     } else {
                         printUsage();
                     }
-                } else if ("-d".equals(args[i])) {
-                    dexDeps = getExpectedArg(args, ++i);
+                } else if ("-j".equals(args[i])) {
+                    try {
+                        threads = Integer.parseInt(getExpectedArg(args, ++i));
+                    } catch (NumberFormatException e) {
+                        printUsage();
+                    }
+                    if (threads < 1) {
+                        printUsage();
+                    }
                 } else if ("-a".equals(args[i])) {
                     apiXmlPath = getExpectedArg(args, ++i);
                 } else if ("-p".equals(args[i])) {
                     packageFilter.addPrefixToFilter(getExpectedArg(args, ++i));
                 } else if ("-t".equals(args[i])) {
                     reportTitle = getExpectedArg(args, ++i);
+                } else if ("-c".equals(args[i])) {
+                    cacheDir = new File(getExpectedArg(args, ++i));
+                } else if ("-b".equals(args[i])) {
+                    baselineReport = new File(getExpectedArg(args, ++i));
                 } else {
                     printUsage();
                 }
@@ -119,24 +143,34 @@ public class CtsApiCoverage {
             }
         }
 
+        if (baselineReport != null && format == FORMAT_TXT) {
+            // The text report has no way to show changes.
+            printUsage();
+        }
+
         /*
          * 1. Create an ApiCoverage object that is a tree of Java objects representing the API
          *    in current.xml. The object will have no information about the coverage for each
          *    constructor or method yet.
          *
-         * 2. For each provided APK, scan it using dexdeps, parse the output of dexdeps, and
-         *    call methods on the ApiCoverage object to cumulatively add coverage stats.
+         * 2. For each provided APK, read the methods it calls from its dex files, and call
+         *    methods on the ApiCoverage object to cumulatively add coverage stats. The APKs are
+         *    scanned in parallel, but the coverage is only added from this thread. If a cache
+         *    directory is given, the methods called by unchanged APKs are read from the cache.
          *
-         * 3. Output a report based on the coverage stats in the ApiCoverage object.
+         * 3. Output a report based on the coverage stats in the ApiCoverage object. If a
+         *    baseline report is given, only the changes since the baseline are reported.
          */
 
         ApiCoverage apiCoverage = getEmptyApiCoverage(apiXmlPath);
         // Add superclass information into api coverage.
         apiCoverage.resolveSuperClasses();
-        for (File testApk : testApks) {
-            addApiCoverage(apiCoverage, testApk, dexDeps);
-        }
-        outputCoverageReport(apiCoverage, testApks, outputFile, format, packageFilter, reportTitle);
+        DependencyCache cache = cacheDir != null ? new DependencyCache(cacheDir) : null;
+        addApiCoverage(apiCoverage, testApks, threads, cache);
+        CoverageBaseline baseline =
+                baselineReport != null ? CoverageBaseline.parse(baselineReport) : null;
+        outputCoverageReport(apiCoverage, testApks, outputFile, format, packageFilter, reportTitle,
+                baseline);
     }
 
     /** Get the argument or print out the usage and exit. */
@@ -178,31 +212,50 @@ public class CtsApiCoverage {
     }
 
     /**
-     * Adds coverage information gleamed from running dexdeps on the APK to the
+     * Adds coverage information gleamed from the dex files of the APKs to the
      * {@link ApiCoverage} object.
      *
      * @param apiCoverage object to which the coverage statistics will be added to
-     * @param testApk containing the tests that will be scanned by dexdeps
+     * @param testApks containing the tests that will be scanned
+     * @param threads number of APKs that are scanned at the same time
+     * @param cache the cache of the dependencies of each APK or null to scan all APKs
      */
-    private static void addApiCoverage(ApiCoverage apiCoverage, File testApk, String dexdeps)
-            throws SAXException, IOException {
-        XMLReader xmlReader = XMLReaderFactory.createXMLReader();
-        DexDepsXmlHandler dexDepsXmlHandler = new DexDepsXmlHandler(apiCoverage);
-        xmlReader.setContentHandler(dexDepsXmlHandler);
-
-        String apkPath = testApk.getPath();
-        Process process = new ProcessBuilder(dexdeps, "--format=xml", apkPath).start();
+    private static void addApiCoverage(ApiCoverage apiCoverage, List<File> testApks,
+            int threads, final DependencyCache cache) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
         try {
-            xmlReader.parse(new InputSource(process.getInputStream()));
-        } catch (SAXException e) {
-          // Catch this exception, but continue. SAXException is acceptable in cases
-          // where the apk does not contain a classes.dex and therefore parsing won't work.
-          System.err.println("warning: dexdeps failed for: " + apkPath);
+            List<Future<List<MethodDependency>>> results =
+                    new ArrayList<Future<List<MethodDependency>>>(testApks.size());
+            for (final File testApk : testApks) {
+                results.add(executor.submit(new Callable<List<MethodDependency>>() {
+                    @Override
+                    public List<MethodDependency> call() throws IOException {
+                        return cache != null
+                                ? cache.getDependencies(testApk) : DexDepsScanner.scan(testApk);
+                    }
+                }));
+            }
+            // ApiCoverage is not thread safe, so the results are merged one APK at a time.
+            for (int i = 0; i < testApks.size(); i++) {
+                try {
+                    for (MethodDependency dependency : results.get(i).get()) {
+                        dependency.markCovered(apiCoverage);
+                    }
+                } catch (ExecutionException e) {
+                    // Continue with the other APKs. This is acceptable in cases where the apk
+                    // does not contain a classes.dex.
+                    System.err.println("warning: reading dex files failed for: "
+                            + testApks.get(i).getPath() + ": " + e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
     private static void outputCoverageReport(ApiCoverage apiCoverage, List<File> testApks,
-            File outputFile, int format, PackageFilter packageFilter, String reportTitle)
+            File outputFile, int format, PackageFilter packageFilter, String reportTitle,
+            CoverageBaseline baseline)
                 throws IOException, TransformerException, InterruptedException {
 
         OutputStream out = outputFile != null
@@ -216,11 +269,13 @@ public class CtsApiCoverage {
                     break;
 
                 case FORMAT_XML:
-                    XmlReport.printXmlReport(testApks, apiCoverage, packageFilter, reportTitle, out);
+                    XmlReport.printXmlReport(testApks, apiCoverage, packageFilter, reportTitle,
+                            baseline, out);
                     break;
 
                 case FORMAT_HTML:
-                    HtmlReport.printHtmlReport(testApks, apiCoverage, packageFilter, reportTitle, out);
+                    HtmlReport.printHtmlReport(testApks, apiCoverage, packageFilter, reportTitle,
+                            baseline, out);
                     break;
             }
         } finally {
@@ -112,13 +112,14 @@ class CurrentXmlHandler extends DefaultHandler {
                 // Don't add empty default constructors...
                 return;
             }
-            ApiConstructor apiConstructor = new ApiConstructor(mCurrentClassName,
+            ApiConstructor apiConstructor = new ApiConstructor(mApiCoverage, mCurrentClassName,
                     mCurrentParameterTypes, mDeprecated);
             ApiPackage apiPackage = mApiCoverage.getPackage(mCurrentPackageName);
             ApiClass apiClass = apiPackage.getClass(mCurrentClassName);
             apiClass.addConstructor(apiConstructor);
         }  else if ("method".equalsIgnoreCase(localName)) {
             ApiMethod apiMethod = new ApiMethod(
+                    mApiCoverage,
                     mCurrentMethodName,
                     mCurrentParameterTypes,
                     mCurrentMethodReturnType,
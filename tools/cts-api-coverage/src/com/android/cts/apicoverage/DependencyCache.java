@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cts.apicoverage;
+
+import com.android.cts.apicoverage.DexDepsScanner.MethodDependency;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An on-disk cache of the methods each APK depends on, so that only new or changed APKs are
+ * scanned again.
+ * <p/>
+ * The dependencies of an APK are stored in a file named after the SHA-1 digest of the APK's
+ * content, so a cache directory can be shared between builds and checkouts. Each file is
+ * written to a temporary file first and then renamed, so APKs can be cached from several
+ * threads and an interrupted run never leaves a truncated entry behind.
+ */
+class DependencyCache {
+
+    private static final int MAGIC = 0x43444550; // "CDEP"
+
+    private static final int VERSION = 1;
+
+    private static final String SUFFIX = ".deps";
+
+    private final File mDir;
+
+    /**
+     * @param dir the cache directory, created if it does not exist yet
+     */
+    DependencyCache(File dir) throws IOException {
+        mDir = dir;
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            throw new IOException("Could not create cache directory " + mDir);
+        }
+    }
+
+    /**
+     * @param testApk the APK to get the dependencies of
+     * @return the cached dependencies of the APK, or the dependencies read from its dex files if
+     *     it is not cached yet
+     */
+    List<MethodDependency> getDependencies(File testApk) throws IOException {
+        File cacheFile = new File(mDir, getDigest(testApk) + SUFFIX);
+        if (cacheFile.isFile()) {
+            try {
+                return read(cacheFile);
+            } catch (IOException e) {
+                System.err.println("warning: ignoring corrupt cache entry: " + cacheFile);
+            }
+        }
+        List<MethodDependency> dependencies = DexDepsScanner.scan(testApk);
+        File tmpFile = null;
+        try {
+            tmpFile = File.createTempFile("deps", ".tmp", mDir);
+            write(tmpFile, dependencies);
+            if (!tmpFile.renameTo(cacheFile)) {
+                throw new IOException("Could not rename " + tmpFile + " to " + cacheFile);
+            }
+        } catch (IOException e) {
+            // The dependencies are still valid, they are just read again on the next run.
+            System.err.println("warning: could not cache dependencies of: " + testApk
+                    + ": " + e.getMessage());
+        } finally {
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+        return dependencies;
+    }
+
+    private static String getDigest(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[65536];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+
+    private static List<MethodDependency> read(File cacheFile) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported cache entry " + cacheFile);
+            }
+            int size = in.readInt();
+            List<MethodDependency> dependencies = new ArrayList<MethodDependency>(size);
+            for (int i = 0; i < size; i++) {
+                String packageName = in.readUTF();
+                String className = in.readUTF();
+                String methodName = in.readBoolean() ? in.readUTF() : null;
+                int numParameters = in.readInt();
+                List<String> parameterTypes = new ArrayList<String>(numParameters);
+                for (int j = 0; j < numParameters; j++) {
+                    parameterTypes.add(in.readUTF());
+                }
+                String returnType = in.readUTF();
+                dependencies.add(new MethodDependency(
+                        packageName, className, methodName, parameterTypes, returnType));
+            }
+            return dependencies;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(File cacheFile, List<MethodDependency> dependencies)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(cacheFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dependencies.size());
+            for (MethodDependency dependency : dependencies) {
+                out.writeUTF(dependency.getPackageName());
+                out.writeUTF(dependency.getClassName());
+                out.writeBoolean(!dependency.isConstructor());
+                if (!dependency.isConstructor()) {
+                    out.writeUTF(dependency.getMethodName());
+                }
+                out.writeInt(dependency.getParameterTypes().size());
+                for (String parameterType : dependency.getParameterTypes()) {
+                    out.writeUTF(parameterType);
+                }
+                out.writeUTF(dependency.getReturnType());
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cts.apicoverage;
+
+import dex.reader.DexBuffer;
+import dex.reader.DexFileReader;
+import dex.structure.DexClass;
+import dex.structure.DexFile;
+import dex.structure.DexMethodRef;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the methods an APK depends on directly from its dex files, without forking dexdeps.
+ * <p/>
+ * Like dexdeps, only references to classes that are not defined in the APK itself are reported.
+ * All dex files of the APK are read, so references between the dex files of a multidex APK are
+ * not reported either.
+ */
+class DexDepsScanner {
+
+    private static final Pattern DEX_ENTRY_PATTERN = Pattern.compile("classes\\d*\\.dex");
+
+    private static final String CONSTRUCTOR_NAME = "<init>";
+
+    private static final String STATIC_INITIALIZER_NAME = "<clinit>";
+
+    /**
+     * @param testApk the APK or jar file to scan
+     * @return the methods and constructors of other classes called from the APK
+     * @throws IOException if the APK could not be read
+     */
+    static List<MethodDependency> scan(File testApk) throws IOException {
+        List<DexFile> dexFiles = readDexFiles(testApk);
+        Set<String> definedClasses = new HashSet<String>();
+        for (DexFile dexFile : dexFiles) {
+            for (DexClass dexClass : dexFile.getDefinedClasses()) {
+                definedClasses.add(dexClass.getName());
+            }
+        }
+
+        List<MethodDependency> dependencies = new ArrayList<MethodDependency>();
+        for (DexFile dexFile : dexFiles) {
+            for (DexMethodRef methodRef : dexFile.getMethodRefs()) {
+                String declaringClass = methodRef.getDeclaringClass();
+                if (definedClasses.contains(declaringClass)
+                        || declaringClass.startsWith("[")
+                        || STATIC_INITIALIZER_NAME.equals(methodRef.getName())) {
+                    continue;
+                }
+                dependencies.add(new MethodDependency(methodRef));
+            }
+        }
+        return dependencies;
+    }
+
+    private static List<DexFile> readDexFiles(File testApk) throws IOException {
+        List<DexFile> dexFiles = new ArrayList<DexFile>();
+        ZipFile zipFile = new ZipFile(testApk);
+        try {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (DEX_ENTRY_PATTERN.matcher(entry.getName()).matches()) {
+                    byte[] dex = readEntry(zipFile, entry);
+                    dexFiles.add(new DexFileReader().read(new DexBuffer(dex)));
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+        return dexFiles;
+    }
+
+    private static byte[] readEntry(ZipFile zipFile, ZipEntry entry) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                entry.getSize() > 0 ? (int) entry.getSize() : 8192);
+        InputStream in = zipFile.getInputStream(entry);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Convert a dex type descriptor to the type name used in the API XML, e.g.
+     * "[Ljava/util/Map$Entry;" to "java.util.Map.Entry[]".
+     */
+    static String getTypeName(String descriptor) {
+        int arrayDepth = 0;
+        while (descriptor.charAt(arrayDepth) == '[') {
+            arrayDepth++;
+        }
+        StringBuilder typeName = new StringBuilder();
+        char type = descriptor.charAt(arrayDepth);
+        switch (type) {
+            case 'Z': typeName.append("boolean"); break;
+            case 'B': typeName.append("byte"); break;
+            case 'C': typeName.append("char"); break;
+            case 'S': typeName.append("short"); break;
+            case 'I': typeName.append("int"); break;
+            case 'J': typeName.append("long"); break;
+            case 'F': typeName.append("float"); break;
+            case 'D': typeName.append("double"); break;
+            case 'V': typeName.append("void"); break;
+            case 'L':
+                typeName.append(descriptor.substring(arrayDepth + 1, descriptor.length() - 1)
+                        .replace('/', '.').replace('$', '.'));
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid type descriptor: " + descriptor);
+        }
+        for (int i = 0; i < arrayDepth; i++) {
+            typeName.append("[]");
+        }
+        return typeName.toString();
+    }
+
+    /** A method or constructor of another class called from an APK. */
+    static class MethodDependency {
+
+        private final String mPackageName;
+
+        private final String mClassName;
+
+        private final String mMethodName;
+
+        private final List<String> mParameterTypes;
+
+        private final String mReturnType;
+
+        MethodDependency(DexMethodRef methodRef) {
+            // Split "Ljava/util/Map$Entry;" into "java.util" and "Map.Entry".
+            String declaringClass = methodRef.getDeclaringClass();
+            int packageEnd = declaringClass.lastIndexOf('/');
+            mPackageName = packageEnd < 0
+                    ? "" : declaringClass.substring(1, packageEnd).replace('/', '.');
+            mClassName = declaringClass.substring(packageEnd + 1, declaringClass.length() - 1)
+                    .replace('$', '.');
+            String name = methodRef.getName();
+            mMethodName = CONSTRUCTOR_NAME.equals(name) ? null : name;
+            mParameterTypes = new ArrayList<String>(methodRef.getParameterTypes().size());
+            for (String parameterType : methodRef.getParameterTypes()) {
+                mParameterTypes.add(getTypeName(parameterType));
+            }
+            mReturnType = getTypeName(methodRef.getReturnType());
+        }
+
+        MethodDependency(String packageName, String className, String methodName,
+                List<String> parameterTypes, String returnType) {
+            mPackageName = packageName;
+            mClassName = className;
+            mMethodName = methodName;
+            mParameterTypes = parameterTypes;
+            mReturnType = returnType;
+        }
+
+        String getPackageName() {
+            return mPackageName;
+        }
+
+        String getClassName() {
+            return mClassName;
+        }
+
+        boolean isConstructor() {
+            return mMethodName == null;
+        }
+
+        /** @return the name of the method, or null for a constructor */
+        String getMethodName() {
+            return mMethodName;
+        }
+
+        List<String> getParameterTypes() {
+            return mParameterTypes;
+        }
+
+        String getReturnType() {
+            return mReturnType;
+        }
+
+        /** Mark the method or constructor as covered if it is part of the API. */
+        void markCovered(ApiCoverage apiCoverage) {
+            if (isConstructor()) {
+                apiCoverage.markConstructorCovered(mPackageName, mClassName, mParameterTypes);
+            } else {
+                apiCoverage.markMethodCovered(
+                        mPackageName, mClassName, mMethodName, mParameterTypes, mReturnType);
+            }
+        }
+    }
+}
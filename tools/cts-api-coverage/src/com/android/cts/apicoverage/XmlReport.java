@@ -31,15 +31,24 @@ import java.util.List;
  */
 class XmlReport {
 
+    /**
+     * @param baseline the coverage of a previous run, if not null only the constructors and
+     *     methods whose coverage changed since then are reported with a change attribute
+     */
     public static void printXmlReport(List<File> testApks, ApiCoverage apiCoverage,
-            PackageFilter packageFilter, String reportTitle, OutputStream outputStream) {
+            PackageFilter packageFilter, String reportTitle, CoverageBaseline baseline,
+            OutputStream outputStream) {
         PrintStream out = new PrintStream(outputStream);
         out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
         out.println("<?xml-stylesheet type=\"text/xsl\"  href=\"api-coverage.xsl\"?>");
 
         SimpleDateFormat format = new SimpleDateFormat("EEE, MMM d, yyyy h:mm a z");
         String date = format.format(new Date(System.currentTimeMillis()));
-        out.println("<api-coverage generatedTime=\"" + date + "\" title=\"" + reportTitle +"\">");
+        out.print("<api-coverage generatedTime=\"" + date + "\" title=\"" + reportTitle + "\"");
+        if (baseline != null) {
+            out.print(" baseline=\"" + baseline.getReport().getPath() + "\"");
+        }
+        out.println(">");
 
         out.println("<debug>");
         out.println("<sources>");
@@ -62,65 +71,44 @@ class XmlReport {
                 totalMethods += pkgTotal;
                 int pkgTotalCovered = pkg.getNumCoveredMethods();
                 totalCoveredMethods += pkgTotalCovered;
-                out.println("<package name=\"" + pkg.getName()
-                        + "\" numCovered=\"" + pkgTotalCovered
-                        + "\" numTotal=\"" + pkgTotal
-                        + "\" coveragePercentage=\""
-                        + Math.round(pkg.getCoveragePercentage())
-                        + "\">");
 
                 List<ApiClass> classes = new ArrayList<ApiClass>(pkg.getClasses());
                 Collections.sort(classes, comparator);
 
+                // Deprecated methods are excluded from the total even if they are not reported.
                 for (ApiClass apiClass : classes) {
-                    if (apiClass.getTotalMethods() > 0) {
-                        out.println("<class name=\"" + apiClass.getName()
-                                + "\" numCovered=\"" + apiClass.getNumCoveredMethods()
-                                + "\" numTotal=\"" + apiClass.getTotalMethods()
-                                + "\" deprecated=\"" + apiClass.isDeprecated()
-                                + "\" coveragePercentage=\""
-                                    + Math.round(apiClass.getCoveragePercentage())
-                                + "\">");
-
-                        for (ApiConstructor constructor : apiClass.getConstructors()) {
-                            out.println("<constructor name=\"" + constructor.getName()
-                                    + "\" deprecated=\"" + constructor.isDeprecated()
-                                    + "\" covered=\"" + constructor.isCovered() + "\">");
-                            if (constructor.isDeprecated()) {
-                                if (constructor.isCovered()) {
-                                    totalCoveredMethods -= 1;
-                                }
-                                totalMethods -= 1;
+                    for (ApiConstructor constructor : apiClass.getConstructors()) {
+                        if (constructor.isDeprecated()) {
+                            if (constructor.isCovered()) {
+                                totalCoveredMethods -= 1;
                             }
-                            for (String parameterType : constructor.getParameterTypes()) {
-                                out.println("<parameter type=\"" + parameterType + "\" />");
+                            totalMethods -= 1;
+                        }
+                    }
+                    for (ApiMethod method : apiClass.getMethods()) {
+                        if (method.isDeprecated()) {
+                            if (method.isCovered()) {
+                                totalCoveredMethods -= 1;
                             }
-
-                            out.println("</constructor>");
+                            totalMethods -= 1;
                         }
+                    }
+                }
 
-                        for (ApiMethod method : apiClass.getMethods()) {
-                            out.println("<method name=\"" + method.getName()
-                                    + "\" returnType=\"" + method.getReturnType()
-                                    + "\" deprecated=\"" + method.isDeprecated()
-                                    + "\" static=\"" + method.isStaticMethod()
-                                    + "\" final=\"" + method.isFinalMethod()
-                                    + "\" visibility=\"" + method.getVisibility()
-                                    + "\" abstract=\"" + method.isAbstractMethod()
-                                    + "\" covered=\"" + method.isCovered() + "\">");
-                            if (method.isDeprecated()) {
-                                if (method.isCovered()) {
-                                    totalCoveredMethods -= 1;
-                                }
-                                totalMethods -= 1;
-                            }
-                            for (String parameterType : method.getParameterTypes()) {
-                                out.println("<parameter type=\"" + parameterType + "\" />");
-                            }
+                if (baseline != null && !hasChanges(pkg, classes, baseline)) {
+                    continue;
+                }
+                out.println("<package name=\"" + pkg.getName()
+                        + "\" numCovered=\"" + pkgTotalCovered
+                        + "\" numTotal=\"" + pkgTotal
+                        + "\" coveragePercentage=\""
+                        + Math.round(pkg.getCoveragePercentage())
+                        + "\">");
 
-                            out.println("</method>");
-                        }
-                        out.println("</class>");
+                for (ApiClass apiClass : classes) {
+                    if (apiClass.getTotalMethods() > 0
+                            && (baseline == null || hasChanges(pkg, apiClass, baseline))) {
+                        printClass(pkg, apiClass, baseline, out);
                     }
                 }
                 out.println("</package>");
@@ -128,10 +116,111 @@ class XmlReport {
         }
 
         out.println("</api>");
-        out.println("<total numCovered=\"" + totalCoveredMethods + "\" "
+        out.print("<total numCovered=\"" + totalCoveredMethods + "\" "
                 + "numTotal=\"" + totalMethods + "\" "
                 + "coveragePercentage=\""
-                + Math.round((float)totalCoveredMethods / totalMethods * 100.0f) + "\" />");
+                + Math.round((float)totalCoveredMethods / totalMethods * 100.0f) + "\"");
+        if (baseline != null) {
+            out.print(" previousNumCovered=\"" + baseline.getNumCovered() + "\" "
+                    + "previousNumTotal=\"" + baseline.getNumTotal() + "\"");
+        }
+        out.println(" />");
         out.println("</api-coverage>");
     }
+
+    private static void printClass(ApiPackage pkg, ApiClass apiClass, CoverageBaseline baseline,
+            PrintStream out) {
+        out.println("<class name=\"" + apiClass.getName()
+                + "\" numCovered=\"" + apiClass.getNumCoveredMethods()
+                + "\" numTotal=\"" + apiClass.getTotalMethods()
+                + "\" deprecated=\"" + apiClass.isDeprecated()
+                + "\" coveragePercentage=\""
+                    + Math.round(apiClass.getCoveragePercentage())
+                + "\">");
+
+        for (ApiConstructor constructor : apiClass.getConstructors()) {
+            String change = getChange(pkg, apiClass, null, constructor.getParameterTypes(),
+                    constructor.isCovered(), baseline);
+            if (baseline != null && change == null) {
+                continue;
+            }
+            out.println("<constructor name=\"" + constructor.getName()
+                    + "\" deprecated=\"" + constructor.isDeprecated()
+                    + "\" covered=\"" + constructor.isCovered()
+                    + (change != null ? "\" change=\"" + change : "") + "\">");
+            for (String parameterType : constructor.getParameterTypes()) {
+                out.println("<parameter type=\"" + parameterType + "\" />");
+            }
+
+            out.println("</constructor>");
+        }
+
+        for (ApiMethod method : apiClass.getMethods()) {
+            String change = getChange(pkg, apiClass, method.getName(),
+                    method.getParameterTypes(), method.isCovered(), baseline);
+            if (baseline != null && change == null) {
+                continue;
+            }
+            out.println("<method name=\"" + method.getName()
+                    + "\" returnType=\"" + method.getReturnType()
+                    + "\" deprecated=\"" + method.isDeprecated()
+                    + "\" static=\"" + method.isStaticMethod()
+                    + "\" final=\"" + method.isFinalMethod()
+                    + "\" visibility=\"" + method.getVisibility()
+                    + "\" abstract=\"" + method.isAbstractMethod()
+                    + "\" covered=\"" + method.isCovered()
+                    + (change != null ? "\" change=\"" + change : "") + "\">");
+            for (String parameterType : method.getParameterTypes()) {
+                out.println("<parameter type=\"" + parameterType + "\" />");
+            }
+
+            out.println("</method>");
+        }
+        out.println("</class>");
+    }
+
+    private static boolean hasChanges(ApiPackage pkg, List<ApiClass> classes,
+            CoverageBaseline baseline) {
+        for (ApiClass apiClass : classes) {
+            if (apiClass.getTotalMethods() > 0 && hasChanges(pkg, apiClass, baseline)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasChanges(ApiPackage pkg, ApiClass apiClass,
+            CoverageBaseline baseline) {
+        for (ApiConstructor constructor : apiClass.getConstructors()) {
+            if (getChange(pkg, apiClass, null, constructor.getParameterTypes(),
+                    constructor.isCovered(), baseline) != null) {
+                return true;
+            }
+        }
+        for (ApiMethod method : apiClass.getMethods()) {
+            if (getChange(pkg, apiClass, method.getName(), method.getParameterTypes(),
+                    method.isCovered(), baseline) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return "added" if a constructor or method is covered now but was not covered in the
+     *     baseline, "removed" if it is not covered anymore, or null if it did not change or
+     *     there is no baseline.
+     */
+    private static String getChange(ApiPackage pkg, ApiClass apiClass, String name,
+            List<String> parameterTypes, boolean covered, CoverageBaseline baseline) {
+        if (baseline == null) {
+            return null;
+        }
+        boolean wasCovered = baseline.isCovered(CoverageBaseline.getMemberKey(
+                pkg.getName(), apiClass.getName(), name, parameterTypes));
+        if (covered == wasCovered) {
+            return null;
+        }
+        return covered ? "added" : "removed";
+    }
 }
@@ -76,6 +76,14 @@
                     .deprecated {
                         text-decoration: line-through;
                     }
+
+                    .added {
+                        color: #006600;
+                    }
+
+                    .removed {
+                        color: #990000;
+                    }
                 </style>
             </head>
             <body>
@@ -83,6 +91,12 @@
                 <div class="info">
                     Generated: <xsl:value-of select="api-coverage/@generatedTime" />
                 </div>
+                <xsl:if test="api-coverage/@baseline">
+                    <div class="info">
+                        Changes since: <xsl:value-of select="api-coverage/@baseline" />
+                        &nbsp;(<xsl:value-of select="api-coverage/total/@previousNumCovered" />/<xsl:value-of select="api-coverage/total/@previousNumTotal" />)
+                    </div>
+                </xsl:if>
                 <div class="total">
                     Total:&nbsp;<xsl:value-of select="api-coverage/total/@coveragePercentage" />%
                 &nbsp;(<xsl:value-of select="api-coverage/total/@numCovered" />/<xsl:value-of select="api-coverage/total/@numTotal" />)
@@ -165,8 +179,10 @@
         </xsl:choose>
     </xsl:variable>
 
-    <span class="method {$deprecatedClass}">
+    <span class="method {$deprecatedClass} {@change}">
       <xsl:choose>
+        <xsl:when test="@change = 'added'">[+]</xsl:when>
+        <xsl:when test="@change = 'removed'">[-]</xsl:when>
         <xsl:when test="@covered = 'true'">[X]</xsl:when>
         <xsl:otherwise>[ ]</xsl:otherwise>
       </xsl:choose>
@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cts.apicoverage;
+
+import com.android.cts.apicoverage.DexDepsScanner.MethodDependency;
+import com.android.dx.dex.cf.CfOptions;
+import com.android.dx.dex.cf.CfTranslator;
+import com.android.dx.dex.file.DexFile;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+
+public class DexDepsScannerTest extends TestCase {
+
+    private static final String SAMPLE =
+        "package com.example;\n" +
+        "import java.util.*;\n" +
+        "public class Sample {\n" +
+        "  public int run(String[] args, Map.Entry<String, String> entry) {\n" +
+        "    List<String> list = new ArrayList<String>();\n" +
+        "    list.add(args[0]);\n" +
+        "    list.add(entry.getKey());\n" +
+        "    new Helper().help(list);\n" +
+        "    return list.size() + args.clone().length;\n" +
+        "  }\n" +
+        "}\n";
+
+    private static final String HELPER =
+        "package com.example;\n" +
+        "class Helper {\n" +
+        "  void help(java.util.List<String> list) {}\n" +
+        "}\n";
+
+    /** The output of "dexdeps --format=xml" for the classes of {@link #SAMPLE} and HELPER. */
+    private static final String DEXDEPS_OUTPUT =
+        "<external>\n" +
+        "<package name=\"java.lang\">\n" +
+        "<class name=\"Object\">\n" +
+        "<constructor name=\"Object\">\n" +
+        "</constructor>\n" +
+        "</class>\n" +
+        "</package>\n" +
+        "<package name=\"java.util\">\n" +
+        "<class name=\"ArrayList\">\n" +
+        "<constructor name=\"ArrayList\">\n" +
+        "</constructor>\n" +
+        "</class>\n" +
+        "<interface name=\"List\">\n" +
+        "<method name=\"add\" return=\"boolean\">\n" +
+        "<parameter type=\"java.lang.Object\"/>\n" +
+        "</method>\n" +
+        "<method name=\"size\" return=\"int\">\n" +
+        "</method>\n" +
+        "</interface>\n" +
+        "<interface name=\"Map.Entry\">\n" +
+        "<method name=\"getKey\" return=\"java.lang.Object\">\n" +
+        "</method>\n" +
+        "</interface>\n" +
+        "</package>\n" +
+        "</external>\n";
+
+    private File mRoot;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRoot = Files.createTempDirectory("dexdeps").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(mRoot);
+        super.tearDown();
+    }
+
+    public void testScan() throws Exception {
+        File apk = createApk(Arrays.asList("com.example.Sample", "com.example.Helper"));
+        assertEquals(parseDexDepsOutput(DEXDEPS_OUTPUT), toStrings(DexDepsScanner.scan(apk)));
+    }
+
+    public void testScan_multidex() throws Exception {
+        // the references to Helper in classes.dex are not reported, as with a single dex file
+        File apk = createApk(Arrays.asList("com.example.Sample"),
+                Arrays.asList("com.example.Helper"));
+        assertEquals(parseDexDepsOutput(DEXDEPS_OUTPUT), toStrings(DexDepsScanner.scan(apk)));
+    }
+
+    public void testGetTypeName() {
+        assertEquals("int", DexDepsScanner.getTypeName("I"));
+        assertEquals("java.lang.String", DexDepsScanner.getTypeName("Ljava/lang/String;"));
+        assertEquals("java.util.Map.Entry[][]",
+                DexDepsScanner.getTypeName("[[Ljava/util/Map$Entry;"));
+    }
+
+    /**
+     * Compile the sample classes and write an APK with one dex file for each list of class names,
+     * named as by dx --multi-dex.
+     */
+    @SafeVarargs
+    private final File createApk(List<String>... dexClassNames) throws IOException {
+        File sourceDir = new File(mRoot, "src");
+        File classDir = new File(mRoot, "classes");
+        classDir.mkdirs();
+        File sample = write(new File(sourceDir, "com/example/Sample.java"), SAMPLE);
+        File helper = write(new File(sourceDir, "com/example/Helper.java"), HELPER);
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, javac.run(null, null, null, "-d", classDir.getPath(), sample.getPath(),
+                helper.getPath()));
+
+        File apk = new File(mRoot, "test.apk");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(apk));
+        try {
+            for (int i = 0; i < dexClassNames.length; i++) {
+                DexFile dexFile = new DexFile();
+                for (String className : dexClassNames[i]) {
+                    String classFileName = className.replace('.', '/') + ".class";
+                    byte[] bytes = Files.readAllBytes(new File(classDir, classFileName).toPath());
+                    dexFile.add(CfTranslator.translate(classFileName, bytes, new CfOptions()));
+                }
+                String entryName = i == 0 ? "classes.dex" : "classes" + (i + 1) + ".dex";
+                out.putNextEntry(new ZipEntry(entryName));
+                out.write(dexFile.toDex(null, false));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return apk;
+    }
+
+    /**
+     * Parse the XML output of dexdeps the way the former DexDepsXmlHandler did, into strings like
+     * "java.util.List.add(java.lang.Object) boolean" or "java.util.ArrayList()".
+     */
+    private static Set<String> parseDexDepsOutput(String xml) throws Exception {
+        final Set<String> methods = new TreeSet<String>();
+        XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+        xmlReader.setContentHandler(new DefaultHandler() {
+            private String mPackageName;
+            private String mClassName;
+            private String mMethodName;
+            private String mReturnType;
+            private List<String> mParameterTypes = new ArrayList<String>();
+
+            @Override
+            public void startElement(String uri, String localName, String name,
+                    Attributes attributes) {
+                if ("package".equals(localName)) {
+                    mPackageName = attributes.getValue("name");
+                } else if ("class".equals(localName) || "interface".equals(localName)) {
+                    mClassName = attributes.getValue("name");
+                } else if ("constructor".equals(localName)) {
+                    mMethodName = null;
+                    mParameterTypes.clear();
+                } else if ("method".equals(localName)) {
+                    mMethodName = attributes.getValue("name");
+                    mReturnType = attributes.getValue("return");
+                    mParameterTypes.clear();
+                } else if ("parameter".equals(localName)) {
+                    mParameterTypes.add(attributes.getValue("type"));
+                }
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String name) {
+                if ("constructor".equals(localName) || "method".equals(localName)) {
+                    methods.add(toString(mPackageName, mClassName, mMethodName, mParameterTypes,
+                            mReturnType));
+                }
+            }
+        });
+        xmlReader.parse(new InputSource(new StringReader(xml)));
+        return methods;
+    }
+
+    private static Set<String> toStrings(Collection<MethodDependency> dependencies) {
+        Set<String> methods = new TreeSet<String>();
+        for (MethodDependency dependency : dependencies) {
+            assertTrue("duplicate " + dependency.getMethodName(), methods.add(toString(
+                    dependency.getPackageName(), dependency.getClassName(),
+                    dependency.getMethodName(), dependency.getParameterTypes(),
+                    dependency.getReturnType())));
+        }
+        return methods;
+    }
+
+    private static String toString(String packageName, String className, String methodName,
+            List<String> parameterTypes, String returnType) {
+        StringBuilder method = new StringBuilder(packageName).append('.').append(className);
+        if (methodName != null) {
+            method.append('.').append(methodName);
+        }
+        method.append('(');
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            method.append(i == 0 ? "" : ", ").append(parameterTypes.get(i));
+        }
+        method.append(')');
+        if (methodName != null) {
+            method.append(' ').append(returnType);
+        }
+        return method.toString();
+    }
+
+    private static File write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        PrintWriter out = new PrintWriter(file);
+        out.print(content);
+        out.close();
+        return file;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -16,31 +16,33 @@
 package com.android.cts.javascanner;
 
 import java.io.File;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 /**
- * Class that searches a source directory for native gTests and outputs a
+ * Class that searches source directories for java tests and outputs a
  * list of test classes and methods.
  */
 public class CtsJavaScanner {
 
     private static void usage(String[] args) {
         System.err.println("Arguments: " + Arrays.asList(args));
-        System.err.println("Usage: cts-java-scanner -s SOURCE_DIR -d DOCLET_PATH");
+        System.err.println(
+                "Usage: cts-java-scanner -s SOURCE_DIR [-s SOURCE_DIR...] [-c CACHE_FILE]");
         System.exit(1);
     }
 
     public static void main(String[] args) throws Exception {
         List<File> sourceDirs = new ArrayList<File>();
-        File docletPath = null;
+        File cacheFile = null;
 
         for (int i = 0; i < args.length; i++) {
             if ("-s".equals(args[i])) {
                 sourceDirs.add(new File(getArg(args, ++i, "Missing value for source directory")));
-            } else if ("-d".equals(args[i])) {
-                docletPath = new File(getArg(args, ++i, "Missing value for docletPath"));
+            } else if ("-c".equals(args[i])) {
+                cacheFile = new File(getArg(args, ++i, "Missing value for cache file"));
             } else {
                 System.err.println("Unsupported flag: " + args[i]);
                 usage(args);
@@ -52,13 +54,8 @@ public class CtsJavaScanner {
             usage(args);
         }
 
-        if (docletPath == null) {
-            System.err.println("Doclet path is required");
-            usage(args);
-        }
-
-        DocletRunner runner = new DocletRunner(sourceDirs, docletPath);
-        System.exit(runner.runJavaDoc());
+        new TestScanner(sourceDirs, cacheFile).scan(new PrintWriter(System.out));
+        System.exit(0);
     }
 
     private static String getArg(String[] args, int index, String message) {
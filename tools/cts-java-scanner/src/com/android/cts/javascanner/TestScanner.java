@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.javascanner;
+
+import com.android.compatibility.common.scanner.SourceFile.AnnotationDecl;
+import com.android.compatibility.common.scanner.SourceFile.MethodDecl;
+import com.android.compatibility.common.scanner.SourceFile.TypeDecl;
+import com.android.compatibility.common.scanner.SourceScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scans java source directories for JUnit3 and JUnit4 tests and outputs them
+ * in the following format:
+ *
+ * suite:android.holo.cts
+ * case:HoloTest
+ * test:testHolo
+ * test:testHoloDialog[:timeout_value]
+ *
+ * The sources are parsed in process rather than by a javadoc doclet, and the
+ * parsed files can be cached between runs.
+ */
+class TestScanner {
+
+    private static final String JUNIT4_TEST_ANNOTATION = "org.junit.Test";
+
+    private static final String TIMEOUT_REQ_ANNOTATION = "com.android.cts.util.TimeoutReq";
+
+    static final String JUNIT_TEST_CASE_CLASS_NAME = "junit.framework.testcase";
+
+    private final List<File> mSourceDirs;
+    private final File mCacheFile;
+
+    /**
+     * @param sourceDirs the directories holding the source to scan
+     * @param cacheFile the file caching the parsed sources between runs, or null
+     */
+    TestScanner(List<File> sourceDirs, File cacheFile) {
+        mSourceDirs = sourceDirs;
+        mCacheFile = cacheFile;
+    }
+
+    void scan(PrintWriter writer) throws IOException {
+        SourceScanner scanner = new SourceScanner(getSourcePath(mSourceDirs), getClassPath(),
+                mCacheFile);
+        for (TypeDecl clazz : scanner.scan(mSourceDirs)) {
+            if (clazz.isAbstract()) {
+                continue;
+            }
+
+            final boolean isJUnit3 = isJUnit3TestCase(scanner, clazz);
+            if (!isJUnit3 && !isJUnit4TestClass(scanner, clazz)) {
+                continue;
+            }
+
+            writer.append("suite:").println(clazz.getPackageName());
+            writer.append("case:").println(clazz.getName());
+            for (; clazz != null; clazz = scanner.getSuperclass(clazz)) {
+                for (MethodDecl method : scanner.getMethods(clazz)) {
+                    long timeout = -1;
+                    if (isJUnit3) {
+                        if (!method.getName().startsWith("test")) {
+                            continue;
+                        }
+
+                        for (AnnotationDecl annot : method.getAnnotations()) {
+                            if (scanner.getQualifiedName(clazz, annot).equals(
+                                    TIMEOUT_REQ_ANNOTATION)) {
+                                long minutes = parseLong(annot.getElement("minutes"));
+                                if (minutes >= 0) {
+                                    timeout = minutes;
+                                }
+                            }
+                        }
+                    } else {
+                        /* JUnit4 */
+                        boolean isTest = false;
+
+                        for (AnnotationDecl annot : method.getAnnotations()) {
+                            if (scanner.getQualifiedName(clazz, annot).equals(
+                                    JUNIT4_TEST_ANNOTATION)) {
+                                isTest = true;
+
+                                long millis = parseLong(annot.getElement("timeout"));
+                                if (millis >= 0) {
+                                    /* JUnit4 timeouts are in milliseconds. */
+                                    timeout = millis / 60000L;
+                                }
+                            }
+                        }
+
+                        if (!isTest) {
+                            continue;
+                        }
+                    }
+
+                    writer.append("test:");
+                    if (timeout >= 0) {
+                        writer.append(method.getName()).println(":" + timeout);
+                    } else {
+                        writer.println(method.getName());
+                    }
+                }
+            }
+        }
+        writer.flush();
+
+        scanner.saveCache();
+    }
+
+    private static boolean isJUnit3TestCase(SourceScanner scanner, TypeDecl clazz) {
+        while ((clazz = scanner.getSuperclass(clazz)) != null) {
+            if (JUNIT_TEST_CASE_CLASS_NAME.equals(clazz.getQualifiedName().toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isJUnit4TestClass(SourceScanner scanner, TypeDecl clazz) {
+        for (MethodDecl method : scanner.getMethods(clazz)) {
+            for (AnnotationDecl annot : method.getAnnotations()) {
+                if (scanner.getQualifiedName(clazz, annot).equals(JUNIT4_TEST_ANNOTATION)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value of an integer literal annotation element, or -1 if it
+     * is not set or not a literal. Unlike javadoc, constant expressions are
+     * not evaluated.
+     */
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        String literal = value.replace("_", "");
+        if (literal.endsWith("L") || literal.endsWith("l")) {
+            literal = literal.substring(0, literal.length() - 1);
+        }
+        try {
+            return Long.decode(literal);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring timeout that is not a literal: " + value);
+            return -1;
+        }
+    }
+
+    private static List<File> getSourcePath(List<File> sourceDirs) {
+        List<File> sourcePath = new ArrayList<File>();
+        sourcePath.add(new File("./frameworks/base/core/java"));
+        sourcePath.add(new File("./frameworks/base/test-runner/src"));
+        sourcePath.add(new File("./external/junit/src"));
+        sourcePath.add(new File("./development/tools/hosttestlib/src"));
+        sourcePath.add(new File("./libcore/dalvik/src/main/java"));
+        sourcePath.add(new File("./cts/tests/src"));
+        sourcePath.add(new File("./cts/libs/commonutil/src"));
+        sourcePath.add(new File("./cts/libs/deviceutil/src"));
+        sourcePath.addAll(sourceDirs);
+        return sourcePath;
+    }
+
+    private static List<File> getClassPath() {
+        List<File> classPath = new ArrayList<File>();
+        classPath.add(new File("./prebuilts/misc/common/tradefed/tradefed-prebuilt.jar"));
+        classPath.add(new File("./prebuilts/misc/common/ub-uiautomator/ub-uiautomator.jar"));
+        classPath.add(new File("./prebuilts/misc/common/ub-janktesthelper/ub-janktesthelper.jar"));
+        return classPath;
+    }
+}
@@ -61,10 +61,12 @@ import com.android.dx.util.IntList;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Vector;
 
 //TODO: copyright notice
@@ -82,6 +84,8 @@ public class DAsm {
 
     // number of errors reported in a file.
     int errors;
+    // stream the errors of a file are reported to
+    PrintStream messages = System.out;
 
     // options for dex output
     DexOptions dexOptions = new DexOptions();
@@ -99,6 +103,8 @@ public class DAsm {
     String filename;
     Vector<String> interfaces = new Vector<String>();
     ClassDefItem classDef;
+    // all classes declared in the file
+    ArrayList<ClassDefItem> class_defs = new ArrayList<ClassDefItem>();
 
     // method being built
     EncodedMethod enc_method;
@@ -175,9 +181,17 @@ public class DAsm {
         return errors;
     }
 
+    /**
+     * Sets the stream errors are reported to while parsing. Defaults to
+     * System.out.
+     */
+    void setMessageStream(PrintStream messages) {
+        this.messages = messages;
+    }
+
     void report_error(String msg) {
         errors++;
-        System.out.println("Line " + line_num + ": " + msg);
+        messages.println("Line " + line_num + ": " + msg);
     }
 
     void throwDasmError(String msg) throws DasmError {
@@ -330,6 +344,7 @@ public class DAsm {
                         .internClassName(superclass_name)) : null, tl,
                 new CstString(source_name));
         dexFile.add(classDef);
+        class_defs.add(classDef);
         class_header = false;
     }
 
@@ -1582,6 +1597,24 @@ public class DAsm {
         dexFile.writeTo(outp, human_readable, true);
     }
 
+    /**
+     * Writes the classes of several parsed .d files as a single dex file. The
+     * files must not declare the same class twice.
+     */
+    public static void write(List<DAsm> files, OutputStream outp,
+            FileWriter human_readable) throws IOException, DasmError {
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("no files to write");
+        }
+        DexFile dexFile = new DexFile(files.get(0).dexOptions);
+        for (DAsm file : files) {
+            for (ClassDefItem classDef : file.class_defs) {
+                dexFile.add(classDef);
+            }
+        }
+        dexFile.writeTo(outp, human_readable, true);
+    }
+
     /**
      * Parses a .d file, converting it internally into a binary representation.
      * If something goes wrong, this throws one of an IOException, or a
@@ -1607,6 +1640,7 @@ public class DAsm {
         source_name = name;
         class_header = false;
         classDef = null;
+        class_defs.clear();
         dexFile = new DexFile(dexOptions);
 
         scanner = new Scanner(input);
@@ -17,14 +17,27 @@
 package dasm;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * DAsm entry point
@@ -57,6 +70,21 @@ public class Main {
      */
     private static boolean generateLineNumbers = false;
 
+    /**
+     * number of files assembled at the same time
+     */
+    private static int threads = 1;
+
+    /**
+     * write one classes.dex per package instead of one .dex file per class
+     */
+    private static boolean groupByPackage = false;
+
+    /**
+     * file name for the .dex file of a package
+     */
+    private static final String GROUP_FILE_NAME = "classes";
+
     private static void incompleteOption(String opt) {
         System.err.println("Command line option " + opt
                 + " required argument missed");
@@ -80,7 +108,38 @@ public class Main {
      *            is the name of the file containing the DAsm source code.
      */
     public static void assemble(String fname) {
+        assemble(fname, System.out, System.err);
+    }
+
+    /**
+     * Assembles a single file, reporting to the given streams.
+     *
+     * @return true if the .dex file was written
+     */
+    private static boolean assemble(String fname, PrintStream out,
+            PrintStream err) {
+        DAsm dAsm = read(fname, out, err);
+        if (dAsm == null) {
+            return false;
+        }
+
+        String class_path[] = Utils
+                .getClassFieldFromString(dAsm.getClassName());
+        String dest_dir = getDestDir(class_path[0]);
+        if (!createDir(dest_dir, err)) {
+            return false;
+        }
+        return write(Arrays.asList(dAsm), dest_dir, class_path[1], out, err);
+    }
+
+    /**
+     * Reads and parses a .d file.
+     *
+     * @return the parsed file, or null if it has errors
+     */
+    private static DAsm read(String fname, PrintStream out, PrintStream err) {
         DAsm dAsm = new DAsm();
+        dAsm.setMessageStream(out);
 
         // read and parse .d file
         Reader inp = null;
@@ -89,32 +148,35 @@ public class Main {
             dAsm.readD(inp, new File(fname).getName(), generateLineNumbers);
             close(inp);
         } catch (DasmError e) {
-            if (DEBUG) e.printStackTrace();
-            System.err.println("DASM Error: " + e.getMessage());
+            if (DEBUG) e.printStackTrace(err);
+            err.println("DASM Error: " + e.getMessage());
         } catch (Exception e) {
-            if (DEBUG) e.printStackTrace();
-            System.err.println("Exception <" + e.getClass().getName() + ">"
+            if (DEBUG) e.printStackTrace(err);
+            err.println("Exception <" + e.getClass().getName() + ">"
                     + e.getMessage() + " while reading and parsing " + fname);
-            return;
+            return null;
 
         } finally {
             close(inp);
         }
 
         if (dAsm.errorCount() > 0) {
-            System.err.println("Found " + dAsm.errorCount() + " errors "
+            err.println("Found " + dAsm.errorCount() + " errors "
                     + " while reading and parsing " + fname);
-            return;
+            return null;
         }
+        return dAsm;
+    }
 
-        String class_path[] = Utils
-                .getClassFieldFromString(dAsm.getClassName());
-        String class_name = class_path[1];
-
-        // determine where to place .dex file
+    /**
+     * Determines where to place the .dex file of a package.
+     *
+     * @return the directory, or null for the current directory
+     */
+    private static String getDestDir(String package_path) {
         String dest_dir = destPath;
-        if (class_path[0] != null) {
-            String class_dir = class_path[0].replaceAll("/|\\.", Character
+        if (package_path != null) {
+            String class_dir = package_path.replaceAll("/|\\.", Character
                     .toString(File.separatorChar));
             if (dest_dir != null) {
                 dest_dir = dest_dir + File.separator + class_dir;
@@ -122,27 +184,46 @@ public class Main {
                 dest_dir = class_dir;
             }
         }
+        return dest_dir;
+    }
+
+    /**
+     * @return false if the directory does not exist and cannot be created
+     */
+    private static boolean createDir(String dest_dir, PrintStream err) {
+        if (dest_dir == null) {
+            return true;
+        }
+
+        // check that dest_dir exists
+        File dest = new File(dest_dir);
+        if (!dest.exists()) {
+            dest.mkdirs();
+        }
+
+        if (!dest.isDirectory()) {
+            err.println("Cannot create directory " + dest_dir);
+            return false;
+        }
+        return true;
+    }
 
+    /**
+     * Writes the classes of the parsed files to name.dex in dest_dir.
+     *
+     * @return true if the .dex file was written
+     */
+    private static boolean write(List<DAsm> files, String dest_dir,
+            String name, PrintStream out, PrintStream err) {
         File out_file = null;
         File hr_file = null;
 
         if (dest_dir == null) {
-            out_file = new File(class_name + ".dex");
-            hr_file = new File(class_name + ".dxt");
+            out_file = new File(name + ".dex");
+            hr_file = new File(name + ".dxt");
         } else {
-            out_file = new File(dest_dir, class_name + ".dex");
-            hr_file = new File(dest_dir, class_name + ".dxt");
-
-            // check that dest_dir exists
-            File dest = new File(dest_dir);
-            if (!dest.exists()) {
-                dest.mkdirs();
-            }
-
-            if (!dest.isDirectory()) {
-                System.err.println("Cannot create directory " + dest_dir);
-                return;
-            }
+            out_file = new File(dest_dir, name + ".dex");
+            hr_file = new File(dest_dir, name + ".dxt");
         }
 
         // write output
@@ -152,10 +233,14 @@ public class Main {
         try {
             outp = new FileOutputStream(out_file);
             if (humanHeadable) hr_outp = new FileWriter(hr_file);
-            dAsm.write(outp, hr_outp);
+            if (files.size() == 1) {
+                files.get(0).write(outp, hr_outp);
+            } else {
+                DAsm.write(files, outp, hr_outp);
+            }
         } catch (Exception e) {
-            if (DEBUG) e.printStackTrace();
-            System.err.println("Exception <" + e.getClass().getName() + ">"
+            if (DEBUG) e.printStackTrace(err);
+            err.println("Exception <" + e.getClass().getName() + ">"
                     + e.getMessage() + " while writing " + out_file.getPath());
 
             close(hr_outp);
@@ -164,13 +249,165 @@ public class Main {
             hr_file.delete();
             out_file.delete();
 
-            return;
+            return false;
         } finally {
             close(hr_outp);
             close(outp);
         }
 
-        System.out.println("Generated: " + out_file.getPath());
+        out.println("Generated: " + out_file.getPath());
+        return true;
+    }
+
+    /**
+     * The outcome of a task of a batch, with everything the task reported.
+     */
+    private static class Report {
+        final ByteArrayOutputStream outBuffer = new ByteArrayOutputStream();
+        final ByteArrayOutputStream errBuffer = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(outBuffer, true);
+        final PrintStream err = new PrintStream(errBuffer, true);
+        DAsm dAsm;
+        boolean success;
+
+        /**
+         * Prints what the task reported, so the messages of concurrent tasks
+         * do not interleave.
+         */
+        void print() {
+            out.flush();
+            err.flush();
+            System.out.print(outBuffer.toString());
+            System.err.print(errBuffer.toString());
+        }
+    }
+
+    /**
+     * Assembles a batch of files on a pool of threads. Every file gets its own
+     * DAsm, scanner and parser. The messages of each file are printed
+     * together, in the order of the files.
+     *
+     * @return the number of files that failed to assemble
+     */
+    private static int assembleAll(List<String> files) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Report>> reads = new ArrayList<Future<Report>>();
+            for (final String fname : files) {
+                reads.add(pool.submit(new Callable<Report>() {
+                    public Report call() {
+                        Report report = new Report();
+                        if (groupByPackage) {
+                            report.dAsm = read(fname, report.out, report.err);
+                            report.success = report.dAsm != null;
+                        } else {
+                            report.success = assemble(fname, report.out,
+                                    report.err);
+                        }
+                        return report;
+                    }
+                }));
+            }
+
+            int failed = 0;
+            Map<String, List<DAsm>> packages = new TreeMap<String, List<DAsm>>();
+            for (Future<Report> read : reads) {
+                Report report = get(read);
+                report.print();
+                if (!report.success) {
+                    failed++;
+                } else if (groupByPackage) {
+                    String package_path = Utils.getClassFieldFromString(
+                            report.dAsm.getClassName())[0];
+                    if (package_path == null) {
+                        package_path = "";
+                    }
+                    List<DAsm> group = packages.get(package_path);
+                    if (group == null) {
+                        group = new ArrayList<DAsm>();
+                        packages.put(package_path, group);
+                    }
+                    group.add(report.dAsm);
+                }
+            }
+
+            List<Future<Report>> writes = new ArrayList<Future<Report>>();
+            for (final Map.Entry<String, List<DAsm>> entry : packages.entrySet()) {
+                writes.add(pool.submit(new Callable<Report>() {
+                    public Report call() {
+                        Report report = new Report();
+                        String package_path = entry.getKey();
+                        String dest_dir = getDestDir(package_path.length() > 0
+                                ? package_path : null);
+                        report.success = createDir(dest_dir, report.err)
+                                && write(entry.getValue(), dest_dir,
+                                        GROUP_FILE_NAME, report.out, report.err);
+                        return report;
+                    }
+                }));
+            }
+            for (Future<Report> write : writes) {
+                Report report = get(write);
+                report.print();
+                if (!report.success) {
+                    failed++;
+                }
+            }
+            return failed;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Report get(Future<Report> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Adds a source file, all .d files in a directory and its subdirectories,
+     * or the files listed in a file list.
+     */
+    static void addFile(File file, List<String> files) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) {
+                return;
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isDirectory() || child.getName().endsWith(".d")) {
+                    addFile(child, files);
+                }
+            }
+        } else {
+            files.add(file.getPath());
+        }
+    }
+
+    private static void addFileList(String listFile, List<String> files) {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(listFile));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0) {
+                    addFile(new File(line), files);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot read file list " + listFile + ": "
+                    + e.getMessage());
+            System.exit(-1);
+        } finally {
+            close(reader);
+        }
     }
 
     private static void close(Closeable c) {
@@ -185,8 +422,8 @@ public class Main {
     public static void main(String args[]) {
         int i;
 
-        String files[] = new String[args.length];
-        int num_files = 0;
+        List<String> files = new ArrayList<String>();
+        boolean batch = false;
 
         if (args.length == 0) {
             printUsage();
@@ -217,25 +454,73 @@ public class Main {
                     incompleteOption("-e");
                 else
                     encoding = args[i];
+            } else if (args[i].equals("-j")) {
+                if (++i >= args.length)
+                    incompleteOption("-j");
+                else
+                    threads = parseThreads(args[i]);
+                batch = true;
+            } else if (args[i].equals("-l")) {
+                if (++i >= args.length)
+                    incompleteOption("-l");
+                else
+                    addFileList(args[i], files);
+                batch = true;
+            } else if (args[i].equals("-p")) {
+                groupByPackage = true;
+                batch = true;
             } else {
-                files[num_files++] = args[i];
+                File file = new File(args[i]);
+                if (file.isDirectory()) {
+                    batch = true;
+                }
+                addFile(file, files);
             }
         }
 
-        for (i = 0; i < num_files; i++) {
-            assemble(files[i]);
+        if (!batch) {
+            for (String file : files) {
+                assemble(file);
+            }
+            return;
+        }
+
+        int failed = assembleAll(files);
+        if (failed > 0) {
+            System.err.println(failed + " of " + files.size()
+                    + " files failed to assemble");
+            System.exit(1);
         }
     }
 
+    private static int parseThreads(String value) {
+        try {
+            int count = Integer.parseInt(value);
+            if (count > 0) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        System.err.println("Invalid number of threads: " + value);
+        System.exit(-1);
+        return 0;
+    }
+
     static void printUsage() {
         System.err
-                .println("dasm [-d <outpath>] [-g] [-h] [-e <encoding>] <file>"
-                        + "[<file> ...]\n\n"
+                .println("dasm [-d <outpath>] [-g] [-h] [-e <encoding>] [-j <threads>] "
+                        + "[-p] [-l <filelist>] <file>|<dir> [<file>|<dir> ...]\n\n"
                         + "  -g - autogenerate linenumbers\n"
                         + "  -e - codepage for inputfile encoding\n"
                         + "  -d - path for generated classfiles\n"
                         + "  -h - generate human-readable output\n"
+                        + "  -j - number of files to assemble at the same time\n"
+                        + "  -p - write the classes of each package to one "
+                        + GROUP_FILE_NAME + ".dex\n"
+                        + "  -l - file with one sourcefile or directory per line\n"
                         + "  file  - sourcefile\n"
+                        + "  dir   - directory with .d sourcefiles\n"
                         + "or: dasm -version\n"
                         + "or: dasm -help");
     }
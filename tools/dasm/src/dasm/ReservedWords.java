@@ -16,23 +16,74 @@
 
 package dasm;
 
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.Map;
 
 import java_cup.runtime.token;
 
+/**
+ * Keywords and directives of the Dasm syntax.
+ * <p>
+ * The scanner looks up every name it reads, so the words are kept in a
+ * perfect hash table: a multiplier is chosen when the class is initialized so
+ * that no two words share a slot, and a lookup takes a single probe.
+ */
 class ReservedWords {
-    static Hashtable<String, token> reserved_words;
+    private static String[] names;
+    private static token[] tokens;
+    private static int multiplier;
+    private static int shift;
 
     public static token get(String name) {
-        return (token) reserved_words.get(name);
+        int slot = slot(name.hashCode(), multiplier, shift);
+        return name.equals(names[slot]) ? tokens[slot] : null;
     }
 
     public static boolean contains(String name) {
-        return reserved_words.get(name) != null;
+        return get(name) != null;
+    }
+
+    private static int slot(int hash, int multiplier, int shift) {
+        return (hash * multiplier) >>> shift;
+    }
+
+    /**
+     * Finds a multiplier that puts every word in its own slot.
+     */
+    private static void createTable(Map<String, token> words) {
+        int bits = 1;
+        while ((1 << bits) < words.size() * 4) {
+            bits++;
+        }
+        for (;; bits++) {
+            int size = 1 << bits;
+            int candidate = 0x9e3779b9;
+            for (int attempt = 0; attempt < 10000; attempt++, candidate += 2) {
+                String[] slotNames = new String[size];
+                token[] slotTokens = new token[size];
+                boolean perfect = true;
+                for (Map.Entry<String, token> word : words.entrySet()) {
+                    int slot = slot(word.getKey().hashCode(), candidate, 32 - bits);
+                    if (slotNames[slot] != null) {
+                        perfect = false;
+                        break;
+                    }
+                    slotNames[slot] = word.getKey();
+                    slotTokens[slot] = word.getValue();
+                }
+                if (perfect) {
+                    names = slotNames;
+                    tokens = slotTokens;
+                    multiplier = candidate;
+                    shift = 32 - bits;
+                    return;
+                }
+            }
+        }
     }
 
     static {
-        reserved_words = new Hashtable<String, token>();
+        Map<String, token> reserved_words = new HashMap<String, token>();
 
         // Dasm directives
         reserved_words.put(".annotation", new token(sym.DANNOTATION));
@@ -107,5 +158,7 @@ class ReservedWords {
         reserved_words.put("varargs", new token(sym.VARARGS));
         reserved_words.put("fpstrict", new token(sym.STRICT));
         reserved_words.put("synthetic", new token(sym.SYNTHETIC));
+
+        createTable(reserved_words);
     }
 }
@@ -75,6 +75,13 @@ class Scanner {
 
     protected Reader inputReader;
 
+    /**
+     * block of input characters, so the reader is not called for each one
+     */
+    private final char[] inputBuf = new char[8192];
+    private int inputPos = 0;
+    private int inputLen = 0;
+
     /**
      * next character in input stream
      */
@@ -92,11 +99,26 @@ class Scanner {
      */
     protected static final String SEPARATORS = WHITESPACE + ":=" + ",";
 
+    /**
+     * Character classes of the ASCII characters, looked up by character code
+     */
+    private static final int CLASS_WHITESPACE = 1;
+    private static final int CLASS_SEPARATOR = 2;
+    private static final byte[] charClasses = new byte[128];
+
+    static {
+        for (int i = 0; i < SEPARATORS.length(); i++) {
+            charClasses[SEPARATORS.charAt(i)] |= CLASS_SEPARATOR;
+        }
+        for (int i = 0; i < WHITESPACE.length(); i++) {
+            charClasses[WHITESPACE.charAt(i)] |= CLASS_WHITESPACE;
+        }
+    }
+
     /**
      * error reporting
      */
     public int line_num, token_line_num, char_num;
-    public StringBuffer line;
 
     /**
      * Holds new variables defined by .set directive
@@ -107,7 +129,6 @@ class Scanner {
         inputReader = i;
         line_num = 1;
         char_num = 0;
-        line = new StringBuffer();
         nextChar = 0;
         skipEmptyLines();
         if (nextChar == -1) throw new DasmError("empty source file");
@@ -117,21 +138,34 @@ class Scanner {
      * Checks if a character code is a whitespace character
      */
     protected static boolean isWhitespace(int c) {
-        return (WHITESPACE.indexOf(c) != -1);
+        return c >= 0 && c < 128 && (charClasses[c] & CLASS_WHITESPACE) != 0;
     }
 
     /**
      * Checks if a character code is a separator character
      */
     protected static boolean isSeparator(int c) {
-        return (c == -1 || SEPARATORS.indexOf(c) != -1);
+        return c == -1
+                || (c >= 0 && c < 128 && (charClasses[c] & CLASS_SEPARATOR) != 0);
     }
 
     /**
      * Gets next char from input
      */
     protected void readNextChar() throws IOException {
-        nextChar = inputReader.read();
+        if (inputPos < inputLen) {
+            nextChar = inputBuf[inputPos++];
+        } else {
+            inputLen = inputReader.read(inputBuf, 0, inputBuf.length);
+            if (inputLen > 0) {
+                inputPos = 1;
+                nextChar = inputBuf[0];
+            } else {
+                inputLen = 0;
+                inputPos = 0;
+                nextChar = -1;
+            }
+        }
         switch (nextChar) {
         case -1: // EOF
             if (char_num == 0) {
@@ -145,11 +179,8 @@ class Scanner {
             char_num = 0;
             break;
         default:
-            line.append((char) nextChar);
             char_num++;
-            return;
         }
-        line.setLength(0);
     }
 
     /**
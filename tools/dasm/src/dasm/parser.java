@@ -867,6 +867,16 @@ public class parser extends java_cup.runtime.lr_parser {
                 dAsm.report_error("Error: " + message); 
     }
 
+    /** the parse tables as dense arrays, expanded once for all files */
+    private static class tables {
+        static final compact_tables compact =
+                new compact_tables(_action_table, _reduce_table);
+    }
+
+    public compact_tables compact_tables() {
+        return tables.compact;
+    }
+
     parser(DAsm dAsm, Scanner scanner) {
         super();
 
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java_cup.runtime;
+
+/** The action and reduce-goto tables of a parser as dense arrays indexed by
+ *  state and symbol, so that each lookup is a single array access instead of
+ *  a search of the row of the state.  The rows of the generated tables are
+ *  expanded once, the result can be shared by all instances of the parser.
+ *
+ * @see java_cup.runtime.lr_parser#compact_tables
+ */
+
+public class compact_tables {
+
+  /** Number of columns of the action table, one per terminal. */
+  protected final int num_terms;
+
+  /** Number of columns of the reduce table, one per non terminal. */
+  protected final int num_non_terms;
+
+  /** Actions, indexed by state * num_terms + terminal. */
+  protected final short[] actions;
+
+  /** Default action of each state, for terminals beyond the table. */
+  protected final short[] action_defaults;
+
+  /** Goto states, indexed by state * num_non_terms + non terminal. */
+  protected final short[] reduces;
+
+  /** Expand the tables of a parser.
+   *
+   * @param action_table the parse action table of the parser.
+   * @param reduce_table the reduce-goto table of the parser.
+   */
+  public compact_tables(short[][] action_table, short[][] reduce_table)
+    {
+      num_terms = max_tag(action_table) + 1;
+      num_non_terms = max_tag(reduce_table) + 1;
+
+      actions = new short[action_table.length * num_terms];
+      action_defaults = new short[action_table.length];
+      for (int state = 0; state < action_table.length; state++)
+        action_defaults[state] =
+          expand(action_table[state], actions, state * num_terms, num_terms, (short)0);
+
+      reduces = new short[reduce_table.length * num_non_terms];
+      for (int state = 0; state < reduce_table.length; state++)
+        expand(reduce_table[state], reduces, state * num_non_terms, num_non_terms,
+          (short)-1);
+    }
+
+  /** The largest symbol index used in a table. */
+  private static int max_tag(short[][] table)
+    {
+      int max = -1;
+      for (int state = 0; state < table.length; state++)
+        {
+          short[] row = table[state];
+          if (row != null)
+            for (int probe = 0; probe < row.length; probe += 2)
+              if (row[probe] > max)
+                max = row[probe];
+        }
+      return max;
+    }
+
+  /** Expand a row of index, value pairs terminated by a default entry into
+   *  one entry per symbol.  The first entry for a symbol wins, as in the
+   *  linear search of lr_parser.
+   *
+   * @return the default entry of the row.
+   */
+  private static short expand(short[] row, short[] dest, int offset, int width,
+      short missing)
+    {
+      short def = missing;
+      int end = row == null ? 0 : row.length;
+      for (int probe = 0; probe < end; probe += 2)
+        if (row[probe] == -1)
+          {
+            def = row[probe+1];
+            end = probe;
+            break;
+          }
+
+      for (int i = 0; i < width; i++)
+        dest[offset + i] = def;
+      for (int probe = end - 2; probe >= 0; probe -= 2)
+        dest[offset + row[probe]] = row[probe+1];
+      return def;
+    }
+
+  /** Fetch an action, see lr_parser.get_action().
+   *
+   * @param state the state index of the action being accessed.
+   * @param sym   the symbol index of the action being accessed.
+   */
+  public final short get_action(int state, int sym)
+    {
+      if (sym < 0 || sym >= num_terms)
+        return action_defaults[state];
+      return actions[state * num_terms + sym];
+    }
+
+  /** Fetch a state from the reduce-goto table, see lr_parser.get_reduce().
+   *
+   * @param state the state index of the entry being accessed.
+   * @param sym   the symbol index of the entry being accessed.
+   */
+  public final short get_reduce(int state, int sym)
+    {
+      if (sym < 0 || sym >= num_non_terms)
+        return -1;
+      return reduces[state * num_non_terms + sym];
+    }
+}
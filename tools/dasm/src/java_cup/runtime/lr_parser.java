@@ -256,6 +256,22 @@ public abstract class lr_parser {
   /** Direct reference to the reduce-goto table. */
   protected short[][] reduce_tab;
 
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** Dense copy of the action and reduce tables, or null to search them. */
+  protected compact_tables compact_tab;
+
+  /*. . . . . . . . . . . . . . . . . . . . . . . . . . . . . .*/
+
+  /** The action and reduce tables as dense arrays.  Parsers that are run
+   *  many times should override this to return tables that are expanded once
+   *  and shared by all instances, the default is to search the table rows.
+   */
+  public compact_tables compact_tables()
+    {
+      return null;
+    }
+
   /*-----------------------------------------------------------*/
   /*--- General Methods ---------------------------------------*/
   /*-----------------------------------------------------------*/
@@ -388,7 +404,13 @@ public abstract class lr_parser {
     {
       short tag;
       int first, last, probe;
-      short[] row = action_tab[state];
+      short[] row;
+
+      /* use the dense table if there is one */
+      if (compact_tab != null)
+        return compact_tab.get_action(state, sym);
+
+      row = action_tab[state];
 
       /* linear search if we are < 10 entries */
       if (row.length < 20)
@@ -442,7 +464,13 @@ public abstract class lr_parser {
   protected final short get_reduce(int state, int sym)
     {
       short tag;
-      short[] row = reduce_tab[state];
+      short[] row;
+
+      /* use the dense table if there is one */
+      if (compact_tab != null)
+        return compact_tab.get_reduce(state, sym);
+
+      row = reduce_tab[state];
 
       /* if we have a null row we go with the default */
       if (row == null)
@@ -486,6 +514,7 @@ public abstract class lr_parser {
       production_tab = production_table();
       action_tab     = action_table();
       reduce_tab     = reduce_table();
+      compact_tab    = compact_tables();
 
       /* initialize the action encapsulation object */
       init_actions();
@@ -646,6 +675,7 @@ public abstract class lr_parser {
       production_tab = production_table();
       action_tab     = action_table();
       reduce_tab     = reduce_table();
+      compact_tab    = compact_tables();
 
       debug_message("# Initializing parser");
 
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dasm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import java_cup.runtime.token;
+
+/**
+ * Measures how the time to assemble a set of .d files splits between lexing,
+ * parsing and writing the dex files, e.g. over the vm-tests sources:
+ * <pre>
+ * javac -cp dx.jar:dasm.jar -d /tmp/dasm-benchmark cts/tools/dasm/test/src/dasm/Benchmark.java
+ * java -cp dx.jar:dasm.jar:/tmp/dasm-benchmark dasm.Benchmark -n 5 cts/tools/vm-tests-tf/src
+ * </pre>
+ * It is not part of dasm.jar.
+ * The sources are read into memory first, so disk access is not measured.
+ * Parsing includes lexing, and writing goes to a stream that discards the
+ * output.
+ */
+public class Benchmark {
+
+    private static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        int iterations = 3;
+        List<String> files = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-n") && i + 1 < args.length) {
+                iterations = Integer.parseInt(args[++i]);
+            } else {
+                Main.addFile(new File(args[i]), files);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("usage: dasm.Benchmark [-n <iterations>] <file>|<dir> ...");
+            System.exit(-1);
+        }
+
+        List<String> sources = new ArrayList<String>(files.size());
+        long bytes = 0;
+        for (String file : files) {
+            String source = read(file);
+            sources.add(source);
+            bytes += source.length();
+        }
+        System.out.println(files.size() + " files, " + bytes / 1024 + " KB");
+
+        // the first iteration warms up the JIT and is not reported
+        for (int i = 0; i <= iterations; i++) {
+            long lexStart = System.nanoTime();
+            int tokens = 0;
+            for (String source : sources) {
+                tokens += lex(source);
+            }
+            long parseStart = System.nanoTime();
+            List<DAsm> parsed = new ArrayList<DAsm>(sources.size());
+            for (int j = 0; j < sources.size(); j++) {
+                parsed.add(parse(files.get(j), sources.get(j)));
+            }
+            long writeStart = System.nanoTime();
+            for (DAsm dAsm : parsed) {
+                if (dAsm != null) {
+                    dAsm.write(NULL_OUTPUT, null);
+                }
+            }
+            long end = System.nanoTime();
+            if (i > 0) {
+                System.out.println("iteration " + i + ": lex " + millis(parseStart - lexStart)
+                        + " ms (" + tokens + " tokens), parse " + millis(writeStart - parseStart)
+                        + " ms, write " + millis(end - writeStart) + " ms");
+            }
+        }
+    }
+
+    private static int lex(String source) {
+        int count = 0;
+        try {
+            Scanner scanner = new Scanner(new StringReader(source));
+            for (;;) {
+                token tok = scanner.next_token();
+                count++;
+                if (tok.sym == sym.EOF) {
+                    return count;
+                }
+            }
+        } catch (Exception e) {
+            // reported by parse()
+            return count;
+        }
+    }
+
+    private static DAsm parse(String file, String source) {
+        DAsm dAsm = new DAsm();
+        try {
+            dAsm.readD(new StringReader(source), new File(file).getName(), false);
+        } catch (Exception e) {
+            System.err.println(e.getMessage() + " while parsing " + file);
+            return null;
+        }
+        if (dAsm.errorCount() > 0) {
+            System.err.println("Found " + dAsm.errorCount() + " errors while parsing " + file);
+            return null;
+        }
+        return dAsm;
+    }
+
+    private static String read(String file) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        Reader reader = new BufferedReader(new FileReader(file));
+        try {
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                builder.append(buffer, 0, count);
+            }
+        } finally {
+            reader.close();
+        }
+        return builder.toString();
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+}
@@ -16,37 +16,26 @@
 
 package dex.reader;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 
 public final class DexBuffer {
 
     private ByteBuffer b;
 
     public DexBuffer(String fileName) throws IOException {
-
-        // FIXME channel? allocate fix size?
-        FileInputStream fis = null;
+        // the file is mapped rather than copied onto the heap, the mapping
+        // stays valid after the channel is closed
+        FileInputStream fis = new FileInputStream(fileName);
         try {
-            fis = new FileInputStream(fileName);
-
-            BufferedInputStream bis = new BufferedInputStream(fis);
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            byte[] buf = new byte[1024];
-            int len;
-            while ((len = bis.read(buf)) > 0) {
-                bos.write(buf, 0, len);
-            }
-            byte[] bytes = bos.toByteArray();
-            initialize(ByteBuffer.wrap(bytes));
+            FileChannel channel = fis.getChannel();
+            initialize(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+                    .size()));
         } finally {
-            if (fis != null) {
-                fis.close();
-            }
+            fis.close();
         }
     }
 
@@ -22,6 +22,7 @@ import dex.reader.DexFileReader.MethodsIdItem;
 import dex.reader.DexFileReader.ProtIdItem;
 import dex.structure.DexClass;
 import dex.structure.DexFile;
+import dex.structure.DexMethodRef;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,7 +30,7 @@ import java.util.List;
 
 /* package */final class DexFileImpl implements DexFile {
 
-    private final String[] stringPool;
+    private final DexStringPool stringPool;
     private final int[] typeIds;
     private ProtIdItem[] protoIdItems;
     private FieldIdItem[] fieldIdItems;
@@ -38,9 +39,10 @@ import java.util.List;
     private final DexBuffer buffer;
 
     private List<DexClass> classes = null;
+    private List<DexMethodRef> methodRefs = null;
 
-    public DexFileImpl(DexBuffer buffer, String[] stringPool, int[] typeIds,
-            ProtIdItem[] protoIds, FieldIdItem[] fieldIdItems,
+    public DexFileImpl(DexBuffer buffer, DexStringPool stringPool,
+            int[] typeIds, ProtIdItem[] protoIds, FieldIdItem[] fieldIdItems,
             MethodsIdItem[] methodIdItems, ClassDefItem[] classDefItems) {
         this.buffer = buffer;
         this.stringPool = stringPool;
@@ -68,13 +70,26 @@ import java.util.List;
         return classes;
     }
 
+    public synchronized List<DexMethodRef> getMethodRefs() {
+        if (methodRefs == null) {
+            methodRefs = new ArrayList<DexMethodRef>(methodIdItems.length);
+            for (int i = 0; i < methodIdItems.length; i++) {
+                methodRefs.add(new DexMethodRefImpl(buffer.createCopy(),
+                        methodIdItems[i],
+                        protoIdItems[methodIdItems[i].proto_idx], stringPool,
+                        typeIds));
+            }
+        }
+        return methodRefs;
+    }
+
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
-        b.append("StringPool:\n").append(Arrays.toString(stringPool));
+        b.append("StringPool:\n").append(stringPool);
         b.append("\nTypes:\n");
         for (int i = 0; i < typeIds.length; i++) {
-            b.append(stringPool[typeIds[i]] + "\n");
+            b.append(stringPool.get(typeIds[i]) + "\n");
         }
         b.append("\nProtos:\n").append(Arrays.toString(protoIdItems));
         b.append("\nFields:\n").append(Arrays.toString(fieldIdItems));
@@ -57,7 +57,7 @@ public final class DexFileReader {
 
 
     //
-    private String[] stringPool;
+    private DexStringPool stringPool;
     private int[] typeIds; // values are index of stringPool
     private ProtIdItem[] protoIdItems;
     private FieldIdItem[] fieldIdItems;
@@ -154,15 +154,8 @@ public final class DexFileReader {
             stringDataOffsets[i] = b.readUInt();
         }
 
-        stringPool = new String[nStrings];
-        for (int i = 0; i < stringDataOffsets.length; i++) {
-            b.setPosition(stringDataOffsets[i]); // set buffer to offset
-            // Position
-            int lenght = b.readUleb128(); // read uleb128
-            byte[] values = new byte[lenght];
-            b.readBytes(values);
-            stringPool[i] = new String(values);
-        }
+        // strings are decoded on first use
+        stringPool = new DexStringPool(b.createCopy(), stringDataOffsets);
     }
 
     private void readTypeIds() {
@@ -38,7 +38,7 @@ import dex.structure.DexParameter;
 
     private DexBuffer buffer;
     private MethodsIdItem methodsIdItem;
-    private String[] stringPool;
+    private DexStringPool stringPool;
     private int[] typeIds;
     private ProtIdItem protoIdItem;
     private List<DexParameter> parameters;
@@ -54,7 +54,7 @@ import dex.structure.DexParameter;
     public DexMethodImpl(DexBuffer buffer, DexClass declaringClass,
             MethodsIdItem methodsIdItem, ProtIdItem protoIdItem,
             int accessFlags, MethodAnnotation methodAnnotation,
-            ParameterAnnotation parameterAnnotation, String[] stringPool,
+            ParameterAnnotation parameterAnnotation, DexStringPool stringPool,
             int[] typeIds, FieldIdItem[] fieldIdItems) {
         this.buffer = buffer;
         this.declaringClass = declaringClass;
@@ -66,11 +66,12 @@ import dex.structure.DexParameter;
         this.stringPool = stringPool;
         this.typeIds = typeIds;
         this.fieldIdItems = fieldIdItems;
-        parseAnnotations();
-        parseParameterAnnotations();
     }
 
     private void parseParameterAnnotations() {
+        if (parameterIdToIndex != null) {
+            return;
+        }
         parameterIdToIndex = new HashMap<Integer, Integer>();
         if (parameterAnnotation != null) {
             buffer.setPosition(parameterAnnotation.annotationsOff);
@@ -82,6 +83,9 @@ import dex.structure.DexParameter;
     }
 
     private void parseAnnotations() {
+        if (annotations != null) {
+            return;
+        }
         annotations = new HashSet<DexAnnotation>();
         if (methodAnnotation != null) {
             buffer.setPosition(methodAnnotation.annotationsOff);
@@ -94,15 +98,16 @@ import dex.structure.DexParameter;
     }
 
     public String getName() {
-        return stringPool[methodsIdItem.name_idx];
+        return stringPool.get(methodsIdItem.name_idx);
     }
 
     public String getReturnType() {
-        return stringPool[typeIds[protoIdItem.return_type_idx]];
+        return stringPool.get(typeIds[protoIdItem.return_type_idx]);
     }
 
     public synchronized List<DexParameter> getParameters() {
         if (parameters == null) {
+            parseParameterAnnotations();
             parameters = new LinkedList<DexParameter>();
             if (protoIdItem.parameter_off != 0) {
 
@@ -115,7 +120,7 @@ import dex.structure.DexParameter;
                 }
                 for (int i = 0; i < paramTypeIdx.length; i++) {
                     parameters.add(new DexParameterImpl(buffer.createCopy(),
-                            stringPool[typeIds[paramTypeIdx[i]]],
+                            stringPool.get(typeIds[paramTypeIdx[i]]),
                             parameterIdToIndex.get(i), typeIds, stringPool,
                             fieldIdItems));
                 }
@@ -128,7 +133,8 @@ import dex.structure.DexParameter;
         return accessFlags;
     }
 
-    public Set<DexAnnotation> getAnnotations() {
+    public synchronized Set<DexAnnotation> getAnnotations() {
+        parseAnnotations();
         return annotations;
     }
 
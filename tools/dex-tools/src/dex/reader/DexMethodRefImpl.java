@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2009 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dex.reader;
+
+import dex.reader.DexFileReader.MethodsIdItem;
+import dex.reader.DexFileReader.ProtIdItem;
+import dex.structure.DexMethodRef;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/* package */final class DexMethodRefImpl implements DexMethodRef {
+
+    private final DexBuffer buffer;
+    private final MethodsIdItem methodsIdItem;
+    private final ProtIdItem protoIdItem;
+    private final DexStringPool stringPool;
+    private final int[] typeIds;
+    private List<String> parameterTypes;
+
+    public DexMethodRefImpl(DexBuffer buffer, MethodsIdItem methodsIdItem,
+            ProtIdItem protoIdItem, DexStringPool stringPool, int[] typeIds) {
+        this.buffer = buffer;
+        this.methodsIdItem = methodsIdItem;
+        this.protoIdItem = protoIdItem;
+        this.stringPool = stringPool;
+        this.typeIds = typeIds;
+    }
+
+    public String getName() {
+        return stringPool.get(methodsIdItem.name_idx);
+    }
+
+    public String getDeclaringClass() {
+        return stringPool.get(typeIds[methodsIdItem.class_idx]);
+    }
+
+    public String getReturnType() {
+        return stringPool.get(typeIds[protoIdItem.return_type_idx]);
+    }
+
+    public synchronized List<String> getParameterTypes() {
+        if (parameterTypes == null) {
+            if (protoIdItem.parameter_off == 0) {
+                parameterTypes = Collections.emptyList();
+            } else {
+                buffer.setPosition(protoIdItem.parameter_off);
+                int size = buffer.readUInt();
+                List<String> types = new ArrayList<String>(size);
+                for (int i = 0; i < size; i++) {
+                    types.add(stringPool.get(typeIds[buffer.readUShort()]));
+                }
+                parameterTypes = Collections.unmodifiableList(types);
+            }
+        }
+        return parameterTypes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(getDeclaringClass()).append("->").append(getName());
+        builder.append("(");
+        for (String parameterType : getParameterTypes()) {
+            builder.append(parameterType);
+        }
+        builder.append(")").append(getReturnType());
+        return builder.toString();
+    }
+}
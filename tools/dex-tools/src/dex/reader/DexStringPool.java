@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2009 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dex.reader;
+
+import java.util.Arrays;
+
+/**
+ * The string pool of a dex file. Strings are decoded from their MUTF-8
+ * string data items when they are first requested.
+ */
+/* package */final class DexStringPool {
+
+    private final DexBuffer buffer;
+    private final int[] stringDataOffsets;
+    private final String[] strings;
+
+    /**
+     * @param buffer
+     *            a buffer of the dex file, used exclusively by this pool
+     * @param stringDataOffsets
+     *            the offsets of the string data items
+     */
+    public DexStringPool(DexBuffer buffer, int[] stringDataOffsets) {
+        this.buffer = buffer;
+        this.stringDataOffsets = stringDataOffsets;
+        this.strings = new String[stringDataOffsets.length];
+    }
+
+    public synchronized String get(int index) {
+        String value = strings[index];
+        if (value == null) {
+            value = decode(stringDataOffsets[index]);
+            strings[index] = value;
+        }
+        return value;
+    }
+
+    public int size() {
+        return strings.length;
+    }
+
+    /**
+     * Decodes a string data item: the length in UTF-16 code units as uleb128
+     * followed by the MUTF-8 encoded, zero terminated characters.
+     */
+    private String decode(int offset) {
+        buffer.setPosition(offset);
+        char[] chars = new char[buffer.readUleb128()];
+        for (int i = 0; i < chars.length; i++) {
+            int a = buffer.readUByte() & 0xFF;
+            if (a < 0x80) {
+                chars[i] = (char) a;
+            } else if ((a & 0xE0) == 0xC0) {
+                int b = buffer.readUByte() & 0xFF;
+                chars[i] = (char) (((a & 0x1F) << 6) | (b & 0x3F));
+            } else if ((a & 0xF0) == 0xE0) {
+                int b = buffer.readUByte() & 0xFF;
+                int c = buffer.readUByte() & 0xFF;
+                chars[i] = (char) (((a & 0x0F) << 12) | ((b & 0x3F) << 6)
+                        | (c & 0x3F));
+            } else {
+                throw new IllegalStateException("Invalid MUTF-8 byte 0x"
+                        + Integer.toHexString(a) + " in string at offset "
+                        + offset);
+            }
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        String[] all = new String[size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = get(i);
+        }
+        return Arrays.toString(all);
+    }
+}
@@ -33,4 +33,14 @@ public interface DexFile extends NamedElement {
      */
     public List<DexClass> getDefinedClasses();
 
+    /**
+     * Returns a list of {@code DexMethodRef} elements for all methods
+     * referenced by this {@code DexFile}, including the methods of classes
+     * that are not defined in it.
+     * 
+     * @return a list of {@code DexMethodRef} elements for all methods
+     *         referenced by this {@code DexFile}
+     */
+    public List<DexMethodRef> getMethodRefs();
+
 }
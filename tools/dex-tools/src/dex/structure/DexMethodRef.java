@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2009 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dex.structure;
+
+import java.util.List;
+
+/**
+ * {@code DexMethodRef} represents a method referenced from a dex file, the
+ * method may be declared in a class that is not part of the dex file.
+ */
+public interface DexMethodRef extends NamedElement {
+
+    /**
+     * Returns the type descriptor of the class declaring this method.
+     * 
+     * @return the type descriptor of the class declaring this method
+     */
+    String getDeclaringClass();
+
+    /**
+     * Returns the type descriptors of the parameters of this method.
+     * 
+     * @return the type descriptors of the parameters of this method
+     */
+    List<String> getParameterTypes();
+
+    /**
+     * Returns the type descriptor of the return type of this method.
+     * 
+     * @return the type descriptor of the return type of this method
+     */
+    String getReturnType();
+}
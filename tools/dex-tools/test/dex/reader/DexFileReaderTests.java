@@ -38,6 +38,7 @@ import dex.structure.DexEncodedValue;
 import dex.structure.DexField;
 import dex.structure.DexFile;
 import dex.structure.DexMethod;
+import dex.structure.DexMethodRef;
 import dex.structure.DexParameter;
 
 
@@ -106,6 +107,34 @@ public class DexFileReaderTests extends DexTestsCommon {
         assertPrivate(method);
     }
     
+    JavaSource TRefs = new JavaSource("TRefs",
+            "public class TRefs {" + 
+            "    public boolean addTo(java.util.List<Object> list){" + 
+            "        return list.add(new Object());" + 
+            "    }" + 
+            "}"
+    );
+
+    /**
+     * Tests that methods of classes that are not defined in the dex file are
+     * referenced.
+     */
+    @Test
+    public void testMethodRefs() throws IOException {
+        DexFile dexFile = javaToDexUtil.getFrom(TRefs);
+        DexMethodRef add = null;
+        for (DexMethodRef methodRef : dexFile.getMethodRefs()) {
+            if ("Ljava/util/List;".equals(methodRef.getDeclaringClass())
+                    && "add".equals(methodRef.getName())) {
+                add = methodRef;
+            }
+        }
+        assertNotNull(add);
+        assertEquals(Arrays.asList("Ljava/lang/Object;"), add
+                .getParameterTypes());
+        assertEquals("Z", add.getReturnType());
+    }
+
     JavaSource T1 = new JavaSource( "T1","public class T1 extends T0 {}" );
 
     
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2009 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dex.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class DexStringPoolTest {
+
+    /**
+     * Creates a string pool with one string data item per entry of
+     * {@code items}, each given as uleb128 length followed by the MUTF-8
+     * bytes.
+     */
+    private static DexStringPool createPool(int[]... items) {
+        int size = 0;
+        for (int[] item : items) {
+            size += item.length + 1;
+        }
+        byte[] bytes = new byte[size];
+        int[] offsets = new int[items.length];
+        int offset = 0;
+        for (int i = 0; i < items.length; i++) {
+            offsets[i] = offset;
+            for (int b : items[i]) {
+                bytes[offset++] = (byte) b;
+            }
+            bytes[offset++] = 0;
+        }
+        return new DexStringPool(new DexBuffer(bytes), offsets);
+    }
+
+    @Test
+    public void testAscii() {
+        DexStringPool pool = createPool(new int[] {3, 'a', 'b', 'c'},
+                new int[] {0});
+        assertEquals(2, pool.size());
+        assertEquals("abc", pool.get(0));
+        assertEquals("", pool.get(1));
+    }
+
+    @Test
+    public void testMutf8() {
+        DexStringPool pool = createPool(
+                // U+00E4 and the MUTF-8 encoding of U+0000
+                new int[] {2, 0xC3, 0xA4, 0xC0, 0x80},
+                // U+20AC
+                new int[] {1, 0xE2, 0x82, 0xAC},
+                // U+1F600 as surrogate pair
+                new int[] {2, 0xED, 0xA0, 0xBD, 0xED, 0xB8, 0x80});
+        assertEquals("\u00e4\u0000", pool.get(0));
+        assertEquals("\u20ac", pool.get(1));
+        assertEquals("\ud83d\ude00", pool.get(2));
+    }
+
+    @Test
+    public void testDecodedOnce() {
+        DexStringPool pool = createPool(new int[] {1, 'a'});
+        assertEquals("a", pool.get(0));
+        assertSame(pool.get(0), pool.get(0));
+    }
+}
@@ -61,7 +61,6 @@ import signature.compare.model.impl.SigUpperBoundsDelta;
 import signature.compare.model.impl.SigValueDelta;
 import signature.compare.model.impl.SigWildcardTypeDelta;
 import signature.compare.model.subst.ClassProjection;
-import signature.compare.model.subst.ViewpointAdapter;
 import signature.model.IAnnotation;
 import signature.model.IAnnotationElement;
 import signature.model.IAnnotationField;
@@ -91,10 +90,18 @@ import signature.model.impl.SigArrayType;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * {@code ApiComparator} takes two signature models as input and creates a delta
@@ -102,12 +109,98 @@ import java.util.Set;
  */
 public class ApiComparator implements IApiComparator {
 
+    private final int threads;
+
+    /*
+     * Whether elements are only matched against elements with the same key.
+     * Without keys, every element is matched against all elements of the
+     * other set, which is only kept for benchmarks and checks of the keys.
+     */
+    private final boolean keyedMatching;
+
+    /** The key of all elements if matching is not keyed. */
+    private static final Object NO_KEY = new Object();
+
+    /*
+     * Type hierarchy caches, valid for the duration of one comparison. Class
+     * definitions are equal by name, so the caches are keyed by identity to
+     * keep the hierarchies of the two compared APIs apart.
+     */
+    private Map<IClassDefinition, Set<IClassDefinition>> superClasses =
+            new IdentityHashMap<IClassDefinition, Set<IClassDefinition>>();
+    private Map<IClassDefinition, Set<IClassDefinition>> superInterfaces =
+            new IdentityHashMap<IClassDefinition, Set<IClassDefinition>>();
+    private Map<IClassDefinition, Set<ITypeReference>> interfaceClosures =
+            new IdentityHashMap<IClassDefinition, Set<ITypeReference>>();
+    private Map<IClassDefinition, Map<Object, List<IMethod>>> methodClosures =
+            new IdentityHashMap<IClassDefinition, Map<Object, List<IMethod>>>();
+
+    /**
+     * Creates a comparator which compares the APIs on the calling thread.
+     */
+    public ApiComparator() {
+        this(1);
+    }
+
+    /**
+     * Creates a comparator which compares the packages of the APIs on the
+     * given number of threads. The resulting delta model is the same as the
+     * one of a comparison on a single thread.
+     * 
+     * @param threads
+     *            the number of threads to compare packages on
+     */
+    public ApiComparator(int threads) {
+        this(threads, true);
+    }
+
+    /**
+     * Creates a comparator which optionally matches every element against
+     * all elements of the other set, instead of only against the ones with
+     * the same key. The resulting delta model is the same either way.
+     * <p>
+     * Exposed for benchmarks.
+     * 
+     * @param threads
+     *            the number of threads to compare packages on
+     * @param keyedMatching
+     *            whether to match elements by key
+     */
+    ApiComparator(int threads, boolean keyedMatching) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + threads);
+        }
+        this.threads = threads;
+        this.keyedMatching = keyedMatching;
+    }
+
     public IApiDelta compare(IApi from, IApi to) {
         assert from.getVisibility() == to.getVisibility();
+        try {
+            return compareApi(from, to);
+        } finally {
+            clearHierarchyCaches();
+        }
+    }
+
+    private void clearHierarchyCaches() {
+        superClasses.clear();
+        superInterfaces.clear();
+        interfaceClosures.clear();
+        methodClosures.clear();
+    }
+
+    private IApiDelta compareApi(IApi from, IApi to) {
 
         Set<IPackage> fromPackages = from.getPackages();
         Set<IPackage> toPackages = to.getPackages();
 
+        if (threads > 1) {
+            return createApiDelta(from, to, comparePackagesInParallel(
+                    fromPackages, toPackages));
+        }
+
         Set<IPackageDelta> packageDeltas = compareSets(fromPackages,
                 toPackages, new SigComparator<IPackage, IPackageDelta>() {
                     public IPackageDelta createChangedDelta(IPackage from,
@@ -120,12 +213,20 @@ public class ApiComparator implements IApiComparator {
                         return new SigPackageDelta(from, to);
                     }
 
+                    public Object getKey(IPackage element) {
+                        return element.getName();
+                    }
+
                     public boolean considerEqualElement(IPackage from,
                             IPackage to) {
                         return from.getName().equals(to.getName());
                     }
                 });
+        return createApiDelta(from, to, packageDeltas);
+    }
 
+    private IApiDelta createApiDelta(IApi from, IApi to,
+            Set<IPackageDelta> packageDeltas) {
         SigApiDelta delta = null;
         if (packageDeltas != null) {
             delta = new SigApiDelta(from, to);
@@ -134,6 +235,78 @@ public class ApiComparator implements IApiComparator {
         return delta;
     }
 
+    /**
+     * Compares the packages with the same name on a pool of {@link #threads}
+     * threads. The comparison state and the type hierarchy caches are not
+     * thread safe, so every thread compares with its own comparator.
+     */
+    private Set<IPackageDelta> comparePackagesInParallel(Set<IPackage> from,
+            Set<IPackage> to) {
+        Map<String, IPackage> toPackages = new HashMap<String, IPackage>();
+        for (IPackage toPackage : to) {
+            toPackages.put(toPackage.getName(), toPackage);
+        }
+
+        final ThreadLocal<ApiComparator> comparators =
+                new ThreadLocal<ApiComparator>() {
+                    @Override
+                    protected ApiComparator initialValue() {
+                        return new ApiComparator(1, keyedMatching);
+                    }
+                };
+        Set<IPackageDelta> deltas = new HashSet<IPackageDelta>();
+        List<Future<IPackageDelta>> changedDeltas =
+                new LinkedList<Future<IPackageDelta>>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (final IPackage fromPackage : from) {
+                final IPackage toPackage = toPackages.remove(fromPackage
+                        .getName());
+                if (toPackage == null) {
+                    deltas.add(new SigPackageDelta(fromPackage, null));
+                } else {
+                    changedDeltas.add(executor
+                            .submit(new Callable<IPackageDelta>() {
+                                public IPackageDelta call() {
+                                    return comparators.get().comparePackage(
+                                            fromPackage, toPackage);
+                                }
+                            }));
+                }
+            }
+            for (IPackage toPackage : toPackages.values()) {
+                deltas.add(new SigPackageDelta(null, toPackage));
+            }
+            for (Future<IPackageDelta> changedDelta : changedDeltas) {
+                IPackageDelta delta = getResult(changedDelta);
+                if (delta != null) {
+                    deltas.add(delta);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return deltas.isEmpty() ? null : DeltaComparator.sort(deltas);
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while comparing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
     private IPackageDelta comparePackage(IPackage from, IPackage to) {
         assert from.getName().equals(to.getName());
 
@@ -143,6 +316,10 @@ public class ApiComparator implements IApiComparator {
         Set<IClassDefinitionDelta> classDeltas = compareSets(fromClasses,
                 toClasses,
                 new SigComparator<IClassDefinition, IClassDefinitionDelta>() {
+                    public Object getKey(IClassDefinition element) {
+                        return getClassKey(element);
+                    }
+
                     public boolean considerEqualElement(IClassDefinition from,
                             IClassDefinition to) {
                         return sameClassDefinition(from, to);
@@ -324,7 +501,7 @@ public class ApiComparator implements IApiComparator {
                 }
             }
         }
-        return deltas.isEmpty() ? null : deltas;
+        return deltas.isEmpty() ? null : DeltaComparator.sort(deltas);
     }
 
 
@@ -338,42 +515,33 @@ public class ApiComparator implements IApiComparator {
         return false;
     }
 
-    private Set<ITypeReference> getInterfaceClosure(IClassDefinition clazz) {
-        Set<ITypeReference> closure = new HashSet<ITypeReference>();
-        collectInterfaceClosure(ViewpointAdapter.getReferenceTo(clazz),
-                closure);
-        return closure;
-    }
-
-    private void collectInterfaceClosure(ITypeReference clazz,
-            Set<ITypeReference> closure) {
-
-        IClassDefinition classDefinition = getClassDefinition(clazz);
-        Set<ITypeReference> interfaces = classDefinition.getInterfaces();
-        if (interfaces == null) {
-            return;
-        }
-        for (ITypeReference interfaze : interfaces) {
-            closure.add(interfaze);
+    /**
+     * Returns the interfaces directly or indirectly implemented by the given
+     * class. The closure of each class is only collected once per comparison.
+     */
+    private Set<ITypeReference> getInterfaceClosure(
+            IClassDefinition classDefinition) {
+        Set<ITypeReference> closure = interfaceClosures.get(classDefinition);
+        if (closure != null) {
+            return closure;
         }
+        closure = new HashSet<ITypeReference>();
+        Set<ITypeReference> interfaces = classDefinition.getInterfaces();
+        if (interfaces != null) {
+            closure.addAll(interfaces);
 
-        ITypeReference superclass = classDefinition.getSuperClass();
-        if (superclass != null) {
-            if (superclass instanceof IParameterizedType) {
-                collectInterfaceClosure(((IParameterizedType) superclass)
-                        .getRawType(), closure);
-            } else {
-                collectInterfaceClosure(superclass, closure);
+            ITypeReference superclass = classDefinition.getSuperClass();
+            if (superclass != null) {
+                closure.addAll(getInterfaceClosure(
+                        getClassDefinition(superclass)));
             }
-        }
-        for (ITypeReference interfaze : interfaces) {
-            if (interfaze instanceof IParameterizedType) {
-                collectInterfaceClosure(((IParameterizedType) interfaze)
-                        .getRawType(), closure);
-            } else {
-                collectInterfaceClosure(interfaze, closure);
+            for (ITypeReference interfaze : interfaces) {
+                closure.addAll(getInterfaceClosure(
+                        getClassDefinition(interfaze)));
             }
         }
+        interfaceClosures.put(classDefinition, closure);
+        return closure;
     }
 
     private Set<IAnnotationDelta> compareAnnotations(Set<IAnnotation> from,
@@ -385,6 +553,11 @@ public class ApiComparator implements IApiComparator {
                         return new SigAnnotationDelta(from, to);
                     }
 
+                    public Object getKey(IAnnotation element) {
+                        return getClassKey(element.getType()
+                                .getClassDefinition());
+                    }
+
                     public boolean considerEqualElement(IAnnotation from,
                             IAnnotation to) {
                         return sameClassDefinition(from.getType()
@@ -403,6 +576,10 @@ public class ApiComparator implements IApiComparator {
             Set<IAnnotationField> from, Set<IAnnotationField> to) {
         return compareSets(from, to,
                 new SigComparator<IAnnotationField, IAnnotationFieldDelta>() {
+                    public Object getKey(IAnnotationField element) {
+                        return element.getName();
+                    }
+
                     public boolean considerEqualElement(IAnnotationField from,
                             IAnnotationField to) {
                         return from.getName().equals(to.getName());
@@ -424,6 +601,10 @@ public class ApiComparator implements IApiComparator {
             Set<IEnumConstant> from, Set<IEnumConstant> to) {
         return compareSets(from, to,
                 new SigComparator<IEnumConstant, IEnumConstantDelta>() {
+                    public Object getKey(IEnumConstant element) {
+                        return element.getName();
+                    }
+
                     public boolean considerEqualElement(IEnumConstant from,
                             IEnumConstant to) {
                         return from.getName().equals(to.getName());
@@ -443,6 +624,10 @@ public class ApiComparator implements IApiComparator {
 
     private Set<IFieldDelta> compareFields(Set<IField> from, Set<IField> to) {
         return compareSets(from, to, new SigComparator<IField, IFieldDelta>() {
+            public Object getKey(IField element) {
+                return element.getName();
+            }
+
             public boolean considerEqualElement(IField from, IField to) {
                 return from.getName().equals(to.getName());
             }
@@ -463,14 +648,17 @@ public class ApiComparator implements IApiComparator {
         assert to != null;
 
         Set<IMethod> toMethods = new HashSet<IMethod>(to.getMethods());
-        Set<IMethod> toClosure = getMethodClosure(to);
+        Map<Object, List<IMethod>> toMethodIndex = indexMethods(toMethods);
+        Map<Object, List<IMethod>> toClosure = getMethodClosure(to);
         Set<IMethod> fromMethods = new HashSet<IMethod>(from.getMethods());
-        Set<IMethod> fromClosure = getMethodClosure(from);
+        Map<Object, List<IMethod>> fromMethodIndex = indexMethods(fromMethods);
+        Map<Object, List<IMethod>> fromClosure = getMethodClosure(from);
 
         Set<IMethodDelta> deltas = new HashSet<IMethodDelta>();
 
         for (IMethod method : fromMethods) {
-            IMethod compatibleMethod = findCompatibleMethod(method, toMethods);
+            IMethod compatibleMethod = findCompatibleMethod(method,
+                    toMethodIndex);
             if (compatibleMethod == null) {
                 compatibleMethod = findCompatibleMethod(method, toClosure);
                 if (compatibleMethod == null) {
@@ -487,7 +675,8 @@ public class ApiComparator implements IApiComparator {
         }
 
         for (IMethod method : toMethods) {
-            IMethod compatibleMethod = findCompatibleMethod(method, fromMethods);
+            IMethod compatibleMethod = findCompatibleMethod(method,
+                    fromMethodIndex);
             if (compatibleMethod == null) {
                 compatibleMethod = findCompatibleMethod(method, fromClosure);
                 if (compatibleMethod == null) {
@@ -495,24 +684,60 @@ public class ApiComparator implements IApiComparator {
                 }
             }
         }
-        return deltas.isEmpty() ? null : deltas;
+        return deltas.isEmpty() ? null : DeltaComparator.sort(deltas);
     }
 
-    private IMethod findCompatibleMethod(IMethod method, Set<IMethod> set) {
-        for (IMethod methodFromSet : set) {
-            if (equalsSignature(method, methodFromSet)) {
-                return methodFromSet;
+    private IMethod findCompatibleMethod(IMethod method,
+            Map<Object, List<IMethod>> index) {
+        List<IMethod> candidates = index.get(getMatchKey(method));
+        if (candidates != null) {
+            for (IMethod candidate : candidates) {
+                if (equalsSignature(method, candidate)) {
+                    return candidate;
+                }
             }
         }
         return null;
     }
 
+    /**
+     * Indexes the given methods by {@link #getSignatureKey}.
+     */
+    private Map<Object, List<IMethod>> indexMethods(Set<IMethod> methods) {
+        Map<Object, List<IMethod>> index =
+                new HashMap<Object, List<IMethod>>();
+        for (IMethod method : methods) {
+            addToIndex(index, getMatchKey(method), method);
+        }
+        return index;
+    }
+
+    private static <T> void addToIndex(Map<Object, List<T>> index, Object key,
+            T element) {
+        List<T> elements = index.get(key);
+        if (elements == null) {
+            elements = new LinkedList<T>();
+            index.put(key, elements);
+        }
+        elements.add(element);
+    }
+
 
-    private Set<IMethod> getMethodClosure(IClassDefinition clazz) {
-        Set<IMethod> closure = new HashSet<IMethod>();
-        collectMethods(new ClassProjection(clazz,
-                new HashMap<ITypeVariableDefinition, ITypeReference>()),
-                closure);
+    /**
+     * Returns the methods of the given class and its super types, indexed by
+     * {@link #getSignatureKey}.
+     */
+    private Map<Object, List<IMethod>> getMethodClosure(
+            IClassDefinition clazz) {
+        Map<Object, List<IMethod>> closure = methodClosures.get(clazz);
+        if (closure == null) {
+            Set<IMethod> methods = new HashSet<IMethod>();
+            collectMethods(new ClassProjection(clazz,
+                    new HashMap<ITypeVariableDefinition, ITypeReference>()),
+                    methods);
+            closure = indexMethods(methods);
+            methodClosures.put(clazz, closure);
+        }
         return closure;
     }
 
@@ -537,6 +762,10 @@ public class ApiComparator implements IApiComparator {
             Set<IConstructor> to) {
         return compareSets(from, to,
                 new SigComparator<IConstructor, IConstructorDelta>() {
+                    public Object getKey(IConstructor element) {
+                        return getSignatureKey(element);
+                    }
+
                     public boolean considerEqualElement(IConstructor from,
                             IConstructor to) {
                         return equalsSignature(from, to);
@@ -572,6 +801,71 @@ public class ApiComparator implements IApiComparator {
         return parameterTypes;
     }
 
+    /**
+     * Returns a key for the signature of the given member. Members with equal
+     * signatures according to {@link #equalsSignature} have equal keys.
+     * <p>
+     * Since erased parameter types are accepted as equal to generic ones, the
+     * key only distinguishes primitive types, array types and all other
+     * types.
+     */
+    private Object getMatchKey(IExecutableMember member) {
+        return keyedMatching ? getSignatureKey(member) : NO_KEY;
+    }
+
+    private Object getMatchKey(Object key) {
+        return keyedMatching ? key : NO_KEY;
+    }
+
+    private Object getSignatureKey(IExecutableMember member) {
+        StringBuilder key = new StringBuilder(member.getName());
+        key.append('(');
+        for (IParameter parameter : member.getParameters()) {
+            ITypeReference type = parameter.getType();
+            if (type instanceof IPrimitiveType) {
+                key.append(((IPrimitiveType) type).getName());
+            } else if (type instanceof IArrayType) {
+                key.append("[]");
+            } else {
+                key.append('L');
+            }
+            key.append(';');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns a key for the given class definition. Class definitions which
+     * are the same according to {@link #sameClassDefinition} have equal keys.
+     */
+    private Object getClassKey(IClassDefinition clazz) {
+        return clazz.getPackageName() + "." + clazz.getName();
+    }
+
+    /**
+     * Returns a key for the given type. Types which are equal according to
+     * {@link #considerEqualTypes} have equal keys.
+     */
+    private Object getTypeKey(ITypeReference type) {
+        if (type instanceof IPrimitiveType) {
+            return ((IPrimitiveType) type).getName();
+        }
+        if (type instanceof IClassReference) {
+            return getClassKey(((IClassReference) type).getClassDefinition());
+        }
+        if (type instanceof IArrayType) {
+            return Arrays.asList("[]",
+                    getTypeKey(((IArrayType) type).getComponentType()));
+        }
+        if (type instanceof IParameterizedType) {
+            return getClassKey(((IParameterizedType) type).getRawType()
+                    .getClassDefinition());
+        }
+        // type variables are compared by their declaration site, wildcards
+        // are never considered equal
+        return type.getClass();
+    }
+
     private IAnnotationDelta compareAnnotation(IAnnotation from,
             IAnnotation to) {
         assert sameClassDefinition(from.getType().getClassDefinition(), to
@@ -629,6 +923,10 @@ public class ApiComparator implements IApiComparator {
             Set<IAnnotationElement> from, Set<IAnnotationElement> to) {
         return compareSets(from, to,
                 new SigComparator<IAnnotationElement, IAnnotationElementDelta>() {
+                    public Object getKey(IAnnotationElement element) {
+                        return element.getDeclaringField().getName();
+                    }
+
                     public boolean considerEqualElement(
                             IAnnotationElement from, IAnnotationElement to) {
                         return from.getDeclaringField().getName().equals(
@@ -773,17 +1071,28 @@ public class ApiComparator implements IApiComparator {
         if (superC == null || subC == null) {
             return false;
         }
+        return getSuperClasses(subC).contains(superC);
+    }
 
-        if (subC.getSuperClass() == null) {
-            return false;
-        } else {
-            if (getClassDefinition(subC.getSuperClass()).equals(superC)) {
-                return true;
-            } else {
-                return isSuperClass(superC, getClassDefinition(subC
-                        .getSuperClass()));
+    /**
+     * Returns the super classes of the given class, collected once per
+     * comparison.
+     */
+    private Set<IClassDefinition> getSuperClasses(IClassDefinition clazz) {
+        Set<IClassDefinition> result = superClasses.get(clazz);
+        if (result == null) {
+            result = new HashSet<IClassDefinition>();
+            if (clazz.getSuperClass() != null) {
+                IClassDefinition superClass = getClassDefinition(clazz
+                        .getSuperClass());
+                if (superClass != null) {
+                    result.add(superClass);
+                    result.addAll(getSuperClasses(superClass));
+                }
             }
+            superClasses.put(clazz, result);
         }
+        return result;
     }
 
     private boolean isSuperInterface(IClassDefinition superClass,
@@ -791,32 +1100,31 @@ public class ApiComparator implements IApiComparator {
         if (superClass == null || subClass == null) {
             return false;
         }
+        return getSuperInterfaces(subClass).contains(superClass);
+    }
 
-        if (subClass.getInterfaces() == null) {
-            return false;
-        } else {
-            if (getClassDefinitions(subClass.getInterfaces()).contains(
-                    superClass)) {
-                return true;
-            } else {
-                for (ITypeReference subType : subClass.getInterfaces()) {
-                    if (isSuperInterface(superClass,
-                            getClassDefinition(subType))) {
-                        return true;
+    /**
+     * Returns the interfaces directly or indirectly extended by the given
+     * class or interface, not taking its super classes into account.
+     * Collected once per comparison.
+     */
+    private Set<IClassDefinition> getSuperInterfaces(IClassDefinition clazz) {
+        Set<IClassDefinition> result = superInterfaces.get(clazz);
+        if (result == null) {
+            result = new HashSet<IClassDefinition>();
+            if (clazz.getInterfaces() != null) {
+                for (ITypeReference interfaze : clazz.getInterfaces()) {
+                    IClassDefinition definition =
+                            getClassDefinition(interfaze);
+                    result.add(definition);
+                    if (definition != null) {
+                        result.addAll(getSuperInterfaces(definition));
                     }
                 }
-                return false;
             }
+            superInterfaces.put(clazz, result);
         }
-    }
-
-    private Set<IClassDefinition> getClassDefinitions(
-            Set<ITypeReference> references) {
-        Set<IClassDefinition> definitions = new HashSet<IClassDefinition>();
-        for (ITypeReference ref : references) {
-            definitions.add(getClassDefinition(ref));
-        }
-        return definitions;
+        return result;
     }
 
     /**
@@ -845,10 +1153,11 @@ public class ApiComparator implements IApiComparator {
         if (clazz != null) {
             if (isRuntimeExceptionOrError(clazz)) {
                 return true;
-            } else if (clazz.getSuperClass() != null) {
-                return isRuntimeExceptionOrErrorSubtype(clazz.getSuperClass());
-            } else {
-                return false;
+            }
+            for (IClassDefinition superClass : getSuperClasses(clazz)) {
+                if (isRuntimeExceptionOrError(superClass)) {
+                    return true;
+                }
             }
         }
         return false;
@@ -922,7 +1231,7 @@ public class ApiComparator implements IApiComparator {
     private Set<IParameterDelta> compareParameterSequence(
             List<IParameter> from, List<IParameter> to) {
         assert from.size() == to.size();
-        Set<IParameterDelta> deltas = new HashSet<IParameterDelta>();
+        Set<IParameterDelta> deltas = new LinkedHashSet<IParameterDelta>();
         Iterator<IParameter> fromIterator = from.iterator();
         Iterator<IParameter> toIterator = to.iterator();
         while (fromIterator.hasNext() && toIterator.hasNext()) {
@@ -961,7 +1270,7 @@ public class ApiComparator implements IApiComparator {
             List<ITypeVariableDefinition> from,
             List<ITypeVariableDefinition> to) {
         Set<ITypeVariableDefinitionDelta> deltas =
-                new HashSet<ITypeVariableDefinitionDelta>();
+                new LinkedHashSet<ITypeVariableDefinitionDelta>();
         if (from.size() != to.size()) {
             for (ITypeVariableDefinition fromVariable : from) {
                 deltas.add(new SigTypeVariableDefinitionDelta(fromVariable,
@@ -1027,6 +1336,10 @@ public class ApiComparator implements IApiComparator {
             Set<Modifier> to) {
         return compareSets(from, to,
                 new SigComparator<Modifier, IModifierDelta>() {
+                    public Object getKey(Modifier element) {
+                        return element;
+                    }
+
                     public boolean considerEqualElement(Modifier from,
                             Modifier to) {
                         return from.equals(to);
@@ -1557,7 +1870,7 @@ public class ApiComparator implements IApiComparator {
             List<ITypeReference> from, List<ITypeReference> to,
             boolean ignoreTypeArguments) {
         Set<ITypeReferenceDelta<?>> deltas =
-                new HashSet<ITypeReferenceDelta<?>>();
+                new LinkedHashSet<ITypeReferenceDelta<?>>();
         if (from.size() != to.size()) {
 
             for (ITypeReference type : from) {
@@ -1590,6 +1903,10 @@ public class ApiComparator implements IApiComparator {
                         return new SigTypeDelta<ITypeReference>(from, to);
                     }
 
+                    public Object getKey(ITypeReference element) {
+                        return getTypeKey(element);
+                    }
+
                     public boolean considerEqualElement(ITypeReference from,
                             ITypeReference to) {
                         return considerEqualTypes(from, to);
@@ -1603,6 +1920,13 @@ public class ApiComparator implements IApiComparator {
     }
 
     private static interface SigComparator<T, S extends IDelta<? extends T>> {
+        /**
+         * Returns the key of the given element. Elements which are considered
+         * equal must have equal keys, elements with equal keys may still be
+         * considered different.
+         */
+        Object getKey(T element);
+
         boolean considerEqualElement(T from, T to);
 
         S createChangedDelta(T from, T to);
@@ -1617,30 +1941,36 @@ public class ApiComparator implements IApiComparator {
     private <T, S extends IDelta<? extends T>> Set<S> compareSets(Set<T> from,
             Set<T> to, SigComparator<T, S> comparator) {
 
-        Set<T> toCopy = new HashSet<T>(to);
+        // hash join: only elements with the same key can be considered equal
+        Map<Object, List<T>> toIndex = new HashMap<Object, List<T>>();
+        for (T toElement : to) {
+            addToIndex(toIndex, getMatchKey(comparator.getKey(toElement)),
+                    toElement);
+        }
         Set<S> deltas = new HashSet<S>();
 
         for (T fromType : from) {
-            Iterator<T> toIterator = toCopy.iterator();
+            List<T> candidates = toIndex.get(getMatchKey(comparator
+                    .getKey(fromType)));
             boolean equals = false;
-            boolean hasNext = toIterator.hasNext();
-
-            while (hasNext && !equals) {
-                T toElement = toIterator.next();
-                equals = comparator.considerEqualElement(fromType, toElement);
-                if (equals) {
-                    S compare = comparator.createChangedDelta(fromType,
+            if (candidates != null) {
+                Iterator<T> toIterator = candidates.iterator();
+                while (toIterator.hasNext() && !equals) {
+                    T toElement = toIterator.next();
+                    equals = comparator.considerEqualElement(fromType,
                             toElement);
-                    if (compare != null) {
-                        deltas.add(compare);
+                    if (equals) {
+                        S compare = comparator.createChangedDelta(fromType,
+                                toElement);
+                        if (compare != null) {
+                            deltas.add(compare);
+                        }
+                        toIterator.remove();
                     }
                 }
-                hasNext = toIterator.hasNext();
             }
 
-            if (equals) {
-                toIterator.remove();
-            } else {
+            if (!equals) {
                 S delta = comparator.createAddRemoveDelta(fromType, null);
                 if (delta != null) {
                     deltas.add(delta);
@@ -1648,13 +1978,15 @@ public class ApiComparator implements IApiComparator {
             }
         }
 
-        for (T type : toCopy) {
-            S delta = comparator.createAddRemoveDelta(null, type);
-            if (delta != null) {
-                deltas.add(delta);
+        for (List<T> remaining : toIndex.values()) {
+            for (T type : remaining) {
+                S delta = comparator.createAddRemoveDelta(null, type);
+                if (delta != null) {
+                    deltas.add(delta);
+                }
             }
         }
-        return deltas.isEmpty() ? null : deltas;
+        return deltas.isEmpty() ? null : DeltaComparator.sort(deltas);
     }
 
 
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2009 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package signature.compare;
+
+import signature.compare.model.IDelta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@code DeltaComparator} orders deltas by the compared element and then by
+ * delta type. The model sets are hash sets without a stable iteration order,
+ * so delta sets are sorted with this comparator to make the reports identical
+ * from run to run.
+ */
+class DeltaComparator implements Comparator<DeltaComparator.Entry<?>> {
+
+    private static final DeltaComparator INSTANCE = new DeltaComparator();
+
+    /**
+     * Returns a set with the given deltas in a deterministic iteration order.
+     * Deltas which compare equal keep their relative order.
+     */
+    static <S extends IDelta<?>> Set<S> sort(Set<S> deltas) {
+        List<Entry<S>> entries = new ArrayList<Entry<S>>(deltas.size());
+        for (S delta : deltas) {
+            entries.add(new Entry<S>(delta));
+        }
+        Collections.sort(entries, INSTANCE);
+        Set<S> sorted = new LinkedHashSet<S>();
+        for (Entry<S> entry : entries) {
+            sorted.add(entry.delta);
+        }
+        return sorted;
+    }
+
+    public int compare(Entry<?> a, Entry<?> b) {
+        int result = a.key.compareTo(b.key);
+        if (result == 0) {
+            result = a.delta.getType().compareTo(b.delta.getType());
+        }
+        return result;
+    }
+
+    /**
+     * A delta together with its sort key, so that the key is only computed
+     * once per sort.
+     */
+    static class Entry<S extends IDelta<?>> {
+        final S delta;
+        final String key;
+
+        Entry(S delta) {
+            this.delta = delta;
+            Object element = delta.getFrom() != null ? delta.getFrom() : delta
+                    .getTo();
+            key = String.valueOf(element);
+        }
+    }
+}
@@ -138,7 +138,8 @@ public class Main {
             packages.add(args[at]);
         }
 
-        IApiComparator comparator = new ApiComparator();
+        IApiComparator comparator = new ApiComparator(Runtime.getRuntime()
+                .availableProcessors());
         IApi fromApi = getApi(fromType, nameFrom, fromFiles, packages);
         IApi toApi = getApi(toType, nameTo, toFiles, packages);
 
@@ -20,14 +20,24 @@ import signature.converter.Visibility;
 import signature.io.IApiExternalizer;
 import signature.io.IApiLoader;
 import signature.model.IApi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Set;
 
+/**
+ * Stores and loads signature models in the compact binary format described in
+ * {@link BinaryFormat}. Signature files written with Java serialization by
+ * earlier versions can still be loaded.
+ */
 public class BinaryApi implements IApiExternalizer, IApiLoader {
 
     public void externalizeApi(String fileName, IApi api) throws IOException {
@@ -40,12 +50,13 @@ public class BinaryApi implements IApiExternalizer, IApiLoader {
         File file = new File(directory, getFileName(api));
         file.createNewFile();
 
-        ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(
                 file));
-        oos.writeObject(api);
-
-        oos.flush();
-        oos.close();
+        try {
+            new BinaryApiWriter(out).writeApi(api);
+        } finally {
+            out.close();
+        }
     }
 
     private String getFileName(IApi api) {
@@ -65,19 +76,41 @@ public class BinaryApi implements IApiExternalizer, IApiLoader {
         }
         String fileName = fileNames.iterator().next();
         File file = new File(fileName);
-        ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream(file));
+
+        ByteBuffer buffer = map(file);
         IApi sig = null;
-        try {
-            sig = (IApi) ois.readObject();
-        } catch (ClassNotFoundException e) {
-            throw new IllegalArgumentException(e);
+        if (buffer.remaining() >= 2 && (buffer.getShort(0) & 0xFFFF)
+                == BinaryFormat.JAVA_SERIALIZATION_MAGIC) {
+            sig = loadSerializedApi(file);
+        } else {
+            sig = new BinaryApiReader(buffer).readApi();
         }
         if (name != null) {
             sig.setName(name);
         }
-
-        ois.close();
         return sig;
     }
+
+    private static ByteBuffer map(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+                    .size());
+        } finally {
+            in.close();
+        }
+    }
+
+    private static IApi loadSerializedApi(File file) throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            return (IApi) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            ois.close();
+        }
+    }
 }
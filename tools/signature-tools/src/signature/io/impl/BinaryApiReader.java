@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2009 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package signature.io.impl;
+
+import static signature.io.impl.BinaryFormat.*;
+
+import signature.converter.Visibility;
+import signature.model.IAnnotation;
+import signature.model.IAnnotationElement;
+import signature.model.IAnnotationField;
+import signature.model.IApi;
+import signature.model.IClassDefinition;
+import signature.model.IClassReference;
+import signature.model.IConstructor;
+import signature.model.IEnumConstant;
+import signature.model.IField;
+import signature.model.IGenericDeclaration;
+import signature.model.IMethod;
+import signature.model.IPackage;
+import signature.model.IParameter;
+import signature.model.ITypeReference;
+import signature.model.ITypeVariableDefinition;
+import signature.model.Kind;
+import signature.model.Modifier;
+import signature.model.impl.SigAnnotation;
+import signature.model.impl.SigAnnotationElement;
+import signature.model.impl.SigAnnotationField;
+import signature.model.impl.SigApi;
+import signature.model.impl.SigArrayType;
+import signature.model.impl.SigClassDefinition;
+import signature.model.impl.SigClassReference;
+import signature.model.impl.SigConstructor;
+import signature.model.impl.SigEnumConstant;
+import signature.model.impl.SigExecutableMember;
+import signature.model.impl.SigField;
+import signature.model.impl.SigMethod;
+import signature.model.impl.SigPackage;
+import signature.model.impl.SigParameter;
+import signature.model.impl.SigParameterizedType;
+import signature.model.impl.SigPrimitiveType;
+import signature.model.impl.SigTypeVariableDefinition;
+import signature.model.impl.SigTypeVariableReference;
+import signature.model.impl.SigWildcardType;
+import signature.model.impl.Uninitialized;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads an {@link IApi} written by {@link BinaryApiWriter} from a buffer,
+ * usually a memory mapped signature file.
+ */
+class BinaryApiReader {
+
+    private static final Modifier[] MODIFIERS_BY_ORDINAL = Modifier.values();
+
+    private final ByteBuffer in;
+    private final List<String> strings = new ArrayList<String>();
+    private final List<Object> handles = new ArrayList<Object>();
+
+    BinaryApiReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    IApi readApi() throws IOException {
+        for (byte b : MAGIC) {
+            if (in.get() != b) {
+                throw new IOException("Not a binary signature file");
+            }
+        }
+        int version = readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary signature version "
+                    + version);
+        }
+        Object api = readObject();
+        if (!(api instanceof IApi)) {
+            throw new IOException("Binary signature file contains no API");
+        }
+        return (IApi) api;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T read() throws IOException {
+        return (T) readObject();
+    }
+
+    private Object readObject() throws IOException {
+        int tag = readInt();
+        switch (tag) {
+        case NULL:
+            return null;
+        case REFERENCE:
+            return handles.get(readInt());
+        case UNINITIALIZED:
+            return Uninitialized.unset();
+        case API:
+            return readApiRecord();
+        case PACKAGE:
+            return readPackage();
+        case CLASS_DEFINITION:
+            return readClassDefinition();
+        case METHOD: {
+            SigMethod method = new SigMethod(readString());
+            readExecutableMember(method);
+            method.setReturnType(this.<ITypeReference> read());
+            return method;
+        }
+        case CONSTRUCTOR: {
+            SigConstructor constructor = new SigConstructor(readString());
+            readExecutableMember(constructor);
+            return constructor;
+        }
+        case FIELD: {
+            SigField field = new SigField(readString());
+            readField(field);
+            return field;
+        }
+        case ENUM_CONSTANT: {
+            SigEnumConstant constant = new SigEnumConstant(readString());
+            readField(constant);
+            int ordinal = readInt();
+            if (ordinal != UNKNOWN_ORDINAL) {
+                constant.setOrdinal(ordinal - 1);
+            }
+            return constant;
+        }
+        case ANNOTATION_FIELD: {
+            SigAnnotationField field = new SigAnnotationField(readString());
+            readField(field);
+            field.setDefaultValue(readObject());
+            return field;
+        }
+        case TYPE_VARIABLE_DEFINITION: {
+            SigTypeVariableDefinition variable = new SigTypeVariableDefinition(
+                    readString(), null);
+            register(variable);
+            variable.setGenericDeclaration(this.<IGenericDeclaration> read());
+            variable.setUpperBounds(this.<List<ITypeReference>> read());
+            return variable;
+        }
+        case PARAMETER: {
+            SigParameter parameter = new SigParameter(
+                    this.<ITypeReference> read());
+            parameter.setAnnotations(this.<Set<IAnnotation>> read());
+            return register(parameter);
+        }
+        case ANNOTATION: {
+            SigAnnotation annotation = new SigAnnotation();
+            register(annotation);
+            annotation.setType(this.<IClassReference> read());
+            annotation.setElements(this.<Set<IAnnotationElement>> read());
+            return annotation;
+        }
+        case ANNOTATION_ELEMENT: {
+            SigAnnotationElement element = new SigAnnotationElement();
+            register(element);
+            element.setDeclaringField(this.<IAnnotationField> read());
+            element.setValue(readObject());
+            return element;
+        }
+        case PRIMITIVE_TYPE:
+            return SigPrimitiveType.valueOfTypeName(readString());
+        case CLASS_REFERENCE:
+            return register(new SigClassReference(
+                    this.<IClassDefinition> read()));
+        case ARRAY_TYPE:
+            return register(new SigArrayType(this.<ITypeReference> read()));
+        case PARAMETERIZED_TYPE: {
+            ITypeReference ownerType = read();
+            IClassReference rawType = read();
+            List<ITypeReference> typeArguments = read();
+            return register(new SigParameterizedType(ownerType, rawType,
+                    typeArguments));
+        }
+        case WILDCARD_TYPE: {
+            ITypeReference lowerBound = read();
+            List<ITypeReference> upperBounds = read();
+            return register(new SigWildcardType(lowerBound, upperBounds));
+        }
+        case TYPE_VARIABLE_REFERENCE:
+            return register(new SigTypeVariableReference(
+                    this.<ITypeVariableDefinition> read()));
+        default:
+            return readValue(tag);
+        }
+    }
+
+    private Object readValue(int tag) throws IOException {
+        switch (tag) {
+        case STRING:
+            return readString();
+        case BOOLEAN:
+            return readInt() != 0;
+        case BYTE:
+            return (byte) readSignedLong();
+        case SHORT:
+            return (short) readSignedLong();
+        case CHAR:
+            return (char) readInt();
+        case INT:
+            return (int) readSignedLong();
+        case LONG:
+            return readSignedLong();
+        case FLOAT:
+            return Float.intBitsToFloat((int) readSignedLong());
+        case DOUBLE:
+            return Double.longBitsToDouble(readSignedLong());
+        case ARRAY: {
+            Object[] array = new Object[readInt()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readObject();
+            }
+            return array;
+        }
+        case SET: {
+            int size = readInt();
+            Set<Object> set = new HashSet<Object>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                set.add(readObject());
+            }
+            return set;
+        }
+        case LIST: {
+            int size = readInt();
+            List<Object> list = new ArrayList<Object>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(readObject());
+            }
+            return list;
+        }
+        default:
+            throw new IOException("Unknown record tag " + tag + " at offset "
+                    + in.position());
+        }
+    }
+
+    private IApi readApiRecord() throws IOException {
+        String name = readString();
+        String visibility = readString();
+        SigApi api = new SigApi(name, visibility != null ? Visibility
+                .valueOf(visibility) : null);
+        register(api);
+        api.setPackages(this.<Set<IPackage>> read());
+        return api;
+    }
+
+    private IPackage readPackage() throws IOException {
+        SigPackage aPackage = new SigPackage(readString());
+        register(aPackage);
+        aPackage.setAnnotations(this.<Set<IAnnotation>> read());
+        aPackage.setClasses(this.<Set<IClassDefinition>> read());
+        return aPackage;
+    }
+
+    private IClassDefinition readClassDefinition() throws IOException {
+        String packageName = readString();
+        SigClassDefinition clazz = new SigClassDefinition(packageName,
+                readString());
+        register(clazz);
+        String kind = readString();
+        clazz.setKind(kind != null ? Kind.valueOf(kind) : null);
+        clazz.setModifiers(readModifiers());
+        clazz.setSuperClass(this.<ITypeReference> read());
+        clazz.setInterfaces(this.<Set<ITypeReference>> read());
+        clazz.setTypeParameters(this.<List<ITypeVariableDefinition>> read());
+        clazz.setDeclaringClass(this.<IClassDefinition> read());
+        clazz.setInnerClasses(this.<Set<IClassDefinition>> read());
+        clazz.setConstructors(this.<Set<IConstructor>> read());
+        clazz.setMethods(this.<Set<IMethod>> read());
+        clazz.setFields(this.<Set<IField>> read());
+        clazz.setEnumConstants(this.<Set<IEnumConstant>> read());
+        clazz.setAnnotationFields(this.<Set<IAnnotationField>> read());
+        clazz.setAnnotations(this.<Set<IAnnotation>> read());
+        return clazz;
+    }
+
+    private void readExecutableMember(SigExecutableMember member)
+            throws IOException {
+        register(member);
+        member.setModifiers(readModifiers());
+        member.setTypeParameters(this.<List<ITypeVariableDefinition>> read());
+        member.setDeclaringClass(this.<IClassDefinition> read());
+        member.setParameters(this.<List<IParameter>> read());
+        member.setExceptions(this.<Set<ITypeReference>> read());
+        member.setAnnotations(this.<Set<IAnnotation>> read());
+    }
+
+    private void readField(SigField field) throws IOException {
+        register(field);
+        field.setModifiers(readModifiers());
+        field.setType(this.<ITypeReference> read());
+        field.setAnnotations(this.<Set<IAnnotation>> read());
+    }
+
+    private Set<Modifier> readModifiers() throws IOException {
+        int tag = readInt();
+        switch (tag) {
+        case NULL:
+            return null;
+        case UNINITIALIZED:
+            return Uninitialized.unset();
+        case MODIFIERS: {
+            int mask = readInt();
+            Set<Modifier> modifiers = EnumSet.noneOf(Modifier.class);
+            for (Modifier modifier : MODIFIERS_BY_ORDINAL) {
+                if ((mask & (1 << modifier.ordinal())) != 0) {
+                    modifiers.add(modifier);
+                }
+            }
+            return modifiers;
+        }
+        default:
+            throw new IOException("Unknown modifiers tag " + tag);
+        }
+    }
+
+    private <T> T register(T o) {
+        handles.add(o);
+        return o;
+    }
+
+    private String readString() throws IOException {
+        int index = readInt();
+        if (index == STRING_NULL) {
+            return null;
+        }
+        if (index != STRING_NEW) {
+            return strings.get(index - STRING_FIRST_INDEX);
+        }
+        byte[] bytes = new byte[readInt()];
+        in.get(bytes);
+        String s = new String(bytes, "UTF-8");
+        strings.add(s);
+        return s;
+    }
+
+    private int readInt() {
+        return (int) readUnsignedLong();
+    }
+
+    private long readSignedLong() {
+        long value = readUnsignedLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readUnsignedLong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2009 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package signature.io.impl;
+
+import static signature.io.impl.BinaryFormat.*;
+
+import signature.model.IAnnotation;
+import signature.model.IAnnotationElement;
+import signature.model.IAnnotationField;
+import signature.model.IApi;
+import signature.model.IArrayType;
+import signature.model.IClassDefinition;
+import signature.model.IClassReference;
+import signature.model.IConstructor;
+import signature.model.IEnumConstant;
+import signature.model.IExecutableMember;
+import signature.model.IField;
+import signature.model.IMethod;
+import signature.model.IPackage;
+import signature.model.IParameter;
+import signature.model.IParameterizedType;
+import signature.model.IPrimitiveType;
+import signature.model.ITypeVariableDefinition;
+import signature.model.ITypeVariableReference;
+import signature.model.IWildcardType;
+import signature.model.Kind;
+import signature.model.Modifier;
+import signature.model.impl.Uninitialized;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes an {@link IApi} in the binary signature format described in
+ * {@link BinaryFormat}. The model is written in a single pass while it is
+ * traversed.
+ */
+class BinaryApiWriter {
+
+    private final OutputStream out;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final Map<Object, Integer> handles =
+            new IdentityHashMap<Object, Integer>();
+    private int nextHandle;
+
+    BinaryApiWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    void writeApi(IApi api) throws IOException {
+        out.write(MAGIC);
+        writeInt(VERSION);
+        writeObject(api);
+    }
+
+    private void writeObject(Object o) throws IOException {
+        if (o == null) {
+            writeInt(NULL);
+            return;
+        }
+        if (!Uninitialized.isInitialized(o)) {
+            writeInt(UNINITIALIZED);
+            return;
+        }
+        Integer handle = handles.get(o);
+        if (handle != null) {
+            writeInt(REFERENCE);
+            writeInt(handle);
+            return;
+        }
+
+        if (o instanceof IApi) {
+            writeApiRecord((IApi) o);
+        } else if (o instanceof IPackage) {
+            writePackage((IPackage) o);
+        } else if (o instanceof IClassDefinition) {
+            writeClassDefinition((IClassDefinition) o);
+        } else if (o instanceof IMethod) {
+            IMethod method = (IMethod) o;
+            writeExecutableMember(METHOD, method);
+            writeObject(method.getReturnType());
+        } else if (o instanceof IConstructor) {
+            writeExecutableMember(CONSTRUCTOR, (IConstructor) o);
+        } else if (o instanceof IAnnotationField) {
+            IAnnotationField field = (IAnnotationField) o;
+            writeField(ANNOTATION_FIELD, field);
+            writeObject(field.getDefaultValue());
+        } else if (o instanceof IEnumConstant) {
+            IEnumConstant constant = (IEnumConstant) o;
+            writeField(ENUM_CONSTANT, constant);
+            writeInt(getOrdinal(constant));
+        } else if (o instanceof IField) {
+            writeField(FIELD, (IField) o);
+        } else if (o instanceof ITypeVariableDefinition) {
+            ITypeVariableDefinition variable = (ITypeVariableDefinition) o;
+            writeInt(TYPE_VARIABLE_DEFINITION);
+            writeString(variable.getName());
+            register(variable);
+            writeObject(variable.getGenericDeclaration());
+            writeObject(variable.getUpperBounds());
+        } else if (o instanceof IParameter) {
+            IParameter parameter = (IParameter) o;
+            writeInt(PARAMETER);
+            writeObject(parameter.getType());
+            writeObject(parameter.getAnnotations());
+            register(parameter);
+        } else if (o instanceof IAnnotation) {
+            IAnnotation annotation = (IAnnotation) o;
+            writeInt(ANNOTATION);
+            register(annotation);
+            writeObject(annotation.getType());
+            writeObject(annotation.getElements());
+        } else if (o instanceof IAnnotationElement) {
+            IAnnotationElement element = (IAnnotationElement) o;
+            writeInt(ANNOTATION_ELEMENT);
+            register(element);
+            writeObject(element.getDeclaringField());
+            writeObject(element.getValue());
+        } else if (o instanceof IPrimitiveType) {
+            writeInt(PRIMITIVE_TYPE);
+            writeString(((IPrimitiveType) o).getName());
+        } else if (o instanceof IClassReference) {
+            writeInt(CLASS_REFERENCE);
+            writeObject(((IClassReference) o).getClassDefinition());
+            register(o);
+        } else if (o instanceof IArrayType) {
+            writeInt(ARRAY_TYPE);
+            writeObject(((IArrayType) o).getComponentType());
+            register(o);
+        } else if (o instanceof IParameterizedType) {
+            IParameterizedType type = (IParameterizedType) o;
+            writeInt(PARAMETERIZED_TYPE);
+            writeObject(type.getOwnerType());
+            writeObject(type.getRawType());
+            writeObject(type.getTypeArguments());
+            register(type);
+        } else if (o instanceof IWildcardType) {
+            IWildcardType type = (IWildcardType) o;
+            writeInt(WILDCARD_TYPE);
+            writeObject(type.getLowerBound());
+            writeObject(type.getUpperBounds());
+            register(type);
+        } else if (o instanceof ITypeVariableReference) {
+            writeInt(TYPE_VARIABLE_REFERENCE);
+            writeObject(((ITypeVariableReference) o)
+                    .getTypeVariableDefinition());
+            register(o);
+        } else {
+            writeValue(o);
+        }
+    }
+
+    /**
+     * Writes an annotation value or a collection of model elements.
+     */
+    private void writeValue(Object o) throws IOException {
+        if (o instanceof String) {
+            writeInt(STRING);
+            writeString((String) o);
+        } else if (o instanceof Boolean) {
+            writeInt(BOOLEAN);
+            writeInt(((Boolean) o) ? 1 : 0);
+        } else if (o instanceof Byte) {
+            writeInt(BYTE);
+            writeSignedLong((Byte) o);
+        } else if (o instanceof Short) {
+            writeInt(SHORT);
+            writeSignedLong((Short) o);
+        } else if (o instanceof Character) {
+            writeInt(CHAR);
+            writeInt((Character) o);
+        } else if (o instanceof Integer) {
+            writeInt(INT);
+            writeSignedLong((Integer) o);
+        } else if (o instanceof Long) {
+            writeInt(LONG);
+            writeSignedLong((Long) o);
+        } else if (o instanceof Float) {
+            writeInt(FLOAT);
+            writeSignedLong(Float.floatToIntBits((Float) o));
+        } else if (o instanceof Double) {
+            writeInt(DOUBLE);
+            writeSignedLong(Double.doubleToLongBits((Double) o));
+        } else if (o instanceof Object[]) {
+            Object[] array = (Object[]) o;
+            writeInt(ARRAY);
+            writeInt(array.length);
+            for (Object element : array) {
+                writeObject(element);
+            }
+        } else if (o instanceof Set<?>) {
+            writeCollection(SET, (Set<?>) o);
+        } else if (o instanceof List<?>) {
+            writeCollection(LIST, (List<?>) o);
+        } else {
+            throw new IllegalArgumentException("Cannot write "
+                    + o.getClass().getName());
+        }
+    }
+
+    private void writeApiRecord(IApi api) throws IOException {
+        writeInt(API);
+        writeString(api.getName());
+        writeString(api.getVisibility() != null ? api.getVisibility().name()
+                : null);
+        register(api);
+        writeObject(api.getPackages());
+    }
+
+    private void writePackage(IPackage aPackage) throws IOException {
+        writeInt(PACKAGE);
+        writeString(aPackage.getName());
+        register(aPackage);
+        writeObject(aPackage.getAnnotations());
+        writeObject(aPackage.getClasses());
+    }
+
+    private void writeClassDefinition(IClassDefinition clazz)
+            throws IOException {
+        writeInt(CLASS_DEFINITION);
+        writeString(clazz.getPackageName());
+        writeString(clazz.getName());
+        register(clazz);
+        Kind kind = clazz.getKind();
+        writeString(kind != null ? kind.name() : null);
+        writeModifiers(clazz.getModifiers());
+        writeObject(clazz.getSuperClass());
+        writeObject(clazz.getInterfaces());
+        writeObject(clazz.getTypeParameters());
+        writeObject(clazz.getDeclaringClass());
+        writeObject(clazz.getInnerClasses());
+        writeObject(clazz.getConstructors());
+        writeObject(clazz.getMethods());
+        writeObject(clazz.getFields());
+        writeObject(clazz.getEnumConstants());
+        writeObject(clazz.getAnnotationFields());
+        writeObject(clazz.getAnnotations());
+    }
+
+    private void writeExecutableMember(int tag, IExecutableMember member)
+            throws IOException {
+        writeInt(tag);
+        writeString(member.getName());
+        register(member);
+        writeModifiers(member.getModifiers());
+        writeObject(member.getTypeParameters());
+        writeObject(member.getDeclaringClass());
+        writeObject(member.getParameters());
+        writeObject(member.getExceptions());
+        writeObject(member.getAnnotations());
+    }
+
+    private void writeField(int tag, IField field) throws IOException {
+        writeInt(tag);
+        writeString(field.getName());
+        register(field);
+        writeModifiers(field.getModifiers());
+        writeObject(field.getType());
+        writeObject(field.getAnnotations());
+    }
+
+    private static int getOrdinal(IEnumConstant constant) {
+        try {
+            return constant.getOrdinal() + 1;
+        } catch (UnsupportedOperationException e) {
+            // the ordinal is not known
+            return UNKNOWN_ORDINAL;
+        }
+    }
+
+    private void writeCollection(int tag, Collection<?> collection)
+            throws IOException {
+        writeInt(tag);
+        writeInt(collection.size());
+        for (Object element : collection) {
+            writeObject(element);
+        }
+    }
+
+    private void writeModifiers(Set<Modifier> modifiers) throws IOException {
+        if (modifiers == null) {
+            writeInt(NULL);
+        } else if (!Uninitialized.isInitialized(modifiers)) {
+            writeInt(UNINITIALIZED);
+        } else {
+            int mask = 0;
+            for (Modifier modifier : modifiers) {
+                mask |= 1 << modifier.ordinal();
+            }
+            writeInt(MODIFIERS);
+            writeInt(mask);
+        }
+    }
+
+    private void register(Object o) {
+        handles.put(o, nextHandle++);
+    }
+
+    private void writeString(String s) throws IOException {
+        if (s == null) {
+            writeInt(STRING_NULL);
+            return;
+        }
+        Integer index = strings.get(s);
+        if (index != null) {
+            writeInt(STRING_FIRST_INDEX + index);
+            return;
+        }
+        strings.put(s, strings.size());
+        byte[] bytes = s.getBytes("UTF-8");
+        writeInt(STRING_NEW);
+        writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes a non-negative int as unsigned varint.
+     */
+    private void writeInt(int value) throws IOException {
+        writeUnsignedLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes a value as zigzag encoded varint, so that small negative values
+     * are short as well.
+     */
+    private void writeSignedLong(long value) throws IOException {
+        writeUnsignedLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeUnsignedLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2009 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package signature.io.impl;
+
+/**
+ * Constants of the binary signature format written by {@link BinaryApi}.
+ * <p>
+ * A file starts with {@link #MAGIC} and the format {@link #VERSION}, followed
+ * by the {@code IApi} record. A record is a varint tag followed by the fields
+ * of the element. Every string is written once and referenced by its index in
+ * the string table afterwards. Model elements are written once and referenced
+ * by their handle afterwards, so shared elements and cycles in the model are
+ * preserved. Integers are written as varints.
+ */
+final class BinaryFormat {
+
+    static final byte[] MAGIC = {'S', 'I', 'G', 'B'};
+    static final int VERSION = 1;
+
+    /** First bytes of a file written with {@code ObjectOutputStream}. */
+    static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    // string references
+    static final int STRING_NULL = 0;
+    static final int STRING_NEW = 1;
+    static final int STRING_FIRST_INDEX = 2;
+
+    // record tags
+    static final int NULL = 0;
+    static final int REFERENCE = 1;
+    static final int UNINITIALIZED = 2;
+
+    static final int API = 10;
+    static final int PACKAGE = 11;
+    static final int CLASS_DEFINITION = 12;
+    static final int METHOD = 13;
+    static final int CONSTRUCTOR = 14;
+    static final int FIELD = 15;
+    static final int ENUM_CONSTANT = 16;
+    static final int ANNOTATION_FIELD = 17;
+    static final int TYPE_VARIABLE_DEFINITION = 18;
+    static final int PARAMETER = 19;
+    static final int ANNOTATION = 20;
+    static final int ANNOTATION_ELEMENT = 21;
+
+    static final int PRIMITIVE_TYPE = 30;
+    static final int CLASS_REFERENCE = 31;
+    static final int ARRAY_TYPE = 32;
+    static final int PARAMETERIZED_TYPE = 33;
+    static final int WILDCARD_TYPE = 34;
+    static final int TYPE_VARIABLE_REFERENCE = 35;
+
+    static final int STRING = 40;
+    static final int BOOLEAN = 41;
+    static final int BYTE = 42;
+    static final int SHORT = 43;
+    static final int CHAR = 44;
+    static final int INT = 45;
+    static final int LONG = 46;
+    static final int FLOAT = 47;
+    static final int DOUBLE = 48;
+    static final int ARRAY = 49;
+
+    static final int SET = 50;
+    static final int LIST = 51;
+    static final int MODIFIERS = 52;
+
+    /** Written instead of an unknown enum constant ordinal. */
+    static final int UNKNOWN_ORDINAL = 0;
+
+    private BinaryFormat() {
+    }
+}
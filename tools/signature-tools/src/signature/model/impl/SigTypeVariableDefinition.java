@@ -46,6 +46,10 @@ public class SigTypeVariableDefinition implements ITypeVariableDefinition,
         return genericDeclaration;
     }
 
+    public void setGenericDeclaration(IGenericDeclaration genericDeclaration) {
+        this.genericDeclaration = genericDeclaration;
+    }
+
     public List<ITypeReference> getUpperBounds() {
         return upperBounds;
     }
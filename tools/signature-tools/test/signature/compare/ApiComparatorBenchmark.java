@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package signature.compare;
+
+import signature.compare.model.IApiDelta;
+import signature.converter.Visibility;
+import signature.io.impl.BinaryApi;
+import signature.model.IApi;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Measures how long {@link ApiComparator} takes to compare two APIs when it
+ * matches elements by key, and when it matches every element against all
+ * elements of the other set as it did before the keys were introduced, e.g.
+ * for the APIs of two releases:
+ * <pre>
+ * sig --create doclet &lt;old sources&gt; --out old.sig --name old \
+ *     --packages &lt;packages&gt;
+ * sig --create doclet &lt;new sources&gt; --out new.sig --name new \
+ *     --packages &lt;packages&gt;
+ * java -cp signature-tools.jar:&lt;benchmark classes&gt; \
+ *     signature.compare.ApiComparatorBenchmark -n 3 old.sig new.sig
+ * </pre>
+ * Both ways of matching must produce the same delta model. Otherwise the
+ * keys disagree with the equality of the elements, and the benchmark fails.
+ */
+public class ApiComparatorBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int iterations = 3;
+        int at = 0;
+        if (args.length > 1 && "-n".equals(args[at])) {
+            iterations = Integer.parseInt(args[++at]);
+            ++at;
+        }
+        if (args.length - at != 2) {
+            System.err.println("usage: signature.compare.ApiComparatorBenchmark"
+                    + " [-n <iterations>] <from.sig> <to.sig>");
+            System.exit(-1);
+        }
+        IApi from = loadApi(args[at]);
+        IApi to = loadApi(args[at + 1]);
+
+        // the first iteration warms up the JIT and is not reported
+        for (int i = 0; i <= iterations; i++) {
+            long pairwiseStart = System.nanoTime();
+            IApiDelta pairwiseDelta = new ApiComparator(1, false).compare(
+                    from, to);
+            long keyedStart = System.nanoTime();
+            IApiDelta keyedDelta = new ApiComparator(1, true).compare(from,
+                    to);
+            long end = System.nanoTime();
+
+            String pairwise = String.valueOf(pairwiseDelta);
+            String keyed = String.valueOf(keyedDelta);
+            if (!pairwise.equals(keyed)) {
+                System.err.println("Keyed matching found a different delta:\n"
+                        + keyed + "\nPairwise matching found:\n" + pairwise);
+                System.exit(1);
+            }
+            if (i > 0) {
+                System.out.println("iteration " + i + ": pairwise "
+                        + millis(keyedStart - pairwiseStart) + " ms, keyed "
+                        + millis(end - keyedStart) + " ms, same delta ("
+                        + pairwise.length() + " chars)");
+            }
+        }
+    }
+
+    private static IApi loadApi(String fileName) throws IOException {
+        return new BinaryApi().loadApi(null, Visibility.PROTECTED,
+                Collections.singleton(fileName),
+                Collections.<String> emptySet());
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2009 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package signature.io.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import signature.converter.Visibility;
+import signature.model.IAnnotation;
+import signature.model.IAnnotationElement;
+import signature.model.IAnnotationField;
+import signature.model.IApi;
+import signature.model.IClassDefinition;
+import signature.model.IClassReference;
+import signature.model.IEnumConstant;
+import signature.model.IMethod;
+import signature.model.IPackage;
+import signature.model.IParameter;
+import signature.model.IParameterizedType;
+import signature.model.ITypeReference;
+import signature.model.ITypeVariableDefinition;
+import signature.model.ITypeVariableReference;
+import signature.model.Kind;
+import signature.model.Modifier;
+import signature.model.impl.SigAnnotation;
+import signature.model.impl.SigAnnotationElement;
+import signature.model.impl.SigAnnotationField;
+import signature.model.impl.SigApi;
+import signature.model.impl.SigArrayType;
+import signature.model.impl.SigClassDefinition;
+import signature.model.impl.SigClassReference;
+import signature.model.impl.SigEnumConstant;
+import signature.model.impl.SigMethod;
+import signature.model.impl.SigPackage;
+import signature.model.impl.SigParameter;
+import signature.model.impl.SigParameterizedType;
+import signature.model.impl.SigPrimitiveType;
+import signature.model.impl.SigTypeVariableDefinition;
+import signature.model.impl.SigTypeVariableReference;
+import signature.model.util.ModelUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+public class BinaryApiTest {
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = File.createTempFile("sig", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void deleteDirectory() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Creates the model of:
+     * 
+     * <pre>
+     * package a;
+     * public enum E { ONE }
+     * public @interface N { E[] value() default {E.ONE}; }
+     * &#64;N({E.ONE})
+     * public class A&lt;T extends Comparable&lt;T&gt;&gt; {
+     *     public final T get(int[] index, String name);
+     * }
+     * </pre>
+     */
+    private IApi createApi() {
+        SigClassDefinition string = new SigClassDefinition("java.lang",
+                "String");
+        SigClassDefinition comparable = new SigClassDefinition("java.lang",
+                "Comparable");
+
+        SigClassDefinition e = new SigClassDefinition("a", "E");
+        e.setKind(Kind.ENUM);
+        SigEnumConstant one = new SigEnumConstant("ONE");
+        one.setType(new SigClassReference(e));
+        one.setOrdinal(0);
+        e.setEnumConstants(Collections.<IEnumConstant> singleton(one));
+
+        SigClassDefinition n = new SigClassDefinition("a", "N");
+        n.setKind(Kind.ANNOTATION);
+        SigAnnotationField value = new SigAnnotationField("value");
+        value.setType(new SigArrayType(new SigClassReference(e)));
+        value.setDefaultValue(new Object[] {one});
+        n.setAnnotationFields(Collections.singleton(
+                (IAnnotationField) value));
+
+        SigClassDefinition a = new SigClassDefinition("a", "A");
+        a.setKind(Kind.CLASS);
+        a.setModifiers(EnumSet.of(Modifier.PUBLIC));
+        SigTypeVariableDefinition t = new SigTypeVariableDefinition("T", a);
+        t.setUpperBounds(Collections.<ITypeReference> singletonList(
+                new SigParameterizedType(null, new SigClassReference(
+                        comparable), Collections
+                        .<ITypeReference> singletonList(
+                                new SigTypeVariableReference(t)))));
+        a.setTypeParameters(Collections
+                .<ITypeVariableDefinition> singletonList(t));
+
+        SigMethod get = new SigMethod("get");
+        get.setModifiers(EnumSet.of(Modifier.PUBLIC, Modifier.FINAL));
+        get.setDeclaringClass(a);
+        get.setReturnType(new SigTypeVariableReference(t));
+        get.setParameters(Arrays.<IParameter> asList(
+                new SigParameter(new SigArrayType(SigPrimitiveType.INT_TYPE)),
+                new SigParameter(new SigClassReference(string))));
+        a.setMethods(Collections.<IMethod> singleton(get));
+
+        SigAnnotation annotation = new SigAnnotation();
+        annotation.setType(new SigClassReference(n));
+        SigAnnotationElement element = new SigAnnotationElement();
+        element.setDeclaringField(value);
+        element.setValue(new Object[] {one, "text", 42, -1L, 'c', 1.5});
+        annotation.setElements(Collections
+                .<IAnnotationElement> singleton(element));
+        a.setAnnotations(Collections.<IAnnotation> singleton(annotation));
+
+        SigPackage aPackage = new SigPackage("a");
+        aPackage.setClasses(new HashSet<IClassDefinition>(Arrays.asList(a, e,
+                n)));
+        SigApi api = new SigApi("Binary API", Visibility.PROTECTED);
+        api.setPackages(Collections.<IPackage> singleton(aPackage));
+        return api;
+    }
+
+    private IApi load(String name) throws IOException {
+        return new BinaryApi().loadApi(name, Visibility.PROTECTED, Collections
+                .singleton(new File(directory, "Binary_API.sig").getPath()),
+                Collections.<String> emptySet());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        new BinaryApi().externalizeApi(directory.getPath(), createApi());
+        IApi api = load(null);
+
+        assertEquals("Binary API", api.getName());
+        assertEquals(Visibility.PROTECTED, api.getVisibility());
+        IPackage aPackage = ModelUtil.getPackage(api, "a");
+        assertEquals(3, aPackage.getClasses().size());
+
+        IClassDefinition a = ModelUtil.getClass(aPackage, "A");
+        assertEquals(Kind.CLASS, a.getKind());
+        assertEquals(EnumSet.of(Modifier.PUBLIC), a.getModifiers());
+
+        // the type variable is shared by its bound and the method
+        ITypeVariableDefinition t = a.getTypeParameters().get(0);
+        assertSame(a, t.getGenericDeclaration());
+        IParameterizedType bound = (IParameterizedType) t.getUpperBounds()
+                .get(0);
+        assertEquals("java.lang.Comparable", bound.getRawType()
+                .getClassDefinition().getQualifiedName());
+        assertSame(t, ((ITypeVariableReference) bound.getTypeArguments()
+                .get(0)).getTypeVariableDefinition());
+
+        IMethod get = a.getMethods().iterator().next();
+        assertEquals("get", get.getName());
+        assertSame(a, get.getDeclaringClass());
+        assertEquals(EnumSet.of(Modifier.PUBLIC, Modifier.FINAL), get
+                .getModifiers());
+        assertSame(t, ((ITypeVariableReference) get.getReturnType())
+                .getTypeVariableDefinition());
+        assertEquals(2, get.getParameters().size());
+        assertEquals("int[]", get.getParameters().get(0).getType().toString());
+        assertEquals("java.lang.String", ((IClassReference) get
+                .getParameters().get(1).getType()).getClassDefinition()
+                .getQualifiedName());
+
+        // enum constants in annotation values are the declared constants
+        IClassDefinition e = ModelUtil.getClass(aPackage, "E");
+        IEnumConstant one = e.getEnumConstants().iterator().next();
+        assertEquals(0, one.getOrdinal());
+        IAnnotation annotation = a.getAnnotations().iterator().next();
+        Object[] value = (Object[]) annotation.getElements().iterator().next()
+                .getValue();
+        assertArrayEquals(new Object[] {one, "text", 42, -1L, 'c', 1.5},
+                value);
+        assertSame(ModelUtil.getClass(aPackage, "N"), annotation.getType()
+                .getClassDefinition());
+    }
+
+    @Test
+    public void testLoadWithName() throws IOException {
+        new BinaryApi().externalizeApi(directory.getPath(), createApi());
+        assertEquals("Renamed", load("Renamed").getName());
+    }
+
+    @Test
+    public void testLoadSerializedApi() throws IOException {
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(
+                new File(directory, "Binary_API.sig")));
+        SigApi serializedApi = new SigApi("Binary API", Visibility.PROTECTED);
+        serializedApi.setPackages(new HashSet<IPackage>());
+        try {
+            out.writeObject(serializedApi);
+        } finally {
+            out.close();
+        }
+        IApi api = load(null);
+        assertNotNull(api);
+        assertEquals("Binary API", api.getName());
+        assertTrue(api.getVisibility() == Visibility.PROTECTED);
+    }
+}
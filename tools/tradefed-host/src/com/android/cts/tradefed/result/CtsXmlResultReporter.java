@@ -19,6 +19,8 @@ package com.android.cts.tradefed.result;
 import com.android.cts.tradefed.build.CtsBuildHelper;
 import com.android.cts.tradefed.device.DeviceInfoCollector;
 import com.android.cts.tradefed.testtype.CtsTest;
+import com.android.cts.tradefed.util.CtsHostStore;
+import com.android.cts.util.AbiUtils;
 import com.android.ddmlib.Log;
 import com.android.ddmlib.Log.LogLevel;
 import com.android.ddmlib.testrunner.TestIdentifier;
@@ -39,6 +41,7 @@ import com.android.tradefed.util.FileUtil;
 import com.android.tradefed.util.StreamUtil;
 
 import org.kxml2.io.KXmlSerializer;
+import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -47,13 +50,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Writes results to an XML files in the CTS format.
  * <p/>
- * Collects all test info in memory, then dumps to file when invocation is complete.
+ * Records results incrementally in a {@link ResultJournal}, then merges the journal into an XML
+ * file when invocation is complete, one test package at a time. Results are recovered from the
+ * journal if the invocation does not complete.
  * <p/>
  * Outputs xml in format governed by the cts_result.xsd
  */
@@ -104,9 +110,10 @@ public class CtsXmlResultReporter
     protected IBuildInfo mBuildInfo;
     private String mStartTime;
     private String mDeviceSerial;
+    /** holds the device info, the test packages are only kept in the journal */
     private TestResults mResults = new TestResults();
-    private TestPackageResult mCurrentPkgResult = null;
-    private Test mCurrentTest = null;
+    private String mCurrentAbi = null;
+    private TestIdentifier mCurrentTest = null;
     private boolean mIsDeviceInfoRun = false;
     private boolean mIsExtendedDeviceInfoRun = false;
     private ResultReporter mReporter;
@@ -114,6 +121,7 @@ public class CtsXmlResultReporter
     private String mSuiteName;
     private String mReferenceUrl;
     private ILogSaver mLogSaver;
+    private ResultJournal mJournal;
 
     public void setReportDir(File reportDir) {
         mReportDir = reportDir;
@@ -139,15 +147,15 @@ public class CtsXmlResultReporter
             buildInfo.getDeviceSerial();
         if (mContinueSessionId != null) {
             CLog.d("Continuing session %d", mContinueSessionId);
-            // reuse existing directory
+            // reuse existing directory, its results are merged when the invocation ends
             TestResultRepo resultRepo = new TestResultRepo(ctsBuildHelper.getResultsDir());
-            mResults = resultRepo.getResult(mContinueSessionId);
-            if (mResults == null) {
+            List<ITestSummary> summaries = resultRepo.getSummaries();
+            if (mContinueSessionId < 0 || mContinueSessionId >= summaries.size()) {
                 throw new IllegalArgumentException(String.format("Could not find session %d",
                         mContinueSessionId));
             }
-            mPlanName = resultRepo.getSummaries().get(mContinueSessionId).getTestPlan();
-            mStartTime = resultRepo.getSummaries().get(mContinueSessionId).getStartTime();
+            mPlanName = summaries.get(mContinueSessionId).getTestPlan();
+            mStartTime = summaries.get(mContinueSessionId).getStartTime();
             mReportDir = resultRepo.getReportDir(mContinueSessionId);
         } else {
             if (mReportDir == null) {
@@ -163,6 +171,14 @@ public class CtsXmlResultReporter
 
         ctsBuild.addBuildAttribute(CTS_RESULT_DIR, mReportDir.getAbsolutePath());
 
+        try {
+            mJournal = new ResultJournal(mReportDir);
+            mJournal.writeInvocationStarted(mPlanName, mStartTime, mDeviceSerial);
+        } catch (IOException e) {
+            CLog.e("Failed to open result journal in %s", mReportDir.getAbsolutePath());
+            CLog.e(e);
+        }
+
         // TODO: allow customization of log dir
         // create a unique directory for saving logs, with same name as result dir
         File rootLogDir = getBuildHelper(ctsBuild).getLogsDir();
@@ -238,11 +254,9 @@ public class CtsXmlResultReporter
     @Override
     public void testLogSaved(String dataName, LogDataType dataType, InputStreamSource dataStream,
             LogFile logFile) {
-        if (mIncludeTestLogTags && mCurrentTest != null) {
-            TestLog log = TestLog.fromDataName(dataName, logFile.getUrl());
-            if (log != null) {
-                mCurrentTest.addTestLog(log);
-            }
+        if (mIncludeTestLogTags && mCurrentTest != null && mJournal != null &&
+                TestLog.fromDataName(dataName, logFile.getUrl()) != null) {
+            mJournal.writeTestLog(mCurrentTest, dataName, logFile.getUrl());
         }
     }
 
@@ -265,8 +279,10 @@ public class CtsXmlResultReporter
         mIsDeviceInfoRun = DeviceInfoCollector.IDS.contains(id);
         mIsExtendedDeviceInfoRun = DeviceInfoCollector.EXTENDED_IDS.contains(id);
         if (!mIsDeviceInfoRun && !mIsExtendedDeviceInfoRun) {
-            mCurrentPkgResult = mResults.getOrCreatePackage(id);
-            mCurrentPkgResult.setDeviceSerial(mDeviceSerial);
+            mCurrentAbi = AbiUtils.parseId(id)[0];
+            if (mJournal != null) {
+                mJournal.writeTestRunStarted(id, mDeviceSerial);
+            }
         }
     }
 
@@ -276,7 +292,10 @@ public class CtsXmlResultReporter
     @Override
     public void testStarted(TestIdentifier test) {
         if (!mIsDeviceInfoRun && !mIsExtendedDeviceInfoRun) {
-            mCurrentTest = mCurrentPkgResult.insertTest(test);
+            mCurrentTest = test;
+            if (mJournal != null) {
+                mJournal.writeTestStarted(test, TimeUtil.getTimestamp());
+            }
         }
     }
 
@@ -286,7 +305,9 @@ public class CtsXmlResultReporter
     @Override
     public void testFailed(TestIdentifier test, String trace) {
         if (!mIsDeviceInfoRun && !mIsExtendedDeviceInfoRun) {
-            mCurrentPkgResult.reportTestFailure(test, CtsTestStatus.FAIL, trace);
+            if (mJournal != null) {
+                mJournal.writeTestFailed(test, CtsTestStatus.FAIL, trace);
+            }
         }
     }
 
@@ -297,7 +318,9 @@ public class CtsXmlResultReporter
     public void testAssumptionFailure(TestIdentifier test, String trace) {
         // TODO: do something different here?
         if (!mIsDeviceInfoRun && !mIsExtendedDeviceInfoRun) {
-            mCurrentPkgResult.reportTestFailure(test, CtsTestStatus.FAIL, trace);
+            if (mJournal != null) {
+                mJournal.writeTestFailed(test, CtsTestStatus.FAIL, trace);
+            }
         }
     }
 
@@ -314,8 +337,18 @@ public class CtsXmlResultReporter
      */
     @Override
     public void testEnded(TestIdentifier test, Map<String, String> testMetrics) {
-        if (!mIsDeviceInfoRun && !mIsExtendedDeviceInfoRun) {
-            mCurrentPkgResult.reportTestEnded(test, testMetrics);
+        if (!mIsDeviceInfoRun && !mIsExtendedDeviceInfoRun && mJournal != null) {
+            if (!testMetrics.containsKey(TestPackageResult.CTS_RESULT_KEY)) {
+                // a host test stores its result in the CtsHostStore instead, which can only be
+                // read once, so journal it with the test metrics
+                String ctsResult = CtsHostStore.removeCtsResult(mDeviceSerial, mCurrentAbi,
+                        test.toString());
+                if (ctsResult != null) {
+                    testMetrics = new HashMap<String, String>(testMetrics);
+                    testMetrics.put(TestPackageResult.CTS_RESULT_KEY, ctsResult);
+                }
+            }
+            mJournal.writeTestEnded(test, TimeUtil.getTimestamp(), testMetrics);
         }
     }
 
@@ -324,12 +357,14 @@ public class CtsXmlResultReporter
      */
     @Override
     public void testRunEnded(long elapsedTime, Map<String, String> runMetrics) {
-        if (mIsDeviceInfoRun) {
-            mResults.populateDeviceInfoMetrics(runMetrics);
-        } else if (mIsExtendedDeviceInfoRun) {
+        if (mIsExtendedDeviceInfoRun) {
             checkExtendedDeviceInfoMetrics(runMetrics);
+        } else if (mJournal == null) {
+            CLog.w("No result journal, dropping results of test run");
+        } else if (mIsDeviceInfoRun) {
+            mJournal.writeDeviceInfo(runMetrics);
         } else {
-            mCurrentPkgResult.populateMetrics(runMetrics);
+            mJournal.writeTestRunEnded(runMetrics);
         }
     }
 
@@ -354,7 +389,14 @@ public class CtsXmlResultReporter
         }
 
         File reportFile = getResultFile(mReportDir);
-        createXmlResult(reportFile, mStartTime, elapsedTime);
+        if (mJournal != null) {
+            mJournal.close();
+            mJournal = null;
+            if (createXmlResult(reportFile, mStartTime, elapsedTime)) {
+                // the result XML now holds all journaled results
+                ResultJournal.getJournalFile(mReportDir).delete();
+            }
+        }
         if (mUseLogSaver) {
             FileInputStream fis = null;
             try {
@@ -387,12 +429,27 @@ public class CtsXmlResultReporter
 
     /**
      * Creates a report file and populates it with the report data from the completed tests.
+     * <p/>
+     * The report data is merged from the result journal and the existing report file, if the
+     * session is continued. The merged report is then written to a temporary file first.
+     *
+     * @return <code>true</code> if the report file was written successfully
      */
-    private void createXmlResult(File reportFile, String startTimestamp, long elapsedTime) {
+    private boolean createXmlResult(File reportFile, String startTimestamp, long elapsedTime) {
         String endTime = getTimestamp();
+        File previousReportFile = reportFile.exists() ? reportFile : null;
+        File outputFile = previousReportFile == null ? reportFile :
+                new File(mReportDir, TEST_RESULT_FILE_NAME + ".tmp");
         OutputStream stream = null;
         try {
-            stream = createOutputResultStream(reportFile);
+            ResultMerger merger = new ResultMerger(previousReportFile,
+                    ResultJournal.getJournalFile(mReportDir));
+            merger.populateDeviceInfo(mResults);
+            // the summary precedes the packages, so count the tests in a first pass
+            TestCounter counter = new TestCounter();
+            merger.visitPackages(counter);
+
+            stream = createOutputResultStream(outputFile);
             KXmlSerializer serializer = new KXmlSerializer();
             serializer.setOutput(stream, "UTF-8");
             serializer.startDocument("UTF-8", false);
@@ -400,17 +457,28 @@ public class CtsXmlResultReporter
                     "http://xmlpull.org/v1/doc/features.html#indent-output", true);
             serializer.processingInstruction("xml-stylesheet type=\"text/xsl\"  " +
                     "href=\"cts_result.xsl\"");
-            serializeResultsDoc(serializer, startTimestamp, endTime);
+            serializeResultsDoc(serializer, startTimestamp, endTime, merger, counter);
             serializer.endDocument();
+            StreamUtil.close(stream);
+            stream = null;
+            if (outputFile != reportFile && outputFile.exists()) {
+                reportFile.delete();
+                if (!outputFile.renameTo(reportFile)) {
+                    throw new IOException("Failed to replace " + reportFile.getAbsolutePath());
+                }
+            }
             String msg = String.format("XML test result file generated at %s. Passed %d, " +
                     "Failed %d, Not Executed %d", mReportDir.getName(),
-                    mResults.countTests(CtsTestStatus.PASS),
-                    mResults.countTests(CtsTestStatus.FAIL),
-                    mResults.countTests(CtsTestStatus.NOT_EXECUTED));
+                    counter.mPassed, counter.mFailed, counter.mNotExecuted);
             logResult(msg);
             logResult("Time: %s", TimeUtil.formatElapsedTime(elapsedTime));
+            return true;
         } catch (IOException e) {
             Log.e(LOG_TAG, "Failed to generate report data");
+            return false;
+        } catch (XmlPullParserException e) {
+            Log.e(LOG_TAG, "Failed to merge previous report data");
+            return false;
         } finally {
             StreamUtil.close(stream);
         }
@@ -422,10 +490,14 @@ public class CtsXmlResultReporter
      * @param serializer the {@link KXmlSerializer} to use
      * @param startTime the user-friendly starting time of the test invocation
      * @param endTime the user-friendly ending time of the test invocation
+     * @param merger the {@link ResultMerger} providing the test packages
+     * @param counter the {@link TestCounter} that counted the tests of the packages
      * @throws IOException
+     * @throws XmlPullParserException
      */
-    private void serializeResultsDoc(KXmlSerializer serializer, String startTime, String endTime)
-            throws IOException {
+    private void serializeResultsDoc(final KXmlSerializer serializer, String startTime,
+            String endTime, ResultMerger merger, TestCounter counter)
+            throws IOException, XmlPullParserException {
         serializer.startTag(ns, RESULT_TAG);
         serializer.attribute(ns, PLAN_ATTR, mPlanName);
         serializer.attribute(ns, STARTTIME_ATTR, startTime);
@@ -435,7 +507,14 @@ public class CtsXmlResultReporter
         if (mReferenceUrl != null) {
             serializer.attribute(ns, "referenceUrl", mReferenceUrl);
         }
-        mResults.serialize(serializer, mBuildInfo.getBuildId());
+        mResults.serializeHeader(serializer, mBuildInfo.getBuildId(), counter.mFailed,
+                counter.mNotExecuted, counter.mPassed);
+        merger.visitPackages(new ResultMerger.PackageVisitor() {
+            @Override
+            public void visit(TestPackageResult pkg) throws IOException {
+                pkg.serialize(serializer);
+            }
+        });
         // TODO: not sure why, but the serializer doesn't like this statement
         //serializer.endTag(ns, RESULT_TAG);
     }
@@ -444,6 +523,22 @@ public class CtsXmlResultReporter
         return new File(reportDir, TEST_RESULT_FILE_NAME);
     }
 
+    /**
+     * Counts the tests of the merged test packages by status.
+     */
+    private static class TestCounter implements ResultMerger.PackageVisitor {
+        int mPassed = 0;
+        int mFailed = 0;
+        int mNotExecuted = 0;
+
+        @Override
+        public void visit(TestPackageResult pkg) {
+            mPassed += pkg.countTests(CtsTestStatus.PASS);
+            mFailed += pkg.countTests(CtsTestStatus.FAIL);
+            mNotExecuted += pkg.countTests(CtsTestStatus.NOT_EXECUTED);
+        }
+    }
+
     /**
      * Creates the output stream to use for test results. Exposed for mocking.
      */
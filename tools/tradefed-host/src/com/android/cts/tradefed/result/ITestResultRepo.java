@@ -15,8 +15,12 @@
  */
 package com.android.cts.tradefed.result;
 
+import com.android.ddmlib.testrunner.TestIdentifier;
+
 import java.io.File;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Repository for CTS results.
@@ -38,6 +42,18 @@ public interface ITestResultRepo {
      */
     public TestResults getResult(int sessionId);
 
+    /**
+     * Get the tests with given status for given session id, without loading the full
+     * {@link TestResults}.
+     *
+     * @param sessionId the session id
+     * @param status the {@link CtsTestStatus} of the tests to get
+     * @return a {@link Map} of test package id to the tests with that status in the package, or
+     * <code>null</code> if the result with that session id cannot be retrieved
+     */
+    public Map<String, Set<TestIdentifier>> getTestsWithStatus(int sessionId,
+            CtsTestStatus status);
+
     /**
      * Get the report directory for given result
      * @param sessionId
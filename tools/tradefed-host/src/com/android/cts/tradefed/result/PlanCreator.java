@@ -38,6 +38,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -62,7 +63,7 @@ public class PlanCreator {
     private boolean mIncludeKnownFailures = false;
 
     private CtsTestStatus mResultFilter = null;
-    private TestResults mResult = null;
+    private Map<String, Set<TestIdentifier>> mFilteredTests = null;
 
     private File mPlanFile;
 
@@ -119,9 +120,9 @@ public class PlanCreator {
         ITestPackageRepo pkgDefRepo =
                 new TestPackageRepo(build.getTestCasesDir(), mIncludeKnownFailures);
         ITestPlan derivedPlan = new TestPlan(mPlanName, abis);
-        for (TestPackageResult pkg : mResult.getPackages()) {
-            Collection<TestIdentifier> filteredTests = pkg.getTestsWithStatus(mResultFilter);
-            String pkgId = pkg.getId();
+        for (Map.Entry<String, Set<TestIdentifier>> pkgEntry : mFilteredTests.entrySet()) {
+            Set<TestIdentifier> filteredTests = pkgEntry.getValue();
+            String pkgId = pkgEntry.getKey();
             ITestPackageDef pkgDef = pkgDefRepo.getTestPackage(pkgId);
             if (pkgDef != null) {
                 Collection<TestIdentifier> excludedTests =
@@ -145,12 +146,6 @@ public class PlanCreator {
         if (mSessionId == null) {
             throw new ConfigurationException("Missing --session argument");
         }
-        ITestResultRepo repo = new TestResultRepo(build.getResultsDir());
-        mResult = repo.getResult(mSessionId);
-        if (mResult == null) {
-            throw new ConfigurationException(String.format("Could not find session with id %d",
-                    mSessionId));
-        }
         if (mResultFilterString == null) {
             throw new ConfigurationException("Missing --result argument");
         }
@@ -159,6 +154,13 @@ public class PlanCreator {
             throw new ConfigurationException(
                     "Invalid result argument. Expected one of pass,fail,notExecuted");
         }
+        // only the tests with the requested status are needed, so avoid loading the full results
+        ITestResultRepo repo = new TestResultRepo(build.getResultsDir());
+        mFilteredTests = repo.getTestsWithStatus(mSessionId, mResultFilter);
+        if (mFilteredTests == null) {
+            throw new ConfigurationException(String.format("Could not find session with id %d",
+                    mSessionId));
+        }
         if (mPlanName == null) {
             throw new ConfigurationException("Missing --plan argument");
         }
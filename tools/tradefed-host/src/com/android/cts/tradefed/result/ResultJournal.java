@@ -0,0 +1,450 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.result;
+
+import com.android.ddmlib.testrunner.TestIdentifier;
+import com.android.tradefed.log.LogUtil.CLog;
+import com.android.tradefed.util.StreamUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An append-only journal of the results reported during an invocation.
+ * <p/>
+ * One record is written and flushed per result event, so that the results of an invocation
+ * survive a crash of the host before the result XML is written. The result XML is merged from
+ * the journal by {@link ResultMerger}, one test package at a time, using an {@link Index} of the
+ * test runs in the journal. A journal left behind in a result directory is replayed on top of
+ * its result XML, if any, when the session is loaded.
+ * <p/>
+ * Each record is one line of tab separated, escaped fields. The first field is the record type,
+ * the last field is an end marker so that a record truncated by a crash can be detected.
+ */
+class ResultJournal {
+
+    static final String JOURNAL_FILE_NAME = "testResult.journal";
+
+    static final String PLAN_KEY = "plan";
+    static final String START_TIME_KEY = "starttime";
+    static final String DEVICE_SERIAL_KEY = "deviceSerial";
+
+    private static final String INVOCATION_RECORD = "I";
+    private static final String DEVICE_INFO_RECORD = "D";
+    private static final String RUN_STARTED_RECORD = "R";
+    private static final String TEST_STARTED_RECORD = "S";
+    private static final String TEST_FAILED_RECORD = "F";
+    private static final String TEST_ENDED_RECORD = "E";
+    private static final String RUN_ENDED_RECORD = "M";
+    private static final String TEST_LOG_RECORD = "L";
+    private static final String END_MARKER = "$";
+
+    private final Writer mWriter;
+
+    /**
+     * Open the journal of given result directory for appending.
+     *
+     * @param reportDir the result directory
+     * @throws IOException if the journal could not be opened
+     */
+    ResultJournal(File reportDir) throws IOException {
+        mWriter = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(getJournalFile(reportDir), true), "UTF-8"));
+    }
+
+    /**
+     * @return the journal {@link File} of the given result directory
+     */
+    static File getJournalFile(File reportDir) {
+        return new File(reportDir, JOURNAL_FILE_NAME);
+    }
+
+    void writeInvocationStarted(String planName, String startTime, String deviceSerial) {
+        writeRecord(INVOCATION_RECORD, planName, startTime, deviceSerial);
+    }
+
+    void writeDeviceInfo(Map<String, String> metrics) {
+        writeRecord(DEVICE_INFO_RECORD, metrics);
+    }
+
+    void writeTestRunStarted(String id, String deviceSerial) {
+        writeRecord(RUN_STARTED_RECORD, id, deviceSerial);
+    }
+
+    void writeTestStarted(TestIdentifier test, String startTime) {
+        writeRecord(TEST_STARTED_RECORD, test.getClassName(), test.getTestName(), startTime);
+    }
+
+    void writeTestFailed(TestIdentifier test, CtsTestStatus status, String trace) {
+        writeRecord(TEST_FAILED_RECORD, test.getClassName(), test.getTestName(),
+                status.getValue(), trace);
+    }
+
+    void writeTestEnded(TestIdentifier test, String endTime, Map<String, String> metrics) {
+        List<String> fields = new ArrayList<String>();
+        fields.add(test.getClassName());
+        fields.add(test.getTestName());
+        fields.add(endTime);
+        addMetrics(fields, metrics);
+        writeRecord(TEST_ENDED_RECORD, fields.toArray(new String[fields.size()]));
+    }
+
+    void writeTestRunEnded(Map<String, String> metrics) {
+        writeRecord(RUN_ENDED_RECORD, metrics);
+    }
+
+    void writeTestLog(TestIdentifier test, String dataName, String url) {
+        writeRecord(TEST_LOG_RECORD, test.getClassName(), test.getTestName(), dataName, url);
+    }
+
+    /**
+     * Close the journal.
+     */
+    void close() {
+        StreamUtil.close(mWriter);
+    }
+
+    private void writeRecord(String type, Map<String, String> metrics) {
+        List<String> fields = new ArrayList<String>();
+        addMetrics(fields, metrics);
+        writeRecord(type, fields.toArray(new String[fields.size()]));
+    }
+
+    private static void addMetrics(List<String> fields, Map<String, String> metrics) {
+        if (metrics != null) {
+            for (Map.Entry<String, String> metric : metrics.entrySet()) {
+                fields.add(metric.getKey());
+                fields.add(metric.getValue());
+            }
+        }
+    }
+
+    private void writeRecord(String type, String... fields) {
+        StringBuilder record = new StringBuilder(type);
+        for (String field : fields) {
+            record.append('\t');
+            escape(field, record);
+        }
+        record.append('\t');
+        record.append(END_MARKER);
+        record.append('\n');
+        try {
+            mWriter.write(record.toString());
+            mWriter.flush();
+        } catch (IOException e) {
+            CLog.e("Failed to write result journal record");
+            CLog.e(e);
+        }
+    }
+
+    /**
+     * Append a field to a record, escaping tabs and line breaks.
+     */
+    static void escape(String field, StringBuilder builder) {
+        if (field == null) {
+            // null is stored as an empty field with a marker
+            builder.append("\\0");
+            return;
+        }
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * Reverse {@link #escape(String, StringBuilder)} for a single field.
+     */
+    static String unescape(String field) {
+        if (field.equals("\\0")) {
+            return null;
+        }
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder builder = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                char next = field.charAt(++i);
+                switch (next) {
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    default:
+                        builder.append(next);
+                }
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static Map<String, String> parseMetrics(String[] record, int begin) {
+        Map<String, String> metrics = new HashMap<String, String>();
+        for (int i = begin; i + 1 < record.length; i += 2) {
+            metrics.put(record[i], record[i + 1]);
+        }
+        return metrics;
+    }
+
+    /**
+     * Replay the records of a journal into a {@link TestResults}.
+     *
+     * @param journalFile the journal to replay
+     * @param results the {@link TestResults} to apply the records to
+     * @return the invocation attributes found in the journal, keyed by {@link #PLAN_KEY},
+     *         {@link #START_TIME_KEY} and {@link #DEVICE_SERIAL_KEY}
+     * @throws IOException if the journal could not be read
+     */
+    static Map<String, String> replay(File journalFile, TestResults results) throws IOException {
+        Map<String, String> invocationAttributes = new HashMap<String, String>();
+        RecordReader reader = new RecordReader(journalFile, 0);
+        try {
+            TestPackageResult currentPkg = null;
+            String[] record;
+            while ((record = reader.readRecord()) != null) {
+                String type = record[0];
+                if (INVOCATION_RECORD.equals(type) && record.length == 4) {
+                    invocationAttributes.put(PLAN_KEY, record[1]);
+                    invocationAttributes.put(START_TIME_KEY, record[2]);
+                    invocationAttributes.put(DEVICE_SERIAL_KEY, record[3]);
+                } else if (DEVICE_INFO_RECORD.equals(type)) {
+                    results.populateDeviceInfoMetrics(parseMetrics(record, 1));
+                } else if (RUN_STARTED_RECORD.equals(type) && record.length == 3) {
+                    currentPkg = results.getOrCreatePackage(record[1]);
+                    currentPkg.setDeviceSerial(record[2]);
+                } else if (currentPkg == null) {
+                    CLog.w("Skipping result journal record %s outside of a test run", type);
+                } else {
+                    replayRunRecord(record, currentPkg);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return invocationAttributes;
+    }
+
+    /**
+     * Apply a record of a test run to the result of its package.
+     */
+    private static void replayRunRecord(String[] record, TestPackageResult pkg) {
+        String type = record[0];
+        if (TEST_STARTED_RECORD.equals(type) && record.length == 4) {
+            Test test = pkg.insertTest(new TestIdentifier(record[1], record[2]));
+            test.setStartTime(record[3]);
+        } else if (TEST_FAILED_RECORD.equals(type) && record.length == 5) {
+            pkg.reportTestFailure(new TestIdentifier(record[1], record[2]),
+                    CtsTestStatus.getStatus(record[3]), record[4]);
+        } else if (TEST_ENDED_RECORD.equals(type) && record.length >= 4) {
+            TestIdentifier testId = new TestIdentifier(record[1], record[2]);
+            pkg.reportTestEnded(testId, parseMetrics(record, 4));
+            pkg.findTest(testId).setEndTime(record[3]);
+        } else if (RUN_ENDED_RECORD.equals(type)) {
+            pkg.populateMetrics(parseMetrics(record, 1));
+        } else if (TEST_LOG_RECORD.equals(type) && record.length == 5) {
+            Test test = pkg.findTest(new TestIdentifier(record[1], record[2]));
+            TestLog log = TestLog.fromDataName(record[3], record[4]);
+            if (test != null && log != null) {
+                test.addTestLog(log);
+            }
+        } else if (!INVOCATION_RECORD.equals(type) && !DEVICE_INFO_RECORD.equals(type)) {
+            CLog.w("Skipping unrecognized result journal record %s", type);
+        }
+    }
+
+    /**
+     * Read a journal once to find where the runs of each test package start.
+     *
+     * @param journalFile the journal to index
+     * @return the {@link Index} of the journal
+     * @throws IOException if the journal could not be read
+     */
+    static Index index(File journalFile) throws IOException {
+        Index index = new Index();
+        RecordReader reader = new RecordReader(journalFile, 0);
+        try {
+            long offset = reader.getOffset();
+            String[] record;
+            while ((record = reader.readRecord()) != null) {
+                String type = record[0];
+                if (DEVICE_INFO_RECORD.equals(type)) {
+                    index.mDeviceInfoMetrics.add(parseMetrics(record, 1));
+                } else if (RUN_STARTED_RECORD.equals(type) && record.length == 3) {
+                    List<Long> runOffsets = index.mRunOffsets.get(record[1]);
+                    if (runOffsets == null) {
+                        runOffsets = new ArrayList<Long>();
+                        index.mRunOffsets.put(record[1], runOffsets);
+                    }
+                    runOffsets.add(offset);
+                }
+                offset = reader.getOffset();
+            }
+        } finally {
+            reader.close();
+        }
+        return index;
+    }
+
+    /**
+     * Replay the runs of one test package found by {@link #index(File)}.
+     *
+     * @param journalFile the indexed journal
+     * @param runOffsets the offsets of the runs of the package in the journal
+     * @param pkg the {@link TestPackageResult} to apply the runs to
+     * @throws IOException if the journal could not be read
+     */
+    static void replayPackage(File journalFile, List<Long> runOffsets, TestPackageResult pkg)
+            throws IOException {
+        for (long offset : runOffsets) {
+            RecordReader reader = new RecordReader(journalFile, offset);
+            try {
+                // the first record starts the run, the run lasts until the next one starts
+                String[] record = reader.readRecord();
+                pkg.setDeviceSerial(record[2]);
+                while ((record = reader.readRecord()) != null &&
+                        !RUN_STARTED_RECORD.equals(record[0])) {
+                    replayRunRecord(record, pkg);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * The test runs and device info of a journal, see {@link ResultJournal#index(File)}.
+     */
+    static class Index {
+        private final List<Map<String, String>> mDeviceInfoMetrics =
+                new ArrayList<Map<String, String>>();
+        private final SortedMap<String, List<Long>> mRunOffsets =
+                new TreeMap<String, List<Long>>();
+
+        /**
+         * @return the device info metrics of the journal, in the order they were recorded
+         */
+        List<Map<String, String>> getDeviceInfoMetrics() {
+            return mDeviceInfoMetrics;
+        }
+
+        /**
+         * @return the offsets of the runs of each test package, keyed by package id in order
+         */
+        SortedMap<String, List<Long>> getRunOffsets() {
+            return mRunOffsets;
+        }
+    }
+
+    /**
+     * Reads the records of a journal from a given offset, keeping track of the offset of the
+     * next record.
+     */
+    private static class RecordReader {
+        private final InputStream mStream;
+        private final ByteArrayOutputStream mLine = new ByteArrayOutputStream();
+        private long mOffset;
+
+        RecordReader(File journalFile, long offset) throws IOException {
+            FileInputStream stream = new FileInputStream(journalFile);
+            stream.getChannel().position(offset);
+            mStream = new BufferedInputStream(stream);
+            mOffset = offset;
+        }
+
+        long getOffset() {
+            return mOffset;
+        }
+
+        /**
+         * @return the type and unescaped fields of the next complete record, or
+         *         <code>null</code> at the end of the journal
+         */
+        String[] readRecord() throws IOException {
+            String line;
+            while ((line = readLine()) != null) {
+                String[] rawFields = line.split("\t", -1);
+                if (rawFields.length < 2 ||
+                        !END_MARKER.equals(rawFields[rawFields.length - 1])) {
+                    CLog.w("Skipping incomplete result journal record");
+                    continue;
+                }
+                // keep the record type, strip the end marker
+                String[] record = new String[rawFields.length - 1];
+                record[0] = rawFields[0];
+                for (int i = 1; i < record.length; i++) {
+                    record[i] = unescape(rawFields[i]);
+                }
+                return record;
+            }
+            return null;
+        }
+
+        private String readLine() throws IOException {
+            mLine.reset();
+            int b;
+            while ((b = mStream.read()) >= 0) {
+                mOffset++;
+                if (b == '\n') {
+                    return mLine.toString("UTF-8");
+                }
+                mLine.write(b);
+            }
+            return mLine.size() > 0 ? mLine.toString("UTF-8") : null;
+        }
+
+        void close() {
+            StreamUtil.close(mStream);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.result;
+
+import com.android.tradefed.log.LogUtil.CLog;
+import com.android.tradefed.util.StreamUtil;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the results of a session from its previous result XML, if any, and its
+ * {@link ResultJournal}.
+ * <p/>
+ * The journal is indexed once. Packages are then visited one at a time in order of their id, as
+ * they are serialized to the result XML: the runs of each package in the journal are replayed on
+ * top of the package parsed from the previous result XML. Only one package is held in memory at a
+ * time, so memory does not grow with the number of tests in the session.
+ */
+class ResultMerger {
+
+    /**
+     * Receives the merged packages of a session.
+     */
+    interface PackageVisitor {
+        void visit(TestPackageResult pkg) throws IOException;
+    }
+
+    private final File mPreviousResultFile;
+    private final File mJournalFile;
+    private final ResultJournal.Index mIndex;
+
+    /**
+     * Create a {@link ResultMerger}, indexing the journal.
+     *
+     * @param previousResultFile the result XML of the session, or <code>null</code> if there is
+     *            none
+     * @param journalFile the journal of the session
+     * @throws IOException if the journal could not be read
+     */
+    ResultMerger(File previousResultFile, File journalFile) throws IOException {
+        mPreviousResultFile = previousResultFile;
+        mJournalFile = journalFile;
+        mIndex = ResultJournal.index(journalFile);
+    }
+
+    /**
+     * Populate the device info from the previous result XML, followed by the one in the journal.
+     *
+     * @param results the {@link TestResults} to populate
+     * @throws IOException if the results could not be read
+     * @throws XmlPullParserException if the previous result XML could not be parsed
+     */
+    void populateDeviceInfo(TestResults results) throws IOException, XmlPullParserException {
+        if (mPreviousResultFile != null) {
+            Reader reader = new BufferedReader(new FileReader(mPreviousResultFile));
+            try {
+                XmlPullParser parser = createParser(reader);
+                int eventType = parser.getEventType();
+                while (eventType != XmlPullParser.END_DOCUMENT) {
+                    if (eventType == XmlPullParser.START_TAG) {
+                        if (parser.getName().equals(DeviceInfoResult.TAG)) {
+                            results.parseDeviceInfo(parser);
+                            break;
+                        } else if (parser.getName().equals(TestPackageResult.TAG)) {
+                            // the device info precedes all packages
+                            break;
+                        }
+                    }
+                    eventType = parser.next();
+                }
+            } finally {
+                StreamUtil.close(reader);
+            }
+        }
+        for (Map<String, String> metrics : mIndex.getDeviceInfoMetrics()) {
+            results.populateDeviceInfoMetrics(metrics);
+        }
+    }
+
+    /**
+     * Visit the merged packages of the session in order of their id.
+     * <p/>
+     * The packages of the previous result XML are expected in order of their id, as written by
+     * {@link TestResults#serialize}.
+     *
+     * @param visitor the {@link PackageVisitor} to pass each package to
+     * @throws IOException if the results could not be read
+     * @throws XmlPullParserException if the previous result XML could not be parsed
+     */
+    void visitPackages(PackageVisitor visitor) throws IOException, XmlPullParserException {
+        Iterator<Map.Entry<String, List<Long>>> journalPkgs =
+                mIndex.getRunOffsets().entrySet().iterator();
+        Map.Entry<String, List<Long>> journalPkg = journalPkgs.hasNext() ?
+                journalPkgs.next() : null;
+        if (mPreviousResultFile != null) {
+            Reader reader = new BufferedReader(new FileReader(mPreviousResultFile));
+            try {
+                XmlPullParser parser = createParser(reader);
+                int eventType = parser.getEventType();
+                while (eventType != XmlPullParser.END_DOCUMENT) {
+                    if (eventType == XmlPullParser.START_TAG &&
+                            parser.getName().equals(TestPackageResult.TAG)) {
+                        TestPackageResult pkg = new TestPackageResult();
+                        pkg.parse(parser);
+                        if (pkg.getId() == null) {
+                            CLog.w("Found package with no id");
+                        } else {
+                            // packages only found in the journal go first
+                            while (journalPkg != null &&
+                                    journalPkg.getKey().compareTo(pkg.getId()) < 0) {
+                                visitor.visit(replay(journalPkg, null));
+                                journalPkg = journalPkgs.hasNext() ? journalPkgs.next() : null;
+                            }
+                            if (journalPkg != null && journalPkg.getKey().equals(pkg.getId())) {
+                                replay(journalPkg, pkg);
+                                journalPkg = journalPkgs.hasNext() ? journalPkgs.next() : null;
+                            }
+                            visitor.visit(pkg);
+                        }
+                    }
+                    eventType = parser.next();
+                }
+            } finally {
+                StreamUtil.close(reader);
+            }
+        }
+        while (journalPkg != null) {
+            visitor.visit(replay(journalPkg, null));
+            journalPkg = journalPkgs.hasNext() ? journalPkgs.next() : null;
+        }
+    }
+
+    /**
+     * Replay the runs of a package in the journal.
+     *
+     * @param journalPkg the package id and offsets of its runs in the journal
+     * @param pkg the package to replay the runs on, or <code>null</code> to create one
+     * @return the package
+     */
+    private TestPackageResult replay(Map.Entry<String, List<Long>> journalPkg,
+            TestPackageResult pkg) throws IOException {
+        if (pkg == null) {
+            pkg = TestResults.createPackage(journalPkg.getKey());
+        }
+        ResultJournal.replayPackage(mJournalFile, journalPkg.getValue(), pkg);
+        return pkg;
+    }
+
+    private static XmlPullParser createParser(Reader reader) throws XmlPullParserException {
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setInput(reader);
+        return parser;
+    }
+}
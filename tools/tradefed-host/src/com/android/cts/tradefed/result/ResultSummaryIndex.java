@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.result;
+
+import com.android.tradefed.log.LogUtil.CLog;
+import com.android.tradefed.util.StreamUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A persistent index of the summaries of the sessions in a results directory.
+ * <p/>
+ * Parsing the summary of a session requires reading its whole result XML, which gets slow with
+ * many large sessions. The index stores the summary of each session together with the size and
+ * modification time of its result XML, and a summary is only reused while both still match.
+ * <p/>
+ * Each entry is one line of tab separated, escaped fields, in the format of
+ * {@link ResultJournal}.
+ */
+class ResultSummaryIndex {
+
+    static final String INDEX_FILE_NAME = "testResultSummaries.index";
+
+    private static final String VERSION = "1";
+    private static final int NUM_FIELDS = 9;
+
+    private final File mIndexFile;
+    private final Map<String, Entry> mEntries = new TreeMap<String, Entry>();
+    private boolean mIsModified = false;
+
+    /**
+     * Load the index of the given results directory, if any.
+     *
+     * @param testResultsDir the parent directory of results
+     */
+    ResultSummaryIndex(File testResultsDir) {
+        mIndexFile = new File(testResultsDir, INDEX_FILE_NAME);
+        if (mIndexFile.exists()) {
+            try {
+                load();
+            } catch (IOException e) {
+                CLog.w("Failed to load result summary index %s, rebuilding it",
+                        mIndexFile.getAbsolutePath());
+                mEntries.clear();
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(mIndexFile), "UTF-8"));
+        try {
+            String line = reader.readLine();
+            if (!VERSION.equals(line)) {
+                // unknown format, just rebuild the index
+                return;
+            }
+            while ((line = reader.readLine()) != null) {
+                String[] rawFields = line.split("\t", -1);
+                if (rawFields.length != NUM_FIELDS) {
+                    continue;
+                }
+                String[] fields = new String[NUM_FIELDS];
+                for (int i = 0; i < NUM_FIELDS; i++) {
+                    fields[i] = ResultJournal.unescape(rawFields[i]);
+                }
+                try {
+                    Entry entry = new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                            Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+                            Integer.parseInt(fields[5]), fields[6], fields[7], fields[8]);
+                    mEntries.put(fields[0], entry);
+                } catch (NumberFormatException e) {
+                    // skip the corrupted entry, it will be rebuilt
+                }
+            }
+        } finally {
+            StreamUtil.close(reader);
+        }
+    }
+
+    /**
+     * Get the indexed summary of a session.
+     *
+     * @param id the session id
+     * @param resultDir the result directory of the session
+     * @param resultFile the result XML of the session
+     * @return the {@link ITestSummary} or <code>null</code> if the session is not indexed or its
+     *         result XML changed since it was indexed.
+     */
+    ITestSummary getSummary(int id, File resultDir, File resultFile) {
+        Entry entry = mEntries.get(resultDir.getName());
+        if (entry == null || entry.mSize != resultFile.length() ||
+                entry.mLastModified != resultFile.lastModified()) {
+            return null;
+        }
+        TestSummaryXml summary = new TestSummaryXml(id, resultDir.getName());
+        summary.setSummary(entry.mNumPassed, entry.mNumFailed, entry.mNumNotExecuted,
+                entry.mPlan, entry.mStartTime, entry.mDeviceSerials);
+        return summary;
+    }
+
+    /**
+     * Add or replace the summary of a session.
+     *
+     * @param resultDir the result directory of the session
+     * @param resultFile the result XML the summary was parsed from
+     * @param summary the {@link ITestSummary} of the session
+     */
+    void putSummary(File resultDir, File resultFile, ITestSummary summary) {
+        mEntries.put(resultDir.getName(), new Entry(resultFile.lastModified(),
+                resultFile.length(), summary.getNumPassed(), summary.getNumFailed(),
+                summary.getNumIncomplete(), summary.getTestPlan(), summary.getStartTime(),
+                summary.getDeviceSerials()));
+        mIsModified = true;
+    }
+
+    /**
+     * Remove the summaries of all sessions but the given ones.
+     *
+     * @param resultDirs the result directories of the sessions to keep
+     */
+    void retainAll(Collection<File> resultDirs) {
+        Set<String> names = new HashSet<String>(resultDirs.size());
+        for (File resultDir : resultDirs) {
+            names.add(resultDir.getName());
+        }
+        Iterator<String> iter = mEntries.keySet().iterator();
+        while (iter.hasNext()) {
+            if (!names.contains(iter.next())) {
+                iter.remove();
+                mIsModified = true;
+            }
+        }
+    }
+
+    /**
+     * Write the index back to disk, if it was modified.
+     */
+    void save() {
+        if (!mIsModified) {
+            return;
+        }
+        // write to a temporary file first, so that concurrent readers never see a partial index
+        File tmpFile = null;
+        Writer writer = null;
+        try {
+            tmpFile = File.createTempFile(INDEX_FILE_NAME, ".tmp", mIndexFile.getParentFile());
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile),
+                    "UTF-8"));
+            writer.write(VERSION);
+            writer.write('\n');
+            StringBuilder line = new StringBuilder();
+            for (Map.Entry<String, Entry> mapEntry : mEntries.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                line.setLength(0);
+                appendFields(line, mapEntry.getKey(), Long.toString(entry.mLastModified),
+                        Long.toString(entry.mSize), Integer.toString(entry.mNumPassed),
+                        Integer.toString(entry.mNumFailed),
+                        Integer.toString(entry.mNumNotExecuted), entry.mPlan, entry.mStartTime,
+                        entry.mDeviceSerials);
+                line.append('\n');
+                writer.write(line.toString());
+            }
+            writer.close();
+            writer = null;
+            if (!tmpFile.renameTo(mIndexFile)) {
+                CLog.w("Failed to update result summary index %s", mIndexFile.getAbsolutePath());
+                return;
+            }
+            tmpFile = null;
+            mIsModified = false;
+        } catch (IOException e) {
+            CLog.w("Failed to write result summary index %s", mIndexFile.getAbsolutePath());
+            CLog.e(e);
+        } finally {
+            StreamUtil.close(writer);
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    private static void appendFields(StringBuilder line, String... fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+            ResultJournal.escape(fields[i], line);
+        }
+    }
+
+    /**
+     * The indexed summary of one session.
+     */
+    private static class Entry {
+        final long mLastModified;
+        final long mSize;
+        final int mNumPassed;
+        final int mNumFailed;
+        final int mNumNotExecuted;
+        final String mPlan;
+        final String mStartTime;
+        final String mDeviceSerials;
+
+        Entry(long lastModified, long size, int numPassed, int numFailed, int numNotExecuted,
+                String plan, String startTime, String deviceSerials) {
+            mLastModified = lastModified;
+            mSize = size;
+            mNumPassed = numPassed;
+            mNumFailed = numFailed;
+            mNumNotExecuted = numNotExecuted;
+            mPlan = plan;
+            mStartTime = startTime;
+            mDeviceSerials = deviceSerials;
+        }
+    }
+}
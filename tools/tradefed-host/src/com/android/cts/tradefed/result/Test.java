@@ -31,11 +31,11 @@ import java.util.List;
  */
 class Test extends AbstractXmlPullParser {
     static final String TAG = "Test";
-    private static final String NAME_ATTR = "name";
+    static final String NAME_ATTR = "name";
     private static final String MESSAGE_ATTR = "message";
     private static final String ENDTIME_ATTR = "endtime";
     private static final String STARTTIME_ATTR = "starttime";
-    private static final String RESULT_ATTR = "result";
+    static final String RESULT_ATTR = "result";
     private static final String SCENE_TAG = "FailedScene";
     private static final String STACK_TAG = "StackTrace";
     private static final String SUMMARY_TAG = "Summary";
@@ -125,6 +125,14 @@ class Test extends AbstractXmlPullParser {
         return mEndTime;
     }
 
+    void setStartTime(String startTime) {
+        mStartTime = startTime;
+    }
+
+    void setEndTime(String endTime) {
+        mEndTime = endTime;
+    }
+
     public String getStackTrace() {
         return mStackTrace;
     }
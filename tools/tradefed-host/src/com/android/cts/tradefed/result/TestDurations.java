@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.result;
+
+import com.android.tradefed.log.LogUtil.CLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durations of test packages observed in previous sessions.
+ * <p/>
+ * Durations are the wall clock time between the start of the first and the end of the last test
+ * of a package, as recorded in the result XML. Gaps between tests longer than
+ * {@link #MAX_TEST_GAP_MS} are not counted, e.g. while a session was interrupted before it was
+ * continued. For each package, the largest duration of the loaded sessions is used, since a
+ * session may have run only part of the package, e.g. a retry of its failed tests.
+ */
+public class TestDurations {
+
+    /** The longest gap between two tests that is counted as time of their package. */
+    static final long MAX_TEST_GAP_MS = 5 * 60 * 1000;
+
+    private static final Comparator<long[]> START_TIME_COMPARATOR = new Comparator<long[]>() {
+        @Override
+        public int compare(long[] span1, long[] span2) {
+            return Long.compare(span1[0], span2[0]);
+        }
+    };
+
+    private final Map<String, Long> mPackageDurations = new HashMap<String, Long>();
+
+    /**
+     * Load the durations from the most recent sessions in a {@link ITestResultRepo}.
+     *
+     * @param repo the {@link ITestResultRepo} to load from
+     * @param maxSessions the maximum number of sessions to load, most recent first
+     */
+    public static TestDurations loadFromResults(ITestResultRepo repo, int maxSessions) {
+        TestDurations durations = new TestDurations();
+        int numSessions = repo.getSummaries().size();
+        for (int i = numSessions - 1; i >= 0 && i >= numSessions - maxSessions; i--) {
+            TestResults results = repo.getResult(i);
+            if (results != null) {
+                durations.addResults(results);
+            }
+        }
+        CLog.i("Loaded durations of %d test packages", durations.mPackageDurations.size());
+        return durations;
+    }
+
+    /**
+     * Add the durations of all packages in the given results, keeping the larger duration of
+     * packages that are already known.
+     */
+    void addResults(TestResults results) {
+        for (TestPackageResult pkg : results.getPackages()) {
+            List<long[]> testSpans = new ArrayList<long[]>();
+            for (TestSuite suite : pkg.getTestSuites()) {
+                addSuite(suite, testSpans);
+            }
+            if (testSpans.isEmpty()) {
+                continue;
+            }
+            long duration = getDuration(testSpans);
+            Long knownDuration = mPackageDurations.get(pkg.getId());
+            if (knownDuration == null || knownDuration < duration) {
+                mPackageDurations.put(pkg.getId(), duration);
+            }
+        }
+    }
+
+    private void addSuite(TestSuite suite, List<long[]> testSpans) {
+        for (TestSuite childSuite : suite.getTestSuites()) {
+            addSuite(childSuite, testSpans);
+        }
+        for (TestCase testCase : suite.getTestCases()) {
+            for (Test test : testCase.getTests()) {
+                long startTime = TimeUtil.parseTimestamp(test.getStartTime());
+                long endTime = TimeUtil.parseTimestamp(test.getEndTime());
+                if (startTime >= 0 && endTime >= startTime) {
+                    testSpans.add(new long[] {startTime, endTime});
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the time covered by the given tests, without the gaps between them that are longer
+     * than {@link #MAX_TEST_GAP_MS}.
+     */
+    private static long getDuration(List<long[]> testSpans) {
+        Collections.sort(testSpans, START_TIME_COMPARATOR);
+        long duration = 0;
+        long startTime = testSpans.get(0)[0];
+        long endTime = testSpans.get(0)[1];
+        for (long[] testSpan : testSpans) {
+            if (testSpan[0] - endTime > MAX_TEST_GAP_MS) {
+                duration += endTime - startTime;
+                startTime = testSpan[0];
+            }
+            endTime = Math.max(endTime, testSpan[1]);
+        }
+        return duration + endTime - startTime;
+    }
+
+    /**
+     * @param packageId the id of the test package
+     * @return the duration of the package in ms, or <code>null</code> if unknown.
+     */
+    public Long getPackageDuration(String packageId) {
+        return mPackageDurations.get(packageId);
+    }
+}
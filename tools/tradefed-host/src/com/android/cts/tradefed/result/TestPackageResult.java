@@ -48,9 +48,9 @@ class TestPackageResult extends AbstractXmlPullParser {
     public static final String CTS_RESULT_KEY = "CTS_TEST_RESULT";
 
     private static final String DIGEST_ATTR = "digest";
-    private static final String APP_PACKAGE_NAME_ATTR = "appPackageName";
+    static final String APP_PACKAGE_NAME_ATTR = "appPackageName";
     private static final String NAME_ATTR = "name";
-    private static final String ABI_ATTR = "abi";
+    static final String ABI_ATTR = "abi";
     private static final String ns = CtsXmlResultReporter.ns;
     private static final String SIGNATURE_TEST_PKG = "android.tests.sigtest";
 
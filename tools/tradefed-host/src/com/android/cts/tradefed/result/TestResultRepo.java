@@ -15,6 +15,7 @@
  */
 package com.android.cts.tradefed.result;
 
+import com.android.ddmlib.testrunner.TestIdentifier;
 import com.android.tradefed.log.LogUtil.CLog;
 import com.android.tradefed.util.xml.AbstractXmlParser.ParseException;
 
@@ -23,10 +24,15 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * An implementation of {@link ITestResultsRepo}.
@@ -38,6 +44,11 @@ public class TestResultRepo implements ITestResultRepo {
      */
     private List<File> mResultDirs;
 
+    /**
+     * persisted summaries of the sessions, so that result XMLs are only parsed once
+     */
+    private final ResultSummaryIndex mSummaryIndex;
+
     /**
      * Create a {@link TestResultRepo} from a directory of results
      *
@@ -45,6 +56,7 @@ public class TestResultRepo implements ITestResultRepo {
      */
     public TestResultRepo(File testResultsDir) {
         mResultDirs = new ArrayList<File>();
+        mSummaryIndex = new ResultSummaryIndex(testResultsDir);
         File[] resultArray = testResultsDir.listFiles(new ResultDirFilter());
         if (resultArray != null) {
             List<File> resultList = new ArrayList<File>();
@@ -53,7 +65,9 @@ public class TestResultRepo implements ITestResultRepo {
             for (int i=0; i < resultList.size(); i++) {
                 File resultFile = new File(resultList.get(i),
                         CtsXmlResultReporter.TEST_RESULT_FILE_NAME);
-                if (resultFile.exists()) {
+                // sessions that did not complete only have a result journal
+                if (resultFile.exists() ||
+                        ResultJournal.getJournalFile(resultList.get(i)).exists()) {
                     mResultDirs.add(resultList.get(i));
                 }
             }
@@ -67,9 +81,33 @@ public class TestResultRepo implements ITestResultRepo {
 
     private ITestSummary parseSummary(int id, File resultDir) {
         TestSummaryXml result = new TestSummaryXml(id, resultDir.getName());
+        File resultFile = new File(resultDir, CtsXmlResultReporter.TEST_RESULT_FILE_NAME);
+        File journalFile = ResultJournal.getJournalFile(resultDir);
+        if (journalFile.exists()) {
+            // results in the XML are incomplete, summarize the replayed journal instead
+            TestResults results = new TestResults();
+            try {
+                if (resultFile.exists()) {
+                    results.parse(new BufferedReader(new FileReader(resultFile)));
+                }
+                Map<String, String> attributes = ResultJournal.replay(journalFile, results);
+                result.setSummary(results, attributes.get(ResultJournal.PLAN_KEY),
+                        attributes.get(ResultJournal.START_TIME_KEY),
+                        attributes.get(ResultJournal.DEVICE_SERIAL_KEY));
+            } catch (ParseException e) {
+                CLog.e(e);
+            } catch (IOException e) {
+                CLog.e(e);
+            }
+            return result;
+        }
+        ITestSummary indexedSummary = mSummaryIndex.getSummary(id, resultDir, resultFile);
+        if (indexedSummary != null) {
+            return indexedSummary;
+        }
         try {
-            result.parse(new BufferedReader(new FileReader(new File(resultDir,
-                    CtsXmlResultReporter.TEST_RESULT_FILE_NAME))));
+            result.parse(new BufferedReader(new FileReader(resultFile)));
+            mSummaryIndex.putSummary(resultDir, resultFile, result);
             return result;
         } catch (ParseException e) {
             CLog.e(e);
@@ -85,12 +123,14 @@ public class TestResultRepo implements ITestResultRepo {
      */
     @Override
     public List<ITestSummary> getSummaries() {
-        // parsing the summary data should be relatively quick, so just parse it every time
-        // rather than caching it
+        // only sessions that are new or changed since the last call are parsed, the summaries of
+        // all others come from the index
         List<ITestSummary> summaries = new ArrayList<ITestSummary>(mResultDirs.size());
         for (int i = 0; i < mResultDirs.size(); i++) {
             summaries.add(parseSummary(i, mResultDirs.get(i)));
         }
+        mSummaryIndex.retainAll(mResultDirs);
+        mSummaryIndex.save();
         return summaries;
     }
 
@@ -108,12 +148,58 @@ public class TestResultRepo implements ITestResultRepo {
             TestResults results = new TestResults();
             File resultFile = new File(mResultDirs.get(sessionId),
                     CtsXmlResultReporter.TEST_RESULT_FILE_NAME);
-            results.parse(new BufferedReader(new FileReader(resultFile)));
+            File journalFile = ResultJournal.getJournalFile(mResultDirs.get(sessionId));
+            if (resultFile.exists() || !journalFile.exists()) {
+                results.parse(new BufferedReader(new FileReader(resultFile)));
+            }
+            if (journalFile.exists()) {
+                // recover the results of an invocation that did not complete
+                ResultJournal.replay(journalFile, results);
+            }
             return results;
         } catch (FileNotFoundException e) {
             CLog.e("Could not find result file for session %d", sessionId);
         } catch (ParseException e) {
             CLog.e("Failed to parse result file for session %d", sessionId);
+        } catch (IOException e) {
+            CLog.e("Failed to read result journal for session %d", sessionId);
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Set<TestIdentifier>> getTestsWithStatus(int sessionId,
+            CtsTestStatus status) {
+        if (mResultDirs.size() <= sessionId) {
+            CLog.e("Session id %d does not exist", sessionId);
+            return null;
+        }
+        if (ResultJournal.getJournalFile(mResultDirs.get(sessionId)).exists()) {
+            // the journal can only be replayed onto the full results
+            TestResults results = getResult(sessionId);
+            if (results == null) {
+                return null;
+            }
+            Map<String, Set<TestIdentifier>> tests =
+                    new LinkedHashMap<String, Set<TestIdentifier>>();
+            for (TestPackageResult pkg : results.getPackages()) {
+                tests.put(pkg.getId(),
+                        new LinkedHashSet<TestIdentifier>(pkg.getTestsWithStatus(status)));
+            }
+            return tests;
+        }
+        try {
+            TestStatusParser parser = new TestStatusParser(status);
+            parser.parse(new BufferedReader(new FileReader(new File(mResultDirs.get(sessionId),
+                    CtsXmlResultReporter.TEST_RESULT_FILE_NAME))));
+            return parser.getTests();
+        } catch (FileNotFoundException e) {
+            CLog.e("Could not find result file for session %d", sessionId);
+        } catch (ParseException e) {
+            CLog.e("Failed to parse result file for session %d", sessionId);
         }
         return null;
     }
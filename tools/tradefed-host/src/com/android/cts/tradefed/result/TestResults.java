@@ -105,9 +105,8 @@ class TestResults extends AbstractXmlPullParser {
      * @throws IOException
      */
     public void serialize(KXmlSerializer serializer, String buildId) throws IOException {
-        mDeviceInfo.serialize(serializer);
-        serializeHostInfo(serializer, buildId);
-        serializeTestSummary(serializer);
+        serializeHeader(serializer, buildId, countTests(CtsTestStatus.FAIL),
+                countTests(CtsTestStatus.NOT_EXECUTED), countTests(CtsTestStatus.PASS));
         // sort before serializing
         List<TestPackageResult> pkgs = new ArrayList<TestPackageResult>(mPackageResults.values());
         Collections.sort(pkgs, new PkgComparator());
@@ -116,6 +115,23 @@ class TestResults extends AbstractXmlPullParser {
         }
     }
 
+    /**
+     * Serialize the device info, host info and test summary that precede the test packages.
+     *
+     * @param serializer
+     * @param buildId
+     * @param failed the number of failed tests
+     * @param notExecuted the number of tests not executed
+     * @param passed the number of passed tests
+     * @throws IOException
+     */
+    void serializeHeader(KXmlSerializer serializer, String buildId, int failed, int notExecuted,
+            int passed) throws IOException {
+        mDeviceInfo.serialize(serializer);
+        serializeHostInfo(serializer, buildId);
+        serializeTestSummary(serializer, failed, notExecuted, passed);
+    }
+
     /**
      * Output the host info XML.
      *
@@ -162,14 +178,14 @@ class TestResults extends AbstractXmlPullParser {
      * @param serializer
      * @throws IOException
      */
-    private void serializeTestSummary(KXmlSerializer serializer) throws IOException {
+    private void serializeTestSummary(KXmlSerializer serializer, int failed, int notExecuted,
+            int passed) throws IOException {
         serializer.startTag(ns, SUMMARY_TAG);
-        serializer.attribute(ns, FAILED_ATTR, Integer.toString(countTests(CtsTestStatus.FAIL)));
-        serializer.attribute(ns, NOT_EXECUTED_ATTR,
-                Integer.toString(countTests(CtsTestStatus.NOT_EXECUTED)));
+        serializer.attribute(ns, FAILED_ATTR, Integer.toString(failed));
+        serializer.attribute(ns, NOT_EXECUTED_ATTR, Integer.toString(notExecuted));
         // ignore timeouts - these are reported as errors
         serializer.attribute(ns, TIMEOUT_ATTR, "0");
-        serializer.attribute(ns, PASS_ATTR, Integer.toString(countTests(CtsTestStatus.PASS)));
+        serializer.attribute(ns, PASS_ATTR, Integer.toString(passed));
         serializer.endTag(ns, SUMMARY_TAG);
     }
 
@@ -189,15 +205,25 @@ class TestResults extends AbstractXmlPullParser {
     public TestPackageResult getOrCreatePackage(String id) {
         TestPackageResult pkgResult = mPackageResults.get(id);
         if (pkgResult == null) {
-            pkgResult = new TestPackageResult();
-            String[] abiAndName = AbiUtils.parseId(id);
-            pkgResult.setAbi(abiAndName[0]);
-            pkgResult.setAppPackageName(abiAndName[1]);
+            pkgResult = createPackage(id);
             mPackageResults.put(id, pkgResult);
         }
         return pkgResult;
     }
 
+    /**
+     * Create a package with given id, that is not part of any results.
+     * @param id
+     * @return
+     */
+    static TestPackageResult createPackage(String id) {
+        TestPackageResult pkgResult = new TestPackageResult();
+        String[] abiAndName = AbiUtils.parseId(id);
+        pkgResult.setAbi(abiAndName[0]);
+        pkgResult.setAppPackageName(abiAndName[1]);
+        return pkgResult;
+    }
+
     /**
      * Populate the results with collected device info metrics.
      * @param runMetrics
@@ -205,4 +231,12 @@ class TestResults extends AbstractXmlPullParser {
     public void populateDeviceInfoMetrics(Map<String, String> runMetrics) {
         mDeviceInfo.populateMetrics(runMetrics);
     }
+
+    /**
+     * Populate the results with the device info from XML.
+     * @param parser the {@link XmlPullParser}, pointing at the start of the DeviceInfo tag
+     */
+    void parseDeviceInfo(XmlPullParser parser) throws XmlPullParserException, IOException {
+        mDeviceInfo.parse(parser);
+    }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.result;
+
+import com.android.cts.util.AbiUtils;
+import com.android.ddmlib.testrunner.TestIdentifier;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses the identifiers of the tests with a given status from the CTS result XML.
+ * <p/>
+ * Unlike {@link TestResults}, no result tree is built: tests are matched directly from the XML
+ * stream, and only the identifiers of the matching tests are kept. This is all that is needed to
+ * derive a plan from a session.
+ */
+class TestStatusParser extends AbstractXmlPullParser {
+
+    private final CtsTestStatus mStatus;
+    private final Map<String, Set<TestIdentifier>> mTests =
+            new LinkedHashMap<String, Set<TestIdentifier>>();
+
+    /**
+     * @param status the {@link CtsTestStatus} of the tests to collect
+     */
+    TestStatusParser(CtsTestStatus status) {
+        mStatus = status;
+    }
+
+    /**
+     * @return a {@link Map} of test package id to the tests with the requested status in the
+     *         package, in the order of the result XML.
+     */
+    Map<String, Set<TestIdentifier>> getTests() {
+        return mTests;
+    }
+
+    @Override
+    void parse(XmlPullParser parser) throws XmlPullParserException, IOException {
+        Set<TestIdentifier> pkgTests = null;
+        LinkedList<String> suiteNames = new LinkedList<String>();
+        // all tests of a test case share the same class name instance
+        String className = null;
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG) {
+                String tag = parser.getName();
+                if (tag.equals(TestPackageResult.TAG)) {
+                    pkgTests = new LinkedHashSet<TestIdentifier>();
+                    mTests.put(AbiUtils.createId(
+                            getAttribute(parser, TestPackageResult.ABI_ATTR),
+                            getAttribute(parser, TestPackageResult.APP_PACKAGE_NAME_ATTR)),
+                            pkgTests);
+                    suiteNames.clear();
+                } else if (pkgTests == null) {
+                    // not inside a test package
+                } else if (tag.equals(TestSuite.TAG)) {
+                    suiteNames.addLast(getAttribute(parser, "name"));
+                } else if (tag.equals(TestCase.TAG)) {
+                    className = getClassName(suiteNames, getAttribute(parser, "name"));
+                } else if (tag.equals(Test.TAG) && className != null) {
+                    String result = getAttribute(parser, Test.RESULT_ATTR);
+                    if (result != null && result.equalsIgnoreCase(mStatus.getValue())) {
+                        pkgTests.add(new TestIdentifier(className,
+                                getAttribute(parser, Test.NAME_ATTR)));
+                    }
+                }
+            } else if (eventType == XmlPullParser.END_TAG) {
+                String tag = parser.getName();
+                if (tag.equals(TestPackageResult.TAG)) {
+                    pkgTests = null;
+                } else if (tag.equals(TestSuite.TAG) && !suiteNames.isEmpty()) {
+                    suiteNames.removeLast();
+                } else if (tag.equals(TestCase.TAG)) {
+                    className = null;
+                }
+            }
+            eventType = parser.next();
+        }
+    }
+
+    /**
+     * Build the full class name of a test case, the same way as
+     * {@link TestCase#addTestsWithStatus}.
+     */
+    private static String getClassName(LinkedList<String> suiteNames, String testCaseName) {
+        StringBuilder className = new StringBuilder();
+        boolean isFirst = true;
+        for (String suiteName : suiteNames) {
+            if (suiteName != null) {
+                if (!isFirst) {
+                    className.append('.');
+                }
+                className.append(suiteName);
+                isFirst = false;
+            }
+        }
+        if (testCaseName != null) {
+            if (!isFirst) {
+                className.append('.');
+            }
+            className.append(testCaseName);
+        }
+        return className.toString();
+    }
+}
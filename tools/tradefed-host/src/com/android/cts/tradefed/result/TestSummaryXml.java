@@ -99,6 +99,46 @@ public class TestSummaryXml extends AbstractXmlPullParser implements ITestSummar
     }
 
 
+    /**
+     * Populate the summary from results that are not stored in result XML.
+     *
+     * @param results the {@link TestResults} to summarize
+     * @param plan the test plan, or <code>null</code> if unknown
+     * @param startTime the start time, or <code>null</code> if unknown
+     * @param deviceSerials the device serials, or <code>null</code> if unknown
+     */
+    void setSummary(TestResults results, String plan, String startTime, String deviceSerials) {
+        setSummary(results.countTests(CtsTestStatus.PASS),
+                results.countTests(CtsTestStatus.FAIL),
+                results.countTests(CtsTestStatus.NOT_EXECUTED), plan, startTime, deviceSerials);
+    }
+
+    /**
+     * Populate the summary from previously collected summary data.
+     *
+     * @param numPassed the number of passed tests
+     * @param numFailed the number of failed tests
+     * @param numNotExecuted the number of tests not executed
+     * @param plan the test plan, or <code>null</code> if unknown
+     * @param startTime the start time, or <code>null</code> if unknown
+     * @param deviceSerials the device serials, or <code>null</code> if unknown
+     */
+    void setSummary(int numPassed, int numFailed, int numNotExecuted, String plan,
+            String startTime, String deviceSerials) {
+        mNumPassed = numPassed;
+        mNumFailed = numFailed;
+        mNumNotExecuted = numNotExecuted;
+        if (plan != null) {
+            mPlan = plan;
+        }
+        if (startTime != null) {
+            mStartTime = startTime;
+        }
+        if (deviceSerials != null) {
+            mDeviceSerials = deviceSerials;
+        }
+    }
+
     @Override
     void parse(XmlPullParser parser) throws XmlPullParserException, IOException {
         int eventType = parser.getEventType();
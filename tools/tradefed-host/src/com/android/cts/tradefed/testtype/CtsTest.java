@@ -20,6 +20,8 @@ import com.android.cts.tradefed.build.CtsBuildHelper;
 import com.android.cts.tradefed.device.DeviceInfoCollector;
 import com.android.cts.tradefed.result.CtsTestStatus;
 import com.android.cts.tradefed.result.PlanCreator;
+import com.android.cts.tradefed.result.TestDurations;
+import com.android.cts.tradefed.result.TestResultRepo;
 import com.android.cts.util.AbiUtils;
 import com.android.ddmlib.Log;
 import com.android.ddmlib.Log.LogLevel;
@@ -141,6 +143,17 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
         "concurrently.")
     private int mShards = 1;
 
+    @Option(name = "dynamic-shards", description =
+        "when sharding, let each device pull its next test package from a queue shared by all " +
+        "shards instead of running a fixed slice of the packages.")
+    private boolean mDynamicShards = false;
+
+    @Option(name = "duration-history", description =
+        "number of most recent result sessions to learn test package durations from. Expected " +
+        "durations are used to order packages, balance shards and place reboots. With 0, only " +
+        "the runtime hints of the packages are used.")
+    private int mDurationHistorySessions = 0;
+
     @Option(name = "screenshot", description =
         "flag for taking a screenshot of the device when test execution is complete.")
     private boolean mScreenshot = false;
@@ -212,6 +225,10 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
     private List<TestPackage> mTestPackageList = new ArrayList<>();
     // The index in the pacakge list of the last test to complete
     private int mLastTestPackageIndex = 0;
+    // The queue shared by all shards when dynamic sharding is used, null otherwise
+    private TestPackageQueue mTestPackageQueue = null;
+    // Package durations observed in previous sessions, shared by all shards
+    private TestDurations mTestDurations = null;
 
     /** data structure for a {@link IRemoteTest} and its known tests */
     static class TestPackage {
@@ -254,18 +271,38 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
 
 
     /**
-     * A {@link Comparator} for sorting {@link TestPackage}s by running time hint.
+     * A {@link Comparator} for sorting {@link TestPackage}s by expected running time.
      */
-    static class RuntimeHintComparator implements Comparator<TestPackage> {
+    static class DurationComparator implements Comparator<TestPackage> {
+        private final TestDurations mDurations;
+
+        DurationComparator(TestDurations durations) {
+            mDurations = durations;
+        }
 
         @Override
         public int compare(TestPackage left, TestPackage right) {
-            return Long.compare(left.getPackageDef().getRuntimeHint(),
-                    right.getPackageDef().getRuntimeHint());
+            return Long.compare(getExpectedDuration(left, mDurations),
+                    getExpectedDuration(right, mDurations));
         }
 
     }
 
+    /**
+     * Get the expected running time of a {@link TestPackage}: the duration observed in previous
+     * sessions if known, its runtime hint otherwise.
+     *
+     * @return the expected running time in ms
+     */
+    static long getExpectedDuration(TestPackage testPackage, TestDurations durations) {
+        Long duration = durations.getPackageDuration(testPackage.getPackageDef().getId());
+        if (duration != null) {
+            return duration;
+        }
+        // runtime hints are given in minutes
+        return testPackage.getPackageDef().getRuntimeHint() * 60 * 1000;
+    }
+
     /**
      * A {@link ResultForwarder} that will forward a bugreport on each failed test.
      */
@@ -479,6 +516,15 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
         mCtsBuild = buildHelper;
     }
 
+    /**
+     * Set the package queue shared by the shards of a dynamically sharded invocation.
+     * <p/>
+     * Exposed for unit testing.
+     */
+    void setTestPackageQueue(TestPackageQueue testPackageQueue) {
+        mTestPackageQueue = testPackageQueue;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -495,6 +541,9 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
         Log.logAndDisplay(LogLevel.INFO, LOG_TAG, "ABIs: " + abiSet);
 
         checkFields();
+        if (mTestDurations == null) {
+            mTestDurations = createTestDurations();
+        }
         setupTestPackageList(abiSet);
         if (mBugreport) {
             listener = new FailedTestBugreportGenerator(listener, getDevice());
@@ -519,23 +568,64 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
         // packages are using the same prerequisite apk
         Map<String, Set<String>> prerequisiteApks = getPrerequisiteApks(mTestPackageList, abiSet);
         Collection<String> uninstallPackages = getPrerequisitePackageNames(mTestPackageList);
+        // whether the shard may resume after this run, and keep pulling from the shared queue
+        boolean mayResume = false;
 
         try {
             // always collect the device info, even for resumed runs, since test will likely be
             // running on a different device
             collectDeviceInfo(getDevice(), mCtsBuild, listener);
-            preRebootIfNecessary(mTestPackageList);
+            if (mTestPackageQueue != null) {
+                preRebootIfNecessary(mTestPackageQueue.getRemainingPackages());
+            } else {
+                preRebootIfNecessary(mTestPackageList);
+            }
 
             mPrevRebootTime = System.currentTimeMillis();
-            int remainingPackageCount = mTestPackageList.size();
-            Log.logAndDisplay(LogLevel.INFO, LOG_TAG,
-                String.format("Start test run of %,d packages, containing %,d tests",
-                    remainingPackageCount, totalTestCount));
+            if (mTestPackageQueue != null) {
+                int queuedPackageCount = 0;
+                int queuedTestCount = 0;
+                for (TestPackage testPackage : mTestPackageQueue.getRemainingPackages()) {
+                    if (abiSet.contains(testPackage.getAbi().getName())) {
+                        queuedPackageCount++;
+                        queuedTestCount += testPackage.getKnownTests().size();
+                    }
+                }
+                Log.logAndDisplay(LogLevel.INFO, LOG_TAG,
+                    String.format("Start test run from shared queue of %,d packages, " +
+                        "containing %,d tests", queuedPackageCount, queuedTestCount));
+            } else {
+                int remainingPackageCount = mTestPackageList.size();
+                Log.logAndDisplay(LogLevel.INFO, LOG_TAG,
+                    String.format("Start test run of %,d packages, containing %,d tests",
+                        remainingPackageCount, totalTestCount));
+            }
             IAbi currentAbi = null;
 
-            for (int i = mLastTestPackageIndex; i < mTestPackageList.size(); i++) {
+            for (int i = mLastTestPackageIndex; hasTestPackage(i, abiSet); i++) {
                 TestPackage testPackage = mTestPackageList.get(i);
 
+                if (!filterMap.containsKey(testPackage.getPackageDef().getId())) {
+                    // package was pulled from the shared queue during this run
+                    filterMap.put(testPackage.getPackageDef().getId(),
+                            new ResultFilter(listener, testPackage));
+                    String pkgName = testPackage.getPackageDef().getTargetPackageName();
+                    if (pkgName != null) {
+                        uninstallPackages.add(pkgName);
+                    }
+                    String apkName = testPackage.getPackageDef().getTargetApkName();
+                    String abiName = testPackage.getAbi().getName();
+                    if (apkName != null) {
+                        if (!prerequisiteApks.containsKey(abiName)) {
+                            prerequisiteApks.put(abiName, new HashSet<String>());
+                        }
+                        if (prerequisiteApks.get(abiName).add(apkName) && currentAbi != null &&
+                                currentAbi.getName().equals(abiName)) {
+                            installPrerequisiteApks(Collections.singleton(apkName), currentAbi);
+                        }
+                    }
+                }
+
                 if (currentAbi == null ||
                     !currentAbi.getName().equals(testPackage.getAbi().getName())) {
                     currentAbi = testPackage.getAbi();
@@ -580,8 +670,8 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
                 performPackagePrepareSetup(testPackage.getPackageDef());
                 test.run(filterMap.get(testPackage.getPackageDef().getId()));
                 performPackagePreparerTearDown(testPackage.getPackageDef());
-                if (i < mTestPackageList.size() - 1) {
-                    TestPackage nextPackage = mTestPackageList.get(i + 1);
+                TestPackage nextPackage = peekTestPackage(i + 1, abiSet);
+                if (nextPackage != null) {
                     rebootIfNecessary(testPackage, nextPackage);
                     changeToHomeScreen();
                 }
@@ -600,6 +690,9 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
 
             uninstallPrequisiteApks(uninstallPackages);
 
+        } catch (DeviceNotAvailableException e) {
+            mayResume = isResumable();
+            throw e;
         } catch (RuntimeException e) {
             CLog.e(e);
             throw e;
@@ -610,7 +703,55 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
             for (ResultFilter filter : filterMap.values()) {
                 filter.reportUnexecutedTests();
             }
+            if (mTestPackageQueue != null && !mayResume) {
+                // the last shard to stop reports the packages no shard could run
+                for (TestPackage testPackage : mTestPackageQueue.stopShard()) {
+                    new ResultFilter(listener, testPackage).reportUnexecutedTests();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if there is a package to run at the given index of {@code mTestPackageList}. When
+     * dynamic sharding is used, the next package is pulled from the shared queue as needed.
+     *
+     * @param index the index in the package list
+     * @param abis the ABIs supported by the device
+     * @return <code>true</code> if there is a package to run at the given index.
+     */
+    private boolean hasTestPackage(int index, Set<String> abis) {
+        if (index < mTestPackageList.size()) {
+            return true;
+        }
+        if (mTestPackageQueue == null) {
+            return false;
         }
+        TestPackage testPackage = mTestPackageQueue.poll(abis);
+        if (testPackage == null) {
+            return false;
+        }
+        mTestPackageList.add(testPackage);
+        return true;
+    }
+
+    /**
+     * Returns the package to run at the given index of {@code mTestPackageList} without pulling it
+     * from the shared queue, if dynamic sharding is used.
+     *
+     * @param index the index in the package list
+     * @param abis the ABIs supported by the device
+     * @return the {@link TestPackage} expected to run at the given index, or <code>null</code> if
+     *         there is none.
+     */
+    private TestPackage peekTestPackage(int index, Set<String> abis) {
+        if (index < mTestPackageList.size()) {
+            return mTestPackageList.get(index);
+        }
+        if (mTestPackageQueue == null) {
+            return null;
+        }
+        return mTestPackageQueue.peek(abis);
     }
 
     /**
@@ -745,8 +886,15 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
         if (mDisableReboot || mDevice.getSerialNumber().startsWith("emulator-")) {
             return;
         }
+        // Reboot at the package boundary closest to the end of the reboot interval, i.e. also
+        // before the next package if it is expected to run mostly past the interval. Do not
+        // reboot again before at least half of the interval has passed.
         long currentTime = System.currentTimeMillis();
-        if (((currentTime - mPrevRebootTime) > intervalInMSec) ||
+        long elapsedTime = currentTime - mPrevRebootTime;
+        long expectedHalfTime = getExpectedDuration(testToRun, mTestDurations) / 2;
+        if ((elapsedTime > intervalInMSec) ||
+                (elapsedTime > intervalInMSec / 2 &&
+                        elapsedTime + expectedHalfTime > intervalInMSec) ||
                 rebootAfterList.contains(testFinished.getPackageDef().getName()) ||
                 rebootBeforeList.contains(testToRun.getPackageDef().getName()) ) {
             Log.i(LOG_TAG,
@@ -801,10 +949,56 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
      * Set {@code mTestPackageList} to the list of test packages to run filtered by ABI.
      */
     private void setupTestPackageList(Set<String> abis) throws DeviceNotAvailableException {
+        if (mTestPackageQueue != null) {
+            // the first shard to start fills the queue for all shards
+            synchronized (mTestPackageQueue) {
+                if (mTestPackageQueue.isFilled()) {
+                    Log.logAndDisplay(LogLevel.INFO, LOG_TAG,
+                            "Run tests from shared package queue");
+                } else {
+                    mTestPackageQueue.fill(createTestPackageList(abis),
+                            new DurationComparator(mTestDurations));
+                }
+            }
+            return;
+        }
         if (!mTestPackageList.isEmpty()) {
             Log.logAndDisplay(LogLevel.INFO, LOG_TAG, "Resume tests using existing package list");
             return;
         }
+        List<TestPackage> testPackageList = createTestPackageList(abis);
+
+        // Filter by shard
+        int numTestPackages = testPackageList.size();
+        int totalShards = Math.min(mTotalShards, numTestPackages);
+
+        // Sort test packages by expected running time, longest first, and assign each package
+        // to the shard with the least expected running time so far. Every shard computes the
+        // same assignment since the package list is reliably sorted.
+        Collections.sort(testPackageList,
+                Collections.reverseOrder(new DurationComparator(mTestDurations)));
+
+        long[] shardDurations = new long[totalShards];
+        List<TestPackage> shardTestPackageList = new ArrayList<>();
+        for (TestPackage testPackage : testPackageList) {
+            int shard = 0;
+            for (int i = 1; i < totalShards; i++) {
+                if (shardDurations[i] < shardDurations[shard]) {
+                    shard = i;
+                }
+            }
+            shardDurations[shard] += getExpectedDuration(testPackage, mTestDurations);
+            if (shard == mShardAssignment) {
+                shardTestPackageList.add(testPackage);
+            }
+        }
+        mTestPackageList.addAll(shardTestPackageList);
+    }
+
+    /**
+     * Create the list of all test packages to run filtered by ABI.
+     */
+    private List<TestPackage> createTestPackageList(Set<String> abis) {
         try {
             // Collect ALL tests
             ITestPackageRepo testRepo = createTestCaseRepo();
@@ -821,20 +1015,7 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
                     testPackageList.add(new TestPackage(testPackageDef, testForPackage));
                 }
             }
-
-            // Filter by shard
-            int numTestPackages = testPackageList.size();
-            int totalShards = Math.min(mTotalShards, numTestPackages);
-
-            // Sort test packages by running time hint, to force packages with large expected
-            // running times to different shards if possible.
-            Collections.sort(testPackageList, new RuntimeHintComparator());
-
-            List<TestPackage> shardTestPackageList = new ArrayList<>();
-            for (int i = mShardAssignment; i < numTestPackages; i += totalShards) {
-                shardTestPackageList.add(testPackageList.get(i));
-            }
-            mTestPackageList.addAll(shardTestPackageList);
+            return testPackageList;
         } catch (FileNotFoundException e) {
             throw new IllegalArgumentException("failed to find test plan file", e);
         } catch (ParseException e) {
@@ -1051,12 +1232,18 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
         checkFields();
 
         List<IRemoteTest> shardQueue = new LinkedList<>();
+        TestPackageQueue testPackageQueue =
+                mDynamicShards ? new TestPackageQueue(mShards) : null;
+        // load the durations once for all shards
+        TestDurations testDurations = createTestDurations();
         for (int shardAssignment = 0; shardAssignment < mShards; shardAssignment++) {
             CtsTest ctsTest = new CtsTest(shardAssignment, mShards /* totalShards */);
             OptionCopier.copyOptionsNoThrow(this, ctsTest);
             // Set the shard count because the copy option on the previous line copies
             // over the mShard value
             ctsTest.mShards = 0;
+            ctsTest.mTestPackageQueue = testPackageQueue;
+            ctsTest.mTestDurations = testDurations;
             shardQueue.add(ctsTest);
         }
 
@@ -1090,6 +1277,19 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
         return new TestPackageRepo(mCtsBuild.getTestCasesDir(), mIncludeKnownFailures);
     }
 
+    /**
+     * Factory method for loading the {@link TestDurations} of previous sessions.
+     * <p/>
+     * Exposed for unit testing
+     */
+    TestDurations createTestDurations() {
+        if (mDurationHistorySessions <= 0) {
+            return new TestDurations();
+        }
+        return TestDurations.loadFromResults(new TestResultRepo(mCtsBuild.getResultsDir()),
+                mDurationHistorySessions);
+    }
+
     /**
      * Factory method for creating a {@link TestPlan}.
      * <p/>
@@ -36,10 +36,10 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -67,10 +67,12 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
 
     private final String mPackageName;
     private final String mName;
-    private final Collection<TestIdentifier> mRemainingTests;
+    private final Set<TestIdentifier> mRemainingTests;
     private final Map<TestIdentifier, Set<BatchRunConfiguration>> mTestInstances;
     private final TestInstanceResultListener mInstanceListerner = new TestInstanceResultListener();
     private final Map<TestIdentifier, Integer> mTestInstabilityRatings;
+    private final Map<TestIdentifier, String[]> mTestPathComponents = new HashMap<>();
+    private final List<PendingInstanceIndex> mActiveIndices = new ArrayList<>();
     private IAbi mAbi;
     private CtsBuildHelper mCtsBuild;
     private boolean mLogData = false;
@@ -88,7 +90,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
             Map<TestIdentifier, List<Map<String,String>>> testInstances) {
         mPackageName = packageName;
         mName = name;
-        mRemainingTests = new LinkedList<>(tests); // avoid modifying arguments
+        mRemainingTests = new LinkedHashSet<>(tests); // avoid modifying arguments
         mTestInstances = parseTestInstances(tests, testInstances);
         mTestInstabilityRatings = new HashMap<>();
     }
@@ -239,7 +241,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
 
         private TestIdentifier mCurrentTestId;
         private boolean mGotTestResult;
-        private String mCurrentTestLog;
+        private final StringBuilder mCurrentTestLog = new StringBuilder();
 
         private class PendingResult
         {
@@ -406,7 +408,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
          */
         private void handleBeginTestCase(Map<String, String> values) {
             mCurrentTestId = pathToIdentifier(values.get("dEQP-BeginTestCase-TestCasePath"));
-            mCurrentTestLog = "";
+            mCurrentTestLog.setLength(0);
             mGotTestResult = false;
 
             // mark instance as started
@@ -430,8 +432,8 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
                     CLog.i("Test %s failed as it ended before receiving result.", mCurrentTestId);
                 }
 
-                if (mLogData && mCurrentTestLog != null && mCurrentTestLog.length() > 0) {
-                    result.testLogs.put(mRunConfig, mCurrentTestLog);
+                if (mLogData && mCurrentTestLog.length() > 0) {
+                    result.testLogs.put(mRunConfig, mCurrentTestLog.toString());
                 }
 
                 // Pending result finished, report result
@@ -510,7 +512,10 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
          * Handles dEQP testlog data.
          */
         private void handleTestLogData(Map<String, String> values) {
-            mCurrentTestLog = mCurrentTestLog + values.get("dEQP-TestLogData-Log");
+            // Logs are only forwarded if collected, do not accumulate them otherwise
+            if (mLogData) {
+                mCurrentTestLog.append(values.get("dEQP-TestLogData-Log"));
+            }
         }
 
         /**
@@ -560,13 +565,22 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
 
     /**
      * dEQP instrumentation parser
+     *
+     * Parses the instrumentation output in a streaming fashion. Multi-line values are accumulated
+     * into a reused builder and the status map is reused between status blocks, so parsing cost
+     * is linear in the output size.
      */
     private static class InstrumentationParser extends MultiLineReceiver {
+        private static final String STATUS_CODE_PREFIX = "INSTRUMENTATION_STATUS_CODE: ";
+        private static final String STATUS_PREFIX = "INSTRUMENTATION_STATUS: ";
+        private static final String DEQP_STATUS_PREFIX = STATUS_PREFIX + "dEQP-";
+        private static final String CODE_PREFIX = "INSTRUMENTATION_CODE: ";
+
         private TestInstanceResultListener mListener;
 
-        private Map<String, String> mValues;
+        private final Map<String, String> mValues = new HashMap<>();
+        private final StringBuilder mCurrentValue = new StringBuilder();
         private String mCurrentName;
-        private String mCurrentValue;
         private int mResultCode;
         private boolean mGotExitValue = false;
 
@@ -581,61 +595,55 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         @Override
         public void processNewLines(String[] lines) {
             for (String line : lines) {
-                if (mValues == null) mValues = new HashMap<String, String>();
-
-                if (line.startsWith("INSTRUMENTATION_STATUS_CODE: ")) {
-                    if (mCurrentName != null) {
-                        mValues.put(mCurrentName, mCurrentValue);
-
-                        mCurrentName = null;
-                        mCurrentValue = null;
-                    }
+                if (line.startsWith(STATUS_CODE_PREFIX)) {
+                    finishCurrentValue();
 
                     mListener.handleStatus(mValues);
-                    mValues = null;
-                } else if (line.startsWith("INSTRUMENTATION_STATUS: dEQP-")) {
-                    if (mCurrentName != null) {
-                        mValues.put(mCurrentName, mCurrentValue);
-
-                        mCurrentValue = null;
-                        mCurrentName = null;
-                    }
+                    mValues.clear();
+                } else if (line.startsWith(DEQP_STATUS_PREFIX)) {
+                    finishCurrentValue();
 
-                    String prefix = "INSTRUMENTATION_STATUS: ";
-                    int nameBegin = prefix.length();
+                    int nameBegin = STATUS_PREFIX.length();
                     int nameEnd = line.indexOf('=');
                     int valueBegin = nameEnd + 1;
 
                     mCurrentName = line.substring(nameBegin, nameEnd);
-                    mCurrentValue = line.substring(valueBegin);
-                } else if (line.startsWith("INSTRUMENTATION_CODE: ")) {
+                    mCurrentValue.append(line, valueBegin, line.length());
+                } else if (line.startsWith(CODE_PREFIX)) {
                     try {
-                        mResultCode = Integer.parseInt(line.substring(22));
+                        mResultCode = Integer.parseInt(line.substring(CODE_PREFIX.length()));
                         mGotExitValue = true;
                     } catch (NumberFormatException ex) {
                         CLog.w("Instrumentation code format unexpected");
                     }
-                } else if (mCurrentValue != null) {
-                    mCurrentValue = mCurrentValue + line;
+                } else if (mCurrentName != null) {
+                    mCurrentValue.append(line);
                 }
             }
         }
 
         /**
-         * {@inheritDoc}
+         * Stores the value being accumulated, if any, to the current status map.
          */
-        @Override
-        public void done() {
+        private void finishCurrentValue() {
             if (mCurrentName != null) {
-                mValues.put(mCurrentName, mCurrentValue);
+                mValues.put(mCurrentName, mCurrentValue.toString());
 
                 mCurrentName = null;
-                mCurrentValue = null;
+                mCurrentValue.setLength(0);
             }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void done() {
+            finishCurrentValue();
 
-            if (mValues != null) {
+            if (!mValues.isEmpty()) {
                 mListener.handleStatus(mValues);
-                mValues = null;
+                mValues.clear();
             }
         }
 
@@ -1073,69 +1081,105 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
     }
 
     /**
-     * Generates tescase trie from dEQP testcase paths. Used to define which testcases to execute.
+     * Prefix tree of dEQP testcase paths. Used to define which testcases to execute.
+     *
+     * Children are kept in insertion order so that the generated case list is deterministic.
      */
-    private static String generateTestCaseTrieFromPaths(Collection<String> tests) {
-        String result = "{";
-        boolean first = true;
-
-        // Add testcases to results
-        for (Iterator<String> iter = tests.iterator(); iter.hasNext();) {
-            String test = iter.next();
-            String[] components = test.split("\\.");
-
-            if (components.length == 1) {
-                if (!first) {
-                    result = result + ",";
-                }
-                first = false;
+    private static final class TestCaseTrieNode {
+        private final Map<String, TestCaseTrieNode> mChildren = new LinkedHashMap<>();
+        private boolean mIsTestCase = false;
 
-                result += components[0];
-                iter.remove();
+        /**
+         * Adds a testcase path given as path components.
+         */
+        public void addPath(String[] components) {
+            TestCaseTrieNode node = this;
+            for (String component : components) {
+                TestCaseTrieNode child = node.mChildren.get(component);
+                if (child == null) {
+                    child = new TestCaseTrieNode();
+                    node.mChildren.put(component, child);
+                }
+                node = child;
             }
+            node.mIsTestCase = true;
         }
 
-        if (!tests.isEmpty()) {
-            HashMap<String, ArrayList<String> > testGroups = new HashMap<>();
-
-            // Collect all sub testgroups
-            for (String test : tests) {
-                String[] components = test.split("\\.");
-                ArrayList<String> testGroup = testGroups.get(components[0]);
-
-                if (testGroup == null) {
-                    testGroup = new ArrayList<String>();
-                    testGroups.put(components[0], testGroup);
+        /**
+         * Appends the children of this node in the {a{b,c}} case list format. Testcases are
+         * listed before groups on each level.
+         */
+        public void appendTo(StringBuilder builder) {
+            boolean first = true;
+
+            builder.append('{');
+            for (Map.Entry<String, TestCaseTrieNode> entry : mChildren.entrySet()) {
+                if (entry.getValue().mIsTestCase) {
+                    if (!first) {
+                        builder.append(',');
+                    }
+                    first = false;
+                    builder.append(entry.getKey());
                 }
-
-                testGroup.add(test.substring(components[0].length()+1));
             }
-
-            for (String testGroup : testGroups.keySet()) {
-                if (!first) {
-                    result = result + ",";
+            for (Map.Entry<String, TestCaseTrieNode> entry : mChildren.entrySet()) {
+                if (!entry.getValue().mChildren.isEmpty()) {
+                    if (!first) {
+                        builder.append(',');
+                    }
+                    first = false;
+                    builder.append(entry.getKey());
+                    entry.getValue().appendTo(builder);
                 }
-
-                first = false;
-                result = result + testGroup
-                        + generateTestCaseTrieFromPaths(testGroups.get(testGroup));
             }
+            builder.append('}');
         }
+    }
 
-        return result + "}";
+    /**
+     * Splits dEQP testcase path to its components.
+     */
+    private static String[] splitTestPath(TestIdentifier test) {
+        final ArrayList<String> components = new ArrayList<>();
+        final String className = test.getClassName();
+        int begin = 0;
+
+        for (int end = className.indexOf('.'); end != -1; end = className.indexOf('.', begin)) {
+            components.add(className.substring(begin, end));
+            begin = end + 1;
+        }
+        components.add(className.substring(begin));
+        components.add(test.getTestName());
+
+        return components.toArray(new String[components.size()]);
+    }
+
+    /**
+     * Gets the path components of a test. Components are parsed once per run and shared by all
+     * batches, including sub-batches created when bisecting a crashing batch.
+     */
+    private String[] getTestPathComponents(TestIdentifier test) {
+        String[] components = mTestPathComponents.get(test);
+        if (components == null) {
+            components = splitTestPath(test);
+            mTestPathComponents.put(test, components);
+        }
+        return components;
     }
 
     /**
      * Generates testcase trie from TestIdentifiers.
      */
-    private static String generateTestCaseTrie(Collection<TestIdentifier> tests) {
-        ArrayList<String> testPaths = new ArrayList<String>();
+    private String generateTestCaseTrie(Collection<TestIdentifier> tests) {
+        final TestCaseTrieNode root = new TestCaseTrieNode();
 
         for (TestIdentifier test : tests) {
-            testPaths.add(test.getClassName() + "." + test.getTestName());
+            root.addPath(getTestPathComponents(test));
         }
 
-        return generateTestCaseTrieFromPaths(testPaths);
+        final StringBuilder builder = new StringBuilder();
+        root.appendTo(builder);
+        return builder.toString();
     }
 
     private static class TestBatch {
@@ -1143,34 +1187,151 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         public List<TestIdentifier> tests;
     }
 
+    /**
+     * Index of pending test instances of a test pool.
+     *
+     * Instances are bucketed by run configuration and instability rating and ordered by their
+     * position in the pool, so that selecting a batch only touches the tests that end up in it.
+     * Buckets may contain instances that have already been executed; these are verified against
+     * the instance listener and dropped lazily. Executed instances never become pending again
+     * outside of a batch run, so dropping them is safe.
+     */
+    private class PendingInstanceIndex {
+        private final BatchRunConfiguration mRequiredConfig;
+        private final Map<TestIdentifier, Integer> mOrdinals = new HashMap<>();
+        private final TreeMap<Integer, TestIdentifier> mPendingTests = new TreeMap<>();
+        private final Map<BatchRunConfiguration, Map<Integer, TreeMap<Integer, TestIdentifier>>>
+                mBuckets = new HashMap<>();
+
+        /**
+         * @param pool tests to index, in selection order
+         * @param requiredConfig index only instances of requiredConfig, or null to index all
+         *        run configurations.
+         */
+        public PendingInstanceIndex(Collection<TestIdentifier> pool,
+                BatchRunConfiguration requiredConfig) {
+            mRequiredConfig = requiredConfig;
+            for (TestIdentifier test : pool) {
+                final Integer ordinal = mOrdinals.size();
+                mOrdinals.put(test, ordinal);
+                mPendingTests.put(ordinal, test);
+                addInstances(test, getTestInstabilityRating(test));
+            }
+        }
+
+        private void addInstances(TestIdentifier test, int instabilityRating) {
+            final Integer ordinal = mOrdinals.get(test);
+            for (BatchRunConfiguration config : getIndexedConfigs(test)) {
+                getBucket(config, instabilityRating).put(ordinal, test);
+            }
+        }
+
+        private void removeInstances(TestIdentifier test, int instabilityRating) {
+            final Integer ordinal = mOrdinals.get(test);
+            for (BatchRunConfiguration config : getIndexedConfigs(test)) {
+                getBucket(config, instabilityRating).remove(ordinal);
+            }
+        }
+
+        private Collection<BatchRunConfiguration> getIndexedConfigs(TestIdentifier test) {
+            if (mRequiredConfig != null) {
+                return Collections.singleton(mRequiredConfig);
+            } else {
+                return getTestRunConfigs(test);
+            }
+        }
+
+        private TreeMap<Integer, TestIdentifier> getBucket(BatchRunConfiguration config,
+                int instabilityRating) {
+            Map<Integer, TreeMap<Integer, TestIdentifier>> configBuckets = mBuckets.get(config);
+            if (configBuckets == null) {
+                configBuckets = new HashMap<>();
+                mBuckets.put(config, configBuckets);
+            }
+            TreeMap<Integer, TestIdentifier> bucket = configBuckets.get(instabilityRating);
+            if (bucket == null) {
+                bucket = new TreeMap<>();
+                configBuckets.put(instabilityRating, bucket);
+            }
+            return bucket;
+        }
+
+        private boolean hasPendingInstances(TestIdentifier test) {
+            if (mRequiredConfig != null) {
+                return mInstanceListerner.isPendingTestInstance(test, mRequiredConfig);
+            } else {
+                return mRemainingTests.contains(test);
+            }
+        }
+
+        /**
+         * Moves the instances of a test to the bucket matching its new instability rating.
+         */
+        public void onInstabilityRatingChanged(TestIdentifier test, int oldRating,
+                int newRating) {
+            if (oldRating != newRating && mOrdinals.containsKey(test)) {
+                removeInstances(test, oldRating);
+                addInstances(test, newRating);
+            }
+        }
+
+        /**
+         * Returns the first test in pool order with pending instances, or null if none remain.
+         */
+        public TestIdentifier getFirstPendingTest() {
+            while (!mPendingTests.isEmpty()) {
+                final Map.Entry<Integer, TestIdentifier> entry = mPendingTests.firstEntry();
+                if (hasPendingInstances(entry.getValue())) {
+                    return entry.getValue();
+                }
+                mPendingTests.remove(entry.getKey());
+            }
+            return null;
+        }
+
+        /**
+         * Collects pending instances of given config and instability rating in pool order.
+         *
+         * @param skipTest test to leave out of the result
+         * @param maxTests maximum number of tests to add to the result
+         */
+        public void collectPendingTests(BatchRunConfiguration config, int instabilityRating,
+                TestIdentifier skipTest, int maxTests, List<TestIdentifier> result) {
+            final TreeMap<Integer, TestIdentifier> bucket = getBucket(config, instabilityRating);
+            final Iterator<TestIdentifier> iter = bucket.values().iterator();
+
+            while (iter.hasNext() && result.size() < maxTests) {
+                final TestIdentifier test = iter.next();
+                if (!mInstanceListerner.isPendingTestInstance(test, config)) {
+                    // instance executed, forget it
+                    iter.remove();
+                    continue;
+                }
+                if (test.equals(skipTest)) {
+                    continue;
+                }
+                result.add(test);
+            }
+        }
+    }
+
     private TestBatch selectRunBatch() {
-        return selectRunBatch(mRemainingTests, null);
+        return selectRunBatch(mActiveIndices.get(0), null);
     }
 
     /**
      * Creates a TestBatch from the given tests or null if not tests remaining.
      *
-     *  @param pool List of tests to select from
+     *  @param index Index of the tests to select from
      *  @param requiredConfig Select only instances with pending requiredConfig, or null to select
      *         any run configuration.
      */
-    private TestBatch selectRunBatch(Collection<TestIdentifier> pool,
+    private TestBatch selectRunBatch(PendingInstanceIndex index,
             BatchRunConfiguration requiredConfig) {
         // select one test (leading test) that is going to be executed and then pack along as many
         // other compatible instances as possible.
 
-        TestIdentifier leadingTest = null;
-        for (TestIdentifier test : pool) {
-            if (!mRemainingTests.contains(test)) {
-                continue;
-            }
-            if (requiredConfig != null &&
-                    !mInstanceListerner.isPendingTestInstance(test, requiredConfig)) {
-                continue;
-            }
-            leadingTest = test;
-            break;
-        }
+        final TestIdentifier leadingTest = index.getFirstPendingTest();
 
         // no remaining tests?
         if (leadingTest == null) {
@@ -1201,27 +1362,11 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         runBatch.tests = new ArrayList<>();
         runBatch.tests.add(leadingTest);
 
-        for (TestIdentifier test : pool) {
-            if (test == leadingTest) {
-                // do not re-select the leading tests
-                continue;
-            }
-            if (!mInstanceListerner.isPendingTestInstance(test, leadingTestConfig)) {
-                // select only compatible
-                continue;
-            }
-            if (getTestInstabilityRating(test) != leadingInstability) {
-                // pack along only cases in the same stability category. Packing more dangerous
-                // tests along jeopardizes the stability of this run. Packing more stable tests
-                // along jeopardizes their stability rating.
-                continue;
-            }
-            if (runBatch.tests.size() >= getBatchSizeLimitForInstability(leadingInstability)) {
-                // batch size is limited.
-                break;
-            }
-            runBatch.tests.add(test);
-        }
+        // pack along only compatible cases in the same stability category. Packing more
+        // dangerous tests along jeopardizes the stability of this run. Packing more stable tests
+        // along jeopardizes their stability rating. Batch size is limited.
+        index.collectPendingTests(leadingTestConfig, leadingInstability, leadingTest,
+                getBatchSizeLimitForInstability(leadingInstability), runBatch.tests);
 
         return runBatch;
     }
@@ -1250,25 +1395,39 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
     }
 
     private void recordTestInstability(TestIdentifier testId) {
-        mTestInstabilityRatings.put(testId, getTestInstabilityRating(testId) + 1);
+        setTestInstability(testId, getTestInstabilityRating(testId) + 1);
     }
 
     private void clearTestInstability(TestIdentifier testId) {
-        mTestInstabilityRatings.put(testId, 0);
+        setTestInstability(testId, 0);
+    }
+
+    private void setTestInstability(TestIdentifier testId, int instabilityRating) {
+        final int oldRating = getTestInstabilityRating(testId);
+        mTestInstabilityRatings.put(testId, instabilityRating);
+        for (PendingInstanceIndex index : mActiveIndices) {
+            index.onInstabilityRatingChanged(testId, oldRating, instabilityRating);
+        }
     }
 
     /**
      * Executes all tests on the device.
      */
     private void runTests() throws DeviceNotAvailableException, CapabilityQueryFailureException {
-        for (;;) {
-            TestBatch batch = selectRunBatch();
+        mActiveIndices.add(new PendingInstanceIndex(mRemainingTests, null));
+        try {
+            for (;;) {
+                TestBatch batch = selectRunBatch();
 
-            if (batch == null) {
-                break;
-            }
+                if (batch == null) {
+                    break;
+                }
 
-            runTestRunBatch(batch);
+                runTestRunBatch(batch);
+            }
+        } finally {
+            mActiveIndices.clear();
+            mTestPathComponents.clear();
         }
     }
 
@@ -1379,29 +1538,36 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         final List<TestIdentifier> tailList = pendingTests.subList(divisorNdx, pendingTests.size());
 
         // head
-        for (;;) {
-            TestBatch subBatch = selectRunBatch(headList, batch.config);
+        executeTestRunSubBatches(headList, batch.config);
 
-            if (subBatch == null) {
-                break;
-            }
+        // tail
+        executeTestRunSubBatches(tailList, batch.config);
 
-            executeTestRunBatch(subBatch);
+        if (getBatchNumPendingCases(batch) != 0) {
+            throw new AssertionError("executeTestRunBatch postcondition failed");
         }
+    }
 
-        // tail
-        for (;;) {
-            TestBatch subBatch = selectRunBatch(tailList, batch.config);
+    /**
+     * Executes all pending instances of the given tests in the given config
+     */
+    private void executeTestRunSubBatches(List<TestIdentifier> pool, BatchRunConfiguration config)
+            throws DeviceNotAvailableException {
+        final PendingInstanceIndex index = new PendingInstanceIndex(pool, config);
 
-            if (subBatch == null) {
-                break;
-            }
+        mActiveIndices.add(index);
+        try {
+            for (;;) {
+                TestBatch subBatch = selectRunBatch(index, config);
 
-            executeTestRunBatch(subBatch);
-        }
+                if (subBatch == null) {
+                    break;
+                }
 
-        if (getBatchNumPendingCases(batch) != 0) {
-            throw new AssertionError("executeTestRunBatch postcondition failed");
+                executeTestRunBatch(subBatch);
+            }
+        } finally {
+            mActiveIndices.remove(index);
         }
     }
 
@@ -1446,7 +1612,8 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
                 AbiUtils.createAbiFlag(mAbi.getName()), LOG_FILE_NAME, deqpCmdLine.toString(),
                 mLogData, instrumentationName);
 
-        final int numRemainingInstancesBefore = getNumRemainingInstances();
+        // Only instances of this batch can be executed by this run
+        final int numPendingCasesBefore = getBatchNumPendingCases(batch);
         final InstrumentationParser parser = new InstrumentationParser(mInstanceListerner);
         Throwable interruptingError = null;
 
@@ -1459,7 +1626,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         }
 
         final boolean progressedSinceLastCall = mInstanceListerner.getCurrentTestId() != null ||
-                getNumRemainingInstances() < numRemainingInstancesBefore;
+                getBatchNumPendingCases(batch) < numPendingCasesBefore;
 
         if (progressedSinceLastCall) {
             mDeviceRecovery.onExecutionProgressed();
@@ -1571,21 +1738,6 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         return deqpCmdLine.toString();
     }
 
-    private int getNumRemainingInstances() {
-        int retVal = 0;
-        for (TestIdentifier testId : mRemainingTests) {
-            // If case is in current working set, sum only not yet executed instances.
-            // If case is not in current working set, sum all instances (since they are not yet
-            // executed).
-            if (mInstanceListerner.mPendingResults.containsKey(testId)) {
-                retVal += mInstanceListerner.mPendingResults.get(testId).remainingConfigs.size();
-            } else {
-                retVal += mTestInstances.get(testId).size();
-            }
-        }
-        return retVal;
-    }
-
     /**
      * Checks if this execution has been marked as interrupted and throws if it has.
      */
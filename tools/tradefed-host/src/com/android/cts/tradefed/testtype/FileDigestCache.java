@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.testtype;
+
+import com.android.tradefed.log.LogUtil.CLog;
+import com.android.tradefed.util.StreamUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * An on-disk cache of the digests of the test binaries in a testcases directory.
+ * <p/>
+ * Digests are keyed by file path, size and modification time, so a binary is only hashed again
+ * once it changed. The cache is a text file in the temporary directory of the host, named after
+ * the testcases directory, with one <code>path size mtime digest</code> line per binary. New
+ * digests are appended, so later lines replace earlier ones for the same path. When the cache is
+ * loaded, the lines of binaries that no longer exist and the replaced lines are dropped, so the
+ * file does not grow beyond one line per binary between loads.
+ */
+class FileDigestCache {
+
+    /** the directory holding the caches of all testcases directories */
+    private static final File CACHE_DIR =
+            new File(System.getProperty("java.io.tmpdir"), "cts-tradefed-digests");
+
+    /** the caches of the testcases directories used in this process */
+    private static final Map<File, FileDigestCache> sCaches = new HashMap<File, FileDigestCache>();
+
+    private final File mCacheFile;
+    private final Map<String, Entry> mEntries = new HashMap<String, Entry>();
+
+    /**
+     * Get the digest cache of a testcases directory.
+     */
+    static synchronized FileDigestCache getInstance(File testCaseDir) {
+        File dir = testCaseDir.getAbsoluteFile();
+        FileDigestCache cache = sCaches.get(dir);
+        if (cache == null) {
+            cache = new FileDigestCache(dir, CACHE_DIR);
+            sCaches.put(dir, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Load the digest cache of a testcases directory.
+     * <p/>
+     * Exposed for unit testing.
+     *
+     * @param testCaseDir the testcases directory
+     * @param cacheDir the directory holding the cache file
+     */
+    FileDigestCache(File testCaseDir, File cacheDir) {
+        mCacheFile = new File(cacheDir, String.format("%s-%08x.cache", testCaseDir.getName(),
+                testCaseDir.getAbsolutePath().hashCode()));
+        if (mCacheFile.exists()) {
+            load();
+        } else {
+            cacheDir.mkdirs();
+        }
+    }
+
+    /**
+     * Get the cache file.
+     * <p/>
+     * Exposed for unit testing.
+     */
+    File getCacheFile() {
+        return mCacheFile;
+    }
+
+    private void load() {
+        BufferedReader reader = null;
+        int numLines = 0;
+        try {
+            reader = new BufferedReader(new FileReader(mCacheFile));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                numLines++;
+                String[] fields = line.split("\t");
+                if (fields.length != 4) {
+                    continue;
+                }
+                try {
+                    mEntries.put(fields[0], new Entry(Long.parseLong(fields[1]),
+                            Long.parseLong(fields[2]), fields[3]));
+                } catch (NumberFormatException e) {
+                    // skip the corrupted line
+                }
+            }
+        } catch (IOException e) {
+            CLog.w("Failed to read digest cache %s", mCacheFile.getAbsolutePath());
+        } finally {
+            StreamUtil.close(reader);
+        }
+        Iterator<String> paths = mEntries.keySet().iterator();
+        while (paths.hasNext()) {
+            if (!new File(paths.next()).isFile()) {
+                paths.remove();
+            }
+        }
+        if (numLines > mEntries.size()) {
+            save();
+        }
+    }
+
+    /**
+     * Rewrite the cache file with one line per entry.
+     */
+    private void save() {
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new FileWriter(mCacheFile));
+            for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+                writeEntry(writer, entry.getKey(), entry.getValue());
+            }
+        } catch (IOException e) {
+            CLog.d("Failed to write digest cache %s", mCacheFile.getAbsolutePath());
+        } finally {
+            StreamUtil.close(writer);
+        }
+    }
+
+    private static void writeEntry(Writer writer, String path, Entry entry) throws IOException {
+        writer.write(String.format("%s\t%d\t%d\t%s\n", path, entry.mSize, entry.mLastModified,
+                entry.mDigest));
+    }
+
+    /**
+     * @param file the file to get the digest of
+     * @return the cached digest of the file, or <code>null</code> if the file is not cached or
+     *         changed since it was cached.
+     */
+    synchronized String getDigest(File file) {
+        Entry entry = mEntries.get(file.getAbsolutePath());
+        if (entry == null || entry.mSize != file.length() ||
+                entry.mLastModified != file.lastModified()) {
+            return null;
+        }
+        return entry.mDigest;
+    }
+
+    /**
+     * Store the digest of a file in the cache.
+     */
+    synchronized void putDigest(File file, String digest) {
+        Entry entry = new Entry(file.length(), file.lastModified(), digest);
+        mEntries.put(file.getAbsolutePath(), entry);
+        Writer writer = null;
+        try {
+            writer = new FileWriter(mCacheFile, true);
+            writeEntry(writer, file.getAbsolutePath(), entry);
+        } catch (IOException e) {
+            // the cache directory may not be writable, just keep the digest in memory
+            CLog.d("Failed to write digest cache %s", mCacheFile.getAbsolutePath());
+        } finally {
+            StreamUtil.close(writer);
+        }
+    }
+
+    private static class Entry {
+        final long mSize;
+        final long mLastModified;
+        final String mDigest;
+
+        Entry(long size, long lastModified, String digest) {
+            mSize = size;
+            mLastModified = lastModified;
+            mDigest = digest;
+        }
+    }
+}
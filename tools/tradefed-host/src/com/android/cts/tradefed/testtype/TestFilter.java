@@ -21,35 +21,49 @@ import com.android.ddmlib.testrunner.TestIdentifier;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
  * Filter for {@link TestIdentifier}s.
+ * <p/>
+ * Rules can name test classes, test methods or test class name prefixes. When filtering, the
+ * rules are compiled into an index by class name, so that each class is only matched against the
+ * rules once, no matter how many of its tests are filtered.
  */
 public class TestFilter {
 
     private final Set<String> mExcludedClasses;
     private final Set<TestIdentifier> mExcludedTests;
+    private final Set<String> mExcludedClassPrefixes;
 
     private final Set<String> mIncludedClasses;
     private final Set<TestIdentifier> mIncludedTests;
+    private final Set<String> mIncludedClassPrefixes;
 
     private String mIncludedClass = null;
     private Pattern mIncludedMethod = null;
 
+    /** the compiled rules, or <code>null</code> if the rules changed since last compiled */
+    private Map<String, ClassRules> mClassRules = null;
+    private PrefixTrie mExcludedPrefixTrie = null;
+    private PrefixTrie mIncludedPrefixTrie = null;
+
     /**
      * Creates a {@link TestFilter}
      */
     public TestFilter() {
         mExcludedClasses = new HashSet<String>();
         mExcludedTests = new HashSet<TestIdentifier>();
+        mExcludedClassPrefixes = new HashSet<String>();
 
         mIncludedClasses = new HashSet<String>();
         mIncludedTests = new HashSet<TestIdentifier>();
+        mIncludedClassPrefixes = new HashSet<String>();
     }
 
     /**
@@ -59,6 +73,7 @@ public class TestFilter {
      */
     public void addExcludedClass(String className) {
         mExcludedClasses.add(className);
+        mClassRules = null;
     }
 
     /**
@@ -66,6 +81,25 @@ public class TestFilter {
      */
     public void addExcludedTest(TestIdentifier test) {
         mExcludedTests.add(test);
+        mClassRules = null;
+    }
+
+    /**
+     * Adds tests to the filter. All these tests should be excluded.
+     */
+    public void addExcludedTests(Collection<TestIdentifier> tests) {
+        mExcludedTests.addAll(tests);
+        mClassRules = null;
+    }
+
+    /**
+     * Adds a test class name prefix to the filter.
+     * <p/>
+     * All tests in classes whose name starts with this prefix should be filtered.
+     */
+    public void addExcludedClassPrefix(String classNamePrefix) {
+        mExcludedClassPrefixes.add(classNamePrefix);
+        mClassRules = null;
     }
 
     /**
@@ -74,7 +108,7 @@ public class TestFilter {
      * Exposed for unit testing
      */
     Set<String> getExcludedClasses() {
-        return mExcludedClasses;
+        return Collections.unmodifiableSet(mExcludedClasses);
     }
 
     /**
@@ -83,7 +117,16 @@ public class TestFilter {
      * Exposed for unit testing
      */
     Set<TestIdentifier> getExcludedTests() {
-        return mExcludedTests;
+        return Collections.unmodifiableSet(mExcludedTests);
+    }
+
+    /**
+     * Get the test class name prefixes to exclude.
+     * <p/>
+     * Exposed for {@link TestPlan} serialization and unit testing
+     */
+    Set<String> getExcludedClassPrefixes() {
+        return Collections.unmodifiableSet(mExcludedClassPrefixes);
     }
 
     /**
@@ -93,6 +136,7 @@ public class TestFilter {
      */
     public void addIncludedClass(String className) {
         mIncludedClasses.add(className);
+        mClassRules = null;
     }
 
     /**
@@ -100,20 +144,40 @@ public class TestFilter {
      */
     public void addIncludedTest(TestIdentifier test) {
         mIncludedTests.add(test);
+        mClassRules = null;
+    }
+
+    /**
+     * Adds a test class name prefix to the filter.
+     * <p/>
+     * All tests in classes whose name starts with this prefix should be allowed.
+     */
+    public void addIncludedClassPrefix(String classNamePrefix) {
+        mIncludedClassPrefixes.add(classNamePrefix);
+        mClassRules = null;
     }
 
     /**
-     * @return the mIncludedClasses
+     * Get the test classes to include.
      */
     public Set<String> getIncludedClasses() {
-        return mIncludedClasses;
+        return Collections.unmodifiableSet(mIncludedClasses);
     }
 
     /**
-     * @return the mIncludedTests
+     * Get the tests to include.
      */
     public Set<TestIdentifier> getIncludedTests() {
-        return mIncludedTests;
+        return Collections.unmodifiableSet(mIncludedTests);
+    }
+
+    /**
+     * Get the test class name prefixes to include.
+     * <p/>
+     * Exposed for {@link TestPlan} serialization and unit testing
+     */
+    Set<String> getIncludedClassPrefixes() {
+        return Collections.unmodifiableSet(mIncludedClassPrefixes);
     }
 
     /**
@@ -137,59 +201,209 @@ public class TestFilter {
      * @return a new sorted list of tests that passed the filter
      */
     public Collection<TestIdentifier> filter(Collection<TestIdentifier> tests) {
-        List<TestIdentifier> filteredTests = new ArrayList<TestIdentifier>(tests.size());
+        compileRules();
+        boolean hasInclusion = hasInclusion();
+        // the rules of the previous test are reused, since tests are usually grouped by class
+        String className = null;
+        ClassRules classRules = null;
+        List<SortEntry> filteredTests = new ArrayList<SortEntry>(tests.size());
         for (TestIdentifier test : tests) {
-            if (mIncludedClass != null && !test.getClassName().equals(mIncludedClass)) {
-                // skip
-                continue;
+            if (!test.getClassName().equals(className)) {
+                className = test.getClassName();
+                classRules = getClassRules(className);
             }
-            if (mIncludedMethod != null && !mIncludedMethod.matcher(test.getTestName()).matches()) {
+            if (mIncludedClass != null && !className.equals(mIncludedClass)) {
                 // skip
                 continue;
             }
-            if (mExcludedClasses.contains(test.getClassName())) {
+            if (mIncludedMethod != null && !mIncludedMethod.matcher(test.getTestName()).matches()) {
                 // skip
                 continue;
             }
-            if (mExcludedTests.contains(test)) {
+            if (classRules.isExcluded(test.getTestName())) {
                 // skip
                 continue;
             }
-            if ((!mIncludedTests.isEmpty() || !mIncludedClasses.isEmpty())
-                    && !(mIncludedClasses.contains(test.getClassName())
-                            || mIncludedTests.contains(test))) {
+            if (hasInclusion && !classRules.isIncluded(test.getTestName())) {
                 // skip
                 continue;
             }
-            filteredTests.add(test);
+            filteredTests.add(new SortEntry(test));
+        }
+        Collections.sort(filteredTests);
+        List<TestIdentifier> sortedTests = new ArrayList<TestIdentifier>(filteredTests.size());
+        for (SortEntry entry : filteredTests) {
+            sortedTests.add(entry.mTest);
+        }
+        return sortedTests;
+    }
+
+    /**
+     * Index the class and test rules by class name, and build the prefix tries.
+     */
+    private void compileRules() {
+        if (mClassRules != null) {
+            return;
+        }
+        mClassRules = new HashMap<String, ClassRules>();
+        for (String className : mExcludedClasses) {
+            getOrCreateClassRules(className).mIsExcluded = true;
+        }
+        for (TestIdentifier test : mExcludedTests) {
+            getOrCreateClassRules(test.getClassName()).addExcludedMethod(test.getTestName());
+        }
+        for (String className : mIncludedClasses) {
+            getOrCreateClassRules(className).mIsIncluded = true;
+        }
+        for (TestIdentifier test : mIncludedTests) {
+            getOrCreateClassRules(test.getClassName()).addIncludedMethod(test.getTestName());
+        }
+        mExcludedPrefixTrie = new PrefixTrie(mExcludedClassPrefixes);
+        mIncludedPrefixTrie = new PrefixTrie(mIncludedClassPrefixes);
+        // apply the prefix rules to the indexed classes, the others are resolved when first seen
+        for (Map.Entry<String, ClassRules> entry : mClassRules.entrySet()) {
+            applyPrefixRules(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private ClassRules getOrCreateClassRules(String className) {
+        ClassRules classRules = mClassRules.get(className);
+        if (classRules == null) {
+            classRules = new ClassRules();
+            mClassRules.put(className, classRules);
+        }
+        return classRules;
+    }
+
+    private ClassRules getClassRules(String className) {
+        ClassRules classRules = mClassRules.get(className);
+        if (classRules == null) {
+            classRules = new ClassRules();
+            applyPrefixRules(className, classRules);
+            mClassRules.put(className, classRules);
+        }
+        return classRules;
+    }
+
+    private void applyPrefixRules(String className, ClassRules classRules) {
+        if (mExcludedPrefixTrie.matches(className)) {
+            classRules.mIsExcluded = true;
+        }
+        if (mIncludedPrefixTrie.matches(className)) {
+            classRules.mIsIncluded = true;
         }
-        Collections.sort(filteredTests, new TestIdComparator());
-        return filteredTests;
     }
 
     /**
      * Return true if there are exclusions rules defined.
      */
     public boolean hasExclusion() {
-        return !mExcludedClasses.isEmpty() || !mExcludedTests.isEmpty();
+        return !mExcludedClasses.isEmpty() || !mExcludedTests.isEmpty() ||
+                !mExcludedClassPrefixes.isEmpty();
     }
 
     /**
      * @return true if there are inclusion rules defined.
      */
     public boolean hasInclusion() {
-        return !mIncludedClasses.isEmpty() || !mIncludedTests.isEmpty();
+        return !mIncludedClasses.isEmpty() || !mIncludedTests.isEmpty() ||
+                !mIncludedClassPrefixes.isEmpty();
     }
 
     /**
-     * A {@link Comparator} for {@link TestIdentifier} that compares using
-     * {@link TestIdentifier#toString()}
+     * The compiled rules of a single test class.
      */
-    private class TestIdComparator implements Comparator<TestIdentifier> {
+    private static class ClassRules {
+        boolean mIsExcluded = false;
+        boolean mIsIncluded = false;
+        Set<String> mExcludedMethods = null;
+        Set<String> mIncludedMethods = null;
+
+        void addExcludedMethod(String methodName) {
+            if (mExcludedMethods == null) {
+                mExcludedMethods = new HashSet<String>();
+            }
+            mExcludedMethods.add(methodName);
+        }
+
+        void addIncludedMethod(String methodName) {
+            if (mIncludedMethods == null) {
+                mIncludedMethods = new HashSet<String>();
+            }
+            mIncludedMethods.add(methodName);
+        }
+
+        boolean isExcluded(String methodName) {
+            return mIsExcluded || (mExcludedMethods != null &&
+                    mExcludedMethods.contains(methodName));
+        }
+
+        boolean isIncluded(String methodName) {
+            return mIsIncluded || (mIncludedMethods != null &&
+                    mIncludedMethods.contains(methodName));
+        }
+    }
+
+    /**
+     * A trie of class name prefixes.
+     */
+    private static class PrefixTrie {
+        private final Map<Character, PrefixTrie> mChildren = new HashMap<Character, PrefixTrie>();
+        private boolean mIsPrefixEnd = false;
+
+        PrefixTrie() {
+        }
+
+        PrefixTrie(Collection<String> prefixes) {
+            for (String prefix : prefixes) {
+                PrefixTrie node = this;
+                for (int i = 0; i < prefix.length(); i++) {
+                    PrefixTrie child = node.mChildren.get(prefix.charAt(i));
+                    if (child == null) {
+                        child = new PrefixTrie();
+                        node.mChildren.put(prefix.charAt(i), child);
+                    }
+                    node = child;
+                }
+                node.mIsPrefixEnd = true;
+            }
+        }
+
+        /**
+         * @return true if the given name starts with any of the prefixes in the trie.
+         */
+        boolean matches(String name) {
+            PrefixTrie node = this;
+            for (int i = 0; !node.mIsPrefixEnd; i++) {
+                if (i == name.length()) {
+                    return false;
+                }
+                node = node.mChildren.get(name.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A sortable {@link TestIdentifier}, ordered by {@link TestIdentifier#toString()}.
+     * <p/>
+     * The string is built once per test rather than on every comparison.
+     */
+    private static class SortEntry implements Comparable<SortEntry> {
+        final String mKey;
+        final TestIdentifier mTest;
+
+        SortEntry(TestIdentifier test) {
+            mKey = test.toString();
+            mTest = test;
+        }
 
         @Override
-        public int compare(TestIdentifier o1, TestIdentifier o2) {
-            return o1.toString().compareTo(o2.toString());
+        public int compareTo(SortEntry other) {
+            return mKey.compareTo(other.mKey);
         }
     }
 }
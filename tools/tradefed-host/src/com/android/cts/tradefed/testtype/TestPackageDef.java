@@ -57,6 +57,8 @@ class TestPackageDef implements ITestPackageDef {
     public static final String UIAUTOMATOR_TEST = "uiAutomator";
     public static final String JUNIT_DEVICE_TEST = "jUnitDeviceTest";
 
+    private static final String FAILED_DIGEST = "failed to generate digest";
+
     private String mAppPackageName = null;
     private String mAppNameSpace = null;
     private String mName = null;
@@ -239,6 +241,33 @@ class TestPackageDef implements ITestPackageDef {
         return mPreparers;
     }
 
+    /**
+     * Create a copy of the definition parsed from the package xml.
+     * <p/>
+     * Only the parsed data is copied; the dynamic options and the package preparers are left
+     * unset. The test collections are shared, since they are not modified after parsing.
+     */
+    TestPackageDef copyParsedDefinition() {
+        TestPackageDef copy = new TestPackageDef();
+        copy.mAppPackageName = mAppPackageName;
+        copy.mAppNameSpace = mAppNameSpace;
+        copy.mName = mName;
+        copy.mRunner = mRunner;
+        copy.mTestType = mTestType;
+        copy.mJarPath = mJarPath;
+        copy.mRunTimeArgs = mRunTimeArgs;
+        copy.mTestPackageName = mTestPackageName;
+        copy.mRuntimeHint = mRuntimeHint;
+        copy.mAbi = mAbi;
+        copy.mTests = mTests;
+        copy.mTestClasses = mTestClasses;
+        copy.mTestInstanceArguments = mTestInstanceArguments;
+        copy.mTargetBinaryName = mTargetBinaryName;
+        copy.mTargetNameSpace = mTargetNameSpace;
+        copy.mTimeoutInMins = mTimeoutInMins;
+        return copy;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -258,7 +287,7 @@ class TestPackageDef implements ITestPackageDef {
             hostTest.setJarFileName(mJarPath);
             hostTest.setTests(mTests);
             hostTest.setAbi(mAbi);
-            mDigest = generateDigest(testCaseDir, mJarPath);
+            mDigest = getCachedDigest(testCaseDir, mJarPath);
             return hostTest;
         } else if (VM_HOST_TEST.equals(mTestType)) {
             CLog.d("Creating vm host test for %s", mName);
@@ -267,7 +296,7 @@ class TestPackageDef implements ITestPackageDef {
             vmHostTest.setJarFileName(mJarPath);
             vmHostTest.setTests(mTests);
             vmHostTest.setAbi(mAbi);
-            mDigest = generateDigest(testCaseDir, mJarPath);
+            mDigest = getCachedDigest(testCaseDir, mJarPath);
             return vmHostTest;
         } else if (DEQP_TEST.equals(mTestType)) {
             DeqpTestRunner deqpTest =
@@ -294,7 +323,7 @@ class TestPackageDef implements ITestPackageDef {
             jUnitDeviceTest.addRunTimeArgs(mRunTimeArgs);
             jUnitDeviceTest.setTests(mTests);
             jUnitDeviceTest.setAbi(mAbi);
-            mDigest = generateDigest(testCaseDir, mJarPath);
+            mDigest = getCachedDigest(testCaseDir, mJarPath);
             return jUnitDeviceTest;
         } else {
             CLog.d("Creating instrumentation test for %s", mName);
@@ -327,7 +356,7 @@ class TestPackageDef implements ITestPackageDef {
         instrTest.setReRunUsingTestFile(true);
         // mName means 'apk file name' for instrumentation tests
         instrTest.addInstallApk(String.format("%s.apk", mName), mAppNameSpace);
-        mDigest = generateDigest(testCaseDir, String.format("%s.apk", mName));
+        mDigest = getCachedDigest(testCaseDir, String.format("%s.apk", mName));
         if (mTests.size() > 1000) {
             // TODO: hack, large test suites can take longer to collect tests, increase timeout
             instrTest.setCollectsTestsShellTimeout(10 * 60 * 1000);
@@ -423,6 +452,30 @@ class TestPackageDef implements ITestPackageDef {
         return mDigest;
     }
 
+    /**
+     * Get the sha1sum digest for a file, from the {@link FileDigestCache} of the testcases
+     * directory if the file did not change since its digest was last generated.
+     *
+     * @param fileDir the directory of the file
+     * @param fileName the name of the file
+     * @return a hex {@link String} of the digest
+     */
+    private String getCachedDigest(File fileDir, String fileName) {
+        File file = new File(fileDir, fileName);
+        if (!file.isFile()) {
+            return generateDigest(fileDir, fileName);
+        }
+        FileDigestCache cache = FileDigestCache.getInstance(fileDir);
+        String digest = cache.getDigest(file);
+        if (digest == null) {
+            digest = generateDigest(fileDir, fileName);
+            if (!FAILED_DIGEST.equals(digest)) {
+                cache.putDigest(file, digest);
+            }
+        }
+        return digest;
+    }
+
     /**
      * Generate a sha1sum digest for a file.
      * <p/>
@@ -452,7 +505,7 @@ class TestPackageDef implements ITestPackageDef {
             StreamUtil.close(d);
             StreamUtil.close(fileStream);
         }
-        return "failed to generate digest";
+        return FAILED_DIGEST;
     }
 
     /**
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.testtype;
+
+import com.android.cts.tradefed.testtype.CtsTest.TestPackage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A queue of {@link TestPackage}s shared by the shards of a dynamically sharded invocation.
+ * <p/>
+ * Instead of running a fixed slice of the packages, each shard pulls its next package from the
+ * queue once it is done with the previous one, so that a single slow package does not leave the
+ * other devices idle at the end of the invocation. Packages are handed out in the order given
+ * when the queue is filled, longest first.
+ * <p/>
+ * Packages left in the queue when the last shard stops, for example because all devices became
+ * unavailable, are handed to that shard so it can report them as not executed.
+ */
+class TestPackageQueue {
+
+    private final List<TestPackage> mTestPackages = new LinkedList<>();
+    private boolean mIsFilled = false;
+    private int mRunningShards;
+
+    /**
+     * @param shardCount the number of shards pulling packages from this queue
+     */
+    TestPackageQueue(int shardCount) {
+        mRunningShards = shardCount;
+    }
+
+    /**
+     * @return <code>true</code> if the queue has been filled by one of the shards.
+     */
+    synchronized boolean isFilled() {
+        return mIsFilled;
+    }
+
+    /**
+     * Fill the queue with the packages to run.
+     *
+     * @param testPackages the {@link TestPackage}s to run
+     * @param comparator the {@link Comparator} ordering packages by expected running time
+     */
+    synchronized void fill(Collection<TestPackage> testPackages,
+            Comparator<TestPackage> comparator) {
+        List<TestPackage> sortedPackages = new ArrayList<>(testPackages);
+        // hand out packages with the longest expected running time first
+        Collections.sort(sortedPackages, Collections.reverseOrder(comparator));
+        mTestPackages.addAll(sortedPackages);
+        mIsFilled = true;
+    }
+
+    /**
+     * Remove and return the next package to run on a device.
+     *
+     * @param abis the ABIs supported by the device
+     * @return the next {@link TestPackage} for one of the given ABIs or <code>null</code> if there
+     *         are none left.
+     */
+    synchronized TestPackage poll(Set<String> abis) {
+        Iterator<TestPackage> iter = mTestPackages.iterator();
+        while (iter.hasNext()) {
+            TestPackage testPackage = iter.next();
+            if (abis.contains(testPackage.getAbi().getName())) {
+                iter.remove();
+                return testPackage;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the package that {@link #poll(Set)} would return next, without removing it.
+     * <p/>
+     * The package may still be taken by another shard before this shard polls.
+     *
+     * @param abis the ABIs supported by the device
+     * @return the next {@link TestPackage} for one of the given ABIs or <code>null</code> if there
+     *         are none left.
+     */
+    synchronized TestPackage peek(Set<String> abis) {
+        for (TestPackage testPackage : mTestPackages) {
+            if (abis.contains(testPackage.getAbi().getName())) {
+                return testPackage;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record that a shard stopped pulling packages from the queue.
+     *
+     * @return the packages left in the queue if this was the last running shard, which are
+     *         removed from the queue, or an empty list otherwise.
+     */
+    synchronized List<TestPackage> stopShard() {
+        mRunningShards--;
+        if (mRunningShards > 0) {
+            return Collections.emptyList();
+        }
+        List<TestPackage> remainingPackages = new ArrayList<>(mTestPackages);
+        mTestPackages.clear();
+        return remainingPackages;
+    }
+
+    /**
+     * @return a snapshot of the packages remaining in the queue.
+     */
+    synchronized List<TestPackage> getRemainingPackages() {
+        return new ArrayList<>(mTestPackages);
+    }
+}
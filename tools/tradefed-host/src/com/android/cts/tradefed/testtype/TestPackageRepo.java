@@ -29,12 +29,18 @@ import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Retrieves CTS test package definitions from the repository.
@@ -43,6 +49,17 @@ public class TestPackageRepo implements ITestPackageRepo {
 
     private static final String LOG_TAG = "TestCaseRepo";
 
+    /** maximum number of threads used to parse the module definitions */
+    private static final int MAX_PARSE_THREADS = 8;
+
+    /**
+     * definitions parsed by earlier repos in this process, keyed by module XML path and
+     * known failure inclusion
+     */
+    private static final Map<String, ParsedModule> sParsedModules = new HashMap<>();
+    /** guards {@link ConfigurationFactory}, which is not safe for concurrent use */
+    private static final Object sConfigLock = new Object();
+
     /** mapping of ABI to a mapping of appPackageName to test definition */
     private final Map<String, Map<String, TestPackageDef>> mTestMap;
     private final boolean mIncludeKnownFailures;
@@ -65,8 +82,50 @@ public class TestPackageRepo implements ITestPackageRepo {
      */
     private void parse(File dir) {
         File[] xmlFiles = dir.listFiles(new XmlFilter());
-        for (File xmlFile : xmlFiles) {
-            parseModuleTestConfigs(xmlFile);
+        if (xmlFiles == null || xmlFiles.length == 0) {
+            return;
+        }
+        int numThreads = Math.min(xmlFiles.length,
+                Math.min(MAX_PARSE_THREADS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(numThreads, 1));
+        try {
+            List<Future<Collection<TestPackageDef>>> results = new ArrayList<>(xmlFiles.length);
+            for (final File xmlFile : xmlFiles) {
+                results.add(executor.submit(new Callable<Collection<TestPackageDef>>() {
+                    @Override
+                    public Collection<TestPackageDef> call() {
+                        return parseModuleTestConfigs(xmlFile);
+                    }
+                }));
+            }
+            // merge in directory order, so that the result does not depend on the scheduling
+            for (Future<Collection<TestPackageDef>> result : results) {
+                for (TestPackageDef def : getResult(result)) {
+                    String name = def.getAppPackageName();
+                    String abi = def.getAbi().getName();
+                    if (!mTestMap.containsKey(abi)) {
+                        mTestMap.put(abi, new HashMap<String, TestPackageDef>());
+                    }
+                    mTestMap.get(abi).put(name, def);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Collection<TestPackageDef> getResult(
+            Future<Collection<TestPackageDef>> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while parsing test packages", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
         }
     }
 
@@ -90,58 +149,94 @@ public class TestPackageRepo implements ITestPackageRepo {
     }
 
     /**
-     * Processes test module definition XML file, and stores parsed data structure in class member
-     * variable. Parsed config objects will be associated with each applicable ABI type so multiple
+     * Processes test module definition XML file, and returns the parsed data structures. Parsed
+     * config objects will be associated with each applicable ABI type so multiple
      * {@link TestPackageDef}s will be generated accordingly. In addition, based on
      * &lt;module name&gt;.config file naming convention, this method also looks for the optional
      * module test config, and attaches defined configuration objects to the {@link TestPackageDef}
      * representing the module accordingly.
+     * <p/>
+     * Called concurrently for different modules.
+     *
      * @param xmlFile the module definition XML
+     * @return the {@link TestPackageDef}s of the module, one per ABI
      */
-    private void parseModuleTestConfigs(File xmlFile)  {
-        TestPackageXmlParser parser = new TestPackageXmlParser(mIncludeKnownFailures);
-        try {
-            parser.parse(createStreamFromFile(xmlFile));
-            // based on test module XML file path, and the <module name>.config naming convention,
-            // infers the module test config file, and parses it
-            File preparer = getPreparerDefForPackage(xmlFile);
-            IConfiguration config = null;
-            if (preparer != null) {
-                try {
-                    // invokes parser to process the test module config file
+    private Collection<TestPackageDef> parseModuleTestConfigs(File xmlFile)  {
+        Collection<TestPackageDef> parsedDefs = getParsedDefs(xmlFile);
+        if (parsedDefs == null) {
+            return Collections.emptyList();
+        }
+        // based on test module XML file path, and the <module name>.config naming convention,
+        // infers the module test config file, and parses it
+        File preparer = getPreparerDefForPackage(xmlFile);
+        IConfiguration config = null;
+        if (preparer != null) {
+            try {
+                // invokes parser to process the test module config file
+                synchronized (sConfigLock) {
                     config = ConfigurationFactory.getInstance().createConfigurationFromArgs(
                             new String[]{preparer.getAbsolutePath()});
-                } catch (ConfigurationException e) {
-                    throw new RuntimeException(
-                            String.format("error parsing config file: %s", xmlFile.getName()), e);
                 }
+            } catch (ConfigurationException e) {
+                throw new RuntimeException(
+                        String.format("error parsing config file: %s", xmlFile.getName()), e);
             }
-            Set<TestPackageDef> defs = parser.getTestPackageDefs();
-            if (defs.isEmpty()) {
-                Log.w(LOG_TAG, String.format("Could not find test package info in xml file %s",
-                        xmlFile.getAbsolutePath()));
+        }
+        // loops over multiple package defs defined for each ABI type
+        List<TestPackageDef> defs = new ArrayList<>(parsedDefs.size());
+        for (TestPackageDef parsedDef : parsedDefs) {
+            // hand out copies, the definitions are modified when running the package
+            TestPackageDef def = parsedDef.copyParsedDefinition();
+            if (config != null) {
+                def.setPackagePreparers(config.getTargetPreparers());
             }
-            // loops over multiple package defs defined for each ABI type
-            for (TestPackageDef def : defs) {
-                String name = def.getAppPackageName();
-                String abi = def.getAbi().getName();
-                if (config != null) {
-                    def.setPackagePreparers(config.getTargetPreparers());
-                }
-                if (!mTestMap.containsKey(abi)) {
-                    mTestMap.put(abi, new HashMap<String, TestPackageDef>());
-                }
-                mTestMap.get(abi).put(name, def);
+            defs.add(def);
+        }
+        return defs;
+    }
+
+    /**
+     * Get the {@link TestPackageDef}s parsed from a module definition XML, reusing those parsed
+     * by an earlier {@link TestPackageRepo} if the file did not change since.
+     *
+     * @param xmlFile the module definition XML
+     * @return the parsed {@link TestPackageDef}s, or <code>null</code> if the file could not be
+     *         parsed
+     */
+    private Collection<TestPackageDef> getParsedDefs(File xmlFile) {
+        String key = String.format("%s:%b", xmlFile.getAbsolutePath(), mIncludeKnownFailures);
+        synchronized (sParsedModules) {
+            ParsedModule module = sParsedModules.get(key);
+            if (module != null && module.mSize == xmlFile.length() &&
+                    module.mLastModified == xmlFile.lastModified()) {
+                return module.mDefs;
             }
+        }
+        long size = xmlFile.length();
+        long lastModified = xmlFile.lastModified();
+        TestPackageXmlParser parser = new TestPackageXmlParser(mIncludeKnownFailures);
+        try {
+            parser.parse(createStreamFromFile(xmlFile));
         } catch (FileNotFoundException e) {
             Log.e(LOG_TAG, String.format("Could not find test case xml file %s",
                     xmlFile.getAbsolutePath()));
             Log.e(LOG_TAG, e);
+            return null;
         } catch (ParseException e) {
             Log.e(LOG_TAG, String.format("Failed to parse test case xml file %s",
                     xmlFile.getAbsolutePath()));
             Log.e(LOG_TAG, e);
+            return null;
+        }
+        Set<TestPackageDef> defs = parser.getTestPackageDefs();
+        if (defs.isEmpty()) {
+            Log.w(LOG_TAG, String.format("Could not find test package info in xml file %s",
+                    xmlFile.getAbsolutePath()));
+        }
+        synchronized (sParsedModules) {
+            sParsedModules.put(key, new ParsedModule(size, lastModified, defs));
         }
+        return defs;
     }
 
     /**
@@ -157,6 +252,22 @@ public class TestPackageRepo implements ITestPackageRepo {
         return new BufferedInputStream(new FileInputStream(xmlFile));
     }
 
+    /**
+     * The {@link TestPackageDef}s parsed from a module definition XML of a given size and
+     * modification time.
+     */
+    private static class ParsedModule {
+        final long mSize;
+        final long mLastModified;
+        final Collection<TestPackageDef> mDefs;
+
+        ParsedModule(long size, long lastModified, Collection<TestPackageDef> defs) {
+            mSize = size;
+            mLastModified = lastModified;
+            mDefs = defs;
+        }
+    }
+
     private static class XmlFilter implements FilenameFilter {
 
         /**
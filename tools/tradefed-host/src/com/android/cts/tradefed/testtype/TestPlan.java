@@ -50,6 +50,7 @@ public class TestPlan extends AbstractXmlParser implements ITestPlan {
     private static final String ENTRY_TAG = "Entry";
     private static final String TEST_DELIM = ";";
     private static final String METHOD_DELIM = "#";
+    private static final String PREFIX_WILDCARD = "*";
     private static final String EXCLUDE_ATTR = "exclude";
     private static final String INCLUDE_ATTR = "include";
     private static final String ABI_ATTR = "abi";
@@ -86,6 +87,9 @@ public class TestPlan extends AbstractXmlParser implements ITestPlan {
          * <p/>
          * Expected format:
          * testClassName[#testMethodName][;testClassName2...]
+         * <p/>
+         * A class name ending with {@link #PREFIX_WILDCARD} matches all classes starting with
+         * the rest of the name.
          *
          * @param excludedString the excluded string list
          * @param includedString the included string list
@@ -100,6 +104,8 @@ public class TestPlan extends AbstractXmlParser implements ITestPlan {
                     if (classMethodPair.length == 2) {
                         filter.addExcludedTest(new TestIdentifier(classMethodPair[0],
                                 classMethodPair[1]));
+                    } else if (testString.endsWith(PREFIX_WILDCARD)) {
+                        filter.addExcludedClassPrefix(getClassNamePrefix(testString));
                     } else {
                         filter.addExcludedClass(testString);
                     }
@@ -112,6 +118,8 @@ public class TestPlan extends AbstractXmlParser implements ITestPlan {
                     if (classMethodPair.length == 2) {
                         filter.addIncludedTest(new TestIdentifier(classMethodPair[0],
                                 classMethodPair[1]));
+                    } else if (testString.endsWith(PREFIX_WILDCARD)) {
+                        filter.addIncludedClassPrefix(getClassNamePrefix(testString));
                     } else {
                         filter.addIncludedClass(testString);
                     }
@@ -120,6 +128,10 @@ public class TestPlan extends AbstractXmlParser implements ITestPlan {
 
             return filter;
         }
+
+        private String getClassNamePrefix(String testString) {
+            return testString.substring(0, testString.length() - PREFIX_WILDCARD.length());
+        }
     }
 
     public TestPlan(String name, Set<String> abis) {
@@ -203,7 +215,7 @@ public class TestPlan extends AbstractXmlParser implements ITestPlan {
     public void addExcludedTests(String id, Collection<TestIdentifier> excludedTests) {
         TestFilter filter = mIdFilterMap.get(id);
         if (filter != null) {
-            filter.getExcludedTests().addAll(excludedTests);
+            filter.addExcludedTests(excludedTests);
         } else {
             throw new IllegalArgumentException(String.format("Could not find package %s", id));
         }
@@ -247,6 +259,9 @@ public class TestPlan extends AbstractXmlParser implements ITestPlan {
         if (testFilter.hasExclusion()) {
             List<String> exclusionStrings = new ArrayList<String>();
             exclusionStrings.addAll(testFilter.getExcludedClasses());
+            for (String prefix : testFilter.getExcludedClassPrefixes()) {
+                exclusionStrings.add(prefix + PREFIX_WILDCARD);
+            }
             for (TestIdentifier test : testFilter.getExcludedTests()) {
                 // TODO: this relies on TestIdentifier.toString() using METHOD_DELIM.
                 exclusionStrings.add(test.toString());
@@ -258,6 +273,9 @@ public class TestPlan extends AbstractXmlParser implements ITestPlan {
         if (testFilter.hasInclusion()) {
             List<String> inclusionStrings = new ArrayList<String>();
             inclusionStrings.addAll(testFilter.getIncludedClasses());
+            for (String prefix : testFilter.getIncludedClassPrefixes()) {
+                inclusionStrings.add(prefix + PREFIX_WILDCARD);
+            }
             for (TestIdentifier test : testFilter.getIncludedTests()) {
                 // TODO: this relies on TestIdentifier.toString() using METHOD_DELIM.
                 inclusionStrings.add(test.toString());
@@ -17,14 +17,20 @@ package com.android.cts.tradefed;
 
 import com.android.cts.tradefed.result.CtsXmlResultReporterTest;
 import com.android.cts.tradefed.result.DeviceInfoResultTest;
+import com.android.cts.tradefed.result.ResultJournalTest;
+import com.android.cts.tradefed.result.ResultMergerTest;
+import com.android.cts.tradefed.result.ResultSummaryIndexTest;
+import com.android.cts.tradefed.result.TestDurationsTest;
 import com.android.cts.tradefed.result.TestPackageResultTest;
 import com.android.cts.tradefed.result.TestResultsTest;
+import com.android.cts.tradefed.result.TestStatusParserTest;
 import com.android.cts.tradefed.result.TestSummaryXmlTest;
 import com.android.cts.tradefed.result.TestTest;
 import com.android.cts.tradefed.result.TestLogTest;
 import com.android.cts.tradefed.testtype.Abi;
 import com.android.cts.tradefed.testtype.CtsTestTest;
 import com.android.cts.tradefed.testtype.DeqpTestRunnerTest;
+import com.android.cts.tradefed.testtype.FileDigestCacheTest;
 import com.android.cts.tradefed.testtype.GeeTestTest;
 import com.android.cts.tradefed.testtype.JarHostTestTest;
 import com.android.cts.tradefed.testtype.TestFilterTest;
@@ -53,8 +59,13 @@ public class UnitTests extends TestSuite {
         // result package
         addTestSuite(CtsXmlResultReporterTest.class);
         addTestSuite(DeviceInfoResultTest.class);
+        addTestSuite(ResultJournalTest.class);
+        addTestSuite(ResultMergerTest.class);
+        addTestSuite(ResultSummaryIndexTest.class);
+        addTestSuite(TestDurationsTest.class);
         addTestSuite(TestPackageResultTest.class);
         addTestSuite(TestResultsTest.class);
+        addTestSuite(TestStatusParserTest.class);
         addTestSuite(TestSummaryXmlTest.class);
         addTestSuite(TestTest.class);
         addTestSuite(TestLogTest.class);
@@ -62,6 +73,7 @@ public class UnitTests extends TestSuite {
         // testtype package
         addTestSuite(CtsTestTest.class);
         addTestSuite(DeqpTestRunnerTest.class);
+        addTestSuite(FileDigestCacheTest.class);
         addTestSuite(GeeTestTest.class);
         addTestSuite(JarHostTestTest.class);
         addTestSuite(TestFilterTest.class);
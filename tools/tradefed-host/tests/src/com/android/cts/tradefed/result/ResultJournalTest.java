@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.result;
+
+import com.android.cts.util.AbiUtils;
+import com.android.ddmlib.testrunner.TestIdentifier;
+import com.android.tradefed.util.FileUtil;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link ResultJournal}.
+ */
+public class ResultJournalTest extends junit.framework.TestCase {
+
+    private static final String PACKAGE_ID = AbiUtils.createId("armeabi-v7a", "appPkgName");
+    private static final TestIdentifier PASSED_TEST =
+            new TestIdentifier("com.example.ExampleTest", "testPass");
+    private static final TestIdentifier FAILED_TEST =
+            new TestIdentifier("com.example.ExampleTest", "testFail");
+
+    private File mReportDir;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mReportDir = FileUtil.createTempDir("journal");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.recursiveDelete(mReportDir);
+        super.tearDown();
+    }
+
+    /**
+     * Test that replaying a journal recreates the journaled results
+     */
+    public void testReplay() throws Exception {
+        Map<String, String> metrics = new HashMap<String, String>();
+        ResultJournal journal = new ResultJournal(mReportDir);
+        journal.writeInvocationStarted("CTS", "start", "serial");
+        journal.writeTestRunStarted(PACKAGE_ID, "serial");
+        journal.writeTestStarted(PASSED_TEST, "start");
+        journal.writeTestEnded(PASSED_TEST, "end", metrics);
+        journal.writeTestStarted(FAILED_TEST, "start");
+        journal.writeTestFailed(FAILED_TEST, CtsTestStatus.FAIL,
+                "junit.framework.AssertionFailedError: line\n\tat tab\\");
+        journal.writeTestEnded(FAILED_TEST, "end", metrics);
+        journal.writeTestRunEnded(metrics);
+        journal.close();
+
+        TestResults results = new TestResults();
+        Map<String, String> attributes =
+                ResultJournal.replay(ResultJournal.getJournalFile(mReportDir), results);
+        assertEquals("CTS", attributes.get(ResultJournal.PLAN_KEY));
+        assertEquals("start", attributes.get(ResultJournal.START_TIME_KEY));
+        assertEquals("serial", attributes.get(ResultJournal.DEVICE_SERIAL_KEY));
+        assertEquals(1, results.countTests(CtsTestStatus.PASS));
+        assertEquals(1, results.countTests(CtsTestStatus.FAIL));
+        TestPackageResult pkg = results.getOrCreatePackage(PACKAGE_ID);
+        Test failedTest = pkg.findTest(FAILED_TEST);
+        assertEquals("end", failedTest.getEndTime());
+        assertEquals("junit.framework.AssertionFailedError: line\n\tat tab\\",
+                failedTest.getStackTrace());
+    }
+
+    /**
+     * Test that a record truncated by a crash is ignored
+     */
+    public void testReplay_truncated() throws Exception {
+        ResultJournal journal = new ResultJournal(mReportDir);
+        journal.writeTestRunStarted(PACKAGE_ID, "serial");
+        journal.writeTestStarted(PASSED_TEST, "start");
+        journal.close();
+        FileWriter writer = new FileWriter(ResultJournal.getJournalFile(mReportDir), true);
+        writer.write("E\tcom.example.ExampleTest\ttestPass");
+        writer.close();
+
+        TestResults results = new TestResults();
+        ResultJournal.replay(ResultJournal.getJournalFile(mReportDir), results);
+        assertEquals(0, results.countTests(CtsTestStatus.PASS));
+        assertEquals(1, results.countTests(CtsTestStatus.NOT_EXECUTED));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.result;
+
+import com.android.cts.util.AbiUtils;
+import com.android.ddmlib.testrunner.TestIdentifier;
+import com.android.tradefed.util.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link ResultMerger}.
+ */
+public class ResultMergerTest extends junit.framework.TestCase {
+
+    private static final String ABI = "armeabi-v7a";
+    private static final TestIdentifier TEST =
+            new TestIdentifier("com.example.ExampleTest", "testExample");
+
+    private File mReportDir;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mReportDir = FileUtil.createTempDir("merger");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.recursiveDelete(mReportDir);
+        super.tearDown();
+    }
+
+    private static String createPackageXml(String appPackageName, String result) {
+        return "<TestPackage name=\"pkgName\" appPackageName=\"" + appPackageName + "\" abi=\"" +
+                ABI + "\" >" +
+            "<TestSuite name=\"com\" >" +
+                "<TestSuite name=\"example\" >" +
+                    "<TestCase name=\"ExampleTest\" >" +
+                        "<Test name=\"testExample\" result=\"" + result + "\" />" +
+                    "</TestCase>" +
+                "</TestSuite>" +
+            "</TestSuite>" +
+            "</TestPackage>";
+    }
+
+    private static void journalRun(ResultJournal journal, String appPackageName,
+            boolean failed) {
+        Map<String, String> metrics = new HashMap<String, String>();
+        journal.writeTestRunStarted(AbiUtils.createId(ABI, appPackageName), "serial");
+        journal.writeTestStarted(TEST, "start");
+        if (failed) {
+            journal.writeTestFailed(TEST, CtsTestStatus.FAIL, "trace");
+        }
+        journal.writeTestEnded(TEST, "end", metrics);
+        journal.writeTestRunEnded(metrics);
+    }
+
+    /**
+     * Test that the packages of the journal are merged with those of the previous result XML
+     * in order of their id.
+     */
+    public void testVisitPackages() throws Exception {
+        File previousResultFile = new File(mReportDir, CtsXmlResultReporter.TEST_RESULT_FILE_NAME);
+        FileUtil.writeToFile("<TestResult>" + createPackageXml("a", "notExecuted") +
+                createPackageXml("c", "pass") + "</TestResult>", previousResultFile);
+        ResultJournal journal = new ResultJournal(mReportDir);
+        journal.writeInvocationStarted("CTS", "start", "serial");
+        journalRun(journal, "d", true);
+        journalRun(journal, "a", false);
+        journalRun(journal, "b", false);
+        journal.close();
+
+        ResultMerger merger = new ResultMerger(previousResultFile,
+                ResultJournal.getJournalFile(mReportDir));
+        List<TestPackageResult> pkgs = visitPackages(merger);
+        assertEquals(4, pkgs.size());
+        assertEquals("a", pkgs.get(0).getAppPackageName());
+        assertEquals(1, pkgs.get(0).countTests(CtsTestStatus.PASS));
+        assertEquals(0, pkgs.get(0).countTests(CtsTestStatus.NOT_EXECUTED));
+        assertEquals("serial", pkgs.get(0).getDeviceSerial());
+        assertEquals("b", pkgs.get(1).getAppPackageName());
+        assertEquals(1, pkgs.get(1).countTests(CtsTestStatus.PASS));
+        assertEquals("c", pkgs.get(2).getAppPackageName());
+        assertEquals(1, pkgs.get(2).countTests(CtsTestStatus.PASS));
+        assertEquals("d", pkgs.get(3).getAppPackageName());
+        assertEquals(1, pkgs.get(3).countTests(CtsTestStatus.FAIL));
+        assertEquals("end", pkgs.get(3).findTest(TEST).getEndTime());
+
+        // the merge can be repeated, e.g. to count before serializing
+        assertEquals(4, visitPackages(merger).size());
+    }
+
+    /**
+     * Test merging a journal without previous result XML.
+     */
+    public void testVisitPackages_journalOnly() throws Exception {
+        ResultJournal journal = new ResultJournal(mReportDir);
+        journalRun(journal, "b", false);
+        journalRun(journal, "a", true);
+        journal.close();
+
+        List<TestPackageResult> pkgs = visitPackages(new ResultMerger(null,
+                ResultJournal.getJournalFile(mReportDir)));
+        assertEquals(2, pkgs.size());
+        assertEquals("a", pkgs.get(0).getAppPackageName());
+        assertEquals(1, pkgs.get(0).countTests(CtsTestStatus.FAIL));
+        assertEquals("b", pkgs.get(1).getAppPackageName());
+        assertEquals(1, pkgs.get(1).countTests(CtsTestStatus.PASS));
+    }
+
+    private static List<TestPackageResult> visitPackages(ResultMerger merger) throws Exception {
+        final List<TestPackageResult> pkgs = new ArrayList<TestPackageResult>();
+        merger.visitPackages(new ResultMerger.PackageVisitor() {
+            @Override
+            public void visit(TestPackageResult pkg) throws IOException {
+                pkgs.add(pkg);
+            }
+        });
+        return pkgs;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.result;
+
+import com.android.tradefed.util.FileUtil;
+
+import java.io.File;
+import java.util.Collections;
+
+/**
+ * Unit tests for {@link ResultSummaryIndex}.
+ */
+public class ResultSummaryIndexTest extends junit.framework.TestCase {
+
+    private File mResultsDir;
+    private File mResultDir;
+    private File mResultFile;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mResultsDir = FileUtil.createTempDir("results");
+        mResultDir = new File(mResultsDir, "2015.01.01_00.00.00");
+        mResultDir.mkdir();
+        mResultFile = new File(mResultDir, CtsXmlResultReporter.TEST_RESULT_FILE_NAME);
+        FileUtil.writeToFile("<TestResult/>", mResultFile);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.recursiveDelete(mResultsDir);
+        super.tearDown();
+    }
+
+    private ITestSummary createSummary() {
+        TestSummaryXml summary = new TestSummaryXml(0, mResultDir.getName());
+        summary.setSummary(3, 2, 1, "CTS\ttab", "start", "serial1,serial2");
+        return summary;
+    }
+
+    /**
+     * Test that a saved summary is loaded again by a new index.
+     */
+    public void testSaveAndLoad() {
+        ResultSummaryIndex index = new ResultSummaryIndex(mResultsDir);
+        assertNull(index.getSummary(0, mResultDir, mResultFile));
+        index.putSummary(mResultDir, mResultFile, createSummary());
+        index.save();
+
+        ITestSummary summary =
+                new ResultSummaryIndex(mResultsDir).getSummary(1, mResultDir, mResultFile);
+        assertNotNull(summary);
+        assertEquals(1, summary.getId());
+        assertEquals(mResultDir.getName(), summary.getTimestamp());
+        assertEquals(3, summary.getNumPassed());
+        assertEquals(2, summary.getNumFailed());
+        assertEquals(1, summary.getNumIncomplete());
+        assertEquals("CTS\ttab", summary.getTestPlan());
+        assertEquals("start", summary.getStartTime());
+        assertEquals("serial1,serial2", summary.getDeviceSerials());
+    }
+
+    /**
+     * Test that a summary is not used anymore once the result XML changed.
+     */
+    public void testGetSummary_changed() throws Exception {
+        ResultSummaryIndex index = new ResultSummaryIndex(mResultsDir);
+        index.putSummary(mResultDir, mResultFile, createSummary());
+        FileUtil.writeToFile("<TestResult></TestResult>", mResultFile);
+        assertNull(index.getSummary(0, mResultDir, mResultFile));
+    }
+
+    /**
+     * Test that summaries of removed sessions are dropped.
+     */
+    public void testRetainAll() {
+        ResultSummaryIndex index = new ResultSummaryIndex(mResultsDir);
+        index.putSummary(mResultDir, mResultFile, createSummary());
+        index.retainAll(Collections.<File>emptyList());
+        assertNull(index.getSummary(0, mResultDir, mResultFile));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.result;
+
+import com.android.cts.util.AbiUtils;
+
+import java.io.StringReader;
+
+/**
+ * Unit tests for {@link TestDurations}.
+ */
+public class TestDurationsTest extends junit.framework.TestCase {
+
+    private static final String ABI = "armeabi-v7a";
+    private static final String PACKAGE_ID = AbiUtils.createId(ABI, "appPkgName");
+
+    private static String createResult(String startTime, String endTime) {
+        return createResult(
+            "<Test name=\"testFirst\" starttime=\"" + startTime + "\" " +
+                "endtime=\"Fri Aug 20 15:13:10 PDT 2010\" result=\"pass\" />" +
+            "<Test name=\"testSecond\" starttime=\"Fri Aug 20 15:13:10 PDT 2010\" " +
+                "endtime=\"" + endTime + "\" result=\"pass\" />");
+    }
+
+    private static String createResult(String tests) {
+        return "<TestResult>" +
+            "<TestPackage name=\"pkgName\" appPackageName=\"appPkgName\" abi=\"" + ABI + "\" >" +
+            "<TestSuite name=\"com\" >" +
+                "<TestCase name=\"ExampleTest\" >" +
+                    tests +
+                "</TestCase>" +
+            "</TestSuite>" +
+            "</TestPackage>" +
+            "</TestResult>";
+    }
+
+    /**
+     * Test that package durations span all their tests
+     */
+    public void testAddResults() throws Exception {
+        TestResults results = new TestResults();
+        results.parse(new StringReader(createResult("Fri Aug 20 15:13:03 PDT 2010",
+                "Fri Aug 20 15:13:33 PDT 2010")));
+        TestDurations durations = new TestDurations();
+        durations.addResults(results);
+        assertEquals(Long.valueOf(30 * 1000), durations.getPackageDuration(PACKAGE_ID));
+    }
+
+    /**
+     * Test that the largest duration of all results added is used
+     */
+    public void testAddResults_largest() throws Exception {
+        TestResults recent = new TestResults();
+        recent.parse(new StringReader(createResult("Fri Aug 20 15:13:03 PDT 2010",
+                "Fri Aug 20 15:13:13 PDT 2010")));
+        TestResults older = new TestResults();
+        older.parse(new StringReader(createResult("Fri Aug 20 15:13:03 PDT 2010",
+                "Fri Aug 20 15:14:03 PDT 2010")));
+        TestDurations durations = new TestDurations();
+        durations.addResults(recent);
+        durations.addResults(older);
+        assertEquals(Long.valueOf(60 * 1000), durations.getPackageDuration(PACKAGE_ID));
+    }
+
+    /**
+     * Test that a later session which ran only part of a package, e.g. a retry of its failed
+     * tests, does not shorten the package
+     */
+    public void testAddResults_partialSession() throws Exception {
+        TestResults retry = new TestResults();
+        retry.parse(new StringReader(createResult(
+                "<Test name=\"testFirst\" starttime=\"Sat Aug 21 10:00:00 PDT 2010\" " +
+                    "endtime=\"Sat Aug 21 10:00:02 PDT 2010\" result=\"pass\" />")));
+        TestResults full = new TestResults();
+        full.parse(new StringReader(createResult("Fri Aug 20 15:00:00 PDT 2010",
+                "Fri Aug 20 15:20:00 PDT 2010")));
+        TestDurations durations = new TestDurations();
+        durations.addResults(retry);
+        durations.addResults(full);
+        assertEquals(Long.valueOf(20 * 60 * 1000), durations.getPackageDuration(PACKAGE_ID));
+    }
+
+    /**
+     * Test that a long gap between tests, e.g. while a continued session was interrupted, is
+     * not counted
+     */
+    public void testAddResults_interrupted() throws Exception {
+        TestResults results = new TestResults();
+        results.parse(new StringReader(createResult(
+                "<Test name=\"testFirst\" starttime=\"Fri Aug 20 15:13:00 PDT 2010\" " +
+                    "endtime=\"Fri Aug 20 15:13:10 PDT 2010\" result=\"pass\" />" +
+                "<Test name=\"testSecond\" starttime=\"Fri Aug 20 15:13:12 PDT 2010\" " +
+                    "endtime=\"Fri Aug 20 15:13:20 PDT 2010\" result=\"pass\" />" +
+                "<Test name=\"testThird\" starttime=\"Sat Aug 21 09:00:00 PDT 2010\" " +
+                    "endtime=\"Sat Aug 21 09:00:30 PDT 2010\" result=\"pass\" />")));
+        TestDurations durations = new TestDurations();
+        durations.addResults(results);
+        assertEquals(Long.valueOf(50 * 1000), durations.getPackageDuration(PACKAGE_ID));
+    }
+
+    /**
+     * Test that tests with unparsable times are ignored
+     */
+    public void testAddResults_badTimestamp() throws Exception {
+        TestResults results = new TestResults();
+        results.parse(new StringReader(createResult("st", "et")));
+        TestDurations durations = new TestDurations();
+        durations.addResults(results);
+        assertNull(durations.getPackageDuration(PACKAGE_ID));
+    }
+}
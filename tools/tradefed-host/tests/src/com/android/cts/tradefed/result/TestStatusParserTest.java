@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.result;
+
+import com.android.cts.util.AbiUtils;
+import com.android.ddmlib.testrunner.TestIdentifier;
+
+import java.io.StringReader;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link TestStatusParser}.
+ */
+public class TestStatusParserTest extends junit.framework.TestCase {
+
+    private static final String ABI = "armeabi-v7a";
+    private static final String PACKAGE_ID = AbiUtils.createId(ABI, "appPkgName");
+
+    private static final String RESULT =
+            "<TestResult>" +
+            "<TestPackage name=\"pkgName\" appPackageName=\"appPkgName\" abi=\"" + ABI + "\" >" +
+            "<TestSuite name=\"com\" >" +
+                "<TestSuite name=\"example\" >" +
+                    "<TestCase name=\"ExampleTest\" >" +
+                        "<Test name=\"testPass\" result=\"pass\" />" +
+                        "<Test name=\"testNotExecuted\" result=\"notExecuted\" />" +
+                        "<Test name=\"testFail\" result=\"fail\" >" +
+                            "<FailedScene message=\"failed\" >" +
+                                "<StackTrace>trace</StackTrace>" +
+                            "</FailedScene>" +
+                        "</Test>" +
+                    "</TestCase>" +
+                "</TestSuite>" +
+                "<TestCase name=\"OtherTest\" >" +
+                    "<Test name=\"testOther\" result=\"notExecuted\" />" +
+                "</TestCase>" +
+            "</TestSuite>" +
+            "</TestPackage>" +
+            "<TestPackage name=\"pkgName2\" appPackageName=\"appPkgName2\" abi=\"" + ABI +
+            "\" />" +
+            "</TestResult>";
+
+    /**
+     * Test that the parsed tests match those found in the full {@link TestResults}.
+     */
+    public void testParse() throws Exception {
+        TestStatusParser parser = new TestStatusParser(CtsTestStatus.NOT_EXECUTED);
+        parser.parse(new StringReader(RESULT));
+        Map<String, Set<TestIdentifier>> tests = parser.getTests();
+        assertEquals(2, tests.size());
+        Set<TestIdentifier> pkgTests = tests.get(PACKAGE_ID);
+        assertEquals(2, pkgTests.size());
+        assertTrue(pkgTests.contains(new TestIdentifier("com.example.ExampleTest",
+                "testNotExecuted")));
+        assertTrue(pkgTests.contains(new TestIdentifier("com.OtherTest", "testOther")));
+        assertTrue(tests.get(AbiUtils.createId(ABI, "appPkgName2")).isEmpty());
+
+        TestResults results = new TestResults();
+        results.parse(new StringReader(RESULT));
+        for (TestPackageResult pkg : results.getPackages()) {
+            assertEquals(new LinkedHashSet<TestIdentifier>(
+                    pkg.getTestsWithStatus(CtsTestStatus.NOT_EXECUTED)), tests.get(pkg.getId()));
+        }
+    }
+
+    /**
+     * Test parsing the failed tests of a result.
+     */
+    public void testParse_fail() throws Exception {
+        TestStatusParser parser = new TestStatusParser(CtsTestStatus.FAIL);
+        parser.parse(new StringReader(RESULT));
+        Set<TestIdentifier> pkgTests = parser.getTests().get(PACKAGE_ID);
+        assertEquals(1, pkgTests.size());
+        assertEquals(new TestIdentifier("com.example.ExampleTest", "testFail"),
+                pkgTests.iterator().next());
+    }
+}
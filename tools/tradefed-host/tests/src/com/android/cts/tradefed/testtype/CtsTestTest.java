@@ -18,12 +18,15 @@ package com.android.cts.tradefed.testtype;
 import com.android.cts.tradefed.UnitTests;
 import com.android.cts.tradefed.build.StubCtsBuildHelper;
 import com.android.cts.tradefed.result.PlanCreator;
+import com.android.cts.tradefed.testtype.CtsTest.TestPackage;
 import com.android.cts.util.AbiUtils;
 import com.android.ddmlib.testrunner.TestIdentifier;
+import com.android.tradefed.config.OptionSetter;
 import com.android.tradefed.device.DeviceNotAvailableException;
 import com.android.tradefed.device.ITestDevice;
 import com.android.tradefed.result.ITestInvocationListener;
 import com.android.tradefed.targetprep.ITargetPreparer;
+import com.android.tradefed.testtype.Abi;
 import com.android.tradefed.testtype.IRemoteTest;
 import com.android.tradefed.util.xml.AbstractXmlParser.ParseException;
 
@@ -37,6 +40,7 @@ import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -415,6 +419,144 @@ public class CtsTestTest extends TestCase {
         assertEquals("", actual);
     }
 
+    /**
+     * Test that {@link TestPackageQueue} hands out packages longest first, only for the ABIs of
+     * the device, and that peeking does not take the package.
+     */
+    public void testTestPackageQueue_pollAndPeek() {
+        TestPackage shortPackage = createTestPackage("short", UnitTests.ABI.getName());
+        TestPackage longPackage = createTestPackage("long", UnitTests.ABI.getName());
+        TestPackage otherAbiPackage = createTestPackage("other", "otherabi");
+
+        TestPackageQueue queue = new TestPackageQueue(1);
+        assertFalse(queue.isFilled());
+        queue.fill(Arrays.asList(shortPackage, longPackage, otherAbiPackage),
+                createComparator(shortPackage, otherAbiPackage, longPackage));
+        assertTrue(queue.isFilled());
+
+        Set<String> abis = new HashSet<>(Arrays.asList(UnitTests.ABI.getName()));
+        assertSame(longPackage, queue.peek(abis));
+        assertSame(longPackage, queue.peek(abis));
+        assertSame(longPackage, queue.poll(abis));
+        assertSame(shortPackage, queue.peek(abis));
+        assertSame(shortPackage, queue.poll(abis));
+        assertNull(queue.peek(abis));
+        assertNull(queue.poll(abis));
+        assertEquals(Arrays.asList(otherAbiPackage), queue.getRemainingPackages());
+    }
+
+    /**
+     * Test that only the last shard to stop gets the packages left in the queue.
+     */
+    public void testTestPackageQueue_stopShard() {
+        TestPackage testPackage = createTestPackage("package", UnitTests.ABI.getName());
+
+        TestPackageQueue queue = new TestPackageQueue(2);
+        queue.fill(Arrays.asList(testPackage), createComparator(testPackage));
+        assertTrue(queue.stopShard().isEmpty());
+        assertEquals(1, queue.getRemainingPackages().size());
+        assertEquals(Arrays.asList(testPackage), queue.stopShard());
+        assertTrue(queue.getRemainingPackages().isEmpty());
+    }
+
+    /**
+     * Test that a dynamic shard runs the packages it pulls from the shared queue, and that it
+     * reports the packages still queued as not executed when it is the last shard to stop.
+     */
+    public void testRun_dynamicShardLost() throws Exception {
+        TestPackageQueue queue = runDynamicShardUntilDeviceLost(1);
+
+        // both packages were reported as not executed
+        assertTrue(queue.getRemainingPackages().isEmpty());
+    }
+
+    /**
+     * Test that a dynamic shard leaves the packages still queued to the shards still running.
+     */
+    public void testRun_dynamicShardLostWithPeers() throws Exception {
+        TestPackageQueue queue = runDynamicShardUntilDeviceLost(2);
+
+        assertEquals(1, queue.getRemainingPackages().size());
+    }
+
+    /**
+     * Run a shard pulling from a queue of two packages, losing the device while running the
+     * first one.
+     *
+     * @return the queue shared with the other shards
+     */
+    private TestPackageQueue runDynamicShardUntilDeviceLost(int shardCount) throws Exception {
+        final String otherName = "other-name";
+        final TestIdentifier otherTest = new TestIdentifier("OTHER_CLASS", "OTHER_TEST");
+        final String otherId = AbiUtils.createId(UnitTests.ABI.getName(), otherName);
+        ITestPackageDef otherPackageDef = EasyMock.createMock(ITestPackageDef.class);
+        EasyMock.expect(otherPackageDef.getTests()).andReturn(Arrays.asList(otherTest));
+        EasyMock.expect(otherPackageDef.getId()).andStubReturn(otherId);
+        EasyMock.expect(otherPackageDef.getName()).andStubReturn(otherName);
+        EasyMock.expect(otherPackageDef.getAbi()).andStubReturn(UnitTests.ABI);
+
+        mCtsTest.addPackageName(PACKAGE_NAME);
+        new OptionSetter(mCtsTest).setOptionValue("disable-reboot", "true");
+        EasyMock.expect(mMockPackageDef.getTests()).andReturn(TEST_IDENTIFIER_LIST);
+        EasyMock.expect(mMockPackageDef.getId()).andStubReturn(ID);
+        EasyMock.expect(mMockPackageDef.getName()).andStubReturn(PACKAGE_NAME);
+        EasyMock.expect(mMockPackageDef.getAbi()).andStubReturn(UnitTests.ABI);
+        EasyMock.expect(mMockPackageDef.getDigest()).andStubReturn("digest");
+        EasyMock.expect(mMockPackageDef.getPackagePreparers()).andStubReturn(
+                new ArrayList<ITargetPreparer>());
+        mMockTest.run((ITestInvocationListener) EasyMock.anyObject());
+        EasyMock.expectLastCall().andThrow(new DeviceNotAvailableException());
+
+        if (shardCount == 1) {
+            // the first package was pulled, the second one never left the queue
+            mMockListener.testRunStarted(ID, 1);
+            mMockListener.testStarted(TEST_IDENTIFIER);
+            mMockListener.testRunStarted(otherId, 1);
+            mMockListener.testStarted(otherTest);
+        }
+        replayMocks(otherPackageDef);
+
+        TestPackage testPackage = new TestPackage(mMockPackageDef, mMockTest);
+        TestPackage otherPackage = new TestPackage(otherPackageDef, null);
+        TestPackageQueue queue = new TestPackageQueue(shardCount);
+        queue.fill(Arrays.asList(otherPackage, testPackage),
+                createComparator(otherPackage, testPackage));
+        mCtsTest.setTestPackageQueue(queue);
+        try {
+            mCtsTest.run(mMockListener);
+            fail("Did not throw DeviceNotAvailableException");
+        } catch (DeviceNotAvailableException e) {
+            // expected
+        }
+        verifyMocks(otherPackageDef);
+        return queue;
+    }
+
+    /**
+     * Create a {@link TestPackage} with no tests for the given ABI.
+     */
+    private static TestPackage createTestPackage(String name, String abiName) {
+        ITestPackageDef packageDef = EasyMock.createNiceMock(ITestPackageDef.class);
+        EasyMock.expect(packageDef.getName()).andStubReturn(name);
+        EasyMock.expect(packageDef.getTests()).andStubReturn(new ArrayList<TestIdentifier>());
+        EasyMock.expect(packageDef.getAbi()).andStubReturn(new Abi(abiName, "32"));
+        EasyMock.replay(packageDef);
+        return new TestPackage(packageDef, null);
+    }
+
+    /**
+     * Create a {@link Comparator} ordering the given packages from shortest to longest.
+     */
+    private static Comparator<TestPackage> createComparator(TestPackage... shortestFirst) {
+        final List<TestPackage> order = Arrays.asList(shortestFirst);
+        return new Comparator<TestPackage>() {
+            @Override
+            public int compare(TestPackage left, TestPackage right) {
+                return Integer.compare(order.indexOf(left), order.indexOf(right));
+            }
+        };
+    }
+
     private void replayMocks(Object... mocks) {
         EasyMock.replay(mMockRepo, mMockPlan, mMockDevice, mMockPackageDef, mMockListener, mMockTest);
         EasyMock.replay(mocks);
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.testtype;
+
+import com.android.cts.tradefed.UnitTests;
+import com.android.cts.tradefed.build.StubCtsBuildHelper;
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.IShellOutputReceiver;
+import com.android.ddmlib.testrunner.TestIdentifier;
+import com.android.tradefed.device.ITestDevice;
+import com.android.tradefed.result.ITestInvocationListener;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long {@link DeqpTestRunner} takes to run a large package against a simulated
+ * device, which covers batch selection, case list generation and parsing of the
+ * instrumentation output, e.g.:
+ * <pre>
+ * java -cp tradefed-prebuilt.jar:cts-tradefed.jar:cts-tradefed-tests.jar \
+ *     com.android.cts.tradefed.testtype.DeqpTestRunnerBenchmark -n 5 -t 20000 -l 50
+ * </pre>
+ * Every test passes and writes the given number of test log lines, which arrive as one
+ * multi-line status value. The logs are collected as with --collect-deqp-logs.
+ */
+public class DeqpTestRunnerBenchmark {
+
+    private static final String NAME = "dEQP-EGL";
+
+    public static void main(String[] args) throws Exception {
+        int iterations = 3;
+        int numTests = 10000;
+        int logLines = 20;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-n")) {
+                iterations = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-t")) {
+                numTests = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-l")) {
+                logLines = Integer.parseInt(args[i + 1]);
+            } else {
+                System.err.println("usage: DeqpTestRunnerBenchmark [-n <iterations>] "
+                        + "[-t <tests>] [-l <log lines per test>]");
+                System.exit(-1);
+            }
+        }
+
+        final List<TestIdentifier> tests = new ArrayList<TestIdentifier>(numTests);
+        final Map<TestIdentifier, List<Map<String, String>>> instances = new HashMap<>();
+        for (int i = 0; i < numTests; i++) {
+            // a few groups of a few hundred cases each, as in the real packages
+            TestIdentifier test = new TestIdentifier(NAME + ".group" + (i / 500) + ".sub"
+                    + (i / 50 % 10), "case" + i);
+            tests.add(test);
+            instances.put(test, new ArrayList<Map<String, String>>());
+        }
+
+        // the first iteration warms up the JIT and is not reported
+        for (int i = 0; i <= iterations; i++) {
+            long start = System.nanoTime();
+            runOnce(tests, instances, logLines);
+            long end = System.nanoTime();
+            if (i > 0) {
+                System.out.println("iteration " + i + ": " + (end - start) / 1000000 + " ms for "
+                        + numTests + " tests");
+            }
+        }
+    }
+
+    private static void runOnce(final List<TestIdentifier> tests,
+            Map<TestIdentifier, List<Map<String, String>>> instances, final int logLines)
+            throws Exception {
+        ITestDevice mockDevice = EasyMock.createNiceMock(ITestDevice.class);
+        IDevice mockIDevice = EasyMock.createNiceMock(IDevice.class);
+        ITestInvocationListener mockListener =
+                EasyMock.createNiceMock(ITestInvocationListener.class);
+
+        EasyMock.expect(mockDevice.getIDevice()).andReturn(mockIDevice).anyTimes();
+
+        // batches of passing tests are run in test order, so each run reports the tests
+        // following the ones reported by the previous run
+        mockIDevice.executeShellCommand(EasyMock.<String>anyObject(),
+                EasyMock.<IShellOutputReceiver>notNull(), EasyMock.anyLong(),
+                EasyMock.isA(TimeUnit.class));
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            private int mNextTest = 0;
+
+            @Override
+            public Object answer() {
+                IShellOutputReceiver receiver =
+                        (IShellOutputReceiver)EasyMock.getCurrentArguments()[1];
+                int end = Math.min(mNextTest + 1000, tests.size());
+                for (; mNextTest < end; mNextTest++) {
+                    byte[] output = getTestOutput(tests.get(mNextTest), logLines).getBytes();
+                    receiver.addOutput(output, 0, output.length);
+                }
+                byte[] output = "INSTRUMENTATION_CODE: 0\r\n".getBytes();
+                receiver.addOutput(output, 0, output.length);
+                receiver.flush();
+                return null;
+            }
+        }).anyTimes();
+
+        EasyMock.replay(mockDevice, mockIDevice, mockListener);
+
+        DeqpTestRunner deqpTest = new DeqpTestRunner(NAME, NAME, tests, instances);
+        deqpTest.setAbi(UnitTests.ABI);
+        deqpTest.setDevice(mockDevice);
+        deqpTest.setBuildHelper(new StubCtsBuildHelper());
+        deqpTest.setCollectLogs(true);
+        deqpTest.run(mockListener);
+    }
+
+    private static String getTestOutput(TestIdentifier test, int logLines) {
+        StringBuilder output = new StringBuilder();
+        output.append("INSTRUMENTATION_STATUS: dEQP-EventType=BeginTestCase\r\n"
+                + "INSTRUMENTATION_STATUS: dEQP-BeginTestCase-TestCasePath=")
+                .append(test.getClassName()).append('.').append(test.getTestName())
+                .append("\r\nINSTRUMENTATION_STATUS_CODE: 0\r\n"
+                + "INSTRUMENTATION_STATUS: dEQP-EventType=TestLogData\r\n"
+                + "INSTRUMENTATION_STATUS: dEQP-TestLogData-Log=<TestCaseResult>\r\n");
+        for (int i = 0; i < logLines; i++) {
+            output.append("<Text>Log line ").append(i)
+                    .append(" of a test case writing some details</Text>\r\n");
+        }
+        output.append("</TestCaseResult>\r\n"
+                + "INSTRUMENTATION_STATUS_CODE: 0\r\n"
+                + "INSTRUMENTATION_STATUS: dEQP-TestCaseResult-Code=Pass\r\n"
+                + "INSTRUMENTATION_STATUS: dEQP-TestCaseResult-Details=Pass\r\n"
+                + "INSTRUMENTATION_STATUS: dEQP-EventType=TestCaseResult\r\n"
+                + "INSTRUMENTATION_STATUS_CODE: 0\r\n"
+                + "INSTRUMENTATION_STATUS: dEQP-EventType=EndTestCase\r\n"
+                + "INSTRUMENTATION_STATUS_CODE: 0\r\n");
+        return output.toString();
+    }
+}
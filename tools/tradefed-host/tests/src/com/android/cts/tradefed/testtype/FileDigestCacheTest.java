@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.testtype;
+
+import com.android.tradefed.util.FileUtil;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link FileDigestCache}.
+ */
+public class FileDigestCacheTest extends TestCase {
+
+    private File mTestCaseDir;
+    private File mCacheDir;
+    private File mApkFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mTestCaseDir = FileUtil.createTempDir("testcases");
+        mCacheDir = FileUtil.createTempDir("digests");
+        mApkFile = new File(mTestCaseDir, "CtsExampleTestCases.apk");
+        FileUtil.writeToFile("apk", mApkFile);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.recursiveDelete(mTestCaseDir);
+        FileUtil.recursiveDelete(mCacheDir);
+        super.tearDown();
+    }
+
+    /**
+     * Test that a stored digest is found by a new cache of the same directory.
+     */
+    public void testPutDigest() {
+        FileDigestCache cache = new FileDigestCache(mTestCaseDir, mCacheDir);
+        assertNull(cache.getDigest(mApkFile));
+        cache.putDigest(mApkFile, "digest");
+        assertEquals("digest", cache.getDigest(mApkFile));
+        assertEquals("digest", new FileDigestCache(mTestCaseDir, mCacheDir).getDigest(mApkFile));
+        // nothing is written to the testcases directory
+        assertEquals(1, mTestCaseDir.list().length);
+    }
+
+    /**
+     * Test that a digest is not used anymore once the file changed.
+     */
+    public void testGetDigest_changed() throws Exception {
+        FileDigestCache cache = new FileDigestCache(mTestCaseDir, mCacheDir);
+        cache.putDigest(mApkFile, "digest");
+        FileUtil.writeToFile("changed apk", mApkFile);
+        assertNull(cache.getDigest(mApkFile));
+        assertNull(new FileDigestCache(mTestCaseDir, mCacheDir).getDigest(mApkFile));
+    }
+
+    /**
+     * Test that replaced digests and digests of removed files are pruned when loading.
+     */
+    public void testLoad_pruned() throws Exception {
+        File otherApkFile = new File(mTestCaseDir, "CtsOtherTestCases.apk");
+        FileUtil.writeToFile("other apk", otherApkFile);
+        FileDigestCache cache = new FileDigestCache(mTestCaseDir, mCacheDir);
+        cache.putDigest(mApkFile, "digest");
+        cache.putDigest(mApkFile, "new digest");
+        cache.putDigest(otherApkFile, "other digest");
+        assertEquals(3, countLines(cache.getCacheFile()));
+        otherApkFile.delete();
+
+        cache = new FileDigestCache(mTestCaseDir, mCacheDir);
+        assertEquals("new digest", cache.getDigest(mApkFile));
+        assertEquals(1, countLines(cache.getCacheFile()));
+    }
+
+    private static int countLines(File file) throws IOException {
+        return FileUtil.readStringFromFile(file).split("\n").length;
+    }
+}
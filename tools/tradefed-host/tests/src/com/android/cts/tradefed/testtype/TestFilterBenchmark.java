@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.testtype;
+
+import com.android.ddmlib.testrunner.TestIdentifier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Measures how long {@link TestFilter} takes to filter and sort a large number of synthetic tests,
+ * e.g.:
+ * <pre>
+ * java -cp ddmlib-prebuilt.jar:cts-tradefed.jar:cts-tradefed-tests.jar \
+ *     com.android.cts.tradefed.testtype.TestFilterBenchmark -n 5 -t 1000000 -r 1000
+ * </pre>
+ * The filter has the given number of rules of each kind: excluded classes, excluded tests,
+ * excluded class name prefixes and included class name prefixes.
+ */
+public class TestFilterBenchmark {
+
+    private static final int TESTS_PER_CLASS = 20;
+    private static final int CLASSES_PER_PACKAGE = 50;
+
+    public static void main(String[] args) {
+        int iterations = 3;
+        int numTests = 1000000;
+        int numRules = 1000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-n")) {
+                iterations = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-t")) {
+                numTests = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-r")) {
+                numRules = Integer.parseInt(args[i + 1]);
+            } else {
+                System.err.println("usage: TestFilterBenchmark [-n <iterations>] [-t <tests>] "
+                        + "[-r <rules of each kind>]");
+                System.exit(-1);
+            }
+        }
+
+        // tests are listed in reverse order, so sorting them is not trivial
+        List<TestIdentifier> tests = new ArrayList<TestIdentifier>(numTests);
+        for (int i = numTests - 1; i >= 0; i--) {
+            tests.add(new TestIdentifier(getClassName(i / TESTS_PER_CLASS),
+                    "test" + i % TESTS_PER_CLASS));
+        }
+        int numClasses = Math.max(1, numTests / TESTS_PER_CLASS);
+        TestFilter filter = new TestFilter();
+        for (int i = 0; i < numRules; i++) {
+            filter.addExcludedClass(getClassName(i * 7 % numClasses));
+            filter.addExcludedTest(new TestIdentifier(getClassName(i * 11 % numClasses),
+                    "test" + i % TESTS_PER_CLASS));
+            filter.addExcludedClassPrefix(getClassName(i * 13 % numClasses));
+            filter.addIncludedClassPrefix("android.pkg" + i % (numClasses / CLASSES_PER_PACKAGE + 1)
+                    + ".");
+        }
+
+        // the first iteration warms up the JIT and is not reported
+        for (int i = 0; i <= iterations; i++) {
+            long start = System.nanoTime();
+            Collection<TestIdentifier> filteredTests = filter.filter(tests);
+            long end = System.nanoTime();
+            if (i > 0) {
+                System.out.println("iteration " + i + ": " + (end - start) / 1000000 + " ms for "
+                        + numTests + " tests, " + filteredTests.size() + " passed the filter");
+            }
+        }
+    }
+
+    private static String getClassName(int classIndex) {
+        return "android.pkg" + classIndex / CLASSES_PER_PACKAGE + ".Class" + classIndex + "Test";
+    }
+}
@@ -174,4 +174,71 @@ public class TestFilterTest extends TestCase {
         mFilter.addIncludedClass(TEST1.getClassName());
         assertTrue(mFilter.filter(mTestList).isEmpty());
     }
+
+    /**
+     * Test {@link TestFilter#filter(java.util.Collection)} with an excluded class prefix
+     */
+    public void testFilter_excludeClassPrefix() {
+        mFilter.addExcludedClassPrefix("FooTest2");
+        Collection<TestIdentifier> filteredList = mFilter.filter(mTestList);
+        assertEquals(2, filteredList.size());
+        Iterator<TestIdentifier> iter = filteredList.iterator();
+        assertEquals(TEST1, iter.next());
+        assertEquals(TEST2, iter.next());
+    }
+
+    /**
+     * Test {@link TestFilter#filter(java.util.Collection)} with an included class prefix
+     */
+    public void testFilter_includeClassPrefix() {
+        mFilter.addIncludedClassPrefix("Foo");
+        mFilter.addExcludedTest(TEST2);
+        Collection<TestIdentifier> filteredList = mFilter.filter(mTestList);
+        assertEquals(2, filteredList.size());
+        Iterator<TestIdentifier> iter = filteredList.iterator();
+        assertEquals(TEST1, iter.next());
+        assertEquals(TEST3, iter.next());
+    }
+
+    /**
+     * Test {@link TestFilter#filter(java.util.Collection)} sorts the tests and applies rules
+     * added after a previous call.
+     */
+    public void testFilter_sortAndAddRule() {
+        List<TestIdentifier> reversedList = new ArrayList<TestIdentifier>();
+        reversedList.add(TEST3);
+        reversedList.add(TEST2);
+        reversedList.add(TEST1);
+        Collection<TestIdentifier> filteredList = mFilter.filter(reversedList);
+        assertEquals(mTestList, filteredList);
+        mFilter.addExcludedClass(TEST3.getClassName());
+        filteredList = mFilter.filter(reversedList);
+        assertEquals(2, filteredList.size());
+        assertFalse(filteredList.contains(TEST3));
+        List<TestIdentifier> excludedTests = new ArrayList<TestIdentifier>();
+        excludedTests.add(TEST1);
+        mFilter.addExcludedTests(excludedTests);
+        filteredList = mFilter.filter(reversedList);
+        assertEquals(1, filteredList.size());
+        assertEquals(TEST2, filteredList.iterator().next());
+    }
+
+    /**
+     * Test that the rules of a {@link TestFilter} can only be changed through its add methods.
+     */
+    public void testGetRules_unmodifiable() {
+        mFilter.addIncludedTest(TEST1);
+        try {
+            mFilter.getIncludedTests().add(TEST2);
+            fail("UnsupportedOperationException not thrown");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            mFilter.getExcludedTests().add(TEST2);
+            fail("UnsupportedOperationException not thrown");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
 }
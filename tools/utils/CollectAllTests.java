@@ -15,7 +15,6 @@
  */
 import com.android.cts.util.AbiUtils;
 
-import org.junit.runner.RunWith;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -29,24 +28,17 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
-import junit.framework.TestCase;
-
 public class CollectAllTests extends DescriptionGenerator {
 
     private static final String ATTRIBUTE_RUNNER = "runner";
@@ -195,70 +187,27 @@ public class CollectAllTests extends DescriptionGenerator {
 
         Map<String,TestClass> testCases = new LinkedHashMap<String, TestClass>();
 
-        Enumeration<JarEntry> jarEntries = jarFile.entries();
-        while (jarEntries.hasMoreElements()) {
-            JarEntry jarEntry = jarEntries.nextElement();
-            String name = jarEntry.getName();
-            if (!name.endsWith(".class")) {
-                continue;
-            }
-            String className
-                    = name.substring(0, name.length() - ".class".length()).replace('/', '.');
-
-            boolean matchesPrefix = false;
-            if (javaPackagePrefixes.length > 0) {
-                for (String javaPackagePrefix : javaPackagePrefixes) {
-                    if (className.startsWith(javaPackagePrefix)) {
-                        matchesPrefix = true;
-                    }
-                }
-            } else {
-                matchesPrefix = true;
-            }
-
-            if (!matchesPrefix) {
-                continue;
-            }
-
-            try {
-                Class<?> klass = Class.forName(className,
-                                               false,
-                                               CollectAllTests.class.getClassLoader());
-                final int modifiers = klass.getModifiers();
-                if (Modifier.isAbstract(modifiers) || !Modifier.isPublic(modifiers)) {
-                    continue;
-                }
-
-                final boolean isJunit4Class = isJunit4Class(klass);
-                if (!isJunit4Class && !isJunit3Test(klass)) {
-                    continue;
-                }
-
-                try {
-                    klass.getConstructor(new Class<?>[] { String.class } );
-                    addToTests(expectations, architecture, testCases, klass);
-                    continue;
-                } catch (NoSuchMethodException e) {
-                } catch (SecurityException e) {
-                    System.out.println("Known bug (Working as intended): problem with class "
-                            + className);
-                    e.printStackTrace();
-                }
+        // Read the class files instead of loading the classes, which would run their static
+        // initializers and needs every class they reference on the classpath.
+        List<TestClassScanner.TestClassInfo> testClasses;
+        try {
+            testClasses = new TestClassScanner(jarFile, CollectAllTests.class.getClassLoader(),
+                    Runtime.getRuntime().availableProcessors()).scan(javaPackagePrefixes);
+        } catch (ClassNotFoundException e) {
+            System.out.println("class not found " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+            return;
+        } catch (IOException e) {
+            System.err.println("cannot read jarfile " + jarFileName);
+            e.printStackTrace();
+            System.exit(1);
+            return;
+        }
 
-                try {
-                    klass.getConstructor(new Class<?>[0]);
-                    addToTests(expectations, architecture, testCases, klass);
-                    continue;
-                } catch (NoSuchMethodException e) {
-                } catch (SecurityException e) {
-                    System.out.println("Known bug (Working as intended): problem with class "
-                            + className);
-                    e.printStackTrace();
-                }
-            } catch (ClassNotFoundException e) {
-                System.out.println("class not found " + className);
-                e.printStackTrace();
-                System.exit(1);
+        for (TestClassScanner.TestClassInfo testClass : testClasses) {
+            for (TestClassScanner.MethodInfo testMethod : testClass.mMethods) {
+                addToTests(expectations, architecture, testCases, testClass.mName, testMethod);
             }
         }
 
@@ -337,108 +286,26 @@ public class CollectAllTests extends DescriptionGenerator {
         }
     }
 
-    private static String getKnownFailure(final Class<?> testClass,
-            final String testName) {
-        return getAnnotation(testClass, testName, KNOWN_FAILURE);
-    }
-
-    private static boolean isKnownFailure(final Class<?> testClass,
-            final String testName) {
-        return getAnnotation(testClass, testName, KNOWN_FAILURE) != null;
-    }
-
-    private static boolean isSuppressed(final Class<?> testClass,
-            final String testName)  {
-        return getAnnotation(testClass, testName, SUPPRESSED_TEST) != null;
-    }
-
-    private static String getAnnotation(final Class<?> testClass,
-            final String testName, final String annotationName) {
-        try {
-            Method testMethod = testClass.getMethod(testName, (Class[])null);
-            Annotation[] annotations = testMethod.getAnnotations();
-            for (Annotation annot : annotations) {
-
-                if (annot.annotationType().getName().equals(annotationName)) {
-                    String annotStr = annot.toString();
-                    String knownFailure = null;
-                    if (annotStr.contains("(value=")) {
-                        knownFailure =
-                            annotStr.substring(annotStr.indexOf("=") + 1,
-                                    annotStr.length() - 1);
-
-                    }
-
-                    if (knownFailure == null) {
-                        knownFailure = "true";
-                    }
-
-                    return knownFailure;
-                }
-
-            }
-
-        } catch (NoSuchMethodException e) {
-        }
-
-        return null;
-    }
-
-    private static void addToTests(ExpectationStore[] expectations,
-                                   String architecture,
-                                   Map<String,TestClass> testCases,
-                                   Class<?> testClass) {
-        Set<String> testNames = new HashSet<String>();
-
-        boolean isJunit3Test = isJunit3Test(testClass);
-
-        Method[] testMethods = testClass.getMethods();
-        for (Method testMethod : testMethods) {
-            String testName = testMethod.getName();
-            if (testNames.contains(testName)) {
-                continue;
-            }
-
-            /* Make sure the method has the right signature. */
-            if (!Modifier.isPublic(testMethod.getModifiers())) {
-                continue;
-            }
-            if (!testMethod.getReturnType().equals(Void.TYPE)) {
-                continue;
-            }
-            if (testMethod.getParameterTypes().length != 0) {
-                continue;
-            }
-
-            if ((isJunit3Test && !testName.startsWith("test"))
-                    || (!isJunit3Test && !isJunit4TestMethod(testMethod))) {
-                continue;
-            }
-
-            testNames.add(testName);
-            addToTests(expectations, architecture, testCases, testClass, testName);
-        }
-    }
-
     private static void addToTests(ExpectationStore[] expectations,
                                    String architecture,
                                    Map<String,TestClass> testCases,
-                                   Class<?> test,
-                                   String testName) {
+                                   String testClassName,
+                                   TestClassScanner.MethodInfo testMethod) {
 
-        String testClassName = test.getName();
-        String knownFailure = getKnownFailure(test, testName);
+        String testName = testMethod.mName;
+        String knownFailure = testMethod.getAnnotation(KNOWN_FAILURE);
 
-        if (isKnownFailure(test, testName)) {
-            System.out.println("ignoring known failure: " + test + "#" + testName);
+        if (knownFailure != null) {
+            System.out.println("ignoring known failure: class " + testClassName + "#" + testName);
             return;
-        } else if (isSuppressed(test, testName)) {
-            System.out.println("ignoring suppressed test: " + test + "#" + testName);
+        } else if (testMethod.getAnnotation(SUPPRESSED_TEST) != null) {
+            System.out.println("ignoring suppressed test: class " + testClassName + "#"
+                               + testName);
             return;
         } else if (VogarUtils.isVogarKnownFailure(expectations,
                                                   testClassName,
                                                   testName)) {
-            System.out.println("ignoring expectation known failure: " + test
+            System.out.println("ignoring expectation known failure: class " + testClassName
                                + "#" + testName);
             return;
         }
@@ -462,40 +329,6 @@ public class CollectAllTests extends DescriptionGenerator {
               knownFailure, false, false, timeoutInMinutes));
     }
 
-    private static boolean isJunit3Test(Class<?> klass) {
-        return TestCase.class.isAssignableFrom(klass);
-    }
-
-    private static boolean isJunit4Class(Class<?> klass) {
-        for (Annotation a : klass.getAnnotations()) {
-            if (RunWith.class.isAssignableFrom(a.annotationType())) {
-                // @RunWith is currently not supported for CTS tests because tradefed cannot handle
-                // a single test spawning other tests with different names.
-                System.out.println("Skipping test class " + klass.getName()
-                        + ": JUnit4 @RunWith is not supported");
-                return false;
-            }
-        }
-
-        for (Method m : klass.getMethods()) {
-            if (isJunit4TestMethod(m)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    private static boolean isJunit4TestMethod(Method method) {
-        for (Annotation a : method.getAnnotations()) {
-            if (org.junit.Test.class.isAssignableFrom(a.annotationType())) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     /**
      * Determines if a given string is a valid java package name
      * @param javaPackageName
@@ -0,0 +1,607 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Finds the JUnit3 and JUnit4 tests of a jar by reading its class files
+ * directly, instead of loading every class through reflection.
+ * <p>
+ * Only the parts of a class file the test rules need are kept: the access
+ * flags, the superclass, the method names and descriptors, and the runtime
+ * visible annotations of the class and its methods. The class files of the jar
+ * are read in parallel. Superclasses outside of the jar are read as resources
+ * of the given class loader, so no class is ever defined or initialized.
+ * <p>
+ * The rules are the same as the ones CollectAllTests used with reflection: a
+ * test class is public, not abstract, has a public constructor taking no
+ * arguments or a single String, and either extends {@code TestCase} or has a
+ * public method annotated with {@code @Test} and no {@code @RunWith}. Its tests
+ * are the public void no-argument methods, declared or inherited, whose name
+ * starts with "test" or that are annotated with {@code @Test} respectively.
+ */
+public class TestClassScanner {
+
+    private static final String JUNIT3_TEST_CASE = "junit.framework.TestCase";
+    private static final String JUNIT4_TEST = "org.junit.Test";
+    private static final String JUNIT4_RUN_WITH = "org.junit.runner.RunWith";
+    private static final String OBJECT = "java.lang.Object";
+
+    private static final String INIT = "<init>";
+    private static final String NO_ARGS = "()V";
+    private static final String STRING_ARG = "(Ljava/lang/String;)V";
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+
+    private final JarFile mJarFile;
+    private final ClassLoader mClassLoader;
+    private final int mThreads;
+
+    /** classes of the jar in entry order, then classes read from the class loader */
+    private final Map<String, ClassInfo> mClasses = new LinkedHashMap<String, ClassInfo>();
+
+    /**
+     * @param jarFile the jar to find the tests of
+     * @param classLoader the class loader to read superclasses outside of the jar from
+     * @param threads the number of threads reading the class files of the jar
+     */
+    TestClassScanner(JarFile jarFile, ClassLoader classLoader, int threads) {
+        mJarFile = jarFile;
+        mClassLoader = classLoader;
+        mThreads = threads;
+    }
+
+    /**
+     * Returns the test classes of the jar whose name starts with one of the
+     * given prefixes, in the order of the jar entries.
+     *
+     * @param javaPackagePrefixes the prefixes of the classes to include, or an
+     *     empty array to include every class of the jar
+     * @throws IOException if a class file of the jar cannot be read
+     * @throws ClassNotFoundException if the superclass of a candidate test
+     *     class can be found neither in the jar nor through the class loader
+     */
+    List<TestClassInfo> scan(String[] javaPackagePrefixes)
+            throws IOException, ClassNotFoundException {
+        readJar();
+
+        List<ClassInfo> candidates = new ArrayList<ClassInfo>();
+        for (ClassInfo info : mClasses.values()) {
+            if (matchesPrefix(info.mName, javaPackagePrefixes)) {
+                candidates.add(info);
+            }
+        }
+
+        List<TestClassInfo> testClasses = new ArrayList<TestClassInfo>();
+        for (ClassInfo info : candidates) {
+            if ((info.mAccessFlags & (ACC_ABSTRACT | ACC_INTERFACE)) != 0
+                    || (info.mAccessFlags & ACC_PUBLIC) == 0) {
+                continue;
+            }
+
+            List<ClassInfo> hierarchy = getHierarchy(info);
+            boolean isJunit3Test = isJunit3Test(hierarchy);
+            if (!isJunit3Test && !isJunit4Class(hierarchy)) {
+                continue;
+            }
+            if (!hasTestConstructor(info)) {
+                continue;
+            }
+
+            TestClassInfo testClass = new TestClassInfo(info.mName);
+            for (MethodInfo method : getPublicMethods(hierarchy).values()) {
+                if (!NO_ARGS.equals(method.mDescriptor)) {
+                    continue;
+                }
+                if ((isJunit3Test && !method.mName.startsWith("test"))
+                        || (!isJunit3Test && !method.mAnnotations.containsKey(JUNIT4_TEST))) {
+                    continue;
+                }
+                testClass.mMethods.add(method);
+            }
+            testClasses.add(testClass);
+        }
+        return testClasses;
+    }
+
+    /**
+     * Reads all class files of the jar in parallel. The classes are added in
+     * entry order, so the tests are found in the same order as before.
+     */
+    private void readJar() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(mThreads);
+        try {
+            List<Future<ClassInfo>> futures = new ArrayList<Future<ClassInfo>>();
+            Enumeration<JarEntry> jarEntries = mJarFile.entries();
+            while (jarEntries.hasMoreElements()) {
+                final JarEntry jarEntry = jarEntries.nextElement();
+                if (!jarEntry.getName().endsWith(".class")) {
+                    continue;
+                }
+                futures.add(executor.submit(new Callable<ClassInfo>() {
+                    @Override
+                    public ClassInfo call() throws IOException {
+                        InputStream in = mJarFile.getInputStream(jarEntry);
+                        try {
+                            return ClassInfo.read(readFully(in), jarEntry.getName());
+                        } finally {
+                            in.close();
+                        }
+                    }
+                }));
+            }
+
+            for (Future<ClassInfo> future : futures) {
+                ClassInfo info;
+                try {
+                    info = future.get();
+                } catch (InterruptedException e) {
+                    throw new IOException("interrupted while reading " + mJarFile.getName(), e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                }
+                // a class may not be in the jar twice, the first entry wins
+                if (!mClasses.containsKey(info.mName)) {
+                    mClasses.put(info.mName, info);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the given class followed by its superclasses, up to but
+     * excluding {@code java.lang.Object}, which declares no tests.
+     */
+    private List<ClassInfo> getHierarchy(ClassInfo info) throws ClassNotFoundException {
+        List<ClassInfo> hierarchy = new ArrayList<ClassInfo>();
+        while (info != null) {
+            hierarchy.add(info);
+            if (info.mSuperName == null || OBJECT.equals(info.mSuperName)) {
+                break;
+            }
+            info = getClassInfo(info.mSuperName);
+        }
+        return hierarchy;
+    }
+
+    private ClassInfo getClassInfo(String className) throws ClassNotFoundException {
+        ClassInfo info = mClasses.get(className);
+        if (info != null) {
+            return info;
+        }
+        String resourceName = className.replace('.', '/') + ".class";
+        InputStream in = mClassLoader.getResourceAsStream(resourceName);
+        if (in == null) {
+            throw new ClassNotFoundException(className);
+        }
+        try {
+            info = ClassInfo.read(readFully(in), resourceName);
+        } catch (IOException e) {
+            throw new ClassNotFoundException(className, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        mClasses.put(className, info);
+        return info;
+    }
+
+    private static boolean isJunit3Test(List<ClassInfo> hierarchy) {
+        for (ClassInfo info : hierarchy) {
+            if (JUNIT3_TEST_CASE.equals(info.mName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isJunit4Class(List<ClassInfo> hierarchy) {
+        // @RunWith is @Inherited, so it counts on any superclass too
+        for (ClassInfo info : hierarchy) {
+            if (info.mAnnotations.containsKey(JUNIT4_RUN_WITH)) {
+                // @RunWith is currently not supported for CTS tests because tradefed cannot handle
+                // a single test spawning other tests with different names.
+                System.out.println("Skipping test class " + hierarchy.get(0).mName
+                        + ": JUnit4 @RunWith is not supported");
+                return false;
+            }
+        }
+
+        for (MethodInfo method : getPublicMethods(hierarchy).values()) {
+            if (method.mAnnotations.containsKey(JUNIT4_TEST)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasTestConstructor(ClassInfo info) {
+        for (MethodInfo method : info.mMethods) {
+            if (INIT.equals(method.mName) && (method.mAccessFlags & ACC_PUBLIC) != 0
+                    && (STRING_ARG.equals(method.mDescriptor)
+                            || NO_ARGS.equals(method.mDescriptor))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the public methods of a class hierarchy by name and descriptor.
+     * A method overridden in a subclass is the one declared by the subclass,
+     * as for {@link Class#getMethods()}.
+     */
+    private static Map<String, MethodInfo> getPublicMethods(List<ClassInfo> hierarchy) {
+        Map<String, MethodInfo> methods = new LinkedHashMap<String, MethodInfo>();
+        for (ClassInfo info : hierarchy) {
+            for (MethodInfo method : info.mMethods) {
+                if ((method.mAccessFlags & ACC_PUBLIC) == 0 || INIT.equals(method.mName)) {
+                    continue;
+                }
+                String key = method.mName + method.mDescriptor;
+                if (!methods.containsKey(key)) {
+                    methods.put(key, method);
+                }
+            }
+        }
+        return methods;
+    }
+
+    private static boolean matchesPrefix(String className, String[] javaPackagePrefixes) {
+        if (javaPackagePrefixes.length == 0) {
+            return true;
+        }
+        for (String javaPackagePrefix : javaPackagePrefixes) {
+            if (className.startsWith(javaPackagePrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A test class found in the jar and its test methods.
+     */
+    static class TestClassInfo {
+        final String mName;
+        final List<MethodInfo> mMethods = new ArrayList<MethodInfo>();
+
+        TestClassInfo(String name) {
+            mName = name;
+        }
+    }
+
+    /**
+     * A method of a class file.
+     */
+    static class MethodInfo {
+        final String mName;
+        final String mDescriptor;
+        final int mAccessFlags;
+        /** runtime visible annotations by type name, with their string value or "" */
+        final Map<String, String> mAnnotations;
+
+        MethodInfo(String name, String descriptor, int accessFlags,
+                Map<String, String> annotations) {
+            mName = name;
+            mDescriptor = descriptor;
+            mAccessFlags = accessFlags;
+            mAnnotations = annotations;
+        }
+
+        /**
+         * Returns the string value of an annotation of this method, "true" if
+         * the annotation has no string value, or null if it is not present.
+         */
+        String getAnnotation(String annotationName) {
+            String value = mAnnotations.get(annotationName);
+            if (value != null && value.isEmpty()) {
+                return "true";
+            }
+            return value;
+        }
+    }
+
+    /**
+     * The parts of a class file needed to find tests.
+     */
+    static class ClassInfo {
+        private static final int MAGIC = 0xcafebabe;
+
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_INTEGER = 3;
+        private static final int CONSTANT_FLOAT = 4;
+        private static final int CONSTANT_LONG = 5;
+        private static final int CONSTANT_DOUBLE = 6;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_STRING = 8;
+        private static final int CONSTANT_FIELDREF = 9;
+        private static final int CONSTANT_METHODREF = 10;
+        private static final int CONSTANT_INTERFACE_METHODREF = 11;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+        private static final int CONSTANT_METHOD_HANDLE = 15;
+        private static final int CONSTANT_METHOD_TYPE = 16;
+        private static final int CONSTANT_DYNAMIC = 17;
+        private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+        private static final int CONSTANT_MODULE = 19;
+        private static final int CONSTANT_PACKAGE = 20;
+
+        private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+        private static final String INNER_CLASSES = "InnerClasses";
+
+        String mName;
+        String mSuperName;
+        int mAccessFlags;
+        final List<MethodInfo> mMethods = new ArrayList<MethodInfo>();
+        Map<String, String> mAnnotations = new HashMap<String, String>();
+
+        private final DataInputStream mIn;
+        private Object[] mConstants;
+
+        private ClassInfo(byte[] bytes) {
+            mIn = new DataInputStream(new ByteArrayInputStream(bytes));
+        }
+
+        /**
+         * Reads a class file.
+         *
+         * @param bytes the content of the class file
+         * @param fileName the name of the class file, for error messages
+         */
+        static ClassInfo read(byte[] bytes, String fileName) throws IOException {
+            ClassInfo info = new ClassInfo(bytes);
+            try {
+                info.read();
+            } catch (IOException e) {
+                throw new IOException("cannot read class file " + fileName, e);
+            } catch (RuntimeException e) {
+                throw new IOException("malformed class file " + fileName, e);
+            }
+            info.mConstants = null;
+            return info;
+        }
+
+        private void read() throws IOException {
+            if (mIn.readInt() != MAGIC) {
+                throw new IOException("bad magic number");
+            }
+            mIn.readUnsignedShort(); // minor version
+            mIn.readUnsignedShort(); // major version
+            readConstantPool();
+
+            mAccessFlags = mIn.readUnsignedShort();
+            mName = getClassName(mIn.readUnsignedShort());
+            int superIndex = mIn.readUnsignedShort();
+            mSuperName = superIndex != 0 ? getClassName(superIndex) : null;
+            mIn.skipBytes(2 * mIn.readUnsignedShort()); // interfaces
+
+            int fieldCount = mIn.readUnsignedShort();
+            for (int i = 0; i < fieldCount; i++) {
+                mIn.skipBytes(6); // access flags, name, descriptor
+                skipAttributes();
+            }
+
+            int methodCount = mIn.readUnsignedShort();
+            for (int i = 0; i < methodCount; i++) {
+                int accessFlags = mIn.readUnsignedShort();
+                String name = getUtf8(mIn.readUnsignedShort());
+                String descriptor = getUtf8(mIn.readUnsignedShort());
+                mMethods.add(new MethodInfo(name, descriptor, accessFlags, readAttributes()));
+            }
+
+            mAnnotations = readAttributes();
+        }
+
+        private void readConstantPool() throws IOException {
+            int count = mIn.readUnsignedShort();
+            mConstants = new Object[count];
+            for (int i = 1; i < count; i++) {
+                int tag = mIn.readUnsignedByte();
+                switch (tag) {
+                    case CONSTANT_UTF8:
+                        mConstants[i] = mIn.readUTF();
+                        break;
+                    case CONSTANT_CLASS:
+                    case CONSTANT_STRING:
+                        // resolved on use, the utf8 entry may come later
+                        mConstants[i] = Integer.valueOf(mIn.readUnsignedShort());
+                        break;
+                    case CONSTANT_METHOD_TYPE:
+                    case CONSTANT_MODULE:
+                    case CONSTANT_PACKAGE:
+                        mIn.skipBytes(2);
+                        break;
+                    case CONSTANT_METHOD_HANDLE:
+                        mIn.skipBytes(3);
+                        break;
+                    case CONSTANT_INTEGER:
+                    case CONSTANT_FLOAT:
+                    case CONSTANT_FIELDREF:
+                    case CONSTANT_METHODREF:
+                    case CONSTANT_INTERFACE_METHODREF:
+                    case CONSTANT_NAME_AND_TYPE:
+                    case CONSTANT_DYNAMIC:
+                    case CONSTANT_INVOKE_DYNAMIC:
+                        mIn.skipBytes(4);
+                        break;
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        // takes two entries
+                        mIn.skipBytes(8);
+                        i++;
+                        break;
+                    default:
+                        throw new IOException("unknown constant pool tag " + tag);
+                }
+            }
+        }
+
+        /**
+         * Reads the attributes of a class or method. Returns the runtime
+         * visible annotations, and applies the access flags of the class as
+         * declared in the source if it is a member class.
+         */
+        private Map<String, String> readAttributes() throws IOException {
+            Map<String, String> annotations = new HashMap<String, String>();
+            int count = mIn.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                String name = getUtf8(mIn.readUnsignedShort());
+                int length = mIn.readInt();
+                if (RUNTIME_VISIBLE_ANNOTATIONS.equals(name)) {
+                    int annotationCount = mIn.readUnsignedShort();
+                    for (int j = 0; j < annotationCount; j++) {
+                        readAnnotation(annotations);
+                    }
+                } else if (INNER_CLASSES.equals(name)) {
+                    readInnerClasses();
+                } else {
+                    mIn.skipBytes(length);
+                }
+            }
+            return annotations;
+        }
+
+        private void skipAttributes() throws IOException {
+            int count = mIn.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                mIn.skipBytes(2);
+                mIn.skipBytes(mIn.readInt());
+            }
+        }
+
+        private void readInnerClasses() throws IOException {
+            int count = mIn.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                int innerIndex = mIn.readUnsignedShort();
+                mIn.skipBytes(4); // outer class, inner name
+                int innerAccessFlags = mIn.readUnsignedShort();
+                // Class.getModifiers() reports these flags for a member class
+                if (mName.equals(getClassName(innerIndex))) {
+                    mAccessFlags = innerAccessFlags;
+                }
+            }
+        }
+
+        /**
+         * Reads an annotation, adding its type name and the value of its
+         * "value" element if it is a string.
+         */
+        private void readAnnotation(Map<String, String> annotations) throws IOException {
+            String type = getTypeName(getUtf8(mIn.readUnsignedShort()));
+            String value = "";
+            int pairCount = mIn.readUnsignedShort();
+            for (int i = 0; i < pairCount; i++) {
+                String elementName = getUtf8(mIn.readUnsignedShort());
+                int tag = mIn.readUnsignedByte();
+                if (tag == 's' && "value".equals(elementName)) {
+                    value = getUtf8(mIn.readUnsignedShort());
+                } else {
+                    skipElementValue(tag);
+                }
+            }
+            if (annotations != null) {
+                annotations.put(type, value);
+            }
+        }
+
+        private void skipElementValue(int tag) throws IOException {
+            switch (tag) {
+                case 'B': case 'C': case 'D': case 'F': case 'I':
+                case 'J': case 'S': case 'Z': case 's': case 'c':
+                    mIn.skipBytes(2);
+                    break;
+                case 'e':
+                    mIn.skipBytes(4);
+                    break;
+                case '@':
+                    readAnnotation(null);
+                    break;
+                case '[':
+                    int count = mIn.readUnsignedShort();
+                    for (int i = 0; i < count; i++) {
+                        skipElementValue(mIn.readUnsignedByte());
+                    }
+                    break;
+                default:
+                    throw new IOException("unknown element value tag " + (char) tag);
+            }
+        }
+
+        private String getUtf8(int index) throws IOException {
+            Object constant = mConstants[index];
+            if (!(constant instanceof String)) {
+                throw new IOException("constant " + index + " is not a utf8 entry");
+            }
+            return (String) constant;
+        }
+
+        private String getClassName(int index) throws IOException {
+            Object constant = mConstants[index];
+            if (!(constant instanceof Integer)) {
+                throw new IOException("constant " + index + " is not a class entry");
+            }
+            return getUtf8((Integer) constant).replace('/', '.');
+        }
+
+        /**
+         * Returns the class name of a field descriptor such as
+         * {@code Lorg/junit/Test;}.
+         */
+        private static String getTypeName(String descriptor) {
+            if (descriptor.startsWith("L") && descriptor.endsWith(";")) {
+                descriptor = descriptor.substring(1, descriptor.length() - 1);
+            }
+            return descriptor.replace('/', '.');
+        }
+    }
+}
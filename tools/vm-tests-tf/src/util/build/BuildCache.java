@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util.build;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Remembers the content hashes of the inputs and outputs of built targets, so
+ * that a target whose inputs did not change since it was last built is not
+ * built again.
+ * <p>
+ * The inputs of a target are the files read by the target or any of its
+ * children that none of them write, so intermediate files deleted after the
+ * build do not make the target out of date. A target is up to date if the
+ * hash of its step types and inputs matches the one recorded when it was last
+ * built, and all of its outputs still exist with the recorded content.
+ * <p>
+ * The cache is a text file with one <code>step input-hash output-hash</code>
+ * line per target. Inputs are assumed not to change while building, so the
+ * hash of an input file is computed only once.
+ */
+class BuildCache {
+
+    private final File cacheFile;
+    private final Map<String, String[]> entries = new TreeMap<String, String[]>();
+    private final Map<File, byte[]> inputDigests = new HashMap<File, byte[]>();
+    private boolean modified;
+
+    BuildCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+        if (cacheFile.exists()) {
+            load();
+        }
+    }
+
+    private void load() {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(cacheFile));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length == 3) {
+                    entries.put(fields[0], new String[] {fields[1], fields[2]});
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("warning: failed to read build cache "
+                    + cacheFile.getAbsolutePath() + ": " + e.getMessage());
+            entries.clear();
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * Writes the cache file if any target was built since it was loaded.
+     */
+    synchronized void save() {
+        if (!modified) {
+            return;
+        }
+        // write to a temp file first, so an interrupted build cannot leave a
+        // truncated cache behind
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(tempFile), "utf-8"));
+            for (Map.Entry<String, String[]> entry : entries.entrySet()) {
+                writer.write(entry.getKey() + "\t" + entry.getValue()[0] + "\t"
+                        + entry.getValue()[1] + "\n");
+            }
+            writer.close();
+            writer = null;
+            if (!tempFile.renameTo(cacheFile)
+                    && !(cacheFile.delete() && tempFile.renameTo(cacheFile))) {
+                throw new IOException("failed to rename " + tempFile.getPath());
+            }
+            modified = false;
+        } catch (IOException e) {
+            System.err.println("warning: failed to write build cache "
+                    + cacheFile.getAbsolutePath() + ": " + e.getMessage());
+            tempFile.delete();
+        } finally {
+            close(writer);
+        }
+    }
+
+    /**
+     * Returns the hash of the step types and inputs of a target, or null if an
+     * input is missing. Computed before the target is built.
+     */
+    String getInputHash(BuildStep target) {
+        Set<BuildStep> steps = new HashSet<BuildStep>();
+        addSteps(target, steps);
+
+        Set<String> types = new TreeSet<String>();
+        Set<File> inputs = new TreeSet<File>();
+        Set<File> outputs = new HashSet<File>();
+        for (BuildStep step : steps) {
+            types.add(step.getClass().getName());
+            for (File file : step.getInputFiles()) {
+                inputs.add(file.getAbsoluteFile());
+            }
+            for (File file : step.getOutputFiles()) {
+                outputs.add(file.getAbsoluteFile());
+            }
+        }
+        inputs.removeAll(outputs);
+
+        MessageDigest digest = newDigest();
+        for (String type : types) {
+            update(digest, type);
+        }
+        for (File input : inputs) {
+            byte[] fileDigest = getInputDigest(input);
+            if (fileDigest == null) {
+                return null;
+            }
+            update(digest, input.getPath());
+            digest.update(fileDigest);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns whether a target with the given input hash was built before and
+     * its outputs did not change since.
+     */
+    boolean isUpToDate(BuildStep target, String inputHash) {
+        String[] entry;
+        synchronized (this) {
+            entry = entries.get(BuildStepExecutor.describe(target));
+        }
+        if (inputHash == null || entry == null || !entry[0].equals(inputHash)) {
+            return false;
+        }
+        return entry[1].equals(getOutputHash(target));
+    }
+
+    /**
+     * Records that a target was built from inputs with the given hash.
+     */
+    void put(BuildStep target, String inputHash) {
+        if (inputHash == null) {
+            return;
+        }
+        String outputHash = getOutputHash(target);
+        if (outputHash == null) {
+            return;
+        }
+        synchronized (this) {
+            entries.put(BuildStepExecutor.describe(target),
+                    new String[] {inputHash, outputHash});
+            modified = true;
+        }
+    }
+
+    private static void addSteps(BuildStep step, Set<BuildStep> steps) {
+        if (steps.add(step)) {
+            for (BuildStep child : step.getChildren()) {
+                addSteps(child, steps);
+            }
+        }
+    }
+
+    private String getOutputHash(BuildStep target) {
+        Set<File> outputs = new TreeSet<File>();
+        for (File file : target.getOutputFiles()) {
+            outputs.add(file.getAbsoluteFile());
+        }
+        MessageDigest digest = newDigest();
+        for (File output : outputs) {
+            byte[] fileDigest = getDigest(output);
+            if (fileDigest == null) {
+                return null;
+            }
+            update(digest, output.getPath());
+            digest.update(fileDigest);
+        }
+        return toHex(digest.digest());
+    }
+
+    private byte[] getInputDigest(File file) {
+        synchronized (inputDigests) {
+            if (inputDigests.containsKey(file)) {
+                return inputDigests.get(file);
+            }
+        }
+        byte[] fileDigest = getDigest(file);
+        synchronized (inputDigests) {
+            inputDigests.put(file, fileDigest);
+        }
+        return fileDigest;
+    }
+
+    private static byte[] getDigest(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        MessageDigest digest = newDigest();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+            return digest.digest();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        try {
+            digest.update(s.getBytes("utf-8"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        digest.update((byte) 0);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+            builder.append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    private static void close(Closeable c) {
+        if (c == null) {
+            return;
+        }
+        try {
+            c.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
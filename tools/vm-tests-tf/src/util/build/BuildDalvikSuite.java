@@ -74,6 +74,12 @@ public class BuildDalvikSuite {
 
     private static String restrictTo = null; // e.g. restrict to "opcodes.add_double"
 
+    // when set, targets whose inputs did not change since the last build are
+    // not built again, see BuildCache
+    private static boolean incremental = Boolean.getBoolean("util.build.incremental");
+
+    private static final String BUILD_CACHE_FILE_NAME = ".build-cache";
+
     private static final String TARGET_JAR_ROOT_PATH = "/data/local/tmp/vm-tests";
 
     private int testClassCnt = 0;
@@ -130,11 +136,17 @@ public class BuildDalvikSuite {
               restrictTo = args[6];
               System.out.println("restricting build to: " + restrictTo);
           }
+          if (incremental) {
+              System.out.println("incremental build, cache: " + OUTPUT_FOLDER + "/" +
+                      BUILD_CACHE_FILE_NAME);
+          }
 
       } else {
           System.out.println("usage: java-src-folder output-folder classpath " +
                   "generated-main-files compiled_output generated-main-files " +
           "[restrict-to-opcode]");
+          System.out.println("run with -Dutil.build.incremental=true to only rebuild " +
+                  "the targets whose inputs changed since the last build");
           System.exit(-1);
       }
     }
@@ -355,21 +367,18 @@ public class BuildDalvikSuite {
                 File sourceFile = getFileFromPackage(pName, method);
 
                 writeToFile(sourceFile, content);
+                JackBuildStep jackBuildStep = null;
                 if (useJack) {
                     File jackFile = new File(CLASSES_OUTPUT_FOLDER + "/" +
                             getFileName(pName, method, ".jack"));
-                    JackBuildStep step = new JackBuildStep(jackFile.getAbsolutePath(), CLASS_PATH);
-                    step.addSourceFile(sourceFile.getAbsolutePath());
-                    if (!step.build()) {
-                        System.out.println("main src dalvik-cts-buildutil build step failed");
-                        System.exit(1);
-                    }
+                    jackBuildStep = new JackBuildStep(jackFile.getAbsolutePath(), CLASS_PATH);
+                    jackBuildStep.addSourceFile(sourceFile.getAbsolutePath());
                 } else {
                     srcBuildStep.addSourceFile(sourceFile.getAbsolutePath());
                 }
 
                 BuildStep dexBuildStep = generateDexBuildStep(
-                        CLASSES_OUTPUT_FOLDER, getFileName(pName, method, ""), null);
+                        CLASSES_OUTPUT_FOLDER, getFileName(pName, method, ""), jackBuildStep);
                 targets.add(dexBuildStep);
 
 
@@ -466,23 +475,39 @@ public class BuildDalvikSuite {
         scriptDataDir.mkdirs();
         writeToFile(new File(scriptDataDir, "scriptdata"), datafileContent);
 
-        if (!hostJunitBuildStep.build()) {
+        BuildCache buildCache = null;
+        if (incremental) {
+            buildCache = new BuildCache(new File(OUTPUT_FOLDER, BUILD_CACHE_FILE_NAME));
+        }
+        BuildStepExecutor executor = new BuildStepExecutor(
+                Runtime.getRuntime().availableProcessors(), buildCache);
+
+        if (build(executor, Collections.<BuildStep>singleton(hostJunitBuildStep)) != null) {
             System.out.println("main javac cts-host-hostjunit-classes build step failed");
             System.exit(1);
         }
 
         if (!useJack) {
-            if (!srcBuildStep.build()) {
+            if (build(executor, Collections.<BuildStep>singleton(srcBuildStep)) != null) {
                 System.out.println("main src dalvik-cts-buildutil build step failed");
                 System.exit(1);
             }
         }
-        for (BuildStep buildStep : targets) {
-            if (!buildStep.build()) {
-                System.out.println("building failed. buildStep: " +
-                        buildStep.getClass().getName() + ", " + buildStep);
-                System.exit(1);
-            }
+        BuildStep failedStep = build(executor, targets);
+        if (failedStep != null) {
+            System.out.println("building failed. buildStep: " +
+                    failedStep.getClass().getName() + ", " +
+                    BuildStepExecutor.describe(failedStep));
+            System.exit(1);
+        }
+    }
+
+    private static BuildStep build(BuildStepExecutor executor, Set<BuildStep> targets)
+            throws IOException {
+        try {
+            return executor.build(targets);
+        } catch (InterruptedException e) {
+            throw new IOException("interrupted while building", e);
         }
     }
 
@@ -21,6 +21,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -75,10 +77,14 @@ abstract class BuildStep implements Comparable<BuildStep> {
 
     private Set<BuildStep> children;
 
+    // set by BuildStepExecutor once this step is built, so that the steps
+    // depending on it do not build it again
+    private volatile boolean built;
+
     boolean build() {
         if (children != null) {
             for (BuildStep child : children) {
-                if (!child.build()) {
+                if (!child.built && !child.build()) {
                     return false;
                 }
             }
@@ -86,6 +92,55 @@ abstract class BuildStep implements Comparable<BuildStep> {
         return true;
     }
 
+    boolean isBuilt() {
+        return built;
+    }
+
+    void setBuilt() {
+        built = true;
+    }
+
+    /**
+     * Returns whether this step may build at the same time as other steps.
+     * Steps that run a tool with global state must return false.
+     */
+    boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Returns the files read by this step, including those written by its
+     * children.
+     */
+    Collection<File> getInputFiles() {
+        if (inputFile == null) {
+            return Collections.emptySet();
+        }
+        return Collections.singleton(inputFile.fileName);
+    }
+
+    /**
+     * Returns the files written by this step. Only called after the step is
+     * built or before it is checked for being up to date.
+     */
+    Collection<File> getOutputFiles() {
+        if (outputFile == null) {
+            return Collections.emptySet();
+        }
+        return Collections.singleton(outputFile.fileName);
+    }
+
+    /**
+     * Returns the path of the file or folder this step builds, or null.
+     */
+    String getOutputPath() {
+        return outputFile != null ? outputFile.getPath() : null;
+    }
+
+    Set<BuildStep> getChildren() {
+        return children != null ? children : Collections.<BuildStep>emptySet();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == null) return false;
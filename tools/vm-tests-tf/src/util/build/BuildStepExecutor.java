@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util.build;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds a graph of {@link BuildStep}s on a bounded thread pool.
+ * <p>
+ * Equal steps are built only once, no matter how many steps depend on them. A
+ * step is started as soon as all of its children are built, so independent
+ * steps build concurrently; steps that are not thread safe still never run at
+ * the same time as each other. Once a step fails no new steps are started, and
+ * the failure reported is the first failed step in target order, so the outcome
+ * does not depend on thread scheduling.
+ * <p>
+ * With a {@link BuildCache}, targets whose inputs did not change since they
+ * were last built are skipped together with the children only they need.
+ */
+class BuildStepExecutor {
+
+    private static final int SLOWEST_STEPS_REPORTED = 10;
+
+    // held while building a step that is not thread safe
+    private final Object toolLock = new Object();
+
+    private final int threads;
+    private final BuildCache cache;
+
+    private ExecutorService pool;
+    private int running;
+    private boolean aborted;
+
+    private static class Node {
+        final BuildStep step;
+        final int order;
+        // the input hash of a target when building with a cache
+        String inputHash;
+        boolean target;
+        // equal steps added by other parents, marked built together with step
+        final List<BuildStep> duplicates = new ArrayList<BuildStep>();
+        final List<Node> dependents = new ArrayList<Node>();
+        int pendingChildren;
+        boolean visiting;
+        boolean failed;
+        long nanos = -1;
+
+        Node(BuildStep step, int order) {
+            this.step = step;
+            this.order = order;
+        }
+    }
+
+    BuildStepExecutor(int threads) {
+        this(threads, null);
+    }
+
+    /**
+     * @param cache the cache of built targets, or null to build all targets
+     */
+    BuildStepExecutor(int threads, BuildCache cache) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads < 1: " + threads);
+        }
+        this.threads = threads;
+        this.cache = cache;
+    }
+
+    /**
+     * Builds the targets and all of their children.
+     *
+     * @return the first target or child that failed to build, in target order,
+     *         or null if all steps were built
+     */
+    BuildStep build(Collection<BuildStep> targets) throws InterruptedException {
+        long start = System.nanoTime();
+        Map<BuildStep, Node> nodes = new LinkedHashMap<BuildStep, Node>();
+        int upToDate = 0;
+        for (BuildStep target : targets) {
+            String inputHash = null;
+            if (cache != null) {
+                inputHash = cache.getInputHash(target);
+                if (cache.isUpToDate(target, inputHash)) {
+                    target.setBuilt();
+                    upToDate++;
+                    continue;
+                }
+            }
+            Node node = addNode(target, nodes);
+            node.target = true;
+            node.inputHash = inputHash;
+        }
+        if (cache != null) {
+            System.out.println(upToDate + " of " + targets.size()
+                    + " targets up to date");
+        }
+
+        pool = Executors.newFixedThreadPool(threads);
+        try {
+            synchronized (this) {
+                running = 0;
+                aborted = false;
+                for (Node node : nodes.values()) {
+                    if (node.pendingChildren == 0) {
+                        submit(node);
+                    }
+                }
+                while (running > 0) {
+                    wait();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            pool = null;
+            if (cache != null) {
+                cache.save();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        printTimings(nodes.values(), elapsed);
+        for (Node node : nodes.values()) {
+            if (node.failed) {
+                return node.step;
+            }
+        }
+        return null;
+    }
+
+    private Node addNode(BuildStep step, Map<BuildStep, Node> nodes) {
+        Node node = nodes.get(step);
+        if (node != null) {
+            if (node.visiting) {
+                throw new IllegalStateException("build step depends on itself: "
+                        + describe(step));
+            }
+            if (node.step != step) {
+                node.duplicates.add(step);
+            }
+            return node;
+        }
+        node = new Node(step, nodes.size());
+        nodes.put(step, node);
+        node.visiting = true;
+        for (BuildStep child : step.getChildren()) {
+            Node childNode = addNode(child, nodes);
+            if (!childNode.dependents.contains(node)) {
+                childNode.dependents.add(node);
+                node.pendingChildren++;
+            }
+        }
+        node.visiting = false;
+        return node;
+    }
+
+    // called with the lock on this held
+    private void submit(final Node node) {
+        running++;
+        pool.execute(new Runnable() {
+            public void run() {
+                boolean success = false;
+                try {
+                    if (node.step.isThreadSafe()) {
+                        success = buildStep(node);
+                    } else {
+                        synchronized (toolLock) {
+                            success = buildStep(node);
+                        }
+                    }
+                    if (success && node.target && cache != null) {
+                        cache.put(node.step, node.inputHash);
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    finished(node, success);
+                }
+            }
+        });
+    }
+
+    // the time spent waiting for the tool lock is not part of the step's time
+    private static boolean buildStep(Node node) {
+        long start = System.nanoTime();
+        try {
+            return node.step.build();
+        } finally {
+            node.nanos = System.nanoTime() - start;
+        }
+    }
+
+    private synchronized void finished(Node node, boolean success) {
+        if (success) {
+            node.step.setBuilt();
+            for (BuildStep duplicate : node.duplicates) {
+                duplicate.setBuilt();
+            }
+            for (Node dependent : node.dependents) {
+                if (--dependent.pendingChildren == 0 && !aborted) {
+                    submit(dependent);
+                }
+            }
+        } else {
+            node.failed = true;
+            aborted = true;
+        }
+        if (--running == 0) {
+            notifyAll();
+        }
+    }
+
+    private void printTimings(Collection<Node> nodes, long elapsed) {
+        Map<String, long[]> byType = new TreeMap<String, long[]>();
+        List<Node> built = new ArrayList<Node>();
+        for (Node node : nodes) {
+            if (node.nanos < 0) {
+                continue;
+            }
+            built.add(node);
+            String type = node.step.getClass().getSimpleName();
+            long[] stats = byType.get(type);
+            if (stats == null) {
+                stats = new long[3];
+                byType.put(type, stats);
+            }
+            stats[0]++;
+            stats[1] += node.nanos;
+            stats[2] = Math.max(stats[2], node.nanos);
+        }
+
+        System.out.println("built " + built.size() + " of " + nodes.size()
+                + " steps in " + millis(elapsed) + " ms using " + threads
+                + " threads");
+        for (Map.Entry<String, long[]> entry : byType.entrySet()) {
+            long[] stats = entry.getValue();
+            System.out.println("  " + entry.getKey() + ": " + stats[0]
+                    + " steps, " + millis(stats[1]) + " ms total, "
+                    + millis(stats[2]) + " ms max");
+        }
+
+        Collections.sort(built, new Comparator<Node>() {
+            public int compare(Node n1, Node n2) {
+                if (n1.nanos != n2.nanos) {
+                    return n1.nanos > n2.nanos ? -1 : 1;
+                }
+                return n1.order - n2.order;
+            }
+        });
+        int count = Math.min(SLOWEST_STEPS_REPORTED, built.size());
+        if (count > 0) {
+            System.out.println("slowest steps:");
+            for (Node node : built.subList(0, count)) {
+                System.out.println("  " + millis(node.nanos) + " ms "
+                        + describe(node.step));
+            }
+        }
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    static String describe(BuildStep step) {
+        String name = step.getClass().getSimpleName();
+        String outputPath = step.getOutputPath();
+        if (outputPath != null) {
+            return name + " " + outputPath;
+        }
+        return name;
+    }
+}
@@ -35,7 +35,7 @@ public class DFHBuildStep extends BuildStep {
     boolean build() {
         if (super.build()) {
             File out_dir = outputFile.fileName.getParentFile();
-            if (!out_dir.exists() && !out_dir.mkdirs()) {
+            if (!out_dir.mkdirs() && !out_dir.isDirectory()) {
                 System.err.println("failed to create dir: "
                         + out_dir.getAbsolutePath());
                 return false;
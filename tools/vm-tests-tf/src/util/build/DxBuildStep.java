@@ -63,6 +63,12 @@ public class DxBuildStep extends BuildStep {
         return false;
     }
 
+    @Override
+    boolean isThreadSafe() {
+        // dx keeps the state of a run in static fields
+        return false;
+    }
+
     @Override
     public int hashCode() {
         return inputFile.hashCode() ^ outputFile.hashCode();
@@ -22,6 +22,8 @@ import com.android.jack.Options;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -50,7 +52,7 @@ public class JackBuildStep extends SourceBuildStep {
             }
 
             File outDir = new File(destPath).getParentFile();
-            if (!outDir.exists() && !outDir.mkdirs()) {
+            if (!outDir.mkdirs() && !outDir.isDirectory()) {
                 System.err.println("failed to create output dir: "
                         + outDir.getAbsolutePath());
                 return false;
@@ -76,6 +78,29 @@ public class JackBuildStep extends SourceBuildStep {
         return false;
     }
 
+    @Override
+    boolean isThreadSafe() {
+        // jack is not known to support concurrent runs
+        return false;
+    }
+
+    @Override
+    Collection<File> getInputFiles() {
+        List<File> files = new ArrayList<File>();
+        addInputFiles(sourceFiles, classPath, files);
+        return files;
+    }
+
+    @Override
+    Collection<File> getOutputFiles() {
+        return Collections.singleton(new File(destPath));
+    }
+
+    @Override
+    String getOutputPath() {
+        return new File(destPath).getAbsolutePath();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (super.equals(obj)) {
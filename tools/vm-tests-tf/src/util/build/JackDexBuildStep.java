@@ -45,7 +45,7 @@ public class JackDexBuildStep extends BuildStep {
             }
 
             File outDir = outputFile.fileName.getParentFile();
-            if (!outDir.exists() && !outDir.mkdirs()) {
+            if (!outDir.mkdirs() && !outDir.isDirectory()) {
                 System.err.println("failed to create output dir: "
                         + outDir.getAbsolutePath());
                 return false;
@@ -76,6 +76,12 @@ public class JackDexBuildStep extends BuildStep {
         return false;
     }
 
+    @Override
+    boolean isThreadSafe() {
+        // jack is not known to support concurrent runs
+        return false;
+    }
+
     @Override
     public int hashCode() {
         return inputFile.hashCode() ^ outputFile.hashCode();
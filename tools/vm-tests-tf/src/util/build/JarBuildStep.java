@@ -37,12 +37,20 @@ public class JarBuildStep extends BuildStep {
     @Override
     boolean build() {
         if (super.build()) {
-            File tempFile = new File(inputFile.folder, destFileName);
+            // several steps may jar a file with the same destFileName from the
+            // same folder at the same time, so each copy gets its own folder
+            File jarFolder = inputFile.folder;
+            File tempFile = null;
             try {
-                if (!inputFile.fileName.equals(tempFile)) {
+                if (!inputFile.fileName.equals(
+                        new File(inputFile.folder, destFileName))) {
+                    jarFolder = File.createTempFile("jar", null, inputFile.folder);
+                    if (!jarFolder.delete() || !jarFolder.mkdir()) {
+                        throw new IOException("failed to create temp dir: "
+                                + jarFolder.getAbsolutePath());
+                    }
+                    tempFile = new File(jarFolder, destFileName);
                     copyFile(inputFile.fileName, tempFile);
-                } else {
-                    tempFile = null;
                 }
             } catch (IOException e) {
                 System.err.println("io exception:"+e.getMessage());
@@ -51,28 +59,29 @@ public class JarBuildStep extends BuildStep {
             }
 
             File outDir = outputFile.fileName.getParentFile();
-            if (!outDir.exists() && !outDir.mkdirs()) {
+            if (!outDir.mkdirs() && !outDir.isDirectory()) {
                 System.err.println("failed to create output dir: "
                         + outDir.getAbsolutePath());
                 return false;
             }
             String[] arguments = new String[] {
                     "-cMf", outputFile.fileName.getAbsolutePath(), "-C",
-                    inputFile.folder.getAbsolutePath(), destFileName};
+                    jarFolder.getAbsolutePath(), destFileName};
             Main main = new Main(System.out, System.err, "jar");
             boolean success = main.run(arguments);
 
+            if (tempFile != null) {
+                tempFile.delete();
+                jarFolder.delete();
+            }
             if (success) {
-                if (tempFile != null) {
-                    tempFile.delete();
-                }
                 if (deleteInputFileAfterBuild) {
                     inputFile.fileName.delete();
                 }
             } else {
                 System.err.println("exception in JarBuildStep while calling jar with args:" +
                         " \"-cMf\", "+outputFile.fileName.getAbsolutePath()+", \"-C\"," + 
-                        inputFile.folder.getAbsolutePath()+", "+ destFileName);
+                        jarFolder.getAbsolutePath()+", "+ destFileName);
             }
             return success;
         }
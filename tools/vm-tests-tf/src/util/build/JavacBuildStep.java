@@ -20,7 +20,10 @@ import com.sun.tools.javac.Main;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class JavacBuildStep extends SourceBuildStep {
@@ -49,7 +52,7 @@ public class JavacBuildStep extends SourceBuildStep {
             }
 
             File destFile = new File(destPath);
-            if (!destFile.exists() && !destFile.mkdirs())
+            if (!destFile.mkdirs() && !destFile.isDirectory())
             {
                 System.err.println("failed to create destination dir");
                 return false;
@@ -71,6 +74,41 @@ public class JavacBuildStep extends SourceBuildStep {
         return false;
     }
 
+    @Override
+    Collection<File> getInputFiles() {
+        List<File> files = new ArrayList<File>();
+        addInputFiles(sourceFiles, classPath, files);
+        return files;
+    }
+
+    @Override
+    Collection<File> getOutputFiles() {
+        // the class files of the sources are not known before compiling, so
+        // everything in the destination folder counts as output
+        List<File> files = new ArrayList<File>();
+        addFiles(new File(destPath), files);
+        return files;
+    }
+
+    private static void addFiles(File folder, List<File> files) {
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addFiles(child, files);
+            } else {
+                files.add(child);
+            }
+        }
+    }
+
+    @Override
+    String getOutputPath() {
+        return new File(destPath).getAbsolutePath();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (super.equals(obj))
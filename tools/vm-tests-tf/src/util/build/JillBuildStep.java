@@ -33,7 +33,7 @@ public class JillBuildStep extends BuildStep {
         if (super.build()) {
 
             File outDir = outputFile.fileName.getParentFile();
-            if (!outDir.exists() && !outDir.mkdirs()) {
+            if (!outDir.mkdirs() && !outDir.isDirectory()) {
                 System.err.println("failed to create output dir: "
                         + outDir.getAbsolutePath());
                 return false;
@@ -58,6 +58,12 @@ public class JillBuildStep extends BuildStep {
         return false;
     }
 
+    @Override
+    boolean isThreadSafe() {
+        // jill is not known to support concurrent runs
+        return false;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (super.equals(obj)) {
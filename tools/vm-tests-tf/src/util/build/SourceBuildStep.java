@@ -16,8 +16,28 @@
 
 package util.build;
 
+import java.io.File;
+import java.util.Collection;
+
 public abstract class SourceBuildStep extends BuildStep {
 
   public abstract void addSourceFile(String sourceFile);
 
+  /**
+   * Adds the source files and the class path archives to the given files. Class
+   * path folders are not added, their content is not tracked.
+   */
+  static void addInputFiles(Collection<String> sourceFiles, String classPath,
+          Collection<File> files) {
+      for (String sourceFile : sourceFiles) {
+          files.add(new File(sourceFile));
+      }
+      for (String entry : classPath.split(File.pathSeparator)) {
+          File file = new File(entry);
+          if (file.isFile()) {
+              files.add(file);
+          }
+      }
+  }
+
 }